@@ -19,7 +19,7 @@ import { Competition, Training, UserTrainingEntry, CompletedTraining, DailyMetri
 import { TrainingDetailsDialogComponent } from '../training-details-dialog/training-details-dialog.component';
 import { StravaActivityDialogComponent, CompletedTrainingDialogData } from '../strava-activity-dialog/strava-activity-dialog.component';
 import { CreateTrainingDialogComponent } from '../create-training-dialog/create-training-dialog.component';
-import { Subject, takeUntil, catchError, of, switchMap } from 'rxjs';
+import { Subject, takeUntil, catchError, of, switchMap, timer, takeWhile } from 'rxjs';
 import { Chart, ChartConfiguration, registerables } from 'chart.js';
 import { AuthService } from '../../services/auth.service';
 
@@ -972,26 +972,32 @@ export class TrainingPlanOverviewComponent implements OnInit, AfterViewChecked,
       formData.append('trainingId', this.selectedTrainingForUpload.id.toString());
     }
 
-    // Simulate progress for demo
-    const progressInterval = setInterval(() => {
-      this.uploadProgress += 10;
-      if (this.uploadProgress >= 90) {
-        clearInterval(progressInterval);
-      }
-    }, 200);
-
+    // The upload returns a queued ingest job; poll it until processing has finished
     this.apiService.uploadFitFile(formData)
-      .pipe(takeUntil(this.destroy$))
+      .pipe(
+        switchMap(job => timer(0, 1000).pipe(
+          switchMap(() => this.apiService.getIngestJob(job.id)),
+          takeWhile(current => current.status !== 'DONE' && current.status !== 'FAILED', true)
+        )),
+        takeUntil(this.destroy$)
+      )
       .subscribe({
-        next: (response) => {
-          clearInterval(progressInterval);
-          this.uploadProgress = 100;
+        next: (job) => {
+          this.uploadProgress = job.progressPct;
+          if (job.status === 'FAILED') {
+            this.isUploading = false;
+            this.uploadProgress = 0;
+            this.snackBar.open('Fehler beim Upload: ' + (job.error ?? 'FIT-Datei konnte nicht verarbeitet werden'), 'SchlieÃƒÆ’Ã†â€™Ãƒâ€ Ã¢â‚¬â„¢ÃƒÆ’Ã¢â‚¬Â ÃƒÂ¢Ã¢â€šÂ¬Ã¢â€žÂ¢ÃƒÆ’Ã†â€™ÃƒÂ¢Ã¢â€šÂ¬Ã‚Â ÃƒÆ’Ã‚Â¢ÃƒÂ¢Ã¢â‚¬Å¡Ã‚Â¬ÃƒÂ¢Ã¢â‚¬Å¾Ã‚Â¢ÃƒÆ’Ã†â€™Ãƒâ€ Ã¢â‚¬â„¢ÃƒÆ’Ã‚Â¢ÃƒÂ¢Ã¢â‚¬Å¡Ã‚Â¬Ãƒâ€šÃ‚Â¦ÃƒÆ’Ã†â€™ÃƒÂ¢Ã¢â€šÂ¬Ã…Â¡ÃƒÆ’Ã¢â‚¬Å¡Ãƒâ€šÃ‚Â¸en', { duration: 5000 });
+            return;
+          }
+          if (job.status !== 'DONE') {
+            return;
+          }
           this.snackBar.open('FIT-Datei erfolgreich hochgeladen', 'SchlieÃƒÆ’Ã†â€™Ãƒâ€ Ã¢â‚¬â„¢ÃƒÆ’Ã¢â‚¬Â ÃƒÂ¢Ã¢â€šÂ¬Ã¢â€žÂ¢ÃƒÆ’Ã†â€™ÃƒÂ¢Ã¢â€šÂ¬Ã‚Â ÃƒÆ’Ã‚Â¢ÃƒÂ¢Ã¢â‚¬Å¡Ã‚Â¬ÃƒÂ¢Ã¢â‚¬Å¾Ã‚Â¢ÃƒÆ’Ã†â€™Ãƒâ€ Ã¢â‚¬â„¢ÃƒÆ’Ã‚Â¢ÃƒÂ¢Ã¢â‚¬Å¡Ã‚Â¬Ãƒâ€šÃ‚Â¦ÃƒÆ’Ã†â€™ÃƒÂ¢Ã¢â€šÂ¬Ã…Â¡ÃƒÆ’Ã¢â‚¬Å¡Ãƒâ€šÃ‚Â¸en', { duration: 3000 });
           this.closeFitUploadModal();
           this.loadWeekData(); // Reload to show completed training
         },
         error: (error) => {
-          clearInterval(progressInterval);
           this.isUploading = false;
           this.uploadProgress = 0;
           
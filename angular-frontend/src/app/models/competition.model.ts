@@ -84,6 +84,11 @@ export interface TrainingImpactRequest {
   workout: TrainingImpactWorkout;
 }
 
+export interface TrainingImpactBatchRequest {
+  userId: string;
+  workouts: TrainingImpactWorkout[];
+}
+
 export interface TrainingImpactResponse {
   predictedTRIMP: number;
   fatigueIncrease: number;
@@ -190,6 +195,22 @@ export interface CompletedTraining {
   uploadedAt?: string;
 }
 
+export type IngestJobStatus = 'QUEUED' | 'PARSING' | 'SAVING' | 'COMPUTING_METRICS' | 'DONE' | 'FAILED';
+
+export interface IngestJob {
+  id: string;
+  status: IngestJobStatus;
+  progressPct: number;
+  originalFilename?: string;
+  completedTrainingId?: number;
+  error?: string;
+  createdAt: string;
+  finishedAt?: string;
+  filesTotal: number;
+  filesDone: number;
+  filesFailed: number;
+}
+
 export interface TrainingFeedback {
   rating?: number;
   feedback?: string;
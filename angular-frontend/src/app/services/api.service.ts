@@ -9,6 +9,7 @@ import {
   Training,
   UserTrainingEntry,
   CompletedTraining,
+  IngestJob,
   TrainingFeedback,
   DailyTrainingCompletion,
   User,
@@ -27,6 +28,7 @@ import {
   ActivityComparisonItem,
   TrainingStatsDto,
   TrainingImpactRequest,
+  TrainingImpactBatchRequest,
   TrainingImpactResponse,
   WeekSimulationRequest,
   WeekSimulationResponse
@@ -180,6 +182,10 @@ export class ApiService {
     return this.http.post<TrainingImpactResponse>(`${this.baseUrl}/training/impact`, request);
   }
 
+  getTrainingImpacts(request: TrainingImpactBatchRequest): Observable<TrainingImpactResponse[]> {
+    return this.http.post<TrainingImpactResponse[]>(`${this.baseUrl}/training/impact/batch`, request);
+  }
+
 
   simulateTrainingWeek(request: WeekSimulationRequest): Observable<WeekSimulationResponse> {
     return this.http.post<WeekSimulationResponse>(`${this.baseUrl}/training/week/simulate`, request);
@@ -212,9 +218,20 @@ export class ApiService {
     });
   }
 
-  // FIT File Upload
-  uploadFitFile(formData: FormData): Observable<CompletedTraining> {
-    return this.http.post<CompletedTraining>(`${this.baseUrl}/completed-trainings/upload`, formData);
+  // FIT File Upload (processed asynchronously, poll the returned job)
+  uploadFitFile(formData: FormData): Observable<IngestJob> {
+    return this.http.post<IngestJob>(`${this.baseUrl}/completed-trainings/upload`, formData);
+  }
+
+  importActivityArchive(file: File): Observable<IngestJob> {
+    return this.http.post<IngestJob>(`${this.baseUrl}/completed-trainings/import-archive`, file, {
+      params: { filename: file.name },
+      headers: { 'Content-Type': 'application/zip' }
+    });
+  }
+
+  getIngestJob(id: string): Observable<IngestJob> {
+    return this.http.get<IngestJob>(`${this.baseUrl}/ingest-jobs/${id}`);
   }
 
   getCompletedTrainingsByDate(date: string): Observable<CompletedTraining[]> {
@@ -0,0 +1,101 @@
+package com.trainingsplan.adapter.storage;
+
+import com.trainingsplan.port.ActivityStreamStoragePort;
+import com.trainingsplan.service.stream.ActivityStream;
+import com.trainingsplan.service.stream.ActivityStreamCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Keeps one {@link ActivityStreamCodec}-encoded file per activity under
+ * {@code app.stream-path}, sharded into directories of 1,000 ids
+ * ({@code 12/12345.ast}). Files are written to a temp file and moved into place, and
+ * read back through a memory-mapped {@link FileChannel}.
+ */
+@Component
+public class FilesystemActivityStreamStorageAdapter implements ActivityStreamStoragePort {
+
+    private static final Logger log = LoggerFactory.getLogger(FilesystemActivityStreamStorageAdapter.class);
+
+    private static final String EXTENSION = ".ast";
+
+    private final Path streamPath;
+
+    public FilesystemActivityStreamStorageAdapter(@Value("${app.stream-path}") String streamPath) {
+        this.streamPath = Paths.get(streamPath).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(this.streamPath);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not initialize stream directory", e);
+        }
+    }
+
+    @Override
+    public void store(Long completedTrainingId, ActivityStream stream) {
+        if (completedTrainingId == null || stream == null) {
+            return;
+        }
+
+        Path target = pathFor(completedTrainingId);
+        try {
+            Files.createDirectories(target.getParent());
+            Path tmp = Files.createTempFile(target.getParent(), completedTrainingId + "-", ".tmp");
+            try {
+                Files.write(tmp, ActivityStreamCodec.encode(stream));
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            log.warn("Could not store activity stream {}: {}", completedTrainingId, e.getMessage());
+        }
+    }
+
+    @Override
+    public Optional<ActivityStream> load(Long completedTrainingId) {
+        if (completedTrainingId == null) {
+            return Optional.empty();
+        }
+
+        try (FileChannel channel = FileChannel.open(pathFor(completedTrainingId), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return Optional.of(ActivityStreamCodec.decode(buffer));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Could not read activity stream {}: {}", completedTrainingId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void delete(Long completedTrainingId) {
+        if (completedTrainingId == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(pathFor(completedTrainingId));
+        } catch (IOException e) {
+            log.warn("Could not delete activity stream {}: {}", completedTrainingId, e.getMessage());
+        }
+    }
+
+    private Path pathFor(Long completedTrainingId) {
+        return streamPath.resolve(Long.toString(completedTrainingId / 1000))
+                .resolve(completedTrainingId + EXTENSION);
+    }
+}
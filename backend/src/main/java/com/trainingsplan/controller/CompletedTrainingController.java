@@ -1,6 +1,7 @@
 package com.trainingsplan.controller;
 
 import com.trainingsplan.dto.ActivityComparisonItemDto;
+import com.trainingsplan.dto.IngestJobDto;
 import com.trainingsplan.dto.ProfileCompletionDto;
 import com.trainingsplan.dto.TrainingStatsDto;
 import com.trainingsplan.entity.ActivityMetrics;
@@ -10,9 +11,12 @@ import com.trainingsplan.repository.ActivityMetricsRepository;
 import com.trainingsplan.repository.CompletedTrainingRepository;
 import com.trainingsplan.security.SecurityUtils;
 import com.trainingsplan.service.CompletedTrainingService;
+import com.trainingsplan.service.IngestJobService;
 import com.trainingsplan.service.StravaService;
+import com.trainingsplan.service.TrainingAggregateService;
 import com.trainingsplan.service.TrainingStatsService;
 import com.trainingsplan.service.UserProfileValidationService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
@@ -23,6 +27,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.net.URI;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -30,6 +35,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/completed-trainings")
@@ -56,6 +62,16 @@ public class CompletedTrainingController {
     @Autowired
     private TrainingStatsService trainingStatsService;
 
+    @Autowired
+    private IngestJobService ingestJobService;
+
+    @Autowired
+    private TrainingAggregateService trainingAggregateService;
+
+    /**
+     * Accepts a FIT file and queues it for asynchronous import.
+     * Returns 202 with the job; poll {@code /api/ingest-jobs/{id}} for progress.
+     */
     @PostMapping("/upload")
     public ResponseEntity<?> uploadFitFile(
             @RequestParam("file") MultipartFile file,
@@ -80,9 +96,14 @@ public class CompletedTrainingController {
                 return ResponseEntity.badRequest().body("Nur .FIT-Dateien sind erlaubt");
             }
             
-            CompletedTraining training = completedTrainingService.uploadAndParseFitFile(file, trainingDate, trainingId);
-            return ResponseEntity.ok(training);
-            
+            IngestJobDto job = ingestJobService.submitFitUpload(file, trainingDate, trainingId, user);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/ingest-jobs/" + job.id()))
+                    .body(job);
+
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Zu viele Uploads in Bearbeitung – bitte später erneut versuchen");
         } catch (IOException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Fehler beim Verarbeiten der FIT-Datei: " + e.getMessage());
@@ -92,6 +113,49 @@ public class CompletedTrainingController {
         }
     }
 
+    /**
+     * Accepts a Garmin Connect export (ZIP, nested part archives allowed) as the raw request
+     * body and queues it for bulk import. Training dates come from the FIT files themselves.
+     * Returns 202 with the job; poll {@code /api/ingest-jobs/{id}} for per-file progress.
+     */
+    @PostMapping(value = "/import-archive", consumes = {"application/zip", "application/octet-stream"})
+    public ResponseEntity<?> importArchive(
+            HttpServletRequest request,
+            @RequestParam(value = "filename", required = false) String filename) {
+
+        try {
+            User user = securityUtils.getCurrentUser();
+            if (user == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+            ProfileCompletionDto completion = userProfileValidationService.getProfileCompletion(user);
+            if (!completion.complete()) {
+                return ResponseEntity.badRequest().body(completion);
+            }
+            if (filename != null && !filename.toLowerCase().endsWith(".zip")) {
+                return ResponseEntity.badRequest().body("Nur .ZIP-Archive sind erlaubt");
+            }
+
+            IngestJobDto job = ingestJobService.submitArchiveImport(request.getInputStream(), filename, user);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/ingest-jobs/" + job.id()))
+                    .body(job);
+
+        } catch (IngestJobService.ArchiveTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body("Archiv ist zu groß");
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Zu viele Uploads in Bearbeitung – bitte später erneut versuchen");
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Fehler beim Empfangen des Archivs: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Unerwarteter Fehler: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/by-date")
     public ResponseEntity<List<CompletedTraining>> getCompletedTrainingsByDate(
             @RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
@@ -157,7 +221,9 @@ public class CompletedTrainingController {
         if (user == null) {
             return ResponseEntity.ok(List.of());
         }
-        completedTrainingRepository.claimOrphanedStravaActivities(user);
+        if (completedTrainingRepository.claimOrphanedStravaActivities(user) > 0) {
+            trainingAggregateService.rebuildForUser(user.getId());
+        }
         Long userId = user.getId();
 
         List<ActivityMetrics> entries;
@@ -283,6 +349,7 @@ public class CompletedTrainingController {
                 .map(ct -> {
                     ct.setTrainingType(body.get("trainingType"));
                     completedTrainingRepository.save(ct);
+                    trainingAggregateService.activitiesChanged(user.getId(), List.of(ct.getTrainingDate()));
                     return ResponseEntity.ok(ct);
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -1,11 +1,13 @@
 package com.trainingsplan.controller;
 
+import com.trainingsplan.dto.FitnessPointDto;
 import com.trainingsplan.dto.ProfileCompletionDto;
 import com.trainingsplan.entity.DailyMetrics;
 import com.trainingsplan.entity.User;
 import com.trainingsplan.repository.DailyMetricsRepository;
 import com.trainingsplan.security.SecurityUtils;
 import com.trainingsplan.service.DailyMetricsService;
+import com.trainingsplan.service.LoadModelService;
 import com.trainingsplan.service.ReadinessService;
 import com.trainingsplan.service.UserProfileValidationService;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -28,17 +30,20 @@ public class DailyMetricsController {
     private final DailyMetricsService dailyMetricsService;
     private final SecurityUtils securityUtils;
     private final ReadinessService readinessService;
+    private final LoadModelService loadModelService;
     private final UserProfileValidationService userProfileValidationService;
 
     public DailyMetricsController(DailyMetricsRepository dailyMetricsRepository,
                                    DailyMetricsService dailyMetricsService,
                                    SecurityUtils securityUtils,
                                    ReadinessService readinessService,
+                                   LoadModelService loadModelService,
                                    UserProfileValidationService userProfileValidationService) {
         this.dailyMetricsRepository = dailyMetricsRepository;
         this.dailyMetricsService = dailyMetricsService;
         this.securityUtils = securityUtils;
         this.readinessService = readinessService;
+        this.loadModelService = loadModelService;
         this.userProfileValidationService = userProfileValidationService;
     }
 
@@ -51,6 +56,35 @@ public class DailyMetricsController {
         return ResponseEntity.ok(metrics);
     }
 
+    /**
+     * Fitness (CTL), fatigue (ATL) and form (TSB) per day for the performance management
+     * chart. Served from the stored daily values only, so multi-year ranges stay cheap.
+     * Defaults: {@code endDate} = today, {@code startDate} = 10 years before {@code endDate}.
+     */
+    @GetMapping("/fitness")
+    public ResponseEntity<List<FitnessPointDto>> getFitness(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        Long userId = securityUtils.getCurrentUserId();
+        LocalDate to = endDate != null ? endDate : LocalDate.now();
+        LocalDate from = startDate != null ? startDate : to.minusYears(10);
+        return ResponseEntity.ok(dailyMetricsRepository.findFitnessSeries(userId, from, to));
+    }
+
+    /**
+     * Recomputes CTL/ATL/TSB over the whole history of the currently authenticated user
+     * from the stored daily TRIMP.
+     */
+    @PostMapping("/recompute-fitness")
+    public ResponseEntity<?> recomputeFitness() {
+        User user = securityUtils.getCurrentUser();
+        if (user == null) {
+            return ResponseEntity.status(401).build();
+        }
+        loadModelService.recomputeFitnessForUser(user);
+        return ResponseEntity.ok().build();
+    }
+
     /**
      * Recomputes the rolling 7-day and 28-day EF averages for the last 90 days
      * for the currently authenticated user.
@@ -0,0 +1,37 @@
+package com.trainingsplan.controller;
+
+import com.trainingsplan.dto.IngestJobDto;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.security.SecurityUtils;
+import com.trainingsplan.service.IngestJobService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/ingest-jobs")
+public class IngestJobController {
+
+    private final IngestJobService ingestJobService;
+    private final SecurityUtils securityUtils;
+
+    public IngestJobController(IngestJobService ingestJobService, SecurityUtils securityUtils) {
+        this.ingestJobService = ingestJobService;
+        this.securityUtils = securityUtils;
+    }
+
+    /** Returns the status of an ingest job owned by the current user. */
+    @GetMapping("/{id}")
+    public ResponseEntity<IngestJobDto> getJob(@PathVariable String id) {
+        User user = securityUtils.getCurrentUser();
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ingestJobService.getJob(id, user.getId())
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -30,8 +30,9 @@ public class StravaController {
     }
 
     @GetMapping("/callback")
-    public void callback(@RequestParam String code, HttpServletResponse response) throws IOException {
-        stravaService.exchangeCodeForToken(code);
+    public void callback(@RequestParam String code, @RequestParam String state,
+                         HttpServletResponse response) throws IOException {
+        stravaService.exchangeCodeForToken(code, state);
         response.sendRedirect("http://localhost:4200/overview?strava=connected");
     }
 
@@ -0,0 +1,42 @@
+package com.trainingsplan.controller;
+
+import com.trainingsplan.dto.StravaWebhookEventDto;
+import com.trainingsplan.service.StravaWebhookService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Endpoint of the Strava push subscription. Strava calls it without credentials, so it is
+ * open in the security configuration. The handshake is protected by the verify token.
+ * Events are only accepted for the configured subscription, and nothing in them is acted on
+ * before Strava confirms it with the owner's token (see {@link StravaWebhookService}).
+ */
+@RestController
+@RequestMapping("/api/strava/webhook")
+public class StravaWebhookController {
+
+    private final StravaWebhookService webhookService;
+
+    public StravaWebhookController(StravaWebhookService webhookService) {
+        this.webhookService = webhookService;
+    }
+
+    /** Subscription validation: echo {@code hub.challenge} when the verify token matches. */
+    @GetMapping
+    public ResponseEntity<Map<String, String>> verify(
+            @RequestParam(name = "hub.mode", required = false) String mode,
+            @RequestParam(name = "hub.verify_token", required = false) String verifyToken,
+            @RequestParam(name = "hub.challenge", required = false) String challenge) {
+        return webhookService.verifySubscription(mode, verifyToken, challenge)
+                .map(c -> ResponseEntity.ok(Map.of("hub.challenge", c)))
+                .orElseGet(() -> ResponseEntity.status(403).build());
+    }
+
+    @PostMapping
+    public ResponseEntity<Void> receive(@RequestBody StravaWebhookEventDto event) {
+        webhookService.receive(event);
+        return ResponseEntity.ok().build();
+    }
+}
@@ -1,5 +1,6 @@
 package com.trainingsplan.controller;
 
+import com.trainingsplan.dto.TrainingImpactBatchRequest;
 import com.trainingsplan.dto.TrainingImpactRequest;
 import com.trainingsplan.dto.TrainingWeekSimulationRequest;
 import com.trainingsplan.service.TrainingImpactService;
@@ -13,6 +14,8 @@ import org.springframework.web.bind.annotation.RestController;
 import pacr.training.simulation.dto.WeekSimulationResultDTO;
 import pacr.training.simulation.dto.WorkoutImpactDTO;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/training")
 public class TrainingImpactController {
@@ -34,6 +37,12 @@ public class TrainingImpactController {
         return ResponseEntity.ok(impact);
     }
 
+    @PostMapping("/impact/batch")
+    public ResponseEntity<List<WorkoutImpactDTO>> predictImpacts(@Valid @RequestBody TrainingImpactBatchRequest request) {
+        List<WorkoutImpactDTO> impacts = trainingImpactService.predictImpacts(request.getUserId(), request.getWorkouts());
+        return ResponseEntity.ok(impacts);
+    }
+
     @PostMapping("/week/simulate")
     public ResponseEntity<WeekSimulationResultDTO> simulateTrainingWeek(
             @Valid @RequestBody TrainingWeekSimulationRequest request
@@ -0,0 +1,18 @@
+package com.trainingsplan.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Sums over the activities of one training day, read without loading the metrics or the activities.
+ *
+ * @param date      training date
+ * @param strain21  sum of strain21, {@code null} when no activity of the day has one
+ * @param trimp     sum of TRIMP, {@code null} when no activity of the day has one
+ * @param z4z5Min   sum of the minutes in zones 4 and 5
+ */
+public record DailyActivitySumsDto(
+        LocalDate date,
+        Double strain21,
+        Double trimp,
+        Double z4z5Min
+) {}
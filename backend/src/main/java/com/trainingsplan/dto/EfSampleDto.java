@@ -0,0 +1,14 @@
+package com.trainingsplan.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Efficiency factor of one activity, read without loading the metrics or the activity.
+ *
+ * @param date              training date of the activity
+ * @param efficiencyFactor  EF in m/s per bpm
+ */
+public record EfSampleDto(
+        LocalDate date,
+        Double efficiencyFactor
+) {}
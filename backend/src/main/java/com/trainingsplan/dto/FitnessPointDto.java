@@ -0,0 +1,22 @@
+package com.trainingsplan.dto;
+
+import java.time.LocalDate;
+
+/**
+ * One day of the performance management chart, read from {@code daily_metrics}.
+ *
+ * @param date  calendar day
+ * @param trimp sum of activity TRIMP on that day; null when none
+ * @param ctl   chronic training load (fitness), 42-day EWMA of TRIMP
+ * @param atl   acute training load (fatigue), 7-day EWMA of TRIMP
+ * @param tsb   training stress balance (form) = ctl − atl
+ * @param acwr  acute:chronic workload ratio over strain21; null when undefined
+ */
+public record FitnessPointDto(
+        LocalDate date,
+        Double trimp,
+        Double ctl,
+        Double atl,
+        Double tsb,
+        Double acwr
+) {}
@@ -0,0 +1,25 @@
+package com.trainingsplan.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Snapshot of an ingest job as returned by {@code /api/ingest-jobs/{id}}.
+ *
+ * @param completedTrainingId id of the persisted activity once parsing succeeded, else null
+ * @param error               failure message when {@code status == FAILED}, else null
+ * @param filesTotal          FIT files found in an archive import; 0 for single uploads
+ * @param filesDone           archive files processed so far (including failed ones)
+ * @param filesFailed         archive files that could not be decoded
+ */
+public record IngestJobDto(
+        String id,
+        IngestJobStatus status,
+        int progressPct,
+        String originalFilename,
+        Long completedTrainingId,
+        String error,
+        LocalDateTime createdAt,
+        LocalDateTime finishedAt,
+        int filesTotal,
+        int filesDone,
+        int filesFailed) {}
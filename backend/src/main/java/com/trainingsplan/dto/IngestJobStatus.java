@@ -0,0 +1,24 @@
+package com.trainingsplan.dto;
+
+/**
+ * Lifecycle of an asynchronous activity ingest job, with the progress percentage
+ * reported to clients while the job is in that stage.
+ */
+public enum IngestJobStatus {
+    QUEUED(0),
+    PARSING(10),
+    SAVING(40),
+    COMPUTING_METRICS(60),
+    DONE(100),
+    FAILED(100);
+
+    private final int progressPct;
+
+    IngestJobStatus(int progressPct) {
+        this.progressPct = progressPct;
+    }
+
+    public int getProgressPct() { return progressPct; }
+
+    public boolean isFinished() { return this == DONE || this == FAILED; }
+}
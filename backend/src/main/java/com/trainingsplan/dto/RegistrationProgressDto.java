@@ -0,0 +1,18 @@
+package com.trainingsplan.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Training plan progress of one competition registration, aggregated in the database.
+ *
+ * @param registrationId    competition registration
+ * @param total             number of scheduled training entries
+ * @param done              number of entries marked completed
+ * @param firstTrainingDate date of the earliest scheduled entry
+ */
+public record RegistrationProgressDto(
+        Long registrationId,
+        Long total,
+        Long done,
+        LocalDate firstTrainingDate
+) {}
@@ -47,6 +47,13 @@ public class StravaActivityDto {
 
     private Double kilojoules;
 
+    private Athlete athlete;
+
+    /** The athlete owning the activity; Strava only sends the id here. */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Athlete(Long id) {
+    }
+
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
     public String getName() { return name; }
@@ -79,4 +86,6 @@ public class StravaActivityDto {
     public void setAverageWatts(Double averageWatts) { this.averageWatts = averageWatts; }
     public Double getKilojoules() { return kilojoules; }
     public void setKilojoules(Double kilojoules) { this.kilojoules = kilojoules; }
+    public Athlete getAthlete() { return athlete; }
+    public void setAthlete(Athlete athlete) { this.athlete = athlete; }
 }
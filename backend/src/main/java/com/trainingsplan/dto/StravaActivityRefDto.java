@@ -0,0 +1,11 @@
+package com.trainingsplan.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * The columns of a synced Strava activity that the sync compares against the listing,
+ * without loading the entity.
+ */
+public record StravaActivityRefDto(Long id, Long stravaActivityId, LocalDate trainingDate, LocalDateTime uploadDate) {
+}
@@ -0,0 +1,10 @@
+package com.trainingsplan.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A user with a Strava connection as the background sync scheduler sees it: when the
+ * activities were last listed (null when never) and when the user was last seen.
+ */
+public record StravaSyncCandidateDto(Long userId, LocalDateTime lastSyncedAt, LocalDateTime lastSeenAt) {
+}
@@ -0,0 +1,22 @@
+package com.trainingsplan.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
+
+/**
+ * An event POSTed by a Strava push subscription. {@code objectId} is the activity id for
+ * {@code object_type=activity} and the athlete id for {@code object_type=athlete};
+ * {@code ownerId} is always the athlete id.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record StravaWebhookEventDto(
+        @JsonProperty("object_type") String objectType,
+        @JsonProperty("object_id") Long objectId,
+        @JsonProperty("aspect_type") String aspectType,
+        @JsonProperty("owner_id") Long ownerId,
+        @JsonProperty("subscription_id") Long subscriptionId,
+        @JsonProperty("event_time") Long eventTime,
+        @JsonProperty("updates") Map<String, String> updates) {
+}
@@ -0,0 +1,33 @@
+package com.trainingsplan.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class TrainingImpactBatchRequest {
+
+    @NotBlank
+    private String userId;
+
+    @NotEmpty
+    @Size(max = 500)
+    private List<Workout> workouts;
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public List<Workout> getWorkouts() {
+        return workouts;
+    }
+
+    public void setWorkouts(List<Workout> workouts) {
+        this.workouts = workouts;
+    }
+}
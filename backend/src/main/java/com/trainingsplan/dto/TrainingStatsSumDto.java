@@ -0,0 +1,36 @@
+package com.trainingsplan.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Sums of one statistics period as returned by {@code TrainingAggregateRepository}.
+ *
+ * @param periodStart     first day of the period; null for a total over several periods
+ * @param distanceKm      summed distance
+ * @param durationSeconds summed duration
+ * @param elevationGainM  summed elevation gain
+ * @param activityCount   number of activities
+ */
+public record TrainingStatsSumDto(
+        LocalDate periodStart,
+        double distanceKm,
+        long durationSeconds,
+        long elevationGainM,
+        long activityCount
+) {
+
+    /** One period; SQL sums are null when no row matched. */
+    public TrainingStatsSumDto(LocalDate periodStart, Double distanceKm, Long durationSeconds,
+                               Long elevationGainM, Long activityCount) {
+        this(periodStart,
+                distanceKm != null ? distanceKm : 0.0,
+                durationSeconds != null ? durationSeconds : 0L,
+                elevationGainM != null ? elevationGainM : 0L,
+                activityCount != null ? activityCount : 0L);
+    }
+
+    /** Total over several periods. */
+    public TrainingStatsSumDto(Double distanceKm, Long durationSeconds, Long elevationGainM, Long activityCount) {
+        this(null, distanceKm, durationSeconds, elevationGainM, activityCount);
+    }
+}
@@ -99,6 +99,15 @@ public class ActivityMetrics {
     @Column(name = "efficiency_factor")
     private Double efficiencyFactor;
 
+    /**
+     * Seconds spent at each bpm, encoded by {@code HrHistogram#encode()} (~200 bytes).
+     * Lets zones, strain and TRIMP be recomputed after a profile change without the raw stream.
+     * NULL for activities imported before the histogram was stored.
+     */
+    @JsonIgnore
+    @Column(name = "hr_histogram", length = 1024)
+    private byte[] hrHistogram;
+
     public ActivityMetrics() {}
 
     // Getters and setters
@@ -154,4 +163,7 @@ public class ActivityMetrics {
 
     public Double getEfficiencyFactor() { return efficiencyFactor; }
     public void setEfficiencyFactor(Double efficiencyFactor) { this.efficiencyFactor = efficiencyFactor; }
+
+    public byte[] getHrHistogram() { return hrHistogram; }
+    public void setHrHistogram(byte[] hrHistogram) { this.hrHistogram = hrHistogram; }
 }
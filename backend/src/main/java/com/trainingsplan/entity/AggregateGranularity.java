@@ -0,0 +1,29 @@
+package com.trainingsplan.entity;
+
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/** Period length of a {@link TrainingAggregate}; weeks are ISO weeks starting on Monday. */
+public enum AggregateGranularity {
+    DAY, WEEK, MONTH, YEAR;
+
+    /** First day of the period containing {@code date}. */
+    public LocalDate start(LocalDate date) {
+        return switch (this) {
+            case DAY   -> date;
+            case WEEK  -> date.minusDays(date.getDayOfWeek().getValue() - 1L);
+            case MONTH -> date.withDayOfMonth(1);
+            case YEAR  -> date.withDayOfYear(1);
+        };
+    }
+
+    /** Last day of the period starting on {@code start}. */
+    public LocalDate end(LocalDate start) {
+        return switch (this) {
+            case DAY   -> start;
+            case WEEK  -> start.plusDays(6);
+            case MONTH -> start.with(TemporalAdjusters.lastDayOfMonth());
+            case YEAR  -> start.with(TemporalAdjusters.lastDayOfYear());
+        };
+    }
+}
@@ -8,7 +8,8 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "completed_trainings")
+@Table(name = "completed_trainings",
+       indexes = @Index(name = "idx_completed_trainings_user_start_time", columnList = "user_id, start_time"))
 public class CompletedTraining {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -21,6 +22,10 @@ public class CompletedTraining {
     @Column(name = "upload_date", nullable = false)
     private LocalDateTime uploadDate;
 
+    /** Activity start recorded in an uploaded FIT file; identifies files imported before. */
+    @Column(name = "start_time")
+    private LocalDateTime startTime;
+
     // Basic Training Metrics
     @Column(name = "distance_km")
     private Double distanceKm;
@@ -199,6 +204,14 @@ public class CompletedTraining {
         this.uploadDate = uploadDate;
     }
 
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(LocalDateTime startTime) {
+        this.startTime = startTime;
+    }
+
     public Double getDistanceKm() {
         return distanceKm;
     }
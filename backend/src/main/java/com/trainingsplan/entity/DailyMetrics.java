@@ -80,6 +80,24 @@ public class DailyMetrics {
     @Column(name = "acwr_message", length = 100)
     private String acwrMessage;
 
+    /**
+     * Chronic training load ("fitness"): 42-day exponentially weighted average of
+     * {@code dailyTrimp}. NULL until first computation.
+     */
+    @Column(name = "ctl")
+    private Double ctl;
+
+    /**
+     * Acute training load ("fatigue"): 7-day exponentially weighted average of
+     * {@code dailyTrimp}. NULL until first computation.
+     */
+    @Column(name = "atl")
+    private Double atl;
+
+    /** Training stress balance ("form") = ctl − atl. NULL until first computation. */
+    @Column(name = "tsb")
+    private Double tsb;
+
     /**
      * Readiness score 0–100 computed by the v1 heuristic.
      * Higher = more recovered; NULL until first computation.
@@ -153,6 +171,15 @@ public class DailyMetrics {
     public String getAcwrMessage() { return acwrMessage; }
     public void setAcwrMessage(String acwrMessage) { this.acwrMessage = acwrMessage; }
 
+    public Double getCtl() { return ctl; }
+    public void setCtl(Double ctl) { this.ctl = ctl; }
+
+    public Double getAtl() { return atl; }
+    public void setAtl(Double atl) { this.atl = atl; }
+
+    public Double getTsb() { return tsb; }
+    public void setTsb(Double tsb) { this.tsb = tsb; }
+
     public Integer getReadinessScore() { return readinessScore; }
     public void setReadinessScore(Integer readinessScore) { this.readinessScore = readinessScore; }
 
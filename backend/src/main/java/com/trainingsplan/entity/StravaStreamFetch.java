@@ -0,0 +1,65 @@
+package com.trainingsplan.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A pending fetch of the streams of a synced Strava activity, processed by
+ * {@code StravaStreamFetcher}. The row is deleted once the activity's metrics have been
+ * computed or the fetch has been given up.
+ */
+@Entity
+@Table(name = "strava_stream_fetches")
+public class StravaStreamFetch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "completed_training_id", nullable = false, unique = true)
+    private Long completedTrainingId;
+
+    @Column(name = "strava_activity_id", nullable = false)
+    private Long stravaActivityId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    /** Worker that claimed the fetch; written only by the repository's claim queries. */
+    @Column(name = "claimed_by", length = 100, insertable = false, updatable = false)
+    private String claimedBy;
+
+    @Column(name = "claimed_until", insertable = false, updatable = false)
+    private LocalDateTime claimedUntil;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public Long getCompletedTrainingId() { return completedTrainingId; }
+    public void setCompletedTrainingId(Long completedTrainingId) { this.completedTrainingId = completedTrainingId; }
+    public Long getStravaActivityId() { return stravaActivityId; }
+    public void setStravaActivityId(Long stravaActivityId) { this.stravaActivityId = stravaActivityId; }
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    public Integer getAttempts() { return attempts; }
+    public void setAttempts(Integer attempts) { this.attempts = attempts; }
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    public String getClaimedBy() { return claimedBy; }
+    public LocalDateTime getClaimedUntil() { return claimedUntil; }
+}
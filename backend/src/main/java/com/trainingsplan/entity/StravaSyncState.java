@@ -0,0 +1,61 @@
+package com.trainingsplan.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a user's Strava activity sync: the earliest day whose activities have been
+ * listed, the start time of the latest activity seen (epoch seconds) and when the last
+ * incremental sync and the last full deletion reconciliation ran.
+ *
+ * <p>The lease columns name the backend instance currently syncing the user and until when;
+ * they are only written by the conditional updates of {@code StravaSyncStateRepository}.
+ */
+@Entity
+@Table(name = "strava_sync_state")
+public class StravaSyncState {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false, unique = true)
+    @JsonIgnore
+    private User user;
+
+    @Column(name = "synced_from")
+    private LocalDate syncedFrom;
+
+    @Column(name = "high_water_mark")
+    private Long highWaterMark;
+
+    @Column(name = "last_synced_at")
+    private LocalDateTime lastSyncedAt;
+
+    @Column(name = "last_reconciled_at")
+    private LocalDateTime lastReconciledAt;
+
+    @Column(name = "lease_owner", length = 100, insertable = false, updatable = false)
+    private String leaseOwner;
+
+    @Column(name = "lease_until", insertable = false, updatable = false)
+    private LocalDateTime leaseUntil;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public User getUser() { return user; }
+    public void setUser(User user) { this.user = user; }
+    public LocalDate getSyncedFrom() { return syncedFrom; }
+    public void setSyncedFrom(LocalDate syncedFrom) { this.syncedFrom = syncedFrom; }
+    public Long getHighWaterMark() { return highWaterMark; }
+    public void setHighWaterMark(Long highWaterMark) { this.highWaterMark = highWaterMark; }
+    public LocalDateTime getLastSyncedAt() { return lastSyncedAt; }
+    public void setLastSyncedAt(LocalDateTime lastSyncedAt) { this.lastSyncedAt = lastSyncedAt; }
+    public LocalDateTime getLastReconciledAt() { return lastReconciledAt; }
+    public void setLastReconciledAt(LocalDateTime lastReconciledAt) { this.lastReconciledAt = lastReconciledAt; }
+    public String getLeaseOwner() { return leaseOwner; }
+    public LocalDateTime getLeaseUntil() { return leaseUntil; }
+}
@@ -0,0 +1,9 @@
+package com.trainingsplan.entity;
+
+/** What a queued {@link StravaWebhookEvent} does with the local copy of its activity. */
+public enum StravaWebhookAction {
+    /** Fetch the activity and insert or update it ({@code create} and {@code update} events). */
+    UPSERT,
+    /** Delete the activity with its metrics and stream ({@code delete} events). */
+    DELETE
+}
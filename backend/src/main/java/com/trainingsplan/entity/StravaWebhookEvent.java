@@ -0,0 +1,80 @@
+package com.trainingsplan.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Pending work for one Strava activity, queued by a webhook event and processed by
+ * {@code StravaWebhookService}. There is at most one row per activity: later events for
+ * the same activity replace the action of the queued one instead of adding a row. The
+ * row is deleted once the action has been applied or given up.
+ */
+@Entity
+@Table(name = "strava_webhook_events")
+public class StravaWebhookEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "strava_activity_id", nullable = false, unique = true)
+    private Long stravaActivityId;
+
+    @Column(name = "athlete_id", nullable = false)
+    private Long athleteId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private StravaWebhookAction action;
+
+    /** {@code event_time} of the latest merged event, epoch seconds. */
+    @Column(name = "event_time", nullable = false)
+    private Long eventTime;
+
+    /** Bumped by every merged event, so a worker never overwrites or deletes a newer one. */
+    @Version
+    @Column(nullable = false)
+    private Integer revision;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "received_at", nullable = false)
+    private LocalDateTime receivedAt;
+
+    /** Worker that claimed the event; written only by the repository's claim queries. */
+    @Column(name = "claimed_by", length = 100, insertable = false, updatable = false)
+    private String claimedBy;
+
+    @Column(name = "claimed_until", insertable = false, updatable = false)
+    private LocalDateTime claimedUntil;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public Long getStravaActivityId() { return stravaActivityId; }
+    public void setStravaActivityId(Long stravaActivityId) { this.stravaActivityId = stravaActivityId; }
+    public Long getAthleteId() { return athleteId; }
+    public void setAthleteId(Long athleteId) { this.athleteId = athleteId; }
+    public StravaWebhookAction getAction() { return action; }
+    public void setAction(StravaWebhookAction action) { this.action = action; }
+    public Long getEventTime() { return eventTime; }
+    public void setEventTime(Long eventTime) { this.eventTime = eventTime; }
+    public Integer getRevision() { return revision; }
+    public void setRevision(Integer revision) { this.revision = revision; }
+    public Integer getAttempts() { return attempts; }
+    public void setAttempts(Integer attempts) { this.attempts = attempts; }
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+    public LocalDateTime getReceivedAt() { return receivedAt; }
+    public void setReceivedAt(LocalDateTime receivedAt) { this.receivedAt = receivedAt; }
+    public String getClaimedBy() { return claimedBy; }
+    public LocalDateTime getClaimedUntil() { return claimedUntil; }
+}
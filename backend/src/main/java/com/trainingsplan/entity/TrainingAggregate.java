@@ -0,0 +1,87 @@
+package com.trainingsplan.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Sums of a user's activities per period, sport and training type, maintained by
+ * {@code TrainingAggregateService} whenever activities are added, removed or retyped.
+ * Activities without sport or training type are stored under the empty string.
+ */
+@Entity
+@Table(name = "training_aggregates",
+       uniqueConstraints = @UniqueConstraint(
+               name = "uq_training_aggregates_bucket",
+               columnNames = {"user_id", "granularity", "period_start", "sport", "training_type"}))
+public class TrainingAggregate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    @JsonIgnore
+    private User user;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private AggregateGranularity granularity;
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    @Column(nullable = false)
+    private String sport = "";
+
+    @Column(name = "training_type", nullable = false)
+    private String trainingType = "";
+
+    @Column(name = "distance_km", nullable = false)
+    private Double distanceKm = 0.0;
+
+    @Column(name = "duration_seconds", nullable = false)
+    private Long durationSeconds = 0L;
+
+    @Column(name = "elevation_gain_m", nullable = false)
+    private Long elevationGainM = 0L;
+
+    @Column(name = "activity_count", nullable = false)
+    private Integer activityCount = 0;
+
+    /** Longest single activity by distance. */
+    @Column(name = "max_distance_km")
+    private Double maxDistanceKm;
+
+    /** Longest single activity by moving time (elapsed duration when no moving time is known). */
+    @Column(name = "max_duration_seconds")
+    private Integer maxDurationSeconds;
+
+    public TrainingAggregate() {}
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public User getUser() { return user; }
+    public void setUser(User user) { this.user = user; }
+    public AggregateGranularity getGranularity() { return granularity; }
+    public void setGranularity(AggregateGranularity granularity) { this.granularity = granularity; }
+    public LocalDate getPeriodStart() { return periodStart; }
+    public void setPeriodStart(LocalDate periodStart) { this.periodStart = periodStart; }
+    public String getSport() { return sport; }
+    public void setSport(String sport) { this.sport = sport; }
+    public String getTrainingType() { return trainingType; }
+    public void setTrainingType(String trainingType) { this.trainingType = trainingType; }
+    public Double getDistanceKm() { return distanceKm; }
+    public void setDistanceKm(Double distanceKm) { this.distanceKm = distanceKm; }
+    public Long getDurationSeconds() { return durationSeconds; }
+    public void setDurationSeconds(Long durationSeconds) { this.durationSeconds = durationSeconds; }
+    public Long getElevationGainM() { return elevationGainM; }
+    public void setElevationGainM(Long elevationGainM) { this.elevationGainM = elevationGainM; }
+    public Integer getActivityCount() { return activityCount; }
+    public void setActivityCount(Integer activityCount) { this.activityCount = activityCount; }
+    public Double getMaxDistanceKm() { return maxDistanceKm; }
+    public void setMaxDistanceKm(Double maxDistanceKm) { this.maxDistanceKm = maxDistanceKm; }
+    public Integer getMaxDurationSeconds() { return maxDurationSeconds; }
+    public void setMaxDurationSeconds(Integer maxDurationSeconds) { this.maxDurationSeconds = maxDurationSeconds; }
+}
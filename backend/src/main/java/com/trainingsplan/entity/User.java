@@ -93,6 +93,22 @@ public class User implements UserDetails {
     @Column(name = "threshold_pace_sec_per_km")
     private Integer thresholdPaceSecPerKm;
 
+    /**
+     * Last authenticated request, written in batches by the UserActivityTracker only; the
+     * entity never writes it, so saving a cached principal cannot move it back.
+     */
+    @JsonIgnore
+    @Column(name = "last_seen_at", insertable = false, updatable = false)
+    private LocalDateTime lastSeenAt;
+
+    /**
+     * Change counter of the user's cached read models, incremented by UserDataVersions only;
+     * the entity never writes it.
+     */
+    @JsonIgnore
+    @Column(name = "data_version", insertable = false, updatable = false)
+    private Long dataVersion;
+
     @JsonIgnore
     @OneToOne(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY, optional = true)
     private StravaToken stravaToken;
@@ -165,6 +181,10 @@ public class User implements UserDetails {
         this.createdAt = createdAt;
     }
 
+    public LocalDateTime getLastSeenAt() {
+        return lastSeenAt;
+    }
+
     public StravaToken getStravaToken() {
         return stravaToken;
     }
@@ -0,0 +1,22 @@
+package com.trainingsplan.port;
+
+import com.trainingsplan.service.stream.ActivityStream;
+
+import java.util.Optional;
+
+/**
+ * Stores the raw sample stream of an activity so metrics can be recomputed locally
+ * (e.g. after an hrMax change) without re-parsing uploads or refetching from Strava.
+ *
+ * <p>Streams are a recompute cache: the aggregates in {@code activity_metrics} remain
+ * authoritative, so storage failures are logged by the adapter instead of failing ingest.
+ */
+public interface ActivityStreamStoragePort {
+
+    void store(Long completedTrainingId, ActivityStream stream);
+
+    /** Returns the stored stream, or empty when none was stored or it cannot be read. */
+    Optional<ActivityStream> load(Long completedTrainingId);
+
+    void delete(Long completedTrainingId);
+}
@@ -0,0 +1,319 @@
+package com.trainingsplan.repository;
+
+import com.trainingsplan.entity.ActivityMetrics;
+import com.trainingsplan.entity.CompletedTraining;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inserts FIT-imported activities and their metrics with JDBC batch statements,
+ * bypassing the JPA persistence context. Used by the bulk archive import, where
+ * thousands of rows would otherwise be inserted one {@code save()} at a time
+ * (IDENTITY ids disable Hibernate's own insert batching), by the Strava sync, and by
+ * the metrics recompute, which rewrites the HR-derived columns of a whole history.
+ *
+ * <p>Only the columns filled by the FIT parser (or the Strava listing) are written; everything else keeps its
+ * column default, exactly as after a JPA insert of the same entity.
+ */
+@Repository
+public class ActivityBatchWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(ActivityBatchWriter.class);
+
+    private static final String INSERT_TRAINING = """
+            INSERT INTO completed_trainings (
+                training_date, upload_date, start_time, distance_km, duration_seconds, moving_time_seconds,
+                average_pace_seconds_per_km, average_speed_kmh, max_speed_kmh,
+                average_heart_rate, max_heart_rate, min_heart_rate,
+                elevation_gain_m, elevation_loss_m,
+                average_power_watts, max_power_watts, normalized_power_watts,
+                average_cadence, max_cadence, temperature_celsius, calories,
+                original_filename, device_manufacturer, device_product, device_serial_number,
+                software_version, sport, sub_sport, source, user_id)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String INSERT_STRAVA_TRAINING = """
+            INSERT INTO completed_trainings (
+                training_date, upload_date, distance_km, duration_seconds, moving_time_seconds,
+                average_pace_seconds_per_km, average_speed_kmh, max_speed_kmh,
+                average_heart_rate, max_heart_rate, elevation_gain_m, average_power_watts,
+                activity_name, sport, strava_activity_id, source, user_id)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE id = id
+            """;
+
+    private static final String SELECT_STRAVA_IDS =
+            "SELECT strava_activity_id, id FROM completed_trainings WHERE strava_activity_id IN (%s)";
+
+    private static final String UPDATE_UPLOAD_DATE = "UPDATE completed_trainings SET upload_date = ? WHERE id = ?";
+
+    private static final String INSERT_METRICS = """
+            INSERT INTO activity_metrics (
+                completed_training_id, zones_unknown, z1_min, z2_min, z3_min, z4_min, z5_min,
+                hr_data_coverage, raw_load, strain21, trimp, trimp_quality,
+                decoupling_pct, decoupling_eligible, decoupling_reason, efficiency_factor, hr_histogram)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String UPDATE_HR_METRICS = """
+            UPDATE activity_metrics SET
+                zones_unknown = ?, z1_min = ?, z2_min = ?, z3_min = ?, z4_min = ?, z5_min = ?,
+                hr_data_coverage = ?, raw_load = ?, strain21 = ?, trimp = ?, trimp_quality = ?,
+                hr_histogram = ?
+            WHERE id = ?
+            """;
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ActivityBatchWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts {@code trainings} and {@code metrics} in one transaction, two batch
+     * statements in total. Generated ids are written back to the trainings; each
+     * metrics row must reference its training via {@link ActivityMetrics#getCompletedTraining()}.
+     */
+    @Transactional
+    public void insertAll(List<CompletedTraining> trainings, List<ActivityMetrics> metrics) {
+        if (trainings.isEmpty()) return;
+
+        insertReturningIds(INSERT_TRAINING, trainings, ActivityBatchWriter::bindTraining);
+
+        if (metrics.isEmpty()) return;
+        jdbcTemplate.batchUpdate(INSERT_METRICS, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                bindMetrics(ps, metrics.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return metrics.size();
+            }
+        });
+    }
+
+    /**
+     * Inserts activities converted from the Strava listing in batches and writes their ids
+     * back. An activity that is already stored, e.g. by a concurrent sync, is left as it is
+     * and gets the id of the stored row. The user may be null for syncs without a user.
+     *
+     * <p>When a batch fails, the activities are inserted one at a time instead; an activity
+     * the database rejects is logged and skipped, so one bad row does not drop the listing.
+     *
+     * @return the activities that are stored, each with its id
+     */
+    @Transactional
+    public List<CompletedTraining> insertStravaTrainings(List<CompletedTraining> trainings) {
+        if (trainings.isEmpty()) return List.of();
+        try {
+            jdbcTemplate.batchUpdate(INSERT_STRAVA_TRAINING, trainings, BATCH_SIZE, ActivityBatchWriter::bindStravaTraining);
+        } catch (DataAccessException e) {
+            log.warn("Batch insert of {} Strava activities failed, inserting them one at a time: {}",
+                    trainings.size(), e.getMessage());
+            // Rows the failed batch already wrote hit the duplicate key and are kept as they are
+            for (CompletedTraining training : trainings) {
+                try {
+                    jdbcTemplate.update(INSERT_STRAVA_TRAINING, ps -> bindStravaTraining(ps, training));
+                } catch (DataAccessException rowError) {
+                    log.warn("Skipping Strava activity id={}: {}", training.getStravaActivityId(), rowError.getMessage());
+                }
+            }
+        }
+
+        // Skipped duplicates return no generated key, so ids are looked up by Strava id
+        Map<Long, Long> ids = new HashMap<>();
+        for (int from = 0; from < trainings.size(); from += BATCH_SIZE) {
+            List<CompletedTraining> chunk = trainings.subList(from, Math.min(trainings.size(), from + BATCH_SIZE));
+            String sql = SELECT_STRAVA_IDS.formatted(String.join(",", Collections.nCopies(chunk.size(), "?")));
+            jdbcTemplate.query(sql, rs -> { ids.put(rs.getLong(1), rs.getLong(2)); },
+                    chunk.stream().map(CompletedTraining::getStravaActivityId).toArray());
+        }
+        List<CompletedTraining> stored = new ArrayList<>();
+        for (CompletedTraining training : trainings) {
+            training.setId(ids.get(training.getStravaActivityId()));
+            if (training.getId() != null) {
+                stored.add(training);
+            }
+        }
+        return stored;
+    }
+
+    /** Sets the start time of existing activities (id → upload date) in batches. */
+    @Transactional
+    public void updateUploadDates(Map<Long, LocalDateTime> uploadDates) {
+        if (uploadDates.isEmpty()) return;
+        jdbcTemplate.batchUpdate(UPDATE_UPLOAD_DATE, new ArrayList<>(uploadDates.entrySet()), BATCH_SIZE,
+                (ps, e) -> {
+                    ps.setTimestamp(1, Timestamp.valueOf(e.getValue()));
+                    ps.setLong(2, e.getKey());
+                });
+    }
+
+    /**
+     * Rewrites the HR-derived columns (zones, coverage, strain, TRIMP, histogram) of
+     * existing, already-persisted {@code metrics} in batches of {@value #BATCH_SIZE}.
+     * All other columns are left untouched.
+     */
+    @Transactional
+    public void updateHrMetrics(List<ActivityMetrics> metrics) {
+        if (metrics.isEmpty()) return;
+        jdbcTemplate.batchUpdate(UPDATE_HR_METRICS, metrics, BATCH_SIZE, (ps, m) -> {
+            int c = 1;
+            ps.setBoolean(c++, Boolean.TRUE.equals(m.getZonesUnknown()));
+            setDouble(ps, c++, m.getZ1Min());
+            setDouble(ps, c++, m.getZ2Min());
+            setDouble(ps, c++, m.getZ3Min());
+            setDouble(ps, c++, m.getZ4Min());
+            setDouble(ps, c++, m.getZ5Min());
+            setDouble(ps, c++, m.getHrDataCoverage());
+            setDouble(ps, c++, m.getRawLoad());
+            setDouble(ps, c++, m.getStrain21());
+            setDouble(ps, c++, m.getTrimp());
+            ps.setString(c++, m.getTrimpQuality());
+            ps.setBytes(c++, m.getHrHistogram());
+            ps.setLong(c, m.getId());
+        });
+    }
+
+    private void insertReturningIds(String sql, List<CompletedTraining> trainings,
+                                    ParameterizedPreparedStatementSetter<CompletedTraining> binder) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        binder.setValues(ps, trainings.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return trainings.size();
+                    }
+                },
+                keys);
+
+        List<Map<String, Object>> keyList = keys.getKeyList();
+        if (keyList.size() != trainings.size()) {
+            throw new IllegalStateException("Expected " + trainings.size()
+                    + " generated keys, got " + keyList.size());
+        }
+        for (int i = 0; i < trainings.size(); i++) {
+            trainings.get(i).setId(((Number) keyList.get(i).values().iterator().next()).longValue());
+        }
+    }
+
+    private static void bindTraining(PreparedStatement ps, CompletedTraining t) throws SQLException {
+        int c = 1;
+        ps.setDate(c++, Date.valueOf(t.getTrainingDate()));
+        ps.setTimestamp(c++, Timestamp.valueOf(t.getUploadDate()));
+        ps.setTimestamp(c++, t.getStartTime() != null ? Timestamp.valueOf(t.getStartTime()) : null);
+        setDouble(ps, c++, t.getDistanceKm());
+        setInt(ps, c++, t.getDurationSeconds());
+        setInt(ps, c++, t.getMovingTimeSeconds());
+        setInt(ps, c++, t.getAveragePaceSecondsPerKm());
+        setDouble(ps, c++, t.getAverageSpeedKmh());
+        setDouble(ps, c++, t.getMaxSpeedKmh());
+        setInt(ps, c++, t.getAverageHeartRate());
+        setInt(ps, c++, t.getMaxHeartRate());
+        setInt(ps, c++, t.getMinHeartRate());
+        setInt(ps, c++, t.getElevationGainM());
+        setInt(ps, c++, t.getElevationLossM());
+        setInt(ps, c++, t.getAveragePowerWatts());
+        setInt(ps, c++, t.getMaxPowerWatts());
+        setInt(ps, c++, t.getNormalizedPowerWatts());
+        setInt(ps, c++, t.getAverageCadence());
+        setInt(ps, c++, t.getMaxCadence());
+        setDouble(ps, c++, t.getTemperatureCelsius());
+        setInt(ps, c++, t.getCalories());
+        ps.setString(c++, t.getOriginalFilename());
+        ps.setString(c++, t.getDeviceManufacturer());
+        ps.setString(c++, t.getDeviceProduct());
+        ps.setString(c++, t.getDeviceSerialNumber());
+        ps.setString(c++, t.getSoftwareVersion());
+        ps.setString(c++, t.getSport());
+        ps.setString(c++, t.getSubSport());
+        ps.setString(c++, t.getSource());
+        ps.setLong(c, t.getUser().getId());
+    }
+
+    private static void bindStravaTraining(PreparedStatement ps, CompletedTraining t) throws SQLException {
+        int c = 1;
+        ps.setDate(c++, Date.valueOf(t.getTrainingDate()));
+        ps.setTimestamp(c++, Timestamp.valueOf(t.getUploadDate()));
+        setDouble(ps, c++, t.getDistanceKm());
+        setInt(ps, c++, t.getDurationSeconds());
+        setInt(ps, c++, t.getMovingTimeSeconds());
+        setInt(ps, c++, t.getAveragePaceSecondsPerKm());
+        setDouble(ps, c++, t.getAverageSpeedKmh());
+        setDouble(ps, c++, t.getMaxSpeedKmh());
+        setInt(ps, c++, t.getAverageHeartRate());
+        setInt(ps, c++, t.getMaxHeartRate());
+        setInt(ps, c++, t.getElevationGainM());
+        setInt(ps, c++, t.getAveragePowerWatts());
+        ps.setString(c++, t.getActivityName());
+        ps.setString(c++, t.getSport());
+        ps.setLong(c++, t.getStravaActivityId());
+        ps.setString(c++, t.getSource());
+        if (t.getUser() == null) ps.setNull(c, Types.BIGINT);
+        else ps.setLong(c, t.getUser().getId());
+    }
+
+    private static void bindMetrics(PreparedStatement ps, ActivityMetrics m) throws SQLException {
+        int c = 1;
+        ps.setLong(c++, m.getCompletedTraining().getId());
+        ps.setBoolean(c++, Boolean.TRUE.equals(m.getZonesUnknown()));
+        setDouble(ps, c++, m.getZ1Min());
+        setDouble(ps, c++, m.getZ2Min());
+        setDouble(ps, c++, m.getZ3Min());
+        setDouble(ps, c++, m.getZ4Min());
+        setDouble(ps, c++, m.getZ5Min());
+        setDouble(ps, c++, m.getHrDataCoverage());
+        setDouble(ps, c++, m.getRawLoad());
+        setDouble(ps, c++, m.getStrain21());
+        setDouble(ps, c++, m.getTrimp());
+        ps.setString(c++, m.getTrimpQuality());
+        setDouble(ps, c++, m.getDecouplingPct());
+        if (m.getDecouplingEligible() == null) ps.setNull(c++, Types.BOOLEAN);
+        else ps.setBoolean(c++, m.getDecouplingEligible());
+        ps.setString(c++, m.getDecouplingReason());
+        setDouble(ps, c++, m.getEfficiencyFactor());
+        ps.setBytes(c, m.getHrHistogram());
+    }
+
+    private static void setInt(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value == null) ps.setNull(index, Types.INTEGER);
+        else ps.setInt(index, value);
+    }
+
+    private static void setDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value == null) ps.setNull(index, Types.DOUBLE);
+        else ps.setDouble(index, value);
+    }
+}
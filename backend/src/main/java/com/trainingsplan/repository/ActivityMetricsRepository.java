@@ -1,12 +1,16 @@
 package com.trainingsplan.repository;
 
+import com.trainingsplan.dto.DailyActivitySumsDto;
+import com.trainingsplan.dto.EfSampleDto;
 import com.trainingsplan.entity.ActivityMetrics;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,8 +19,19 @@ public interface ActivityMetricsRepository extends JpaRepository<ActivityMetrics
     Optional<ActivityMetrics> findByCompletedTrainingId(Long completedTrainingId);
     void deleteByCompletedTrainingId(Long completedTrainingId);
 
+    @Modifying
+    @Query("DELETE FROM ActivityMetrics m WHERE m.completedTraining.id IN :ids")
+    int deleteByCompletedTrainingIdIn(@Param("ids") Collection<Long> completedTrainingIds);
+
     List<ActivityMetrics> findByCompletedTrainingIdIn(List<Long> completedTrainingIds);
 
+    /** Returns all metrics of a user with their activity, oldest first. */
+    @Query("SELECT am FROM ActivityMetrics am " +
+           "JOIN FETCH am.completedTraining ct " +
+           "WHERE ct.user.id = :userId " +
+           "ORDER BY ct.trainingDate ASC, ct.id ASC")
+    List<ActivityMetrics> findAllWithTrainingByUserId(@Param("userId") Long userId);
+
     /** Returns the most recent activities with eligible decoupling data for the given user. */
     @Query("SELECT am FROM ActivityMetrics am " +
            "JOIN FETCH am.completedTraining ct " +
@@ -34,37 +49,35 @@ public interface ActivityMetricsRepository extends JpaRepository<ActivityMetrics
             @Param("startDate") LocalDate startDate,
             @Param("endDate") LocalDate endDate);
 
-    @Query("SELECT SUM(am.strain21) FROM ActivityMetrics am " +
-           "JOIN am.completedTraining ct " +
-           "WHERE ct.user.id = :userId AND ct.trainingDate = :date AND am.strain21 IS NOT NULL")
-    Double sumStrain21ByUserIdAndDate(@Param("userId") Long userId, @Param("date") LocalDate date);
-
-    @Query("SELECT SUM(am.trimp) FROM ActivityMetrics am " +
-           "JOIN am.completedTraining ct " +
-           "WHERE ct.user.id = :userId AND ct.trainingDate = :date AND am.trimp IS NOT NULL")
-    Double sumTrimpByUserIdAndDate(@Param("userId") Long userId, @Param("date") LocalDate date);
-
-    @Query("SELECT am FROM ActivityMetrics am " +
+    /**
+     * Returns the strain21, TRIMP and Z4+Z5 minute sums of every day in [startDate, endDate]
+     * on which the user has activities, so a date range is recomputed with one query.
+     */
+    @Query("SELECT new com.trainingsplan.dto.DailyActivitySumsDto(ct.trainingDate, SUM(am.strain21), SUM(am.trimp), " +
+           "SUM(COALESCE(am.z4Min, 0.0) + COALESCE(am.z5Min, 0.0))) " +
+           "FROM ActivityMetrics am " +
            "JOIN am.completedTraining ct " +
            "WHERE ct.user.id = :userId " +
-           "AND am.efficiencyFactor IS NOT NULL " +
-           "AND ct.trainingDate >= :startDate " +
-           "AND ct.trainingDate <= :endDate")
-    List<ActivityMetrics> findWithEfByUserIdAndDateRange(
+           "AND ct.trainingDate >= :startDate AND ct.trainingDate <= :endDate " +
+           "GROUP BY ct.trainingDate")
+    List<DailyActivitySumsDto> findDailySumsByUserIdAndDateRange(
             @Param("userId") Long userId,
             @Param("startDate") LocalDate startDate,
             @Param("endDate") LocalDate endDate);
 
     /**
-     * Sums (z4Min + z5Min) for all activities of a user in a date range.
-     * Returns 0.0 if no activities exist in that range.
+     * Returns the EF of every activity of a user in [startDate, endDate] with its training
+     * date, oldest first. Projected, so callers without a session never touch a lazy activity.
      */
-    @Query("SELECT COALESCE(SUM(COALESCE(am.z4Min, 0.0) + COALESCE(am.z5Min, 0.0)), 0.0) " +
+    @Query("SELECT new com.trainingsplan.dto.EfSampleDto(ct.trainingDate, am.efficiencyFactor) " +
            "FROM ActivityMetrics am " +
            "JOIN am.completedTraining ct " +
            "WHERE ct.user.id = :userId " +
-           "AND ct.trainingDate >= :startDate AND ct.trainingDate <= :endDate")
-    double sumZ4Z5MinByUserIdAndDateRange(
+           "AND am.efficiencyFactor IS NOT NULL " +
+           "AND ct.trainingDate >= :startDate " +
+           "AND ct.trainingDate <= :endDate " +
+           "ORDER BY ct.trainingDate ASC")
+    List<EfSampleDto> findEfByUserIdAndDateRange(
             @Param("userId") Long userId,
             @Param("startDate") LocalDate startDate,
             @Param("endDate") LocalDate endDate);
@@ -2,8 +2,11 @@ package com.trainingsplan.repository;
 
 import com.trainingsplan.entity.CompetitionRegistration;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,5 +14,12 @@ import java.util.Optional;
 public interface CompetitionRegistrationRepository extends JpaRepository<CompetitionRegistration, Long> {
     Optional<CompetitionRegistration> findByCompetitionIdAndUserId(Long competitionId, Long userId);
     List<CompetitionRegistration> findByUserId(Long userId);
+
+    /** Registrations of {@code userId} for competitions on or after {@code fromDate}, with the competition loaded. */
+    @Query("SELECT r FROM CompetitionRegistration r JOIN FETCH r.competition c " +
+           "WHERE r.user.id = :userId AND c.date >= :fromDate")
+    List<CompetitionRegistration> findUpcomingByUserId(@Param("userId") Long userId,
+                                                       @Param("fromDate") LocalDate fromDate);
+
     boolean existsByCompetitionIdAndUserId(Long competitionId, Long userId);
 }
@@ -1,5 +1,6 @@
 package com.trainingsplan.repository;
 
+import com.trainingsplan.dto.StravaActivityRefDto;
 import com.trainingsplan.entity.CompletedTraining;
 import com.trainingsplan.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -11,6 +12,8 @@ import org.springframework.stereotype.Repository;
 import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,11 +33,38 @@ public interface CompletedTrainingRepository extends JpaRepository<CompletedTrai
     boolean existsByStravaActivityId(Long stravaActivityId);
 
     Optional<CompletedTraining> findByStravaActivityId(Long stravaActivityId);
-    List<CompletedTraining> findByUserIdAndSourceAndTrainingDateBetween(Long userId, String source, LocalDate startDate, LocalDate endDate);
-    List<CompletedTraining> findByUserIsNullAndSourceAndTrainingDateBetween(String source, LocalDate startDate, LocalDate endDate);
+
+    Optional<CompletedTraining> findByStravaActivityIdAndUserId(Long stravaActivityId, Long userId);
+
+    /** Synced activities with any of the given Strava ids, resolved in one query. */
+    @Query("SELECT new com.trainingsplan.dto.StravaActivityRefDto(ct.id, ct.stravaActivityId, ct.trainingDate, ct.uploadDate) " +
+           "FROM CompletedTraining ct WHERE ct.stravaActivityId IN :stravaIds")
+    List<StravaActivityRefDto> findStravaRefsByStravaActivityIdIn(@Param("stravaIds") Collection<Long> stravaIds);
+
+    @Query("SELECT new com.trainingsplan.dto.StravaActivityRefDto(ct.id, ct.stravaActivityId, ct.trainingDate, ct.uploadDate) " +
+           "FROM CompletedTraining ct WHERE ct.user.id = :userId AND ct.source = 'STRAVA' " +
+           "AND ct.stravaActivityId IS NOT NULL AND ct.trainingDate BETWEEN :startDate AND :endDate")
+    List<StravaActivityRefDto> findStravaRefsByUserIdAndTrainingDateBetween(@Param("userId") Long userId,
+                                                                           @Param("startDate") LocalDate startDate,
+                                                                           @Param("endDate") LocalDate endDate);
+
+    @Query("SELECT new com.trainingsplan.dto.StravaActivityRefDto(ct.id, ct.stravaActivityId, ct.trainingDate, ct.uploadDate) " +
+           "FROM CompletedTraining ct WHERE ct.user IS NULL AND ct.source = 'STRAVA' " +
+           "AND ct.stravaActivityId IS NOT NULL AND ct.trainingDate BETWEEN :startDate AND :endDate")
+    List<StravaActivityRefDto> findOrphanedStravaRefsByTrainingDateBetween(@Param("startDate") LocalDate startDate,
+                                                                          @Param("endDate") LocalDate endDate);
+
+    /** Deletes the given activities in one statement; their metrics must be deleted first. */
+    @Modifying
+    @Query("DELETE FROM CompletedTraining ct WHERE ct.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
 
     List<CompletedTraining> findByUserId(Long userId);
 
+    /** Start times recorded in the user's uploaded FIT files. */
+    @Query("SELECT c.startTime FROM CompletedTraining c WHERE c.user.id = :userId AND c.startTime IS NOT NULL")
+    List<LocalDateTime> findStartTimesByUserId(@Param("userId") Long userId);
+
     @Query("SELECT c FROM CompletedTraining c WHERE c.user.id = :userId OR c.user IS NULL")
     List<CompletedTraining> findByUserIdOrUserIsNull(@Param("userId") Long userId);
 
@@ -0,0 +1,169 @@
+package com.trainingsplan.repository;
+
+import com.trainingsplan.entity.DailyMetrics;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Writes {@code daily_metrics} columns for many days of one user with JDBC batch
+ * statements instead of one find-and-save round trip per day.
+ *
+ * <p>Every write is an upsert on the {@code (user_id, date)} key that sets only the
+ * {@link Columns} it is given, so writers running at the same time for the same user
+ * (a recompute of the load models next to an upload, say) never overwrite each other's
+ * columns with what they read earlier, and a row inserted meanwhile is updated instead
+ * of failing the batch.
+ */
+@Repository
+public class DailyMetricsBatchWriter {
+
+    /** Groups of {@code daily_metrics} columns, each computed and written by one step. */
+    public enum Columns {
+        LOAD("daily_strain21", "daily_trimp"),
+        EF("ef7", "ef28"),
+        ACWR("acute7", "chronic28", "acwr", "acwr_flag", "acwr_message"),
+        FITNESS("ctl", "atl", "tsb"),
+        READINESS("readiness_score", "recommendation", "reasons_json", "coach_title", "coach_bullets_json");
+
+        private final List<String> names;
+
+        Columns(String... names) {
+            this.names = List.of(names);
+        }
+    }
+
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * Aggregated load of one day.
+     *
+     * @param strain21 sum of activity strain21 values (0 when none)
+     * @param trimp    sum of activity TRIMP values, {@code null} when no activity has TRIMP
+     */
+    public record DailyLoad(LocalDate date, double strain21, Double trimp) {}
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DailyMetricsBatchWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Upserts {@code daily_strain21} and {@code daily_trimp} for each of {@code loads} in
+     * one batch. Other columns of existing rows are left untouched.
+     */
+    @Transactional
+    public void upsertLoad(Long userId, List<DailyLoad> loads) {
+        if (loads.isEmpty()) return;
+
+        jdbcTemplate.batchUpdate(upsert(EnumSet.of(Columns.LOAD)), loads, BATCH_SIZE, (ps, load) -> {
+            ps.setLong(1, userId);
+            ps.setDate(2, Date.valueOf(load.date()));
+            ps.setDouble(3, load.strain21());
+            setDouble(ps, 4, load.trimp());
+        });
+    }
+
+    /** Upserts the ACWR columns of {@code rows}; other columns are left untouched. */
+    @Transactional
+    public void writeAcwr(Long userId, List<DailyMetrics> rows) {
+        writeRows(userId, rows, EnumSet.of(Columns.ACWR));
+    }
+
+    /**
+     * Upserts the fitness/fatigue columns ({@code ctl}, {@code atl}, {@code tsb}) of
+     * {@code rows}; other columns are left untouched.
+     */
+    @Transactional
+    public void writeFitness(Long userId, List<DailyMetrics> rows) {
+        writeRows(userId, rows, EnumSet.of(Columns.FITNESS));
+    }
+
+    /**
+     * Upserts the {@code columns} of {@code rows} in one batch; other columns are left
+     * untouched. Used to flush a {@link com.trainingsplan.service.DailyMetricsAccumulator}
+     * with the columns its steps computed.
+     */
+    @Transactional
+    public void writeRows(Long userId, List<DailyMetrics> rows, Set<Columns> columns) {
+        if (rows.isEmpty() || columns.isEmpty()) return;
+
+        jdbcTemplate.batchUpdate(upsert(columns), rows, BATCH_SIZE, (ps, row) -> {
+            ps.setLong(1, userId);
+            ps.setDate(2, Date.valueOf(row.getDate()));
+            int c = 3;
+            for (Columns group : columns) {
+                c = bind(ps, c, row, group);
+            }
+        });
+    }
+
+    /** {@code INSERT … ON DUPLICATE KEY UPDATE} of {@code columns}, after {@code user_id} and {@code date}. */
+    private static String upsert(Set<Columns> columns) {
+        List<String> names = new ArrayList<>();
+        for (Columns group : columns) {
+            names.addAll(group.names);
+        }
+        StringJoiner insert = new StringJoiner(", ", "INSERT INTO daily_metrics (user_id, date, ", ")");
+        StringJoiner values = new StringJoiner(", ", " VALUES (?, ?, ", ")");
+        StringJoiner update = new StringJoiner(", ", " ON DUPLICATE KEY UPDATE ", "");
+        for (String name : names) {
+            insert.add(name);
+            values.add("?");
+            update.add(name + " = VALUES(" + name + ")");
+        }
+        return insert + values.toString() + update;
+    }
+
+    /** Binds the columns of {@code group} starting at index {@code c}; returns the next free index. */
+    private static int bind(PreparedStatement ps, int c, DailyMetrics row, Columns group) throws SQLException {
+        switch (group) {
+            case LOAD -> {
+                setDouble(ps, c++, row.getDailyStrain21());
+                setDouble(ps, c++, row.getDailyTrimp());
+            }
+            case EF -> {
+                setDouble(ps, c++, row.getEf7());
+                setDouble(ps, c++, row.getEf28());
+            }
+            case ACWR -> {
+                setDouble(ps, c++, row.getAcute7());
+                setDouble(ps, c++, row.getChronic28());
+                setDouble(ps, c++, row.getAcwr());
+                ps.setString(c++, row.getAcwrFlag() != null ? row.getAcwrFlag().name() : null);
+                ps.setString(c++, row.getAcwrMessage());
+            }
+            case FITNESS -> {
+                setDouble(ps, c++, row.getCtl());
+                setDouble(ps, c++, row.getAtl());
+                setDouble(ps, c++, row.getTsb());
+            }
+            case READINESS -> {
+                if (row.getReadinessScore() == null) ps.setNull(c++, Types.INTEGER);
+                else ps.setInt(c++, row.getReadinessScore());
+                ps.setString(c++, row.getRecommendation() != null ? row.getRecommendation().name() : null);
+                ps.setString(c++, row.getReasonsJson());
+                ps.setString(c++, row.getCoachTitle());
+                ps.setString(c++, row.getCoachBulletsJson());
+            }
+        }
+        return c;
+    }
+
+    private static void setDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value == null) ps.setNull(index, Types.DOUBLE);
+        else ps.setDouble(index, value);
+    }
+}
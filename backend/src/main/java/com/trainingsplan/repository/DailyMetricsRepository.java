@@ -1,7 +1,10 @@
 package com.trainingsplan.repository;
 
+import com.trainingsplan.dto.FitnessPointDto;
 import com.trainingsplan.entity.DailyMetrics;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -12,4 +15,18 @@ public interface DailyMetricsRepository extends JpaRepository<DailyMetrics, Long
     Optional<DailyMetrics> findByUserIdAndDate(Long userId, LocalDate date);
 
     List<DailyMetrics> findByUserIdAndDateBetween(Long userId, LocalDate startDate, LocalDate endDate);
+
+    Optional<DailyMetrics> findFirstByUserIdOrderByDateAsc(Long userId);
+
+    /** Latest day before {@code date} with a computed fitness/fatigue state. */
+    Optional<DailyMetrics> findFirstByUserIdAndDateBeforeAndCtlIsNotNullOrderByDateDesc(Long userId, LocalDate date);
+
+    /** Fitness/fatigue series for charting; reads only the stored daily values. */
+    @Query("SELECT new com.trainingsplan.dto.FitnessPointDto(d.date, d.dailyTrimp, d.ctl, d.atl, d.tsb, d.acwr) " +
+           "FROM DailyMetrics d " +
+           "WHERE d.user.id = :userId AND d.date BETWEEN :startDate AND :endDate AND d.ctl IS NOT NULL " +
+           "ORDER BY d.date ASC")
+    List<FitnessPointDto> findFitnessSeries(@Param("userId") Long userId,
+                                            @Param("startDate") LocalDate startDate,
+                                            @Param("endDate") LocalDate endDate);
 }
@@ -0,0 +1,56 @@
+package com.trainingsplan.repository;
+
+import com.trainingsplan.entity.StravaStreamFetch;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface StravaStreamFetchRepository extends JpaRepository<StravaStreamFetch, Long> {
+
+    /** Fetches due at {@code now} and not claimed by a worker, longest waiting first. */
+    @Query("SELECT f FROM StravaStreamFetch f WHERE f.nextAttemptAt <= :now " +
+           "AND (f.claimedUntil IS NULL OR f.claimedUntil < :now) ORDER BY f.nextAttemptAt")
+    List<StravaStreamFetch> findDue(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Claims the fetch for {@code owner} until {@code until}, if it is still due and no
+     * unexpired claim is held.
+     *
+     * @return 1 when the fetch was claimed, 0 otherwise
+     */
+    @Modifying
+    @Query("UPDATE StravaStreamFetch f SET f.claimedBy = :owner, f.claimedUntil = :until " +
+           "WHERE f.id = :id AND f.nextAttemptAt <= :now AND (f.claimedUntil IS NULL OR f.claimedUntil < :now)")
+    int claim(@Param("id") Long id, @Param("owner") String owner,
+              @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    /** Gives up the claim on the fetch if {@code owner} still holds it. */
+    @Modifying
+    @Query("UPDATE StravaStreamFetch f SET f.claimedBy = NULL, f.claimedUntil = NULL " +
+           "WHERE f.id = :id AND f.claimedBy = :owner")
+    int release(@Param("id") Long id, @Param("owner") String owner);
+
+    /** Drops the queued fetches of deleted activities. */
+    @Modifying
+    @Query("DELETE FROM StravaStreamFetch f WHERE f.completedTrainingId IN :ids")
+    int deleteByCompletedTrainingIdIn(@Param("ids") Collection<Long> completedTrainingIds);
+
+    /**
+     * Queues stream fetches for the given activities in one statement. Activities without
+     * a user or Strava id, and activities already queued, are skipped.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO strava_stream_fetches " +
+                   "(completed_training_id, strava_activity_id, user_id, attempts, next_attempt_at, created_at) " +
+                   "SELECT id, strava_activity_id, user_id, 0, :now, :now FROM completed_trainings " +
+                   "WHERE id IN :ids AND user_id IS NOT NULL AND strava_activity_id IS NOT NULL " +
+                   "ON DUPLICATE KEY UPDATE completed_training_id = completed_training_id",
+           nativeQuery = true)
+    int enqueue(@Param("ids") Collection<Long> completedTrainingIds, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,39 @@
+package com.trainingsplan.repository;
+
+import com.trainingsplan.dto.StravaSyncCandidateDto;
+import com.trainingsplan.entity.StravaSyncState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface StravaSyncStateRepository extends JpaRepository<StravaSyncState, Long> {
+    Optional<StravaSyncState> findByUserId(Long userId);
+
+    /** Every user with a Strava token, with its sync state if there is one. */
+    @Query("SELECT new com.trainingsplan.dto.StravaSyncCandidateDto(u.id, s.lastSyncedAt, u.lastSeenAt) " +
+           "FROM StravaToken t JOIN t.user u LEFT JOIN StravaSyncState s ON s.user = u")
+    List<StravaSyncCandidateDto> findSyncCandidates();
+
+    /**
+     * Takes the sync lease of the user for {@code owner} until {@code until}, unless an
+     * unexpired lease is held, by whichever owner.
+     *
+     * @return 1 when the lease was taken, 0 otherwise
+     */
+    @Modifying
+    @Query("UPDATE StravaSyncState s SET s.leaseOwner = :owner, s.leaseUntil = :until " +
+           "WHERE s.user.id = :userId AND (s.leaseUntil IS NULL OR s.leaseUntil < :now)")
+    int acquireLease(@Param("userId") Long userId, @Param("owner") String owner,
+                     @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    /** Gives up the user's sync lease if {@code owner} still holds it. */
+    @Modifying
+    @Query("UPDATE StravaSyncState s SET s.leaseOwner = NULL, s.leaseUntil = NULL " +
+           "WHERE s.user.id = :userId AND s.leaseOwner = :owner")
+    int releaseLease(@Param("userId") Long userId, @Param("owner") String owner);
+}
@@ -2,8 +2,16 @@ package com.trainingsplan.repository;
 
 import com.trainingsplan.entity.StravaToken;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import java.util.Optional;
 
 public interface StravaTokenRepository extends JpaRepository<StravaToken, Long> {
-    Optional<StravaToken> findFirstByOrderByIdAsc();
+
+    Optional<StravaToken> findByUserId(Long userId);
+
+    /** The token of a connected athlete together with the user it syncs for. */
+    @Query("SELECT t FROM StravaToken t LEFT JOIN FETCH t.user WHERE t.athleteId = :athleteId")
+    Optional<StravaToken> findByAthleteIdWithUser(@Param("athleteId") Long athleteId);
 }
@@ -0,0 +1,41 @@
+package com.trainingsplan.repository;
+
+import com.trainingsplan.entity.StravaWebhookEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface StravaWebhookEventRepository extends JpaRepository<StravaWebhookEvent, Long> {
+
+    Optional<StravaWebhookEvent> findByStravaActivityId(Long stravaActivityId);
+
+    /** Events due at {@code now} and not claimed by a worker, longest waiting first. */
+    @Query("SELECT e FROM StravaWebhookEvent e WHERE e.nextAttemptAt <= :now " +
+           "AND (e.claimedUntil IS NULL OR e.claimedUntil < :now) ORDER BY e.nextAttemptAt")
+    List<StravaWebhookEvent> findDue(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Claims the event for {@code owner} until {@code until}, if it is still due and no
+     * unexpired claim is held. Leaves the revision alone, so merging a newer event still
+     * wins over the worker.
+     *
+     * @return 1 when the event was claimed, 0 otherwise
+     */
+    @Modifying
+    @Query("UPDATE StravaWebhookEvent e SET e.claimedBy = :owner, e.claimedUntil = :until " +
+           "WHERE e.id = :id AND e.nextAttemptAt <= :now AND (e.claimedUntil IS NULL OR e.claimedUntil < :now)")
+    int claim(@Param("id") Long id, @Param("owner") String owner,
+              @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    /** Gives up the claim on the event if {@code owner} still holds it. */
+    @Modifying
+    @Query("UPDATE StravaWebhookEvent e SET e.claimedBy = NULL, e.claimedUntil = NULL " +
+           "WHERE e.id = :id AND e.claimedBy = :owner")
+    int release(@Param("id") Long id, @Param("owner") String owner);
+}
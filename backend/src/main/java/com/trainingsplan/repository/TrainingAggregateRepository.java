@@ -0,0 +1,50 @@
+package com.trainingsplan.repository;
+
+import com.trainingsplan.dto.TrainingStatsSumDto;
+import com.trainingsplan.entity.AggregateGranularity;
+import com.trainingsplan.entity.TrainingAggregate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Reads {@code training_aggregates}; rows are written by {@link TrainingAggregateWriter}.
+ * For the statistics queries, {@code trainingType} and {@code sport} are optional
+ * (null = no filter) and must be passed lower-cased.
+ */
+@Repository
+public interface TrainingAggregateRepository extends JpaRepository<TrainingAggregate, Long> {
+
+    String STATS_SUMS = "SUM(a.distanceKm), SUM(a.durationSeconds), SUM(a.elevationGainM), SUM(a.activityCount)) ";
+    String STATS_WHERE = "FROM TrainingAggregate a " +
+            "WHERE a.user.id = :userId AND a.granularity = :granularity " +
+            "AND a.periodStart BETWEEN :startDate AND :endDate " +
+            "AND (:trainingType IS NULL OR LOWER(a.trainingType) = :trainingType) " +
+            "AND (:sport IS NULL OR LOWER(a.sport) = :sport) ";
+
+    List<TrainingAggregate> findByUserIdAndGranularityAndPeriodStartBetween(
+            Long userId, AggregateGranularity granularity, LocalDate startDate, LocalDate endDate);
+
+    /** Sums per period starting in [{@code startDate}, {@code endDate}], over all matching sports and types. */
+    @Query("SELECT new com.trainingsplan.dto.TrainingStatsSumDto(a.periodStart, " + STATS_SUMS + STATS_WHERE +
+           "GROUP BY a.periodStart ORDER BY a.periodStart")
+    List<TrainingStatsSumDto> sumByPeriod(@Param("userId") Long userId,
+                                          @Param("granularity") AggregateGranularity granularity,
+                                          @Param("startDate") LocalDate startDate,
+                                          @Param("endDate") LocalDate endDate,
+                                          @Param("trainingType") String trainingType,
+                                          @Param("sport") String sport);
+
+    /** Sum over all periods starting in [{@code startDate}, {@code endDate}]. */
+    @Query("SELECT new com.trainingsplan.dto.TrainingStatsSumDto(" + STATS_SUMS + STATS_WHERE)
+    TrainingStatsSumDto sumTotal(@Param("userId") Long userId,
+                                 @Param("granularity") AggregateGranularity granularity,
+                                 @Param("startDate") LocalDate startDate,
+                                 @Param("endDate") LocalDate endDate,
+                                 @Param("trainingType") String trainingType,
+                                 @Param("sport") String sport);
+}
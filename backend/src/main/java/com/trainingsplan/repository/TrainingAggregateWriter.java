@@ -0,0 +1,140 @@
+package com.trainingsplan.repository;
+
+import com.trainingsplan.entity.AggregateGranularity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Rewrites {@code training_aggregates} buckets of one user with set-based SQL: day buckets
+ * are regrouped from {@code completed_trainings}, longer periods are rolled up from the
+ * day buckets.
+ *
+ * <p>A bucket is rebuilt in place rather than deleted and re-inserted, so two rebuilds of
+ * the same user lock existing rows instead of competing for gap locks on the unique key:
+ * its rows are marked empty ({@code activity_count = 0}), the regrouped sums are upserted
+ * with {@code INSERT … SELECT … ON DUPLICATE KEY UPDATE}, and rows still empty afterwards,
+ * whose sport and training type no longer occur, are deleted.
+ */
+@Repository
+public class TrainingAggregateWriter {
+
+    private static final String COLUMNS = """
+            (user_id, granularity, period_start, sport, training_type, distance_km, duration_seconds,
+             elevation_gain_m, activity_count, max_distance_km, max_duration_seconds)
+            """;
+
+    private static final String SELECT_DAY_SUMS = """
+            SELECT user_id, 'DAY', training_date, COALESCE(sport, ''), COALESCE(training_type, ''),
+                   COALESCE(SUM(distance_km), 0), COALESCE(SUM(duration_seconds), 0),
+                   COALESCE(SUM(elevation_gain_m), 0), COUNT(*), MAX(distance_km),
+                   MAX(CASE WHEN moving_time_seconds > 0 THEN moving_time_seconds ELSE duration_seconds END)
+            FROM completed_trainings
+            """;
+
+    private static final String GROUP_DAY_SUMS =
+            " GROUP BY user_id, training_date, COALESCE(sport, ''), COALESCE(training_type, '')";
+
+    private static final String ON_DUPLICATE_KEY = """
+             ON DUPLICATE KEY UPDATE distance_km = VALUES(distance_km), duration_seconds = VALUES(duration_seconds),
+             elevation_gain_m = VALUES(elevation_gain_m), activity_count = VALUES(activity_count),
+             max_distance_km = VALUES(max_distance_km), max_duration_seconds = VALUES(max_duration_seconds)
+            """;
+
+    private static final String MARK_BUCKET =
+            "UPDATE training_aggregates SET activity_count = 0 WHERE user_id = ? AND granularity = ? AND period_start = ?";
+
+    private static final String SWEEP_BUCKET = "DELETE FROM training_aggregates "
+            + "WHERE user_id = ? AND granularity = ? AND period_start = ? AND activity_count = 0";
+
+    private static final String UPSERT_DAY = "INSERT INTO training_aggregates " + COLUMNS + SELECT_DAY_SUMS
+            + "WHERE user_id = ? AND training_date = ?" + GROUP_DAY_SUMS + ON_DUPLICATE_KEY;
+
+    private static final String UPSERT_ALL_DAYS = "INSERT INTO training_aggregates " + COLUMNS + SELECT_DAY_SUMS
+            + "WHERE user_id = ?" + GROUP_DAY_SUMS + ON_DUPLICATE_KEY;
+
+    private static final String UPSERT_ROLLUP = "INSERT INTO training_aggregates " + COLUMNS + """
+            SELECT user_id, ?, ?, sport, training_type,
+                   SUM(distance_km), SUM(duration_seconds), SUM(elevation_gain_m), SUM(activity_count),
+                   MAX(max_distance_km), MAX(max_duration_seconds)
+            FROM training_aggregates
+            WHERE user_id = ? AND granularity = 'DAY' AND period_start BETWEEN ? AND ?
+            GROUP BY user_id, sport, training_type
+            """ + ON_DUPLICATE_KEY;
+
+    private static final String DELETE_USER_ROLLUPS =
+            "DELETE FROM training_aggregates WHERE user_id = ? AND granularity <> 'DAY'";
+
+    private static final String MARK_USER_DAYS =
+            "UPDATE training_aggregates SET activity_count = 0 WHERE user_id = ? AND granularity = 'DAY'";
+
+    private static final String SWEEP_USER_DAYS =
+            "DELETE FROM training_aggregates WHERE user_id = ? AND granularity = 'DAY' AND activity_count = 0";
+
+    private static final String SELECT_DAYS =
+            "SELECT DISTINCT period_start FROM training_aggregates WHERE user_id = ? AND granularity = 'DAY'";
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TrainingAggregateWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** Regroups the day buckets of {@code days} from the user's current activities. */
+    @Transactional
+    public void rebuildDays(Long userId, Collection<LocalDate> days) {
+        forBuckets(MARK_BUCKET, userId, AggregateGranularity.DAY, days);
+        jdbcTemplate.batchUpdate(UPSERT_DAY, days, BATCH_SIZE, (ps, day) -> {
+            ps.setLong(1, userId);
+            ps.setDate(2, Date.valueOf(day));
+        });
+        forBuckets(SWEEP_BUCKET, userId, AggregateGranularity.DAY, days);
+    }
+
+    /**
+     * Recomputes the {@code granularity} buckets starting on {@code periodStarts} from the
+     * day buckets they span. The day buckets must be current.
+     */
+    @Transactional
+    public void rollUp(Long userId, AggregateGranularity granularity, Collection<LocalDate> periodStarts) {
+        forBuckets(MARK_BUCKET, userId, granularity, periodStarts);
+        jdbcTemplate.batchUpdate(UPSERT_ROLLUP, periodStarts, BATCH_SIZE, (ps, start) -> {
+            ps.setString(1, granularity.name());
+            ps.setDate(2, Date.valueOf(start));
+            ps.setLong(3, userId);
+            ps.setDate(4, Date.valueOf(start));
+            ps.setDate(5, Date.valueOf(granularity.end(start)));
+        });
+        forBuckets(SWEEP_BUCKET, userId, granularity, periodStarts);
+    }
+
+    /**
+     * Regroups all day buckets of the user from all of the user's activities and drops the
+     * longer periods, which the caller rolls up again from the returned days that have
+     * activities.
+     */
+    @Transactional
+    public List<LocalDate> rebuildAllDays(Long userId) {
+        jdbcTemplate.update(DELETE_USER_ROLLUPS, userId);
+        jdbcTemplate.update(MARK_USER_DAYS, userId);
+        jdbcTemplate.update(UPSERT_ALL_DAYS, userId);
+        jdbcTemplate.update(SWEEP_USER_DAYS, userId);
+        return jdbcTemplate.query(SELECT_DAYS, (rs, i) -> rs.getDate(1).toLocalDate(), userId);
+    }
+
+    /** Runs {@code sql} (mark or sweep) once per bucket. */
+    private void forBuckets(String sql, Long userId, AggregateGranularity granularity, Collection<LocalDate> periodStarts) {
+        jdbcTemplate.batchUpdate(sql, periodStarts, BATCH_SIZE, (ps, start) -> {
+            ps.setLong(1, userId);
+            ps.setString(2, granularity.name());
+            ps.setDate(3, Date.valueOf(start));
+        });
+    }
+}
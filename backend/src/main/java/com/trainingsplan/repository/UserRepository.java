@@ -2,8 +2,13 @@ package com.trainingsplan.repository;
 
 import com.trainingsplan.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +17,19 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
 
     Optional<User> findByUsername(String username);
+
+    @Modifying
+    @Query("UPDATE User u SET u.lastSeenAt = :seenAt WHERE u.id IN :ids")
+    int updateLastSeenAt(@Param("ids") Collection<Long> ids, @Param("seenAt") LocalDateTime seenAt);
+
+    @Query("SELECT u.dataVersion FROM User u WHERE u.id = :id")
+    Optional<Long> findDataVersionById(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE User u SET u.dataVersion = COALESCE(u.dataVersion, 0) + 1 WHERE u.id = :id")
+    int incrementDataVersion(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE User u SET u.dataVersion = COALESCE(u.dataVersion, 0) + 1")
+    int incrementAllDataVersions();
 }
@@ -1,5 +1,6 @@
 package com.trainingsplan.repository;
 
+import com.trainingsplan.dto.RegistrationProgressDto;
 import com.trainingsplan.entity.UserTrainingEntry;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -21,6 +22,18 @@ public interface UserTrainingEntryRepository extends JpaRepository<UserTrainingE
     List<UserTrainingEntry> findByCompetitionRegistration_User_IdAndTrainingDateBetween(
             Long userId, LocalDate from, LocalDate to);
 
+    /**
+     * Entry counts per registration of {@code userId} whose competition is on or after
+     * {@code fromDate}, in one grouped query. Registrations without entries are absent.
+     */
+    @Query("SELECT new com.trainingsplan.dto.RegistrationProgressDto(" +
+           "r.id, COUNT(e), SUM(CASE WHEN e.completed = true THEN 1 ELSE 0 END), MIN(e.trainingDate)) " +
+           "FROM UserTrainingEntry e JOIN e.competitionRegistration r " +
+           "WHERE r.user.id = :userId AND r.competition.date >= :fromDate " +
+           "GROUP BY r.id")
+    List<RegistrationProgressDto> findProgressByUserId(@Param("userId") Long userId,
+                                                       @Param("fromDate") LocalDate fromDate);
+
     void deleteByCompetitionRegistrationId(Long registrationId);
 
     @Query("SELECT MAX(t.weekNumber) FROM Training t WHERE t.trainingPlan.id = :planId")
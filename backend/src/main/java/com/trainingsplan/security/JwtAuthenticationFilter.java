@@ -1,5 +1,8 @@
 package com.trainingsplan.security;
 
+import com.trainingsplan.entity.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -14,15 +17,23 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 
+/**
+ * Authenticates requests carrying a bearer token. The token is parsed and verified once;
+ * the principal comes from the {@link PrincipalCache}, so a request normally costs no
+ * database query. Authenticated users are reported to the {@link UserActivityTracker}.
+ */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
-    private final UserDetailsServiceImpl userDetailsService;
+    private final PrincipalCache principalCache;
+    private final UserActivityTracker activityTracker;
 
-    public JwtAuthenticationFilter(JwtService jwtService, UserDetailsServiceImpl userDetailsService) {
+    public JwtAuthenticationFilter(JwtService jwtService, PrincipalCache principalCache,
+                                   UserActivityTracker activityTracker) {
         this.jwtService = jwtService;
-        this.userDetailsService = userDetailsService;
+        this.principalCache = principalCache;
+        this.activityTracker = activityTracker;
     }
 
     @Override
@@ -42,15 +53,17 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         jwt = authHeader.substring(7);
         try {
-            username = jwtService.extractUsername(jwt);
-        } catch (Exception e) {
+            // Verifies signature and expiry
+            Claims claims = jwtService.parseToken(jwt);
+            username = claims.getSubject();
+        } catch (JwtException | IllegalArgumentException e) {
             filterChain.doFilter(request, response);
             return;
         }
 
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-            if (jwtService.isTokenValid(jwt, userDetails)) {
+            UserDetails userDetails = principalCache.get(username);
+            if (username.equals(userDetails.getUsername())) {
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails,
                         null,
@@ -58,6 +71,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 );
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
+                if (userDetails instanceof User user) {
+                    activityTracker.touch(user.getId());
+                }
             }
         }
         filterChain.doFilter(request, response);
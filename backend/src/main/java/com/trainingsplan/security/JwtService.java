@@ -1,6 +1,8 @@
 package com.trainingsplan.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,22 +16,40 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
 
+/**
+ * Issues and verifies the HS256 access tokens. The signing key and the parser are built
+ * once; {@link #parseToken} verifies signature and expiry in a single parse.
+ */
 @Service
 public class JwtService {
 
-    @Value("${app.jwt.secret}")
-    private String secretKey;
+    private final long expirationMs;
+    private final SecretKey signInKey;
+    private final JwtParser parser;
 
-    @Value("${app.jwt.expiration-ms}")
-    private long expirationMs;
+    public JwtService(@Value("${app.jwt.secret}") String secretKey,
+                      @Value("${app.jwt.expiration-ms}") long expirationMs) {
+        this.expirationMs = expirationMs;
+        this.signInKey = Keys.hmacShaKeyFor(secretKey.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser().verifyWith(signInKey).build();
+    }
+
+    /**
+     * Verifies signature and expiry of {@code token} and returns its claims.
+     *
+     * @throws JwtException             when the token is malformed, tampered with or expired
+     * @throws IllegalArgumentException when the token is empty
+     */
+    public Claims parseToken(String token) {
+        return parser.parseSignedClaims(token).getPayload();
+    }
 
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+        return claimsResolver.apply(parseToken(token));
     }
 
     public String generateToken(UserDetails userDetails) {
@@ -42,32 +62,16 @@ public class JwtService {
                 .subject(userDetails.getUsername())
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expirationMs))
-                .signWith(getSignInKey(), Jwts.SIG.HS256)
+                .signWith(signInKey, Jwts.SIG.HS256)
                 .compact();
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
-    }
-
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
-
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSignInKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-    }
-
-    private SecretKey getSignInKey() {
-        return Keys.hmacShaKeyFor(secretKey.getBytes(StandardCharsets.UTF_8));
+        try {
+            // parseToken rejects expired tokens
+            return userDetails.getUsername().equals(parseToken(token).getSubject());
+        } catch (JwtException | IllegalArgumentException e) {
+            return false;
+        }
     }
 }
@@ -0,0 +1,86 @@
+package com.trainingsplan.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Short-lived cache of authenticated principals by username, so that a request with a
+ * valid token does not need a user lookup.
+ *
+ * <p>Entries expire after {@code app.auth.principal-cache.ttl-ms}; the cache holds at most
+ * {@code app.auth.principal-cache.max-size} users. Code that changes a user's profile,
+ * status or role calls {@link #evict}, so the next request sees the change; the TTL bounds
+ * the staleness of any other change. Login does not use the cache.
+ */
+@Component
+public class PrincipalCache {
+
+    private record Entry(UserDetails principal, long expiresAt) {}
+
+    private final UserDetailsServiceImpl userDetailsService;
+    private final long ttlMillis;
+    private final int maxSize;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PrincipalCache(UserDetailsServiceImpl userDetailsService,
+                          @Value("${app.auth.principal-cache.ttl-ms:60000}") long ttlMillis,
+                          @Value("${app.auth.principal-cache.max-size:10000}") int maxSize) {
+        this(userDetailsService, ttlMillis, maxSize, System::currentTimeMillis);
+    }
+
+    PrincipalCache(UserDetailsServiceImpl userDetailsService, long ttlMillis, int maxSize, LongSupplier clock) {
+        this.userDetailsService = userDetailsService;
+        this.ttlMillis = ttlMillis;
+        this.maxSize = Math.max(1, maxSize);
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the principal for {@code username}, loading it when not cached or expired.
+     *
+     * @throws org.springframework.security.core.userdetails.UsernameNotFoundException when the user does not exist
+     */
+    public UserDetails get(String username) {
+        long now = clock.getAsLong();
+        Entry entry = entries.get(username);
+        if (entry != null && entry.expiresAt() > now) {
+            return entry.principal();
+        }
+        UserDetails principal = userDetailsService.loadUserByUsername(username);
+        if (entries.size() >= maxSize) {
+            trim(now);
+        }
+        entries.put(username, new Entry(principal, now + ttlMillis));
+        return principal;
+    }
+
+    /** Drops the cached principal of {@code username}; null is ignored. */
+    public void evict(String username) {
+        if (username != null) {
+            entries.remove(username);
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /** Removes expired entries, then arbitrary ones until there is room for one more. */
+    private void trim(long now) {
+        entries.values().removeIf(e -> e.expiresAt() <= now);
+        Iterator<String> it = entries.keySet().iterator();
+        while (entries.size() >= maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
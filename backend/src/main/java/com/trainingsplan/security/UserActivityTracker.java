@@ -0,0 +1,89 @@
+package com.trainingsplan.security;
+
+import com.trainingsplan.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records when users were last seen, for the background Strava sync to serve active users
+ * first.
+ *
+ * <p>{@link #touch} only marks the user in memory, so authenticating a request stays free of
+ * database writes. Every {@code app.activity.flush-seconds} the marked users get
+ * {@code users.last_seen_at} set with one statement; the column is therefore accurate to
+ * the flush interval.
+ */
+@Component
+public class UserActivityTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(UserActivityTracker.class);
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transaction;
+    private final long flushSeconds;
+
+    private final Set<Long> seen = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "user-activity-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public UserActivityTracker(UserRepository userRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.activity.flush-seconds:60}") long flushSeconds) {
+        this.userRepository = userRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.flushSeconds = flushSeconds;
+    }
+
+    @PostConstruct
+    void start() {
+        flusher.scheduleWithFixedDelay(this::flush, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    /** Marks the user as seen now. */
+    public void touch(Long userId) {
+        if (userId != null) {
+            seen.add(userId);
+        }
+    }
+
+    /** Writes the users marked since the last flush. */
+    void flush() {
+        List<Long> ids = new ArrayList<>();
+        for (Iterator<Long> it = seen.iterator(); it.hasNext(); ) {
+            ids.add(it.next());
+            it.remove();
+        }
+        if (ids.isEmpty()) return;
+        try {
+            transaction.executeWithoutResult(status -> userRepository.updateLastSeenAt(ids, LocalDateTime.now()));
+        } catch (Exception e) {
+            // Marked again on their next request
+            log.warn("Recording the last activity of {} users failed: {}", ids.size(), e.getMessage());
+        }
+    }
+}
@@ -3,180 +3,141 @@ package com.trainingsplan.service;
 import com.trainingsplan.entity.ActivityMetrics;
 import com.trainingsplan.entity.CompletedTraining;
 import com.trainingsplan.entity.User;
+import com.trainingsplan.port.ActivityStreamStoragePort;
 import com.trainingsplan.repository.ActivityMetricsRepository;
 import com.trainingsplan.service.decoupling.DecouplingResult;
 import com.trainingsplan.service.hrzone.HeartRateZoneConfig;
 import com.trainingsplan.service.hrzone.ZoneTimeResult;
+import com.trainingsplan.service.stream.ActivityStream;
 import com.trainingsplan.service.trimp.TRIMPResult;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Orchestrates HR zone, strain, TRIMP, and aerobic decoupling calculations
- * and persists results in {@code activity_metrics}.
- * Called once per FIT file upload or Strava stream fetch.
+ * (via {@link FusedActivityMetricsEngine}) and persists results in {@code activity_metrics}.
+ * Called once per FIT file upload or Strava stream fetch. The raw stream is kept via
+ * {@link ActivityStreamStoragePort} so metrics can later be recomputed without the source.
  */
 @Service
 public class ActivityMetricsService {
 
     @Autowired
-    private ZoneTimeCalculator zoneTimeCalculator;
+    private FusedActivityMetricsEngine fusedActivityMetricsEngine;
 
     @Autowired
     private StrainCalculator strainCalculator;
 
     @Autowired
-    private TRIMPCalculator trimpCalculator;
+    private DailyMetricsService dailyMetricsService;
 
     @Autowired
-    private AerobicDecouplingCalculator aerobicDecouplingCalculator;
+    private DailyMetricsDirtyTracker dailyMetricsDirtyTracker;
 
     @Autowired
-    private DailyMetricsService dailyMetricsService;
+    private ActivityMetricsRepository activityMetricsRepository;
 
     @Autowired
-    private ActivityMetricsRepository activityMetricsRepository;
+    private ActivityStreamStoragePort activityStreamStorage;
 
     /**
-     * Convenience overload for FIT file uploads (no velocity/distance streams available).
-     * Aerobic decoupling is skipped; EF is still computed from the summary fields on
-     * {@link CompletedTraining} (averageSpeedKmh / averageHeartRate).
+     * Computes zones, strain, TRIMP, aerobic decoupling and EF for one activity.
+     * Called for FIT uploads and Strava stream fetches alike.
+     *
+     * <p>Aerobic decoupling is only computed when the stream carries a velocity channel
+     * (Strava {@code velocity_smooth}); FIT uploads skip it. EF is always derived from the
+     * summary fields on {@link CompletedTraining} (averageSpeedKmh / averageHeartRate).
+     *
+     * <p>Upserts: if a record for the same activity already exists it is overwritten.
+     * The stream is stored for later local recomputes.
+     *
+     * @param completedTraining the already-persisted activity
+     * @param stream            time/HR samples, optionally with velocity and distance channels
+     * @param user              the athlete (supplies hrMax, hrRest, gender for zone/TRIMP boundaries)
      */
     public void calculateAndPersist(CompletedTraining completedTraining,
-                                    List<Integer> timeSeconds,
-                                    List<Integer> heartRates,
+                                    ActivityStream stream,
                                     User user) {
-        ActivityMetrics metrics = activityMetricsRepository
-                .findByCompletedTrainingId(completedTraining.getId())
-                .orElse(new ActivityMetrics());
-
-        metrics.setCompletedTraining(completedTraining);
+        persistMetrics(completedTraining, stream, user);
+        activityStreamStorage.store(completedTraining.getId(), stream);
+    }
 
-        // ── HR zones + strain ──────────────────────────────────────────────────
-        if (user.getMaxHeartRate() != null && user.getMaxHeartRate() > 0) {
-            HeartRateZoneConfig config = HeartRateZoneConfig.fromHrMax(user.getMaxHeartRate());
-            ZoneTimeResult result = zoneTimeCalculator.calculate(timeSeconds, heartRates, config);
-
-            if (result.isUnknown()) {
-                metrics.setZonesUnknown(true);
-            } else {
-                metrics.setZonesUnknown(false);
-                metrics.setZ1Min(result.getZ1Min());
-                metrics.setZ2Min(result.getZ2Min());
-                metrics.setZ3Min(result.getZ3Min());
-                metrics.setZ4Min(result.getZ4Min());
-                metrics.setZ5Min(result.getZ5Min());
-                metrics.setHrDataCoverage(result.getHrDataCoverage());
-
-                double rawLoad = strainCalculator.rawLoad(
-                        result.getZ1Min(), result.getZ2Min(), result.getZ3Min(),
-                        result.getZ4Min(), result.getZ5Min());
-                metrics.setRawLoad(rawLoad);
-                metrics.setStrain21(strainCalculator.strain21(rawLoad));
-            }
-        } else {
-            metrics.setZonesUnknown(true);
+    /**
+     * Recomputes and persists the metrics of an activity from its stored stream, e.g.
+     * after the user's hrMax or resting HR changed.
+     *
+     * @return {@code false} when no stream is stored for the activity (nothing was changed)
+     */
+    public boolean recalculateFromStoredStream(CompletedTraining completedTraining, User user) {
+        Optional<ActivityStream> stream = activityStreamStorage.load(completedTraining.getId());
+        if (stream.isEmpty()) {
+            return false;
         }
+        persistMetrics(completedTraining, stream.get(), user);
+        return true;
+    }
 
-        // ── TRIMP ─────────────────────────────────────────────────────────────
-        if (user.getMaxHeartRate() != null && user.getMaxHeartRate() > 0
-                && user.getHrRest() != null && user.getHrRest() > 0) {
-            double k = TRIMPCalculator.kForGender(user.getGender());
-            TRIMPResult trimpResult = trimpCalculator.calculate(
-                    timeSeconds, heartRates, user.getHrRest(), user.getMaxHeartRate(), k);
-            if (trimpResult != null) {
-                metrics.setTrimp(trimpResult.trimp());
-                metrics.setTrimpQuality(trimpResult.quality().name());
-            }
-        }
+    private void persistMetrics(CompletedTraining completedTraining,
+                                ActivityStream stream,
+                                User user) {
+        ActivityMetrics metrics = activityMetricsRepository
+                .findByCompletedTrainingId(completedTraining.getId())
+                .orElse(new ActivityMetrics());
 
-        // ── Efficiency Factor ─────────────────────────────────────────────────
-        metrics.setEfficiencyFactor(computeEF(completedTraining));
+        fillMetrics(metrics, completedTraining, stream, user);
 
         activityMetricsRepository.save(metrics);
-        LocalDate trainingDate = completedTraining.getTrainingDate();
-        dailyMetricsService.updateDailyStrain(user, trainingDate);
-        dailyMetricsService.updateDailyEf(user, trainingDate);
         // Also update today's rolling metrics so dashboard always shows current status
+        LocalDate trainingDate = completedTraining.getTrainingDate();
         LocalDate today = LocalDate.now();
-        if (!trainingDate.equals(today)) {
-            dailyMetricsService.updateDailyStrain(user, today);
-            dailyMetricsService.updateDailyEf(user, today);
+        dailyMetricsService.updateDays(user, List.of(trainingDate, today));
+        // Days in between are rebuilt in the background (coalesced with further uploads)
+        if (trainingDate.plusDays(1).isBefore(today)) {
+            dailyMetricsDirtyTracker.markDirty(user, trainingDate);
         }
     }
 
     /**
-     * Full calculation including aerobic decoupling. Called for Strava activities
-     * where {@code velocity_smooth} and {@code distance} streams are available.
-     *
-     * <p>Upserts: if a record for the same activity already exists it is overwritten.
+     * Computes the same metrics as {@link #calculateAndPersist} without touching the
+     * database. Used by the bulk archive import, which inserts activities and metrics in
+     * JDBC batches and recomputes daily metrics once at the end.
      *
-     * @param completedTraining the already-persisted activity
-     * @param timeSeconds       elapsed seconds from activity start
-     * @param heartRates        HR in bpm, parallel to timeSeconds; nulls = missing data
-     * @param velocities        speed in m/s (Strava {@code velocity_smooth}), parallel to timeSeconds;
-     *                          pass {@code null} to skip decoupling
-     * @param distances         cumulative metres (Strava {@code distance}), parallel to timeSeconds;
-     *                          pass {@code null} to use time-based half-split in decoupling
-     * @param user              the athlete (supplies hrMax, hrRest, gender for zone/TRIMP boundaries)
+     * @param completedTraining the activity (may not be persisted yet)
+     * @return a new, unsaved {@link ActivityMetrics} linked to {@code completedTraining}
      */
-    public void calculateAndPersist(CompletedTraining completedTraining,
-                                    List<Integer> timeSeconds,
-                                    List<Integer> heartRates,
-                                    List<Double>  velocities,
-                                    List<Double>  distances,
-                                    User user) {
-        ActivityMetrics metrics = activityMetricsRepository
-                .findByCompletedTrainingId(completedTraining.getId())
-                .orElse(new ActivityMetrics());
+    public ActivityMetrics computeMetrics(CompletedTraining completedTraining,
+                                          ActivityStream stream,
+                                          User user) {
+        ActivityMetrics metrics = new ActivityMetrics();
+        fillMetrics(metrics, completedTraining, stream, user);
+        return metrics;
+    }
 
+    private void fillMetrics(ActivityMetrics metrics,
+                             CompletedTraining completedTraining,
+                             ActivityStream stream,
+                             User user) {
         metrics.setCompletedTraining(completedTraining);
 
-        // ── HR zones + strain ──────────────────────────────────────────────────
-        if (user.getMaxHeartRate() != null && user.getMaxHeartRate() > 0) {
-            HeartRateZoneConfig config = HeartRateZoneConfig.fromHrMax(user.getMaxHeartRate());
-            ZoneTimeResult result = zoneTimeCalculator.calculate(timeSeconds, heartRates, config);
-
-            if (result.isUnknown()) {
-                metrics.setZonesUnknown(true);
-            } else {
-                metrics.setZonesUnknown(false);
-                metrics.setZ1Min(result.getZ1Min());
-                metrics.setZ2Min(result.getZ2Min());
-                metrics.setZ3Min(result.getZ3Min());
-                metrics.setZ4Min(result.getZ4Min());
-                metrics.setZ5Min(result.getZ5Min());
-                metrics.setHrDataCoverage(result.getHrDataCoverage());
-
-                double rawLoad = strainCalculator.rawLoad(
-                        result.getZ1Min(), result.getZ2Min(), result.getZ3Min(),
-                        result.getZ4Min(), result.getZ5Min());
-                metrics.setRawLoad(rawLoad);
-                metrics.setStrain21(strainCalculator.strain21(rawLoad));
-            }
-        } else {
-            metrics.setZonesUnknown(true);
-        }
+        // ── Zones, TRIMP and decoupling in one pass over the samples ──────────
+        boolean hasHrMax = user.getMaxHeartRate() != null && user.getMaxHeartRate() > 0;
+        FusedActivityMetricsEngine.Result fused = fusedActivityMetricsEngine.compute(
+                stream,
+                hasHrMax ? HeartRateZoneConfig.fromHrMax(user.getMaxHeartRate()) : null,
+                user.getHrRest(),
+                TRIMPCalculator.kForGender(user.getGender()));
 
-        // ── TRIMP ─────────────────────────────────────────────────────────────
-        if (user.getMaxHeartRate() != null && user.getMaxHeartRate() > 0
-                && user.getHrRest() != null && user.getHrRest() > 0) {
-            double k = TRIMPCalculator.kForGender(user.getGender());
-            TRIMPResult trimpResult = trimpCalculator.calculate(
-                    timeSeconds, heartRates, user.getHrRest(), user.getMaxHeartRate(), k);
-            if (trimpResult != null) {
-                metrics.setTrimp(trimpResult.trimp());
-                metrics.setTrimpQuality(trimpResult.quality().name());
-            }
-        }
+        // ── HR zones + strain, TRIMP ──────────────────────────────────────────
+        applyHrMetrics(metrics, fused.zones(), fused.trimp());
+        metrics.setHrHistogram(fused.histogram().encode());
 
         // ── Aerobic decoupling ────────────────────────────────────────────────
-        if (velocities != null) {
-            DecouplingResult dr = aerobicDecouplingCalculator.calculate(
-                    timeSeconds, heartRates, velocities, distances);
+        DecouplingResult dr = fused.decoupling();
+        if (dr != null) {
             metrics.setDecouplingEligible(dr.eligible());
             metrics.setDecouplingPct(dr.decouplingPct());
             metrics.setDecouplingReason(dr.reason());
@@ -184,16 +145,47 @@ public class ActivityMetricsService {
 
         // ── Efficiency Factor ─────────────────────────────────────────────────
         metrics.setEfficiencyFactor(computeEF(completedTraining));
+    }
 
-        activityMetricsRepository.save(metrics);
-        LocalDate trainingDate = completedTraining.getTrainingDate();
-        dailyMetricsService.updateDailyStrain(user, trainingDate);
-        dailyMetricsService.updateDailyEf(user, trainingDate);
-        // Also update today's rolling metrics so dashboard always shows current status
-        LocalDate today = LocalDate.now();
-        if (!trainingDate.equals(today)) {
-            dailyMetricsService.updateDailyStrain(user, today);
-            dailyMetricsService.updateDailyEf(user, today);
+    /**
+     * Writes zone minutes, HR coverage, rawLoad/strain21 and TRIMP to {@code metrics}.
+     * Values that cannot be computed (unknown zones, missing hrRest) are cleared so a
+     * recompute never leaves results of the previous profile behind.
+     * Shared by ingest and {@link MetricsRecomputeService}.
+     */
+    void applyHrMetrics(ActivityMetrics metrics, ZoneTimeResult zones, TRIMPResult trimp) {
+        if (zones == null || zones.isUnknown()) {
+            metrics.setZonesUnknown(true);
+            metrics.setZ1Min(null);
+            metrics.setZ2Min(null);
+            metrics.setZ3Min(null);
+            metrics.setZ4Min(null);
+            metrics.setZ5Min(null);
+            metrics.setHrDataCoverage(null);
+            metrics.setRawLoad(null);
+            metrics.setStrain21(null);
+        } else {
+            metrics.setZonesUnknown(false);
+            metrics.setZ1Min(zones.getZ1Min());
+            metrics.setZ2Min(zones.getZ2Min());
+            metrics.setZ3Min(zones.getZ3Min());
+            metrics.setZ4Min(zones.getZ4Min());
+            metrics.setZ5Min(zones.getZ5Min());
+            metrics.setHrDataCoverage(zones.getHrDataCoverage());
+
+            double rawLoad = strainCalculator.rawLoad(
+                    zones.getZ1Min(), zones.getZ2Min(), zones.getZ3Min(),
+                    zones.getZ4Min(), zones.getZ5Min());
+            metrics.setRawLoad(rawLoad);
+            metrics.setStrain21(strainCalculator.strain21(rawLoad));
+        }
+
+        if (trimp != null) {
+            metrics.setTrimp(trimp.trimp());
+            metrics.setTrimpQuality(trimp.quality().name());
+        } else {
+            metrics.setTrimp(null);
+            metrics.setTrimpQuality(null);
         }
     }
 
@@ -0,0 +1,85 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.entity.AcwrFlag;
+
+/**
+ * ACWR over a contiguous array of daily strain values, in one linear sweep with running
+ * 7-day and 28-day sums (O(1) per day instead of re-summing the window).
+ *
+ * <p>Same definitions and flag thresholds as {@link LoadModelService}. To keep long sweeps
+ * free of floating-point residue, each running sum is reset to exactly 0 whenever its
+ * window holds no non-zero day, so a 28-day break always yields {@code acwr = null}.
+ */
+public final class AcwrEngine {
+
+    public static final int ACUTE_DAYS   = 7;
+    public static final int CHRONIC_DAYS = 28;
+
+    /** ACWR values of one day. */
+    public record Day(double acute7, double chronic28, Double acwr, AcwrFlag flag, String message) {}
+
+    private AcwrEngine() {}
+
+    /**
+     * @param dailyStrain strain21 per consecutive day; index {@code i} is day {@code origin + i}.
+     *                    Must start {@value #CHRONIC_DAYS}-1 days before the first day of interest.
+     * @return ACWR for each day from index {@value #CHRONIC_DAYS}-1 on, i.e.
+     *         {@code result[j]} belongs to {@code dailyStrain[j + CHRONIC_DAYS - 1]};
+     *         empty when fewer than {@value #CHRONIC_DAYS} days are given
+     */
+    public static Day[] sweep(double[] dailyStrain) {
+        int n = dailyStrain.length;
+        Day[] days = new Day[Math.max(0, n - CHRONIC_DAYS + 1)];
+
+        double sum7 = 0, sum28 = 0;
+        int nonZero7 = 0, nonZero28 = 0;
+        for (int i = 0; i < n; i++) {
+            double s = dailyStrain[i];
+            sum7 += s;
+            sum28 += s;
+            if (s != 0) { nonZero7++; nonZero28++; }
+
+            if (i >= ACUTE_DAYS) {
+                double out = dailyStrain[i - ACUTE_DAYS];
+                sum7 -= out;
+                if (out != 0 && --nonZero7 == 0) sum7 = 0;
+            }
+            if (i >= CHRONIC_DAYS) {
+                double out = dailyStrain[i - CHRONIC_DAYS];
+                sum28 -= out;
+                if (out != 0 && --nonZero28 == 0) sum28 = 0;
+            }
+
+            if (i >= CHRONIC_DAYS - 1) {
+                days[i - CHRONIC_DAYS + 1] = of(sum7, sum28);
+            }
+        }
+        return days;
+    }
+
+    /** ACWR for one day from its 7-day and 28-day strain sums. */
+    public static Day of(double acute7, double sum28) {
+        double chronic28 = sum28 / 4.0;
+        Double acwr      = chronic28 > 0.0 ? acute7 / chronic28 : null;
+        AcwrFlag flag    = flag(acwr);
+        return new Day(acute7, chronic28, acwr, flag, message(flag));
+    }
+
+    static AcwrFlag flag(Double acwr) {
+        if (acwr == null)  return null;
+        if (acwr < 0.8)    return AcwrFlag.BLUE;
+        if (acwr <= 1.3)   return AcwrFlag.GREEN;
+        if (acwr <= 1.6)   return AcwrFlag.ORANGE;
+        return AcwrFlag.RED;
+    }
+
+    static String message(AcwrFlag flag) {
+        if (flag == null) return null;
+        return switch (flag) {
+            case BLUE   -> "Unterbelastung – Training steigern";
+            case GREEN  -> "Optimale Belastung";
+            case ORANGE -> "Erhöhte Belastung – Verletzungsrisiko beachten";
+            case RED    -> "Hohes Verletzungsrisiko – Belastung reduzieren";
+        };
+    }
+}
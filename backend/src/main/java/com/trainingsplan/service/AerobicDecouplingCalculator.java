@@ -1,6 +1,7 @@
 package com.trainingsplan.service;
 
 import com.trainingsplan.service.decoupling.DecouplingResult;
+import com.trainingsplan.service.stream.ActivityStream;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -76,6 +77,53 @@ public class AerobicDecouplingCalculator {
         return DecouplingResult.of(decoupling);
     }
 
+    /**
+     * Same algorithm as the {@code List}-based overload, reading the primitive columns of
+     * an {@link ActivityStream}. A stream without a velocity channel is treated like
+     * {@code velocities == null}; without a distance channel the half-split is time-based.
+     *
+     * @param stream samples of one activity
+     * @return {@link DecouplingResult}; never null
+     */
+    public DecouplingResult calculate(ActivityStream stream) {
+        if (stream == null || stream.size() < 2 || !stream.hasVelocityChannel()) {
+            return DecouplingResult.ineligible("INSUFFICIENT_DATA");
+        }
+
+        int n             = stream.size();
+        int totalDuration = stream.time(n - 1) - stream.time(0);
+
+        if (totalDuration < MIN_DURATION_SECONDS) {
+            return DecouplingResult.ineligible("TOO_SHORT");
+        }
+
+        double validHr = 0, validSpeed = 0;
+        for (int i = 0; i < n - 1; i++) {
+            int dt = stream.time(i + 1) - stream.time(i);
+            if (dt <= 0) continue;
+            if (stream.hasHeartRate(i)) validHr += dt;
+            if (stream.hasVelocity(i) && stream.velocity(i) > 0) validSpeed += dt;
+        }
+        if (Math.min(1.0, validHr / totalDuration) < MIN_HR_COVERAGE) {
+            return DecouplingResult.ineligible("HR_COVERAGE_TOO_LOW");
+        }
+        if (Math.min(1.0, validSpeed / totalDuration) < MIN_SPEED_COVERAGE) {
+            return DecouplingResult.ineligible("SPEED_DATA_MISSING");
+        }
+
+        int splitIdx = findSplitIndex(stream);
+
+        double e1 = computeEfficiency(stream, 0,        splitIdx);
+        double e2 = computeEfficiency(stream, splitIdx, n - 1);
+
+        if (Double.isNaN(e1) || Double.isNaN(e2) || e1 == 0) {
+            return DecouplingResult.ineligible("CALCULATION_ERROR");
+        }
+
+        double decoupling = (e2 - e1) / e1 * 100.0;
+        return DecouplingResult.of(decoupling);
+    }
+
     // ── Private helpers ───────────────────────────────────────────────────────
 
     private double computeHrCoverage(List<Integer> time, List<Integer> hr, int totalDuration) {
@@ -159,4 +207,46 @@ public class AerobicDecouplingCalculator {
         if (totalDt == 0 || sumSpeed == 0) return Double.NaN;
         return (sumHr / totalDt) / (sumSpeed / totalDt);
     }
+
+    /** {@link ActivityStream} variant of {@link #findSplitIndex(List, List)}. */
+    private int findSplitIndex(ActivityStream stream) {
+        int n = stream.size();
+
+        if (stream.hasDistanceChannel()) {
+            double totalDist = 0;
+            for (int i = n - 1; i >= 0; i--) {
+                if (stream.hasDistance(i) && stream.distance(i) > 0) { totalDist = stream.distance(i); break; }
+            }
+            if (totalDist > 0) {
+                double half = totalDist / 2.0;
+                for (int i = 1; i < n; i++) {
+                    if (stream.hasDistance(i) && stream.distance(i) >= half) return i;
+                }
+            }
+        }
+
+        int startTime = stream.time(0);
+        int mid       = startTime + (stream.time(n - 1) - startTime) / 2;
+        for (int i = 1; i < n; i++) {
+            if (stream.time(i) >= mid) return i;
+        }
+        return n / 2;
+    }
+
+    /** {@link ActivityStream} variant of {@link #computeEfficiency(List, List, List, int, int)}. */
+    private double computeEfficiency(ActivityStream stream, int fromIdx, int toIdx) {
+        double sumHr = 0, sumSpeed = 0, totalDt = 0;
+        for (int i = fromIdx; i < toIdx; i++) {
+            int dt = stream.time(i + 1) - stream.time(i);
+            if (dt <= 0) continue;
+            if (!stream.hasHeartRate(i) || !stream.hasVelocity(i)) continue;
+            double v = stream.velocity(i);
+            if (v <= 0) continue;
+            sumHr    += (double) stream.heartRate(i) * dt;
+            sumSpeed += v * dt;
+            totalDt  += dt;
+        }
+        if (totalDt == 0 || sumSpeed == 0) return Double.NaN;
+        return (sumHr / totalDt) / (sumSpeed / totalDt);
+    }
 }
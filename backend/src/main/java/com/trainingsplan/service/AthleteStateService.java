@@ -1,11 +1,12 @@
 package com.trainingsplan.service;
 
 import com.trainingsplan.dto.AthleteStateDTO;
-import com.trainingsplan.entity.CompletedTraining;
+import com.trainingsplan.entity.AggregateGranularity;
 import com.trainingsplan.entity.DailyMetrics;
+import com.trainingsplan.entity.TrainingAggregate;
 import com.trainingsplan.entity.User;
-import com.trainingsplan.repository.CompletedTrainingRepository;
 import com.trainingsplan.repository.DailyMetricsRepository;
+import com.trainingsplan.repository.TrainingAggregateRepository;
 import com.trainingsplan.repository.UserRepository;
 import org.springframework.stereotype.Service;
 
@@ -26,20 +27,20 @@ public class AthleteStateService {
 
     private final UserRepository userRepository;
     private final DailyMetricsRepository dailyMetricsRepository;
-    private final CompletedTrainingRepository completedTrainingRepository;
+    private final TrainingAggregateRepository trainingAggregateRepository;
     private final DailyMetricsService dailyMetricsService;
     private final PaceZoneService paceZoneService;
 
     public AthleteStateService(
             UserRepository userRepository,
             DailyMetricsRepository dailyMetricsRepository,
-            CompletedTrainingRepository completedTrainingRepository,
+            TrainingAggregateRepository trainingAggregateRepository,
             DailyMetricsService dailyMetricsService,
             PaceZoneService paceZoneService
     ) {
         this.userRepository = userRepository;
         this.dailyMetricsRepository = dailyMetricsRepository;
-        this.completedTrainingRepository = completedTrainingRepository;
+        this.trainingAggregateRepository = trainingAggregateRepository;
         this.dailyMetricsService = dailyMetricsService;
         this.paceZoneService = paceZoneService;
     }
@@ -141,31 +142,27 @@ public class AthleteStateService {
 
     private int computeLongRunCapacityMinutes(Long userId, LocalDate today) {
         LocalDate from = today.minusDays(LONG_RUN_LOOKBACK_DAYS - 1L);
-        List<CompletedTraining> recentTrainings = completedTrainingRepository
-                .findByUserIdAndTrainingDateBetweenOrderByTrainingDate(userId, from, today);
+        List<TrainingAggregate> recentDays = trainingAggregateRepository
+                .findByUserIdAndGranularityAndPeriodStartBetween(userId, AggregateGranularity.DAY, from, today);
 
-        int maxRunMinutes = recentTrainings.stream()
-                .filter(this::isRunningTraining)
-                .mapToInt(this::extractDurationMinutes)
+        int maxRunMinutes = recentDays.stream()
+                .filter(this::isRunningDay)
+                .mapToInt(this::longestDurationMinutes)
                 .max()
                 .orElse(DEFAULT_LONG_RUN_CAPACITY_MIN);
 
         return Math.min(maxRunMinutes, MAX_LONG_RUN_CAPACITY_MIN);
     }
 
-    private boolean isRunningTraining(CompletedTraining training) {
-        String sport = training.getSport();
-        return sport != null && sport.toLowerCase().contains("run");
+    private boolean isRunningDay(TrainingAggregate day) {
+        return day.getSport().toLowerCase().contains("run");
     }
 
-    private int extractDurationMinutes(CompletedTraining training) {
-        Integer movingTime = training.getMovingTimeSeconds();
-        if (movingTime != null && movingTime > 0) {
-            return Math.max(1, movingTime / 60);
-        }
-        Integer duration = training.getDurationSeconds();
-        if (duration != null && duration > 0) {
-            return Math.max(1, duration / 60);
+    /** Longest activity of the day in minutes, by moving time when known. */
+    private int longestDurationMinutes(TrainingAggregate day) {
+        Integer seconds = day.getMaxDurationSeconds();
+        if (seconds != null && seconds > 0) {
+            return Math.max(1, seconds / 60);
         }
         return 0;
     }
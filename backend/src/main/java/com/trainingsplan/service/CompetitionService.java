@@ -25,6 +25,9 @@ public class CompetitionService {
     @Autowired
     private SecurityUtils securityUtils;
 
+    @Autowired
+    private UserDataVersions userDataVersions;
+
     public List<CompetitionDto> findAll() {
         Long userId = securityUtils.getCurrentUserId();
         return competitionRepository.findAll().stream()
@@ -53,6 +56,7 @@ public class CompetitionService {
 
     public CompetitionDto save(Competition competition) {
         Competition saved = competitionRepository.save(competition);
+        userDataVersions.bumpAll();
         Long userId = securityUtils.getCurrentUserId();
         CompetitionRegistration reg = userId != null
                 ? registrationRepository.findByCompetitionIdAndUserId(saved.getId(), userId).orElse(null)
@@ -62,6 +66,7 @@ public class CompetitionService {
 
     public void deleteById(Long id) {
         competitionRepository.deleteById(id);
+        userDataVersions.bumpAll();
     }
 
     public CompetitionRegistration updateRegistration(Long competitionId, String ranking,
@@ -74,6 +79,7 @@ public class CompetitionService {
         if (ranking != null) reg.setRanking(ranking);
         if (targetTime != null) reg.setTargetTime(targetTime);
         if (registeredWithOrganizer != null) reg.setRegisteredWithOrganizer(registeredWithOrganizer);
+        userDataVersions.bump(userId);
         return registrationRepository.save(reg);
     }
 
@@ -90,6 +96,7 @@ public class CompetitionService {
         if (targetTime != null) reg.setTargetTime(targetTime);
         if (registeredWithOrganizer != null) reg.setRegisteredWithOrganizer(registeredWithOrganizer);
         if (ranking != null) reg.setRanking(ranking);
+        userDataVersions.bump(user.getId());
         return registrationRepository.save(reg);
     }
 
@@ -98,5 +105,6 @@ public class CompetitionService {
         if (userId == null) throw new RuntimeException("Not authenticated");
         registrationRepository.findByCompetitionIdAndUserId(competitionId, userId)
                 .ifPresent(registrationRepository::delete);
+        userDataVersions.bump(userId);
     }
 }
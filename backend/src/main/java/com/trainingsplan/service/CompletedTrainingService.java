@@ -1,25 +1,32 @@
 package com.trainingsplan.service;
 
 import com.garmin.fit.*;
+import com.trainingsplan.dto.IngestJobStatus;
 import com.trainingsplan.entity.CompletedTraining;
 import com.trainingsplan.entity.User;
 import com.trainingsplan.repository.CompletedTrainingRepository;
 import com.trainingsplan.security.SecurityUtils;
+import com.trainingsplan.service.stream.ActivityStream;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 public class CompletedTrainingService {
 
+    /** Read-ahead for the multipart stream; the FIT decoder pulls one byte at a time. */
+    private static final int FIT_READ_BUFFER_BYTES = 64 * 1024;
+
     @Autowired
     private CompletedTrainingRepository completedTrainingRepository;
 
@@ -32,6 +39,9 @@ public class CompletedTrainingService {
     @Autowired
     private ActivityMetricsService activityMetricsService;
 
+    @Autowired
+    private TrainingAggregateService trainingAggregateService;
+
     @Autowired
     private SecurityUtils securityUtils;
 
@@ -40,31 +50,51 @@ public class CompletedTrainingService {
     }
 
     public CompletedTraining uploadAndParseFitFile(MultipartFile file, LocalDate trainingDate, Long trainingId) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return importFitFile(in, file.getOriginalFilename(), trainingDate, trainingId,
+                    securityUtils.getCurrentUser(), status -> {});
+        }
+    }
+
+    /**
+     * Parses a FIT file, persists it for {@code user} and runs the body/activity metric
+     * post-processing. Does not touch the security context, so it can run on a worker thread.
+     *
+     * @param fitStream        raw FIT bytes; read exactly once, not closed
+     * @param originalFilename stored on the activity for display
+     * @param trainingId       optional {@code UserTrainingEntry} id to mark as completed
+     * @param progress         notified as the import moves through parse, save and metric stages
+     */
+    public CompletedTraining importFitFile(InputStream fitStream, String originalFilename,
+                                           LocalDate trainingDate, Long trainingId, User user,
+                                           Consumer<IngestJobStatus> progress) throws IOException {
         CompletedTraining training = new CompletedTraining();
         training.setTrainingDate(trainingDate);
-        training.setOriginalFilename(file.getOriginalFilename());
+        training.setOriginalFilename(originalFilename);
         training.setUploadDate(LocalDateTime.now());
 
+        progress.accept(IngestJobStatus.PARSING);
         FitDataCollector collector;
         try {
-            collector = parseFitFileReal(file.getBytes(), training);
+            collector = parseFitFileReal(new BufferedInputStream(fitStream, FIT_READ_BUFFER_BYTES), training);
         } catch (Exception e) {
             throw new IOException("Fehler beim Parsen der FIT-Datei: " + e.getMessage(), e);
         }
 
-        User currentUser = securityUtils.getCurrentUser();
-        training.setUser(currentUser);
+        progress.accept(IngestJobStatus.SAVING);
+        training.setStartTime(collector.getStartTime());
+        training.setUser(user);
         CompletedTraining savedTraining = completedTrainingRepository.save(training);
+        if (user != null) {
+            trainingAggregateService.activitiesChanged(user.getId(), List.of(savedTraining.getTrainingDate()));
+        }
 
+        progress.accept(IngestJobStatus.COMPUTING_METRICS);
         // Calculate and persist body metrics (VO2Max etc.)
-        bodyMetricService.calculateAndStore(savedTraining, currentUser);
+        bodyMetricService.calculateAndStore(savedTraining, user);
 
         // Calculate and persist HR zone metrics from the collected stream
-        activityMetricsService.calculateAndPersist(
-                savedTraining,
-                collector.getTimeSeconds(),
-                collector.getHeartRates(),
-                currentUser);
+        activityMetricsService.calculateAndPersist(savedTraining, collector.getStream(), user);
 
         // If trainingId is provided, mark the UserTrainingEntry as completed
         if (trainingId != null) {
@@ -78,26 +108,67 @@ public class CompletedTrainingService {
         return savedTraining;
     }
 
-    private FitDataCollector parseFitFileReal(byte[] fitData, CompletedTraining training) {
+    /**
+     * Result of decoding one FIT file without persisting it.
+     *
+     * @param training unsaved activity; startTime and trainingDate are taken from the
+     *                 activity start time recorded in the file
+     * @param stream   time/HR samples for {@link ActivityMetricsService#computeMetrics}
+     */
+    public record ParsedFitFile(CompletedTraining training, ActivityStream stream) {}
+
+    /**
+     * Decodes a FIT file and derives the training date from the file itself, for imports
+     * where the user does not pick a date per file (Garmin export archives). Thread-safe;
+     * touches neither the database nor the security context.
+     *
+     * @throws IOException when the file is corrupt or carries no timestamp
+     */
+    public ParsedFitFile parseFitFile(InputStream fitStream, String originalFilename) throws IOException {
+        CompletedTraining training = new CompletedTraining();
+        training.setOriginalFilename(originalFilename);
+
+        FitDataCollector collector;
+        try {
+            collector = parseFitFileReal(new BufferedInputStream(fitStream, FIT_READ_BUFFER_BYTES), training);
+        } catch (Exception e) {
+            throw new IOException("Fehler beim Parsen der FIT-Datei: " + e.getMessage(), e);
+        }
+
+        LocalDateTime startTime = collector.getStartTime();
+        if (startTime == null) {
+            throw new IOException("FIT-Datei enthält keine Startzeit");
+        }
+        training.setTrainingDate(startTime.toLocalDate());
+        training.setStartTime(startTime);
+        training.setUploadDate(LocalDateTime.now());
+        return new ParsedFitFile(training, collector.getStream());
+    }
+
+    /**
+     * Decodes a FIT file in a single streaming pass. The SDK verifies the file CRC while
+     * reading, so no separate integrity pass (and no full in-memory copy) is needed; a
+     * corrupt file surfaces as a {@link FitRuntimeException} at the end of the stream.
+     */
+    private FitDataCollector parseFitFileReal(InputStream fitStream, CompletedTraining training) {
         Decode decode = new Decode();
         MesgBroadcaster mesgBroadcaster = new MesgBroadcaster(decode);
 
         FitDataCollector collector = new FitDataCollector(training);
         mesgBroadcaster.addListener(collector);
 
-        ByteArrayInputStream inputStream = new ByteArrayInputStream(fitData);
-
-        if (!decode.checkFileIntegrity(inputStream)) {
-            throw new RuntimeException("FIT-Datei ist beschädigt oder ungültig");
-        }
-
-        inputStream = new ByteArrayInputStream(fitData);
+        boolean complete;
         try {
-            decode.read(inputStream, mesgBroadcaster, mesgBroadcaster);
-            collector.finalizeData();
+            complete = decode.read(fitStream, mesgBroadcaster, mesgBroadcaster);
+        } catch (FitRuntimeException e) {
+            throw new RuntimeException("FIT-Datei ist beschädigt oder ungültig: " + e.getMessage(), e);
         } catch (Exception e) {
             throw new RuntimeException("Fehler beim Lesen der FIT-Datei: " + e.getMessage(), e);
         }
+        if (!complete) {
+            throw new RuntimeException("FIT-Datei ist beschädigt oder ungültig");
+        }
+        collector.finalizeData();
 
         return collector;
     }
@@ -105,13 +176,10 @@ public class CompletedTrainingService {
     private static class FitDataCollector implements MesgListener {
         private final CompletedTraining training;
 
-        // HR stream: raw FIT timestamps (seconds since Garmin epoch) and bpm values
-        private final List<Long> rawTimestamps = new ArrayList<>();
-        private final List<Integer> rawHeartRates = new ArrayList<>();
-
-        // Computed after finalizeData()
-        private List<Integer> timeSeconds = new ArrayList<>();
-        private List<Integer> heartRates = new ArrayList<>();
+        // HR stream, filled sample by sample; time is relative to the first record
+        private final ActivityStream stream = new ActivityStream();
+        private long firstTimestamp = -1;
+        private Long sessionStartTimestamp;
 
         public FitDataCollector(CompletedTraining training) {
             this.training = training;
@@ -135,16 +203,15 @@ public class CompletedTrainingService {
             Long ts = tsField.getLongValue();
             if (ts == null) return;
 
+            if (firstTimestamp < 0) firstTimestamp = ts;
+            int index = stream.append((int) (ts - firstTimestamp));
+
             // Heart rate may be absent in some record messages (GPS-only ticks)
             Field hrField = mesg.getField("heart_rate");
-            Integer hr = null;
             if (hrField != null && hrField.getValue() != null) {
                 Double hrVal = hrField.getDoubleValue();
-                if (hrVal != null) hr = hrVal.intValue();
+                if (hrVal != null) stream.setHeartRate(index, hrVal.intValue());
             }
-
-            rawTimestamps.add(ts);
-            rawHeartRates.add(hr); // may be null
         }
 
         private void handleActivity(Mesg mesg) {
@@ -160,6 +227,11 @@ public class CompletedTrainingService {
             setFieldString(mesg, "sport",     val -> training.setSport(val.toLowerCase()));
             setFieldString(mesg, "sub_sport", val -> training.setSubSport(val.toLowerCase()));
 
+            Field startField = mesg.getField("start_time");
+            if (sessionStartTimestamp == null && startField != null && startField.getValue() != null) {
+                sessionStartTimestamp = startField.getLongValue();
+            }
+
             setFieldValue(mesg, "avg_speed",        val -> training.setAverageSpeedKmh(val * 3.6));
             setFieldValue(mesg, "max_speed",        val -> training.setMaxSpeedKmh(val * 3.6));
             setFieldValue(mesg, "avg_heart_rate",   val -> training.setAverageHeartRate(val.intValue()));
@@ -220,24 +292,21 @@ public class CompletedTrainingService {
                 double paceSecondsPerKm = training.getDurationSeconds() / training.getDistanceKm();
                 training.setAveragePaceSecondsPerKm((int) paceSecondsPerKm);
             }
-
-            // Convert absolute timestamps to relative seconds since first record
-            if (!rawTimestamps.isEmpty()) {
-                long t0 = rawTimestamps.get(0);
-                timeSeconds = new ArrayList<>(rawTimestamps.size());
-                heartRates  = new ArrayList<>(rawHeartRates.size());
-                for (int i = 0; i < rawTimestamps.size(); i++) {
-                    timeSeconds.add((int)(rawTimestamps.get(i) - t0));
-                    heartRates.add(rawHeartRates.get(i)); // may be null
-                }
-            }
         }
 
-        /** Relative seconds since activity start (same indices as {@link #getHeartRates()}). */
-        public List<Integer> getTimeSeconds() { return timeSeconds; }
-
-        /** HR in bpm per sample; entries may be null for GPS-only ticks. */
-        public List<Integer> getHeartRates()  { return heartRates; }
+        /** Time/HR samples relative to the first record; HR is missing for GPS-only ticks. */
+        public ActivityStream getStream() { return stream; }
+
+        /**
+         * Activity start in server-local time: the first session's start_time, falling back
+         * to the first record timestamp; {@code null} when the file has neither.
+         */
+        public LocalDateTime getStartTime() {
+            Long ts = sessionStartTimestamp != null ? sessionStartTimestamp
+                    : firstTimestamp >= 0 ? Long.valueOf(firstTimestamp) : null;
+            if (ts == null) return null;
+            return LocalDateTime.ofInstant(new DateTime(ts).getDate().toInstant(), ZoneId.systemDefault());
+        }
     }
 
     public List<CompletedTraining> getCompletedTrainingsByDate(LocalDate date) {
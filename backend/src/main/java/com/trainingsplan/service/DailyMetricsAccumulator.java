@@ -0,0 +1,101 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.entity.DailyMetrics;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.repository.DailyMetricsRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Unit of work over the {@code daily_metrics} rows of one user and date range.
+ *
+ * <p>Rows are read once when the accumulator is opened; strain, EF, ACWR, readiness and
+ * the coach card then update them in memory via {@link #row}, and the caller writes all
+ * touched rows at the end in one batch (see
+ * {@link com.trainingsplan.repository.DailyMetricsBatchWriter#writeRows}). This replaces
+ * the find-and-save per metric and day that each step used to do on its own.
+ *
+ * <p>Not thread-safe; meant to live for a single call.
+ */
+public class DailyMetricsAccumulator {
+
+    private final User user;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final Map<LocalDate, DailyMetrics> rows = new TreeMap<>();
+    private final TreeSet<LocalDate> touched = new TreeSet<>();
+
+    DailyMetricsAccumulator(User user, LocalDate from, LocalDate to, List<DailyMetrics> existing) {
+        this.user = user;
+        this.from = from;
+        this.to = to;
+        for (DailyMetrics dm : existing) {
+            rows.put(dm.getDate(), dm);
+        }
+    }
+
+    /** Opens an accumulator for [{@code from}, {@code to}] with a single read. */
+    static DailyMetricsAccumulator load(DailyMetricsRepository repository, User user, LocalDate from, LocalDate to) {
+        return new DailyMetricsAccumulator(user, from, to,
+                repository.findByUserIdAndDateBetween(user.getId(), from, to));
+    }
+
+    public User user() { return user; }
+
+    public LocalDate from() { return from; }
+
+    public LocalDate to() { return to; }
+
+    /**
+     * Returns the row of {@code date} for writing, creating it in memory when it does not
+     * exist yet, and marks it for the final write.
+     */
+    public DailyMetrics row(LocalDate date) {
+        checkRange(date);
+        touched.add(date);
+        return rows.computeIfAbsent(date, d -> {
+            DailyMetrics dm = new DailyMetrics();
+            dm.setUser(user);
+            dm.setDate(d);
+            return dm;
+        });
+    }
+
+    /** Returns the row of {@code date} for reading, or {@code null} when there is none. */
+    public DailyMetrics peek(LocalDate date) {
+        checkRange(date);
+        return rows.get(date);
+    }
+
+    /** {@code dailyStrain21} of {@code date}; days without a row or value count as 0. */
+    public double strain(LocalDate date) {
+        DailyMetrics dm = peek(date);
+        return dm != null && dm.getDailyStrain21() != null ? dm.getDailyStrain21() : 0.0;
+    }
+
+    /** {@code dailyTrimp} of {@code date}; days without a row or value count as 0. */
+    public double trimp(LocalDate date) {
+        DailyMetrics dm = peek(date);
+        return dm != null && dm.getDailyTrimp() != null ? dm.getDailyTrimp() : 0.0;
+    }
+
+    /** Rows obtained via {@link #row}, oldest first. */
+    public List<DailyMetrics> touchedRows() {
+        List<DailyMetrics> result = new ArrayList<>(touched.size());
+        for (LocalDate date : touched) {
+            result.add(rows.get(date));
+        }
+        return result;
+    }
+
+    private void checkRange(LocalDate date) {
+        if (date.isBefore(from) || date.isAfter(to)) {
+            throw new IllegalArgumentException("Date " + date + " outside accumulator range " + from + ".." + to);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.entity.User;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks activity dates whose change has not yet been propagated through the rolling
+ * {@code daily_metrics} windows, and rebuilds them in the background.
+ *
+ * <p>A changed day D affects ACWR and EF28 of D..D+27 (both look back 28 days),
+ * readiness of the same days and CTL/ATL/TSB of every day from D on.
+ * {@link ActivityMetricsService} only refreshes D and today inline, so a late or
+ * back-dated activity leaves the days in between stale until the recompute here has run.
+ *
+ * <p>Per user the earliest and latest dirty date are kept. The recompute is debounced by
+ * {@code metrics.dirty.debounce-ms}: every new mark restarts the delay, so a burst of
+ * uploads or a Strava sync of many old activities ends in one
+ * {@link DailyMetricsService#recomputeRange} over [earliest, min(latest + 27, today)],
+ * followed by {@link LoadModelService#recomputeFitnessRange} (stored TRIMP only) for any
+ * remaining days up to today. The restarts never push the recompute further than
+ * {@code metrics.dirty.max-delay-ms} past the first mark, so a steady stream of marks
+ * cannot postpone it indefinitely. A failed recompute keeps its window dirty and runs
+ * again after the debounce, up to {@link #MAX_ATTEMPTS} times.
+ */
+@Service
+public class DailyMetricsDirtyTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(DailyMetricsDirtyTracker.class);
+
+    /** Recomputes of one dirty window, including the first; a failed one is scheduled again. */
+    static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Dirty dates of one user, when they were first marked, how often their recompute has
+     * failed and the scheduled recompute covering them.
+     */
+    private record Pending(User user, LocalDate earliest, LocalDate latest, long firstMarkNanos,
+                           int failures, ScheduledFuture<?> task) {}
+
+    private final DailyMetricsService dailyMetricsService;
+    private final LoadModelService loadModelService;
+    private final long debounceMillis;
+    private final long maxDelayMillis;
+
+    /** Guarded by {@code this}. */
+    private final Map<Long, Pending> pending = new HashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "daily-metrics-dirty");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public DailyMetricsDirtyTracker(DailyMetricsService dailyMetricsService,
+                                    LoadModelService loadModelService,
+                                    @Value("${metrics.dirty.debounce-ms:5000}") long debounceMillis,
+                                    @Value("${metrics.dirty.max-delay-ms:60000}") long maxDelayMillis) {
+        this.dailyMetricsService = dailyMetricsService;
+        this.loadModelService = loadModelService;
+        this.debounceMillis = debounceMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Records that the activities of {@code user} on {@code date} changed and (re)starts the
+     * debounce delay of the user's recompute, capped at the maximum delay since the first
+     * pending mark. Dates in the future are ignored.
+     */
+    public synchronized void markDirty(User user, LocalDate date) {
+        if (date.isAfter(LocalDate.now())) {
+            return;
+        }
+        mark(user, date, date, 0);
+    }
+
+    /** Merges [{@code earliest}, {@code latest}] into the user's pending window and reschedules it. */
+    private synchronized void mark(User user, LocalDate earliest, LocalDate latest, int failures) {
+        Long userId = user.getId();
+        Pending previous = pending.get(userId);
+        long firstMarkNanos = System.nanoTime();
+        long delayMillis = debounceMillis;
+        if (previous != null) {
+            previous.task().cancel(false);
+            earliest = previous.earliest().isBefore(earliest) ? previous.earliest() : earliest;
+            latest = previous.latest().isAfter(latest) ? previous.latest() : latest;
+            failures = Math.max(failures, previous.failures());
+            firstMarkNanos = previous.firstMarkNanos();
+            long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - firstMarkNanos);
+            delayMillis = Math.max(0, Math.min(debounceMillis, maxDelayMillis - waitedMillis));
+        }
+        ScheduledFuture<?> task = executor.schedule(() -> run(userId), delayMillis, TimeUnit.MILLISECONDS);
+        pending.put(userId, new Pending(user, earliest, latest, firstMarkNanos, failures, task));
+    }
+
+    /** Number of users with a recompute that has not started yet. */
+    synchronized int pendingUsers() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(Long userId) {
+        Pending p;
+        synchronized (this) {
+            p = pending.remove(userId);
+        }
+        if (p == null) {
+            return; // already taken by a task that was cancelled too late
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate to = p.latest().plusDays(AcwrEngine.CHRONIC_DAYS - 1);
+        if (to.isAfter(today)) {
+            to = today;
+        }
+        try {
+            dailyMetricsService.recomputeRange(p.user(), p.earliest(), to);
+            loadModelService.recomputeFitnessRange(p.user(), to.plusDays(1), today);
+            log.debug("Recomputed daily metrics {}..{} for user {}", p.earliest(), to, userId);
+        } catch (Exception e) {
+            int failures = p.failures() + 1;
+            if (failures < MAX_ATTEMPTS) {
+                log.warn("Daily metrics recompute {}..{} for user {} failed, retrying: {}",
+                        p.earliest(), to, userId, e.getMessage());
+                mark(p.user(), p.earliest(), p.latest(), failures);
+            } else {
+                log.error("Daily metrics recompute {}..{} for user {} failed {} times, giving up",
+                        p.earliest(), to, userId, failures, e);
+            }
+        }
+    }
+}
@@ -1,58 +1,81 @@
 package com.trainingsplan.service;
 
-import com.trainingsplan.entity.ActivityMetrics;
+import com.trainingsplan.dto.DailyActivitySumsDto;
+import com.trainingsplan.dto.EfSampleDto;
 import com.trainingsplan.entity.DailyMetrics;
 import com.trainingsplan.entity.User;
 import com.trainingsplan.repository.ActivityMetricsRepository;
+import com.trainingsplan.repository.DailyMetricsBatchWriter;
+import com.trainingsplan.repository.DailyMetricsBatchWriter.Columns;
 import com.trainingsplan.repository.DailyMetricsRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Maintains aggregated daily strain and rolling efficiency metrics in {@code daily_metrics}.
  * Recomputes totals by aggregating all activity_metrics records for the day,
  * ensuring idempotency (safe on re-import of the same activity).
+ *
+ * <p>Multi-step updates (strain → ACWR/CTL/ATL → readiness → EF) run on a
+ * {@link DailyMetricsAccumulator}: the affected rows are read once, updated in memory by
+ * every step, and written back in one batch that sets only the columns those steps own.
+ * The activities behind them are read as per-day sums and EF samples with one query each
+ * for the whole range, so the cost of a recompute does not grow with its number of days.
  */
 @Service
 public class DailyMetricsService {
 
+    /** Written by {@link #refreshLoadModels}, which leaves strain and EF as stored. */
+    private static final Set<Columns> LOAD_MODEL_COLUMNS = EnumSet.of(Columns.ACWR, Columns.FITNESS, Columns.READINESS);
+
     @Autowired
     private ActivityMetricsRepository activityMetricsRepository;
 
     @Autowired
     private DailyMetricsRepository dailyMetricsRepository;
 
+    @Autowired
+    private DailyMetricsBatchWriter dailyMetricsBatchWriter;
+
     @Autowired
     private LoadModelService loadModelService;
 
     @Autowired
     private ReadinessService readinessService;
 
+    @Autowired
+    private UserDataVersions userDataVersions;
+
     /**
-     * Recomputes and upserts the daily strain21 and TRIMP aggregates for {@code user} on {@code date}.
+     * Recomputes strain, load models, readiness, coach card and EF of each of {@code dates}
+     * (oldest first) with one read and one batched write of {@code daily_metrics}.
+     * Called after an activity was saved, with its training date and today.
      */
-    public void updateDailyStrain(User user, LocalDate date) {
-        Double totalStrain = activityMetricsRepository.sumStrain21ByUserIdAndDate(user.getId(), date);
-        if (totalStrain == null) {
-            totalStrain = 0.0;
+    public void updateDays(User user, Collection<LocalDate> dates) {
+        TreeSet<LocalDate> days = new TreeSet<>(dates);
+        if (days.isEmpty()) return;
+
+        DailyMetricsAccumulator acc = open(user, days.first(), days.last());
+        Map<LocalDate, DailyActivitySumsDto> sums = loadDailySums(user, days.first().minusDays(1), days.last());
+        EfWindows ef = loadEfWindows(user, days.first(), days.last());
+        for (LocalDate date : days) {
+            applyStrain(acc, date, sums);
+            loadModelService.applyLoadModels(acc, date, date);
+            readinessService.applyRange(acc, date, date, sums);
+            ef.apply(acc.row(date), date);
         }
-
-        Double totalTrimp = activityMetricsRepository.sumTrimpByUserIdAndDate(user.getId(), date);
-
-        DailyMetrics daily = dailyMetricsRepository
-                .findByUserIdAndDate(user.getId(), date)
-                .orElse(new DailyMetrics());
-
-        daily.setUser(user);
-        daily.setDate(date);
-        daily.setDailyStrain21(totalStrain);
-        daily.setDailyTrimp(totalTrimp);
-        dailyMetricsRepository.save(daily);
-        loadModelService.updateAcwr(user, date);
-        readinessService.compute(user, date);
+        flush(acc, EnumSet.allOf(Columns.class));
     }
 
     /**
@@ -64,21 +87,15 @@ public class DailyMetricsService {
      * Both are {@code null} when the respective window contains no eligible activity.
      */
     public void updateDailyEf(User user, LocalDate date) {
-        List<ActivityMetrics> window28 = activityMetricsRepository
-                .findWithEfByUserIdAndDateRange(user.getId(), date.minusDays(27), date);
-
-        Double ef7  = averageEfInWindow(window28, date.minusDays(6), date);
-        Double ef28 = averageEfInWindow(window28, date.minusDays(27), date);
-
         DailyMetrics daily = dailyMetricsRepository
                 .findByUserIdAndDate(user.getId(), date)
                 .orElse(new DailyMetrics());
 
         daily.setUser(user);
         daily.setDate(date);
-        daily.setEf7(ef7);
-        daily.setEf28(ef28);
+        loadEfWindows(user, date, date).apply(daily, date);
         dailyMetricsRepository.save(daily);
+        userDataVersions.bump(user.getId());
     }
 
     /**
@@ -92,34 +109,128 @@ public class DailyMetricsService {
         }
     }
 
+    /**
+     * Recomputes strain, EF, ACWR and readiness for every day in [{@code from}, {@code to}].
+     * Used after bulk imports instead of recomputing once per imported activity: strain
+     * for all days first, then the load models in one sweep over the range, then readiness and EF;
+     * one read and one batched write of {@code daily_metrics} and a fixed number of activity
+     * queries in total, whatever the length of the range.
+     */
+    public void recomputeRange(User user, LocalDate from, LocalDate to) {
+        DailyMetricsAccumulator acc = open(user, from, to);
+        Map<LocalDate, DailyActivitySumsDto> sums = loadDailySums(user, from.minusDays(1), to);
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            applyStrain(acc, date, sums);
+        }
+        loadModelService.applyLoadModels(acc, from, to);
+        readinessService.applyRange(acc, from, to, sums);
+        EfWindows ef = loadEfWindows(user, from, to);
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            ef.apply(acc.row(date), date);
+        }
+        flush(acc, EnumSet.allOf(Columns.class));
+    }
+
+    /**
+     * Recomputes ACWR and CTL/ATL/TSB (one sweep over the range) and then readiness for every day in
+     * [{@code from}, {@code to}] from the stored daily strain. Used after daily strain was
+     * rewritten in bulk (see {@link MetricsRecomputeService}); EF does not depend on it.
+     */
+    public void refreshLoadModels(User user, LocalDate from, LocalDate to) {
+        DailyMetricsAccumulator acc = open(user, from, to);
+        loadModelService.applyLoadModels(acc, from, to);
+        readinessService.applyRange(acc, from, to);
+        flush(acc, LOAD_MODEL_COLUMNS);
+    }
+
     /**
      * Computes and persists today's strain, EF, ACWR and Readiness metrics.
      * Called when the dashboard is loaded to ensure today's status is always current,
      * even on rest days without any training activity.
      */
     public void computeToday(User user) {
-        LocalDate today = LocalDate.now();
-        updateDailyStrain(user, today);
-        updateDailyEf(user, today);
+        updateDays(user, List.of(LocalDate.now()));
+    }
+
+    /** Opens an accumulator for [{@code from}, {@code to}] plus the 27 days ACWR looks back. */
+    private DailyMetricsAccumulator open(User user, LocalDate from, LocalDate to) {
+        return DailyMetricsAccumulator.load(dailyMetricsRepository, user,
+                from.minusDays(AcwrEngine.CHRONIC_DAYS - 1), to);
+    }
+
+    private void flush(DailyMetricsAccumulator acc, Set<Columns> columns) {
+        dailyMetricsBatchWriter.writeRows(acc.user().getId(), acc.touchedRows(), columns);
+        userDataVersions.bump(acc.user().getId());
+    }
+
+    /** Reads the activity sums of every day in [{@code from}, {@code to}] with one grouped query. */
+    private Map<LocalDate, DailyActivitySumsDto> loadDailySums(User user, LocalDate from, LocalDate to) {
+        return activityMetricsRepository.findDailySumsByUserIdAndDateRange(user.getId(), from, to).stream()
+                .collect(Collectors.toMap(DailyActivitySumsDto::date, Function.identity()));
+    }
+
+    /** Sets the strain21 and TRIMP sums of {@code date} from the sums of its activities. */
+    private void applyStrain(DailyMetricsAccumulator acc, LocalDate date, Map<LocalDate, DailyActivitySumsDto> sums) {
+        DailyActivitySumsDto day = sums.get(date);
+        Double totalStrain = day != null ? day.strain21() : null;
+
+        DailyMetrics daily = acc.row(date);
+        daily.setDailyStrain21(totalStrain != null ? totalStrain : 0.0);
+        daily.setDailyTrimp(day != null ? day.trimp() : null);
+    }
+
+    /** Reads the EF samples behind the 28-day windows of every day in [{@code from}, {@code to}] once. */
+    private EfWindows loadEfWindows(User user, LocalDate from, LocalDate to) {
+        LocalDate first = from.minusDays(EfWindows.LONG_DAYS - 1);
+        return new EfWindows(activityMetricsRepository.findEfByUserIdAndDateRange(user.getId(), first, to), first, to);
     }
 
     /**
-     * Averages the efficiencyFactor of all records in {@code candidates} whose activity date
-     * falls within [{@code windowStart}, {@code windowEnd}] (inclusive).
-     * Returns {@code null} when no eligible records fall in the window.
+     * Rolling EF averages over one read of samples. EF totals and sample counts are prefix-summed
+     * per day, so the average of any window ending in the loaded range takes two lookups.
      */
-    private Double averageEfInWindow(List<ActivityMetrics> candidates,
-                                     LocalDate windowStart,
-                                     LocalDate windowEnd) {
-        double sum = 0.0;
-        int count = 0;
-        for (ActivityMetrics am : candidates) {
-            LocalDate activityDate = am.getCompletedTraining().getTrainingDate();
-            if (!activityDate.isBefore(windowStart) && !activityDate.isAfter(windowEnd)) {
-                sum += am.getEfficiencyFactor();
-                count++;
+    private static final class EfWindows {
+
+        static final int SHORT_DAYS = 7;
+        static final int LONG_DAYS = 28;
+
+        private final LocalDate first;
+        /** {@code sum[i]} and {@code count[i]} cover the days {@code first} to {@code first + i - 1}. */
+        private final double[] sum;
+        private final int[] count;
+
+        EfWindows(List<EfSampleDto> samples, LocalDate first, LocalDate last) {
+            this.first = first;
+            int days = (int) ChronoUnit.DAYS.between(first, last) + 1;
+            sum = new double[days + 1];
+            count = new int[days + 1];
+            for (EfSampleDto sample : samples) {
+                int index = (int) ChronoUnit.DAYS.between(first, sample.date());
+                if (sample.efficiencyFactor() == null || index < 0 || index >= days) continue;
+                sum[index + 1] += sample.efficiencyFactor();
+                count[index + 1]++;
             }
+            for (int i = 1; i <= days; i++) {
+                sum[i] += sum[i - 1];
+                count[i] += count[i - 1];
+            }
+        }
+
+        /** Sets ef7 and ef28 of {@code daily} from the samples in the 7 and 28 days ending on {@code date}. */
+        void apply(DailyMetrics daily, LocalDate date) {
+            daily.setEf7(average(date, SHORT_DAYS));
+            daily.setEf28(average(date, LONG_DAYS));
+        }
+
+        /**
+         * Averages the samples in the {@code windowDays} days ending on {@code date} (inclusive).
+         * Returns {@code null} when no samples fall in the window.
+         */
+        private Double average(LocalDate date, int windowDays) {
+            int end = (int) ChronoUnit.DAYS.between(first, date) + 1;
+            int start = Math.max(0, end - windowDays);
+            int samples = count[end] - count[start];
+            return samples > 0 ? (sum[end] - sum[start]) / samples : null;
         }
-        return count > 0 ? sum / count : null;
     }
 }
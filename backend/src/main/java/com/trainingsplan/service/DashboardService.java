@@ -3,6 +3,8 @@ package com.trainingsplan.service;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.trainingsplan.dto.DashboardDto;
+import com.trainingsplan.dto.EfSampleDto;
+import com.trainingsplan.dto.RegistrationProgressDto;
 import com.trainingsplan.entity.AcwrFlag;
 import com.trainingsplan.entity.ActivityMetrics;
 import com.trainingsplan.entity.Competition;
@@ -11,32 +13,45 @@ import com.trainingsplan.entity.CompletedTraining;
 import com.trainingsplan.entity.DailyMetrics;
 import com.trainingsplan.entity.Recommendation;
 import com.trainingsplan.entity.User;
-import com.trainingsplan.entity.UserTrainingEntry;
 import com.trainingsplan.repository.ActivityMetricsRepository;
 import com.trainingsplan.repository.CompetitionRegistrationRepository;
 import com.trainingsplan.repository.CompletedTrainingRepository;
 import com.trainingsplan.repository.DailyMetricsRepository;
 import com.trainingsplan.repository.UserTrainingEntryRepository;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+/**
+ * Builds the dashboard read model and caches it per user.
+ *
+ * <p>A cached {@link DashboardDto} is served as long as it was built today and from the
+ * user's current {@link UserDataVersions} version. Only on a miss (first hit of the day
+ * or after a change) is today's daily metrics row recomputed and the model rebuilt; the
+ * polling dashboard otherwise costs a map lookup and a primary-key read of the version.
+ * The cache keeps the {@code dashboard.cache.max-entries} most recently requested users.
+ */
 @Service
 public class DashboardService {
 
     private static final int DAYS = 28;
     private static final TypeReference<List<String>> STRING_LIST = new TypeReference<>() {};
 
+    private record CachedDashboard(LocalDate date, long version, DashboardDto dashboard) {}
+
     private final DailyMetricsRepository dailyMetricsRepository;
     private final ActivityMetricsRepository activityMetricsRepository;
     private final CompletedTrainingRepository completedTrainingRepository;
@@ -44,6 +59,10 @@ public class DashboardService {
     private final ObjectMapper objectMapper;
     private final CompetitionRegistrationRepository competitionRegistrationRepository;
     private final UserTrainingEntryRepository userTrainingEntryRepository;
+    private final UserDataVersions userDataVersions;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final Map<Long, CachedDashboard> cache;
 
     public DashboardService(
             DailyMetricsRepository dailyMetricsRepository,
@@ -52,7 +71,10 @@ public class DashboardService {
             DailyMetricsService dailyMetricsService,
             ObjectMapper objectMapper,
             CompetitionRegistrationRepository competitionRegistrationRepository,
-            UserTrainingEntryRepository userTrainingEntryRepository
+            UserTrainingEntryRepository userTrainingEntryRepository,
+            UserDataVersions userDataVersions,
+            PlatformTransactionManager transactionManager,
+            @Value("${dashboard.cache.max-entries:10000}") int maxCacheEntries
     ) {
         this.dailyMetricsRepository = dailyMetricsRepository;
         this.activityMetricsRepository = activityMetricsRepository;
@@ -61,14 +83,35 @@ public class DashboardService {
         this.objectMapper = objectMapper;
         this.competitionRegistrationRepository = competitionRegistrationRepository;
         this.userTrainingEntryRepository = userTrainingEntryRepository;
+        this.userDataVersions = userDataVersions;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedDashboard> eldest) {
+                return size() > maxCacheEntries;
+            }
+        });
     }
 
-    @Transactional(readOnly = true)
     public DashboardDto getDashboard(User user) {
+        Long userId = user.getId();
         LocalDate today = LocalDate.now();
-        LocalDate startDate = today.minusDays(DAYS - 1L);
+        CachedDashboard cached = cache.get(userId);
+        if (cached != null && cached.date().equals(today) && cached.version() == userDataVersions.current(userId)) {
+            return cached.dashboard();
+        }
 
         dailyMetricsService.computeToday(user);
+        // Read after computeToday, whose own write bumps the version
+        long version = userDataVersions.current(userId);
+        DashboardDto dashboard = readOnlyTransaction.execute(status -> build(user, today));
+        cache.put(userId, new CachedDashboard(today, version, dashboard));
+        return dashboard;
+    }
+
+    private DashboardDto build(User user, LocalDate today) {
+        LocalDate startDate = today.minusDays(DAYS - 1L);
 
         List<DailyMetrics> dailyMetrics = dailyMetricsRepository
                 .findByUserIdAndDateBetween(user.getId(), startDate, today);
@@ -101,15 +144,11 @@ public class DashboardService {
             loadTrend.add(new DashboardDto.LoadTrendPointDto(date, strain));
         }
 
-        List<ActivityMetrics> efMetrics = activityMetricsRepository
-                .findWithEfByUserIdAndDateRange(user.getId(), startDate, today);
+        List<EfSampleDto> efSamples = activityMetricsRepository
+                .findEfByUserIdAndDateRange(user.getId(), startDate, today);
         Map<LocalDate, List<Double>> efByDate = new HashMap<>();
-        for (ActivityMetrics metrics : efMetrics) {
-            if (metrics.getEfficiencyFactor() == null || metrics.getCompletedTraining() == null) {
-                continue;
-            }
-            LocalDate date = metrics.getCompletedTraining().getTrainingDate();
-            efByDate.computeIfAbsent(date, d -> new ArrayList<>()).add(metrics.getEfficiencyFactor());
+        for (EfSampleDto sample : efSamples) {
+            efByDate.computeIfAbsent(sample.date(), d -> new ArrayList<>()).add(sample.efficiencyFactor());
         }
 
         List<DashboardDto.EfTrendPointDto> efTrend = new ArrayList<>();
@@ -168,21 +207,24 @@ public class DashboardService {
                 acwrFlag != null ? acwrFlag.name() : "BLUE"
         );
 
-        // Next competition countdown
-        List<CompetitionRegistration> registrations = competitionRegistrationRepository.findByUserId(user.getId());
+        // Next competition countdown and training progress: upcoming registrations with their
+        // competition, plus entry counts per registration from one grouped query
+        List<CompetitionRegistration> registrations =
+                competitionRegistrationRepository.findUpcomingByUserId(user.getId(), today);
+        Map<Long, RegistrationProgressDto> progressByRegistration = userTrainingEntryRepository
+                .findProgressByUserId(user.getId(), today).stream()
+                .collect(Collectors.toMap(RegistrationProgressDto::registrationId, p -> p));
 
         Optional<CompetitionRegistration> nextReg = registrations.stream()
-                .filter(r -> !r.getCompetition().getDate().isBefore(today))
                 .min(Comparator.comparing(r -> r.getCompetition().getDate()));
 
         DashboardDto.NextCompetitionDto nextCompetition = nextReg.map(r -> {
             Competition c = r.getCompetition();
             long daysUntil = ChronoUnit.DAYS.between(today, c.getDate());
-            List<UserTrainingEntry> nextEntries = userTrainingEntryRepository.findByCompetitionRegistrationId(r.getId());
-            LocalDate planStart = nextEntries.stream()
-                    .map(UserTrainingEntry::getTrainingDate)
-                    .min(Comparator.naturalOrder())
-                    .orElse(r.getRegisteredAt().toLocalDate());
+            RegistrationProgressDto progress = progressByRegistration.get(r.getId());
+            LocalDate planStart = progress != null && progress.firstTrainingDate() != null
+                    ? progress.firstTrainingDate()
+                    : r.getRegisteredAt().toLocalDate();
             long totalDays = ChronoUnit.DAYS.between(planStart, c.getDate());
             long elapsedDays = ChronoUnit.DAYS.between(planStart, today);
             double elapsedPct = totalDays > 0
@@ -194,11 +236,11 @@ public class DashboardService {
 
         // Training progress per competition
         List<DashboardDto.TrainingProgressDto> trainingProgress = registrations.stream()
-                .filter(r -> !r.getCompetition().getDate().isBefore(today))
+                .filter(r -> progressByRegistration.containsKey(r.getId()))
                 .map(r -> {
-                    List<UserTrainingEntry> entries = userTrainingEntryRepository.findByCompetitionRegistrationId(r.getId());
-                    int total = entries.size();
-                    int done = (int) entries.stream().filter(e -> Boolean.TRUE.equals(e.getCompleted())).count();
+                    RegistrationProgressDto progress = progressByRegistration.get(r.getId());
+                    int total = progress.total().intValue();
+                    int done = progress.done() != null ? progress.done().intValue() : 0;
                     Competition c = r.getCompetition();
                     return new DashboardDto.TrainingProgressDto(c.getId(), c.getName(), c.getDate(), total, done);
                 })
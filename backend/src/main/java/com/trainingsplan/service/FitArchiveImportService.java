@@ -0,0 +1,308 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.dto.IngestJobStatus;
+import com.trainingsplan.entity.ActivityMetrics;
+import com.trainingsplan.entity.CompletedTraining;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.port.ActivityStreamStoragePort;
+import com.trainingsplan.repository.ActivityBatchWriter;
+import com.trainingsplan.repository.CompletedTrainingRepository;
+import com.trainingsplan.service.stream.ActivityStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Imports a Garmin Connect export (a ZIP with thousands of FIT files, usually nested in
+ * {@code UploadedFiles_*.zip} parts) in three overlapping phases:
+ * <ol>
+ *   <li><b>Decode</b> – entries are streamed straight out of the archive and decoded in
+ *       parallel on a fork-join pool; activity metrics are computed in memory
+ *       ({@link ActivityMetricsService#computeMetrics}).</li>
+ *   <li><b>Save</b> – while decoding goes on, decoded activities and metrics are inserted
+ *       in JDBC batches of {@code ingest.archive.batch-size} rows via
+ *       {@link ActivityBatchWriter} and their raw streams are stored for later recomputes.
+ *       An entry is only submitted while fewer than two per worker plus one batch are
+ *       being decoded or waiting to be saved, so memory does not grow with the archive;
+ *       only the training dates are kept for the last phase.</li>
+ *   <li><b>Daily metrics</b> – strain, EF, ACWR and readiness are recomputed once for the
+ *       whole imported date range instead of once per file.</li>
+ * </ol>
+ *
+ * <p>Files whose start time already exists for the user (a re-imported archive, or the
+ * same activity twice in one archive) are skipped. Corrupt files are counted as failed
+ * and do not abort the import.
+ *
+ * <p>Configure via {@code ingest.archive.parallelism} (0 = one thread per CPU) and
+ * {@code ingest.archive.batch-size} in application.properties.
+ */
+@Service
+public class FitArchiveImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(FitArchiveImportService.class);
+
+    /** Receives progress callbacks; called from decode worker threads. */
+    public interface Progress {
+        void stage(IngestJobStatus status);
+
+        /** Called with the number of FIT files found, possibly several times for nested archives. */
+        void filesDiscovered(int count);
+
+        void fileProcessed(boolean success);
+    }
+
+    /**
+     * @param imported   activities persisted
+     * @param skipped    activities already present for the user
+     * @param failed     files that could not be decoded
+     * @param decodeMillis wall time of the parallel decode phase, including the batches saved meanwhile
+     * @param totalMillis  wall time of the whole import
+     */
+    public record Result(int imported, int skipped, int failed, long decodeMillis, long totalMillis) {
+
+        /** Decode throughput over all files read from the archive. */
+        public double filesPerSecond() {
+            int files = imported + skipped + failed;
+            return decodeMillis > 0 ? files * 1000.0 / decodeMillis : 0.0;
+        }
+    }
+
+    /** How long the submitting thread waits for a permit before saving decoded batches again. */
+    private static final long PERMIT_POLL_MILLIS = 50;
+
+    private record DecodedActivity(CompletedTraining training, ActivityMetrics metrics, ActivityStream stream) {}
+
+    private final CompletedTrainingService completedTrainingService;
+    private final ActivityMetricsService activityMetricsService;
+    private final ActivityBatchWriter activityBatchWriter;
+    private final ActivityStreamStoragePort activityStreamStorage;
+    private final CompletedTrainingRepository completedTrainingRepository;
+    private final BodyMetricService bodyMetricService;
+    private final DailyMetricsService dailyMetricsService;
+    private final TrainingAggregateService trainingAggregateService;
+    private final int parallelism;
+    private final int batchSize;
+
+    public FitArchiveImportService(CompletedTrainingService completedTrainingService,
+                                   ActivityMetricsService activityMetricsService,
+                                   ActivityBatchWriter activityBatchWriter,
+                                   ActivityStreamStoragePort activityStreamStorage,
+                                   CompletedTrainingRepository completedTrainingRepository,
+                                   BodyMetricService bodyMetricService,
+                                   DailyMetricsService dailyMetricsService,
+                                   TrainingAggregateService trainingAggregateService,
+                                   @Value("${ingest.archive.parallelism:0}") int parallelism,
+                                   @Value("${ingest.archive.batch-size:200}") int batchSize) {
+        this.completedTrainingService = completedTrainingService;
+        this.activityMetricsService = activityMetricsService;
+        this.activityBatchWriter = activityBatchWriter;
+        this.activityStreamStorage = activityStreamStorage;
+        this.completedTrainingRepository = completedTrainingRepository;
+        this.bodyMetricService = bodyMetricService;
+        this.dailyMetricsService = dailyMetricsService;
+        this.trainingAggregateService = trainingAggregateService;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Imports every {@code .fit} entry of {@code archive} (including entries of nested
+     * {@code .zip} files) for {@code user}.
+     *
+     * @throws IOException when the archive itself cannot be read
+     */
+    public Result importArchive(Path archive, User user, Progress progress) throws IOException {
+        long start = System.nanoTime();
+
+        progress.stage(IngestJobStatus.PARSING);
+        ImportRun run = new ImportRun(user, progress);
+        run.seenStartTimes.addAll(completedTrainingRepository.findStartTimesByUserId(user.getId()));
+        decodeArchive(archive, run);
+        long decodeMillis = (System.nanoTime() - start) / 1_000_000;
+
+        progress.stage(IngestJobStatus.SAVING);
+        saveDecoded(run, true);
+        trainingAggregateService.activitiesChanged(user.getId(), run.importedDates);
+
+        progress.stage(IngestJobStatus.COMPUTING_METRICS);
+        if (!run.importedDates.isEmpty()) {
+            LocalDate firstDate = run.importedDates.stream().min(Comparator.naturalOrder()).orElseThrow();
+            LocalDate today = LocalDate.now();
+            dailyMetricsService.recomputeRange(user, firstDate.isAfter(today) ? today : firstDate, today);
+        }
+
+        Result result = new Result(run.importedDates.size(), run.skipped.get(), run.failed.get(),
+                decodeMillis, (System.nanoTime() - start) / 1_000_000);
+        log.info("Archive import for user {}: {} imported, {} skipped, {} failed, {} files/s decode, {} ms total",
+                user.getId(), result.imported(), result.skipped(), result.failed(),
+                String.format(Locale.ROOT, "%.1f", result.filesPerSecond()), result.totalMillis());
+        return result;
+    }
+
+    /** State of one import, shared by the decode workers and the thread saving their output. */
+    private final class ImportRun {
+        final User user;
+        final Progress progress;
+        final Set<LocalDateTime> seenStartTimes = ConcurrentHashMap.newKeySet();
+        final BlockingQueue<DecodedActivity> decoded = new LinkedBlockingQueue<>();
+        /**
+         * Entries being decoded or decoded and waiting to be saved. A permit is taken before
+         * an entry is submitted and returned once it is saved, skipped or failed, so at most
+         * this many activities with their streams are held in memory at a time.
+         */
+        final Semaphore outstanding = new Semaphore(parallelism * 2 + batchSize);
+        final AtomicInteger skipped = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        /** Training dates of the saved activities; only touched by the saving thread. */
+        final List<LocalDate> importedDates = new ArrayList<>();
+
+        ImportRun(User user, Progress progress) {
+            this.user = user;
+            this.progress = progress;
+        }
+    }
+
+    // ── Decode phase ─────────────────────────────────────────────────────────
+
+    private void decodeArchive(Path archive, ImportRun run) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<Future<?>> tasks = new ArrayList<>();
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            List<? extends ZipEntry> entries = zip.stream().filter(e -> !e.isDirectory()).toList();
+            run.progress.filesDiscovered((int) entries.stream().filter(e -> isFit(e.getName())).count());
+
+            for (ZipEntry entry : entries) {
+                if (isFit(entry.getName())) {
+                    // ZipFile supports concurrent entry streams, so workers read directly from the archive
+                    tasks.add(submit(pool, run, () -> zip.getInputStream(entry), entry.getName()));
+                } else if (isZip(entry.getName())) {
+                    try (ZipInputStream nested = new ZipInputStream(zip.getInputStream(entry))) {
+                        ZipEntry inner;
+                        while ((inner = nested.getNextEntry()) != null) {
+                            if (inner.isDirectory() || !isFit(inner.getName())) continue;
+                            run.progress.filesDiscovered(1);
+                            byte[] bytes = nested.readAllBytes();
+                            tasks.add(submit(pool, run, () -> new ByteArrayInputStream(bytes), inner.getName()));
+                        }
+                    }
+                }
+            }
+
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Archiv-Import unterbrochen", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Fehler beim Archiv-Import: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface EntrySource {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Submits one entry for decoding once a permit is free; while waiting, full batches of
+     * decoded activities are saved, which returns their permits.
+     */
+    private Future<?> submit(ForkJoinPool pool, ImportRun run, EntrySource source, String entryName)
+            throws InterruptedException {
+        while (!run.outstanding.tryAcquire(PERMIT_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            saveDecoded(run, false);
+        }
+        saveDecoded(run, false);
+        return pool.submit(() -> {
+            boolean queued = false;
+            try (InputStream in = source.open()) {
+                CompletedTrainingService.ParsedFitFile parsed =
+                        completedTrainingService.parseFitFile(in, fileName(entryName));
+                CompletedTraining training = parsed.training();
+                if (!run.seenStartTimes.add(training.getStartTime())) {
+                    run.skipped.incrementAndGet();
+                } else {
+                    training.setUser(run.user);
+                    run.decoded.add(new DecodedActivity(training,
+                            activityMetricsService.computeMetrics(training, parsed.stream(), run.user),
+                            parsed.stream()));
+                    queued = true;
+                }
+                run.progress.fileProcessed(true);
+            } catch (Exception e) {
+                log.debug("Skipping archive entry {}: {}", entryName, e.getMessage());
+                run.failed.incrementAndGet();
+                run.progress.fileProcessed(false);
+            } finally {
+                if (!queued) {
+                    run.outstanding.release();
+                }
+            }
+        });
+    }
+
+    // ── Save phase ───────────────────────────────────────────────────────────
+
+    /**
+     * Saves decoded activities in batches of {@code ingest.archive.batch-size}, oldest first
+     * within a batch: activities and metrics via {@link ActivityBatchWriter}, then the raw
+     * streams and body metrics. Only full batches are saved unless {@code all} is set.
+     */
+    private void saveDecoded(ImportRun run, boolean all) {
+        while (run.decoded.size() >= batchSize || (all && !run.decoded.isEmpty())) {
+            List<DecodedActivity> chunk = new ArrayList<>(batchSize);
+            run.decoded.drainTo(chunk, batchSize);
+            chunk.sort(Comparator.comparing(a -> a.training().getStartTime()));
+            activityBatchWriter.insertAll(
+                    chunk.stream().map(DecodedActivity::training).toList(),
+                    chunk.stream().map(DecodedActivity::metrics).toList());
+            for (DecodedActivity a : chunk) {
+                activityStreamStorage.store(a.training().getId(), a.stream());
+                bodyMetricService.calculateAndStore(a.training(), run.user);
+                run.importedDates.add(a.training().getTrainingDate());
+            }
+            run.outstanding.release(chunk.size());
+        }
+    }
+
+    private static boolean isFit(String name) {
+        return name.toLowerCase(Locale.ROOT).endsWith(".fit");
+    }
+
+    private static boolean isZip(String name) {
+        return name.toLowerCase(Locale.ROOT).endsWith(".zip");
+    }
+
+    private static String fileName(String entryName) {
+        return entryName.substring(entryName.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,46 @@
+package com.trainingsplan.service;
+
+/**
+ * Banister fitness/fatigue model (performance management chart) over daily TRIMP.
+ *
+ * <p>Both loads are exponentially weighted moving averages of the daily TRIMP sum:
+ * <pre>
+ *   ctl(d) = ctl(d-1) + (trimp(d) − ctl(d-1)) · (1 − e^(−1/42))   fitness
+ *   atl(d) = atl(d-1) + (trimp(d) − atl(d-1)) · (1 − e^(−1/7))    fatigue
+ *   tsb(d) = ctl(d) − atl(d)                                       form
+ * </pre>
+ * Each day costs O(1) from the previous day's {@link State}; a run of {@code n} rest days
+ * is a single multiplication by {@code e^(−n/τ)}. Days without TRIMP count as 0.
+ */
+public final class FitnessFatigueEngine {
+
+    public static final int CTL_DAYS = 42;
+    public static final int ATL_DAYS = 7;
+
+    private static final double CTL_DECAY = Math.exp(-1.0 / CTL_DAYS);
+    private static final double ATL_DECAY = Math.exp(-1.0 / ATL_DAYS);
+
+    /** Model state at the end of one day. */
+    public record State(double ctl, double atl) {
+        public static final State ZERO = new State(0.0, 0.0);
+
+        public double tsb() { return ctl - atl; }
+    }
+
+    private FitnessFatigueEngine() {}
+
+    /** State after a day with {@code trimp} load, given the state of the day before. */
+    public static State next(State yesterday, double trimp) {
+        return new State(
+                trimp + (yesterday.ctl() - trimp) * CTL_DECAY,
+                trimp + (yesterday.atl() - trimp) * ATL_DECAY);
+    }
+
+    /** State after {@code days} consecutive days without load. */
+    public static State decay(State state, long days) {
+        if (days <= 0) return state;
+        return new State(
+                state.ctl() * Math.exp(-(double) days / CTL_DAYS),
+                state.atl() * Math.exp(-(double) days / ATL_DAYS));
+    }
+}
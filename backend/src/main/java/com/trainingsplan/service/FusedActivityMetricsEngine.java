@@ -0,0 +1,283 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.service.decoupling.DecouplingResult;
+import com.trainingsplan.service.hrzone.HeartRateZoneConfig;
+import com.trainingsplan.service.hrzone.HrZone;
+import com.trainingsplan.service.hrzone.ZoneTimeResult;
+import com.trainingsplan.service.stream.ActivityStream;
+import com.trainingsplan.service.stream.HrHistogram;
+import com.trainingsplan.service.trimp.TRIMPQuality;
+import com.trainingsplan.service.trimp.TRIMPResult;
+import org.springframework.stereotype.Service;
+
+/**
+ * Computes HR zone times, HR coverage, Bannister TRIMP and aerobic decoupling in a
+ * single pass over an {@link ActivityStream}.
+ *
+ * <p>Produces exactly the same values as {@link ZoneTimeCalculator},
+ * {@link TRIMPCalculator} and {@link AerobicDecouplingCalculator} (same gates,
+ * same summation order per accumulator), but walks the samples once instead of
+ * six times:
+ * <ul>
+ *   <li>Zone and TRIMP weights are looked up from per-bpm tables built once per call
+ *       (HR above hrMax maps to the hrMax entry, exactly as the calculators clamp).</li>
+ *   <li>The decoupling split index is discovered on the fly; both the distance-based and
+ *       the time-based candidate keep their own pair of half accumulators, and the
+ *       calculator's preference order picks one at the end.</li>
+ * </ul>
+ *
+ * <p>The same pass also fills an {@link HrHistogram}, from which
+ * {@link #computeFromHistogram} later rebuilds zones and TRIMP for changed profile
+ * values without the original samples.
+ */
+@Service
+public class FusedActivityMetricsEngine {
+
+    private static final int    MIN_DURATION_SECONDS = 20 * 60;
+    private static final double MIN_HR_COVERAGE      = 0.70;
+    private static final double MIN_SPEED_COVERAGE   = 0.70;
+    private static final double LOW_TRIMP_QUALITY    = 0.6;
+
+    /**
+     * @param zones      zone times, or {@code null} when no zone config was supplied
+     * @param trimp      TRIMP result, or {@code null} when hrRest is missing or input is insufficient
+     * @param decoupling decoupling result, or {@code null} when the stream has no velocity channel
+     * @param histogram  seconds per bpm of the activity (never {@code null})
+     */
+    public record Result(ZoneTimeResult zones, TRIMPResult trimp, DecouplingResult decoupling,
+                         HrHistogram histogram) {}
+
+    /**
+     * @param stream     samples of one activity
+     * @param zoneConfig zone boundaries from the user's hrMax; {@code null} skips zones and TRIMP
+     * @param hrRest     resting HR in bpm; {@code null} or &le; 0 skips TRIMP
+     * @param k          Bannister sex coefficient (see {@link TRIMPCalculator#kForGender})
+     */
+    public Result compute(ActivityStream stream, HeartRateZoneConfig zoneConfig, Integer hrRest, double k) {
+        boolean wantZones      = zoneConfig != null;
+        boolean wantTrimp      = wantTrimp(zoneConfig, hrRest);
+        boolean wantDecoupling = stream != null && stream.hasVelocityChannel();
+
+        if (stream == null || stream.size() < 2) {
+            return new Result(
+                    wantZones ? ZoneTimeResult.unknown() : null,
+                    null,
+                    wantDecoupling ? DecouplingResult.ineligible("INSUFFICIENT_DATA") : null,
+                    new HrHistogram());
+        }
+
+        int n     = stream.size();
+        int hrMax = wantZones ? zoneConfig.getHrMax() : 0;
+
+        // ── Per-bpm lookup tables ────────────────────────────────────────────
+        byte[] zoneByBpm = wantZones ? zoneTable(zoneConfig) : null;
+        double[] deltaByBpm = wantTrimp ? deltaTable(hrMax, hrRest) : null;
+        double[] expByBpm   = wantTrimp ? expTable(deltaByBpm, k) : null;
+
+        // ── Decoupling split targets (O(1) amortised: scans back to last distance) ─
+        double halfDistance = -1;
+        if (wantDecoupling && stream.hasDistanceChannel()) {
+            for (int i = n - 1; i >= 0; i--) {
+                if (stream.hasDistance(i) && stream.distance(i) > 0) {
+                    halfDistance = stream.distance(i) / 2.0;
+                    break;
+                }
+            }
+        }
+        int startTime = stream.time(0);
+        int midTime   = startTime + (stream.time(n - 1) - startTime) / 2;
+
+        // ── Single pass ──────────────────────────────────────────────────────
+        double[] zoneSec = new double[HrZone.values().length];
+        double validHrSec = 0, validSpeedSec = 0, trimp = 0;
+        HrHistogram histogram = new HrHistogram(stream.time(n - 1) - startTime);
+
+        boolean distSplitFound = false, timeSplitFound = false;
+        // [0] = first half, [1] = second half
+        double[] distHr = new double[2], distSpeed = new double[2], distDt = new double[2];
+        double[] timeHr = new double[2], timeSpeed = new double[2], timeDt = new double[2];
+
+        for (int i = 0; i < n - 1; i++) {
+            if (wantDecoupling && i >= 1) {
+                if (!distSplitFound && halfDistance > 0
+                        && stream.hasDistance(i) && stream.distance(i) >= halfDistance) {
+                    distSplitFound = true;
+                }
+                if (!timeSplitFound && stream.time(i) >= midTime) {
+                    timeSplitFound = true;
+                }
+            }
+
+            int dt = stream.time(i + 1) - stream.time(i);
+            if (dt <= 0) continue;
+
+            boolean hasHr = stream.hasHeartRate(i);
+            int hr = hasHr ? stream.heartRate(i) : 0;
+
+            if (hasHr) {
+                validHrSec += dt;
+                histogram.add(hr, dt);
+                if (wantZones) {
+                    int zone = zoneByBpm[Math.min(hr, hrMax)];
+                    if (zone >= 0) zoneSec[zone] += dt;
+                }
+                if (wantTrimp) {
+                    int idx = Math.min(hr, hrMax);
+                    trimp += dt / 60.0 * deltaByBpm[idx] * expByBpm[idx];
+                }
+            }
+
+            if (wantDecoupling && stream.hasVelocity(i)) {
+                double v = stream.velocity(i);
+                if (v > 0) {
+                    validSpeedSec += dt;
+                    if (hasHr) {
+                        int d = distSplitFound ? 1 : 0;
+                        distHr[d] += (double) hr * dt; distSpeed[d] += v * dt; distDt[d] += dt;
+                        int t = timeSplitFound ? 1 : 0;
+                        timeHr[t] += (double) hr * dt; timeSpeed[t] += v * dt; timeDt[t] += dt;
+                    }
+                }
+            }
+        }
+        if (wantDecoupling) {
+            // The split may fall on the last sample (empty second half)
+            if (!distSplitFound && halfDistance > 0
+                    && stream.hasDistance(n - 1) && stream.distance(n - 1) >= halfDistance) {
+                distSplitFound = true;
+            }
+            if (!timeSplitFound && stream.time(n - 1) >= midTime) {
+                timeSplitFound = true;
+            }
+        }
+
+        // ── Assemble results ─────────────────────────────────────────────────
+        double totalDurationSec = Math.max(0, stream.time(n - 1) - startTime);
+        double coverage = totalDurationSec > 0 ? Math.min(validHrSec / totalDurationSec, 1.0) : 0.0;
+
+        ZoneTimeResult zones = wantZones
+                ? new ZoneTimeResult(zoneSec[0] / 60.0, zoneSec[1] / 60.0, zoneSec[2] / 60.0,
+                                     zoneSec[3] / 60.0, zoneSec[4] / 60.0, coverage)
+                : null;
+
+        TRIMPResult trimpResult = wantTrimp
+                ? new TRIMPResult(trimp, coverage < LOW_TRIMP_QUALITY ? TRIMPQuality.LOW : TRIMPQuality.OK, coverage)
+                : null;
+
+        DecouplingResult decoupling = null;
+        if (wantDecoupling) {
+            int totalDuration = stream.time(n - 1) - startTime;
+            if (totalDuration < MIN_DURATION_SECONDS) {
+                decoupling = DecouplingResult.ineligible("TOO_SHORT");
+            } else if (Math.min(1.0, validHrSec / totalDuration) < MIN_HR_COVERAGE) {
+                decoupling = DecouplingResult.ineligible("HR_COVERAGE_TOO_LOW");
+            } else if (Math.min(1.0, validSpeedSec / totalDuration) < MIN_SPEED_COVERAGE) {
+                decoupling = DecouplingResult.ineligible("SPEED_DATA_MISSING");
+            } else {
+                // Time split is always found past the TOO_SHORT gate, since time[n-1] >= midTime
+                boolean useDist = distSplitFound;
+                double e1 = efficiency(useDist ? distHr[0] : timeHr[0],
+                                       useDist ? distSpeed[0] : timeSpeed[0],
+                                       useDist ? distDt[0] : timeDt[0]);
+                double e2 = efficiency(useDist ? distHr[1] : timeHr[1],
+                                       useDist ? distSpeed[1] : timeSpeed[1],
+                                       useDist ? distDt[1] : timeDt[1]);
+                decoupling = (Double.isNaN(e1) || Double.isNaN(e2) || e1 == 0)
+                        ? DecouplingResult.ineligible("CALCULATION_ERROR")
+                        : DecouplingResult.of((e2 - e1) / e1 * 100.0);
+            }
+        }
+
+        return new Result(zones, trimpResult, decoupling, histogram);
+    }
+
+    /**
+     * Recomputes zone times and TRIMP from a stored histogram. Zone times and coverage
+     * equal those of {@link #compute} on the original stream exactly; TRIMP agrees up to
+     * floating-point summation order (about 1e-12 relative).
+     *
+     * @return a result without decoupling (it needs the velocity samples)
+     */
+    public Result computeFromHistogram(HrHistogram histogram, HeartRateZoneConfig zoneConfig,
+                                       Integer hrRest, double k) {
+        boolean wantZones = zoneConfig != null;
+        boolean wantTrimp = wantTrimp(zoneConfig, hrRest);
+
+        if (!histogram.isSufficient()) {
+            return new Result(wantZones ? ZoneTimeResult.unknown() : null, null, null, histogram);
+        }
+
+        int hrMax = wantZones ? zoneConfig.getHrMax() : 0;
+        byte[] zoneByBpm = wantZones ? zoneTable(zoneConfig) : null;
+        double[] deltaByBpm = wantTrimp ? deltaTable(hrMax, hrRest) : null;
+        double[] expByBpm   = wantTrimp ? expTable(deltaByBpm, k) : null;
+
+        double[] zoneSec = new double[HrZone.values().length];
+        double validHrSec = 0, trimp = 0;
+        for (int bpm = 0; bpm <= HrHistogram.MAX_BPM; bpm++) {
+            int sec = histogram.seconds(bpm);
+            if (sec == 0) continue;
+            validHrSec += sec;
+            if (wantZones) {
+                int zone = zoneByBpm[Math.min(bpm, hrMax)];
+                if (zone >= 0) zoneSec[zone] += sec;
+            }
+            if (wantTrimp) {
+                int idx = Math.min(bpm, hrMax);
+                trimp += sec / 60.0 * deltaByBpm[idx] * expByBpm[idx];
+            }
+        }
+
+        double totalDurationSec = histogram.totalDurationSec();
+        double coverage = totalDurationSec > 0 ? Math.min(validHrSec / totalDurationSec, 1.0) : 0.0;
+
+        ZoneTimeResult zones = wantZones
+                ? new ZoneTimeResult(zoneSec[0] / 60.0, zoneSec[1] / 60.0, zoneSec[2] / 60.0,
+                                     zoneSec[3] / 60.0, zoneSec[4] / 60.0, coverage)
+                : null;
+        TRIMPResult trimpResult = wantTrimp
+                ? new TRIMPResult(trimp, coverage < LOW_TRIMP_QUALITY ? TRIMPQuality.LOW : TRIMPQuality.OK, coverage)
+                : null;
+        return new Result(zones, trimpResult, null, histogram);
+    }
+
+    private static boolean wantTrimp(HeartRateZoneConfig zoneConfig, Integer hrRest) {
+        return zoneConfig != null && hrRest != null && hrRest > 0 && zoneConfig.getHrMax() - hrRest > 0;
+    }
+
+    /** Zone ordinal per bpm in [0, hrMax], {@code -1} below zone 1. */
+    private static byte[] zoneTable(HeartRateZoneConfig zoneConfig) {
+        int hrMax = zoneConfig.getHrMax();
+        byte[] zoneByBpm = new byte[hrMax + 1];
+        for (int bpm = 1; bpm <= hrMax; bpm++) {
+            HrZone zone = zoneConfig.zoneFor(bpm);
+            zoneByBpm[bpm] = (byte) (zone == null ? -1 : zone.ordinal());
+        }
+        return zoneByBpm;
+    }
+
+    /** Bannister ΔHR ratio per bpm in [0, hrMax], clamped to [0, 1]. */
+    private static double[] deltaTable(int hrMax, int hrRest) {
+        double hrRange = hrMax - hrRest;
+        double[] deltaByBpm = new double[hrMax + 1];
+        for (int bpm = 1; bpm <= hrMax; bpm++) {
+            double deltaHR = (bpm - hrRest) / hrRange;
+            deltaByBpm[bpm] = Math.max(0.0, Math.min(1.0, deltaHR));
+        }
+        return deltaByBpm;
+    }
+
+    private static double[] expTable(double[] deltaByBpm, double k) {
+        double[] expByBpm = new double[deltaByBpm.length];
+        for (int bpm = 1; bpm < deltaByBpm.length; bpm++) {
+            expByBpm[bpm] = Math.exp(k * deltaByBpm[bpm]);
+        }
+        return expByBpm;
+    }
+
+    /** E = avgHR / avgSpeed, or NaN when the half has no valid interval. */
+    private static double efficiency(double sumHr, double sumSpeed, double totalDt) {
+        if (totalDt == 0 || sumSpeed == 0) return Double.NaN;
+        return (sumHr / totalDt) / (sumSpeed / totalDt);
+    }
+}
@@ -0,0 +1,279 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.dto.IngestJobDto;
+import com.trainingsplan.dto.IngestJobStatus;
+import com.trainingsplan.entity.CompletedTraining;
+import com.trainingsplan.entity.User;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs activity ingest (FIT parse, save, body/activity/daily metric post-processing)
+ * on a bounded worker pool instead of the request thread. Handles single FIT uploads
+ * and whole Garmin export archives (see {@link FitArchiveImportService}).
+ *
+ * <p>Uploads are spooled to a temp file before the request returns, because the
+ * multipart part is discarded once the request completes. The pool has a fixed number
+ * of workers and a bounded queue; when the queue is full {@link #submitFitUpload}
+ * throws {@link RejectedExecutionException} so the caller can answer 503 instead of
+ * piling up work after a race weekend.
+ *
+ * <p>Job state lives in memory only. Finished jobs are evicted after
+ * {@code ingest.job-retention-minutes}; a restart loses queued jobs (the client
+ * simply re-uploads).
+ *
+ * <p>Configure via {@code ingest.workers}, {@code ingest.queue-capacity},
+ * {@code ingest.job-retention-minutes} and {@code ingest.archive.max-bytes} in
+ * application.properties.
+ */
+@Service
+public class IngestJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestJobService.class);
+
+    private final CompletedTrainingService completedTrainingService;
+    private final FitArchiveImportService fitArchiveImportService;
+    private final ThreadPoolExecutor executor;
+    private final Duration retention;
+    private final long maxArchiveBytes;
+    private final Map<String, IngestJob> jobs = new ConcurrentHashMap<>();
+
+    public IngestJobService(CompletedTrainingService completedTrainingService,
+                            FitArchiveImportService fitArchiveImportService,
+                            @Value("${ingest.workers:2}") int workers,
+                            @Value("${ingest.queue-capacity:200}") int queueCapacity,
+                            @Value("${ingest.job-retention-minutes:60}") long retentionMinutes,
+                            @Value("${ingest.archive.max-bytes:2147483648}") long maxArchiveBytes) {
+        this.completedTrainingService = completedTrainingService;
+        this.fitArchiveImportService = fitArchiveImportService;
+        this.retention = Duration.ofMinutes(retentionMinutes);
+        this.maxArchiveBytes = maxArchiveBytes;
+        AtomicInteger threadNo = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "ingest-worker-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Spools the uploaded FIT file and queues it for processing on behalf of {@code user}.
+     *
+     * @return the queued job
+     * @throws RejectedExecutionException when the ingest queue is full
+     */
+    public IngestJobDto submitFitUpload(MultipartFile file, LocalDate trainingDate, Long trainingId, User user)
+            throws IOException {
+        evictFinishedJobs();
+
+        Path spool = spool(file);
+        IngestJob job = new IngestJob(UUID.randomUUID().toString(), user.getId(), file.getOriginalFilename());
+        return enqueue(job, spool, () -> runFitImport(job, spool, trainingDate, trainingId, user));
+    }
+
+    /**
+     * Spools an export archive (ZIP of FIT files) streamed as the raw request body and
+     * queues it for bulk import on behalf of {@code user}. The job reports per-file
+     * progress via its {@code files*} counters.
+     *
+     * @return the queued job
+     * @throws ArchiveTooLargeException       when the body exceeds {@code ingest.archive.max-bytes}
+     * @throws RejectedExecutionException     when the ingest queue is full
+     */
+    public IngestJobDto submitArchiveImport(InputStream body, String filename, User user) throws IOException {
+        evictFinishedJobs();
+
+        Path spool = Files.createTempFile("fit-ingest-", ".zip");
+        try (OutputStream out = Files.newOutputStream(spool)) {
+            byte[] buffer = new byte[64 * 1024];
+            long total = 0;
+            int n;
+            while ((n = body.read(buffer)) != -1) {
+                total += n;
+                if (total > maxArchiveBytes) {
+                    throw new ArchiveTooLargeException(maxArchiveBytes);
+                }
+                out.write(buffer, 0, n);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spool);
+            throw e;
+        }
+
+        IngestJob job = new IngestJob(UUID.randomUUID().toString(), user.getId(), filename);
+        return enqueue(job, spool, () -> runArchiveImport(job, spool, user));
+    }
+
+    /** Returns the job if it exists and belongs to {@code userId}. */
+    public Optional<IngestJobDto> getJob(String jobId, Long userId) {
+        IngestJob job = jobs.get(jobId);
+        if (job == null || !job.userId.equals(userId)) {
+            return Optional.empty();
+        }
+        return Optional.of(job.toDto());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    private static Path spool(MultipartFile file) throws IOException {
+        Path spool = Files.createTempFile("fit-ingest-", ".fit");
+        try {
+            file.transferTo(spool);
+        } catch (IOException e) {
+            Files.deleteIfExists(spool);
+            throw e;
+        }
+        return spool;
+    }
+
+    private IngestJobDto enqueue(IngestJob job, Path spool, Runnable work) throws IOException {
+        jobs.put(job.id, job);
+        try {
+            executor.execute(work);
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            Files.deleteIfExists(spool);
+            throw e;
+        }
+        return job.toDto();
+    }
+
+    // ── Worker ───────────────────────────────────────────────────────────────
+
+    private void runFitImport(IngestJob job, Path spool, LocalDate trainingDate, Long trainingId, User user) {
+        try (InputStream in = Files.newInputStream(spool)) {
+            CompletedTraining saved = completedTrainingService.importFitFile(
+                    in, job.originalFilename, trainingDate, trainingId, user, status -> job.status = status);
+            job.completedTrainingId = saved.getId();
+            job.finish(IngestJobStatus.DONE, null);
+        } catch (Exception e) {
+            log.warn("Ingest job {} ({}) failed: {}", job.id, job.originalFilename, e.getMessage());
+            job.finish(IngestJobStatus.FAILED, e.getMessage());
+        } finally {
+            deleteSpool(spool);
+        }
+    }
+
+    private void runArchiveImport(IngestJob job, Path spool, User user) {
+        try {
+            fitArchiveImportService.importArchive(spool, user, new FitArchiveImportService.Progress() {
+                @Override
+                public void stage(IngestJobStatus status) {
+                    job.status = status;
+                }
+
+                @Override
+                public void filesDiscovered(int count) {
+                    job.filesTotal.addAndGet(count);
+                }
+
+                @Override
+                public void fileProcessed(boolean success) {
+                    job.filesDone.incrementAndGet();
+                    if (!success) job.filesFailed.incrementAndGet();
+                }
+            });
+            job.finish(IngestJobStatus.DONE, null);
+        } catch (Exception e) {
+            log.warn("Archive import job {} ({}) failed: {}", job.id, job.originalFilename, e.getMessage());
+            job.finish(IngestJobStatus.FAILED, e.getMessage());
+        } finally {
+            deleteSpool(spool);
+        }
+    }
+
+    private static void deleteSpool(Path spool) {
+        try {
+            Files.deleteIfExists(spool);
+        } catch (IOException e) {
+            log.warn("Could not delete ingest spool file {}: {}", spool, e.getMessage());
+        }
+    }
+
+    private void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    // ── Job state ────────────────────────────────────────────────────────────
+
+    private static final class IngestJob {
+        final String id;
+        final Long userId;
+        final String originalFilename;
+        final LocalDateTime createdAt = LocalDateTime.now();
+
+        volatile IngestJobStatus status = IngestJobStatus.QUEUED;
+        volatile Long completedTrainingId;
+        volatile String error;
+        volatile LocalDateTime finishedAt;
+
+        // Archive imports only
+        final AtomicInteger filesTotal = new AtomicInteger();
+        final AtomicInteger filesDone = new AtomicInteger();
+        final AtomicInteger filesFailed = new AtomicInteger();
+
+        IngestJob(String id, Long userId, String originalFilename) {
+            this.id = id;
+            this.userId = userId;
+            this.originalFilename = originalFilename;
+        }
+
+        void finish(IngestJobStatus finalStatus, String errorMessage) {
+            this.error = errorMessage;
+            this.finishedAt = LocalDateTime.now();
+            this.status = finalStatus;
+        }
+
+        IngestJobDto toDto() {
+            IngestJobStatus s = status;
+            int total = filesTotal.get();
+            int done = filesDone.get();
+            int pct = s.getProgressPct();
+            if (s == IngestJobStatus.PARSING && total > 0) {
+                // Decoding dominates an archive import: spread it over the PARSING..SAVING range
+                int span = IngestJobStatus.SAVING.getProgressPct() - IngestJobStatus.PARSING.getProgressPct();
+                pct += span * Math.min(done, total) / total;
+            }
+            return new IngestJobDto(id, s, pct, originalFilename,
+                    completedTrainingId, error, createdAt, finishedAt,
+                    total, done, filesFailed.get());
+        }
+    }
+
+    /** An archive body exceeded {@code ingest.archive.max-bytes}; the spooled part was deleted. */
+    public static final class ArchiveTooLargeException extends RuntimeException {
+        ArchiveTooLargeException(long maxBytes) {
+            super("Archive exceeds " + maxBytes + " bytes");
+        }
+    }
+}
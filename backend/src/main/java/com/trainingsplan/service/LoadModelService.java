@@ -1,17 +1,20 @@
 package com.trainingsplan.service;
 
-import com.trainingsplan.entity.AcwrFlag;
 import com.trainingsplan.entity.DailyMetrics;
 import com.trainingsplan.entity.User;
+import com.trainingsplan.repository.DailyMetricsBatchWriter;
 import com.trainingsplan.repository.DailyMetricsRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 /**
- * Computes Acute:Chronic Workload Ratio (ACWR) from daily strain21 aggregates.
+ * Computes the load models stored in {@code daily_metrics}: Acute:Chronic Workload Ratio
+ * (ACWR) from daily strain21 aggregates and the Banister fitness/fatigue model
+ * (CTL/ATL/TSB, see {@link FitnessFatigueEngine}) from daily TRIMP.
  *
  * <p>Definitions (stored in {@code daily_metrics}):
  * <ul>
@@ -23,6 +26,12 @@ import java.util.List;
  *
  * <p>Days without a {@code daily_metrics} record contribute zero load.
  *
+ * <p>Single days are updated with {@link #updateAcwr}; date ranges with
+ * {@link #recomputeAcwrRange}, which sweeps the range once via {@link AcwrEngine}.
+ *
+ * <p>CTL/ATL/TSB of a day follow from the previous day's state in O(1), so a range is
+ * continued from the last computed day before it; see {@link #recomputeFitnessRange}.
+ *
  * <p>Flag thresholds:
  * <ul>
  *   <li>BLUE   – ACWR &lt; 0.8  (under-training)</li>
@@ -37,23 +46,23 @@ public class LoadModelService {
     @Autowired
     private DailyMetricsRepository dailyMetricsRepository;
 
+    @Autowired
+    private DailyMetricsBatchWriter dailyMetricsBatchWriter;
+
+    @Autowired
+    private UserDataVersions userDataVersions;
+
     /**
      * Recomputes and persists ACWR metrics for {@code user} on {@code date}.
      * Reads the 28-day rolling window of {@code daily_strain21} from the database.
-     * Must be called AFTER {@link DailyMetricsService#updateDailyStrain} has persisted
-     * today's strain so the window is current.
+     * Must be called AFTER today's strain has been persisted so the window is current.
      */
     public void updateAcwr(User user, LocalDate date) {
         List<DailyMetrics> window28 = dailyMetricsRepository
                 .findByUserIdAndDateBetween(user.getId(), date.minusDays(27), date);
 
-        double acute7    = sumStrain(window28, date.minusDays(6), date);
-        double sum28     = sumStrain(window28, date.minusDays(27), date);
-        double chronic28 = sum28 / 4.0;
-
-        Double acwr     = chronic28 > 0.0 ? acute7 / chronic28 : null;
-        AcwrFlag flag   = computeFlag(acwr);
-        String message  = computeMessage(flag);
+        double acute7 = sumStrain(window28, date.minusDays(6), date);
+        double sum28  = sumStrain(window28, date.minusDays(27), date);
 
         DailyMetrics daily = dailyMetricsRepository
                 .findByUserIdAndDate(user.getId(), date)
@@ -61,12 +70,92 @@ public class LoadModelService {
 
         daily.setUser(user);
         daily.setDate(date);
-        daily.setAcute7(acute7);
-        daily.setChronic28(chronic28);
-        daily.setAcwr(acwr);
-        daily.setAcwrFlag(flag);
-        daily.setAcwrMessage(message);
+        apply(daily, AcwrEngine.of(acute7, sum28));
         dailyMetricsRepository.save(daily);
+        userDataVersions.bump(user.getId());
+    }
+
+    /**
+     * Recomputes and persists ACWR for every day in [{@code from}, {@code to}] with one
+     * read of the daily strain window, one linear sweep and one batched write, regardless
+     * of the length of the range. Must be called after daily strain is up to date for
+     * [{@code from}-27, {@code to}].
+     */
+    public void recomputeAcwrRange(User user, LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) return;
+
+        DailyMetricsAccumulator acc = DailyMetricsAccumulator.load(
+                dailyMetricsRepository, user, from.minusDays(AcwrEngine.CHRONIC_DAYS - 1), to);
+        applyAcwrRange(acc, from, to);
+        dailyMetricsBatchWriter.writeAcwr(user.getId(), acc.touchedRows());
+        userDataVersions.bump(user.getId());
+    }
+
+    /**
+     * Computes ACWR for [{@code from}, {@code to}] into {@code acc} in one sweep.
+     * {@code acc} must cover [{@code from}-27, {@code to}] with current daily strain.
+     */
+    void applyAcwrRange(DailyMetricsAccumulator acc, LocalDate from, LocalDate to) {
+        LocalDate origin = from.minusDays(AcwrEngine.CHRONIC_DAYS - 1);
+        int span = (int) ChronoUnit.DAYS.between(origin, to) + 1;
+        double[] strain = new double[span];
+        for (int i = 0; i < span; i++) {
+            strain[i] = acc.strain(origin.plusDays(i));
+        }
+
+        AcwrEngine.Day[] days = AcwrEngine.sweep(strain);
+        for (int j = 0; j < days.length; j++) {
+            apply(acc.row(from.plusDays(j)), days[j]);
+        }
+    }
+
+    /**
+     * Computes ACWR and CTL/ATL/TSB for [{@code from}, {@code to}] into {@code acc}.
+     * {@code acc} must cover [{@code from}-27, {@code to}] with current daily strain and TRIMP.
+     */
+    void applyLoadModels(DailyMetricsAccumulator acc, LocalDate from, LocalDate to) {
+        applyAcwrRange(acc, from, to);
+        applyFitnessRange(acc, from, to);
+    }
+
+    /**
+     * Recomputes and persists CTL/ATL/TSB for every day in [{@code from}, {@code to}] from
+     * the stored daily TRIMP, continuing from the last computed day before {@code from}:
+     * one read, one sweep and one batched write of the three columns. Used for the tail
+     * after a back-dated change (which shifts every later day) and for backfilling.
+     */
+    public void recomputeFitnessRange(User user, LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) return;
+
+        DailyMetricsAccumulator acc = DailyMetricsAccumulator.load(
+                dailyMetricsRepository, user, from.minusDays(1), to);
+        applyFitnessRange(acc, from, to);
+        dailyMetricsBatchWriter.writeFitness(user.getId(), acc.touchedRows());
+        userDataVersions.bump(user.getId());
+    }
+
+    /**
+     * Computes CTL/ATL/TSB for the user's whole history (first {@code daily_metrics} day
+     * through today). Useful for backfilling when the feature is first deployed.
+     */
+    public void recomputeFitnessForUser(User user) {
+        dailyMetricsRepository.findFirstByUserIdOrderByDateAsc(user.getId())
+                .ifPresent(first -> recomputeFitnessRange(user, first.getDate(), LocalDate.now()));
+    }
+
+    /**
+     * Computes CTL/ATL/TSB for [{@code from}, {@code to}] into {@code acc}, one O(1) step
+     * per day. {@code acc} must start on or before {@code from}-1.
+     */
+    void applyFitnessRange(DailyMetricsAccumulator acc, LocalDate from, LocalDate to) {
+        FitnessFatigueEngine.State state = fitnessBefore(acc, from);
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            state = FitnessFatigueEngine.next(state, acc.trimp(date));
+            DailyMetrics daily = acc.row(date);
+            daily.setCtl(state.ctl());
+            daily.setAtl(state.atl());
+            daily.setTsb(state.tsb());
+        }
     }
 
     /**
@@ -75,9 +164,7 @@ public class LoadModelService {
      */
     public void recomputeAcwrForUser(User user) {
         LocalDate today = LocalDate.now();
-        for (int i = 89; i >= 0; i--) {
-            updateAcwr(user, today.minusDays(i));
-        }
+        recomputeAcwrRange(user, today.minusDays(89), today);
     }
 
     // ── Private helpers ──────────────────────────────────────────────────────
@@ -94,21 +181,36 @@ public class LoadModelService {
         return sum;
     }
 
-    private AcwrFlag computeFlag(Double acwr) {
-        if (acwr == null)  return null;
-        if (acwr < 0.8)    return AcwrFlag.BLUE;
-        if (acwr <= 1.3)   return AcwrFlag.GREEN;
-        if (acwr <= 1.6)   return AcwrFlag.ORANGE;
-        return AcwrFlag.RED;
+    /**
+     * State at the end of {@code date}-1: the latest computed day before {@code date} (from
+     * {@code acc}, else the database), decayed over the days after it without a state.
+     * Zero when the user has no computed day yet.
+     */
+    private FitnessFatigueEngine.State fitnessBefore(DailyMetricsAccumulator acc, LocalDate date) {
+        LocalDate dayBefore = date.minusDays(1);
+        for (LocalDate d = dayBefore; !d.isBefore(acc.from()); d = d.minusDays(1)) {
+            DailyMetrics dm = acc.peek(d);
+            if (dm != null && dm.getCtl() != null) {
+                return decayedState(dm, dayBefore);
+            }
+        }
+        return dailyMetricsRepository
+                .findFirstByUserIdAndDateBeforeAndCtlIsNotNullOrderByDateDesc(acc.user().getId(), acc.from())
+                .map(dm -> decayedState(dm, dayBefore))
+                .orElse(FitnessFatigueEngine.State.ZERO);
+    }
+
+    private static FitnessFatigueEngine.State decayedState(DailyMetrics dm, LocalDate until) {
+        FitnessFatigueEngine.State state = new FitnessFatigueEngine.State(
+                dm.getCtl(), dm.getAtl() != null ? dm.getAtl() : 0.0);
+        return FitnessFatigueEngine.decay(state, ChronoUnit.DAYS.between(dm.getDate(), until));
     }
 
-    private String computeMessage(AcwrFlag flag) {
-        if (flag == null) return null;
-        return switch (flag) {
-            case BLUE   -> "Unterbelastung – Training steigern";
-            case GREEN  -> "Optimale Belastung";
-            case ORANGE -> "Erhöhte Belastung – Verletzungsrisiko beachten";
-            case RED    -> "Hohes Verletzungsrisiko – Belastung reduzieren";
-        };
+    private static void apply(DailyMetrics daily, AcwrEngine.Day day) {
+        daily.setAcute7(day.acute7());
+        daily.setChronic28(day.chronic28());
+        daily.setAcwr(day.acwr());
+        daily.setAcwrFlag(day.flag());
+        daily.setAcwrMessage(day.message());
     }
 }
@@ -0,0 +1,226 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.entity.ActivityMetrics;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.port.ActivityStreamStoragePort;
+import com.trainingsplan.repository.ActivityBatchWriter;
+import com.trainingsplan.repository.ActivityMetricsRepository;
+import com.trainingsplan.repository.DailyMetricsBatchWriter;
+import com.trainingsplan.repository.DailyMetricsBatchWriter.DailyLoad;
+import com.trainingsplan.service.hrzone.HeartRateZoneConfig;
+import com.trainingsplan.service.stream.ActivityStream;
+import com.trainingsplan.service.stream.HrHistogram;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rebuilds HR zones, strain and TRIMP of a user's whole activity history after a profile
+ * change (hrMax, hrRest or sex), then rewrites the derived {@code daily_metrics}.
+ *
+ * <ol>
+ *   <li><b>Load</b> – all activity metrics of the user in one query.</li>
+ *   <li><b>Compute</b> – in parallel on a fork-join pool, from the stored
+ *       {@link HrHistogram} of each activity (O(bpm range) per activity). Activities
+ *       stored before histograms existed fall back to their raw stream
+ *       ({@link ActivityStreamStoragePort}) and get a histogram backfilled; activities with
+ *       neither keep their current values.</li>
+ *   <li><b>Write</b> – one batched UPDATE of {@code activity_metrics}, one batched upsert of
+ *       daily strain/TRIMP, then ACWR and readiness from the earliest activity up to today.</li>
+ * </ol>
+ *
+ * <p>Configure the compute parallelism via {@code metrics.recompute.parallelism}
+ * (0 = one thread per CPU).
+ */
+@Service
+public class MetricsRecomputeService {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsRecomputeService.class);
+
+    /**
+     * @param activities    activities of the user
+     * @param fromHistogram recomputed from the stored histogram
+     * @param fromStream    recomputed from the stored raw stream (histogram backfilled)
+     * @param skipped       neither histogram nor stream available; left unchanged
+     * @param computeMillis wall time of the parallel compute phase
+     * @param totalMillis   wall time including all reads and writes
+     */
+    public record Result(int activities, int fromHistogram, int fromStream, int skipped,
+                         long computeMillis, long totalMillis) {}
+
+    private final ActivityMetricsRepository activityMetricsRepository;
+    private final FusedActivityMetricsEngine fusedActivityMetricsEngine;
+    private final ActivityMetricsService activityMetricsService;
+    private final ActivityStreamStoragePort activityStreamStorage;
+    private final ActivityBatchWriter activityBatchWriter;
+    private final DailyMetricsBatchWriter dailyMetricsBatchWriter;
+    private final DailyMetricsService dailyMetricsService;
+    private final int parallelism;
+
+    /** Latest profile per user with a queued (not yet started) recompute; further requests are coalesced. */
+    private final Map<Long, User> pending = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "metrics-recompute");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public MetricsRecomputeService(ActivityMetricsRepository activityMetricsRepository,
+                                   FusedActivityMetricsEngine fusedActivityMetricsEngine,
+                                   ActivityMetricsService activityMetricsService,
+                                   ActivityStreamStoragePort activityStreamStorage,
+                                   ActivityBatchWriter activityBatchWriter,
+                                   DailyMetricsBatchWriter dailyMetricsBatchWriter,
+                                   DailyMetricsService dailyMetricsService,
+                                   @Value("${metrics.recompute.parallelism:0}") int parallelism) {
+        this.activityMetricsRepository = activityMetricsRepository;
+        this.fusedActivityMetricsEngine = fusedActivityMetricsEngine;
+        this.activityMetricsService = activityMetricsService;
+        this.activityStreamStorage = activityStreamStorage;
+        this.activityBatchWriter = activityBatchWriter;
+        this.dailyMetricsBatchWriter = dailyMetricsBatchWriter;
+        this.dailyMetricsService = dailyMetricsService;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Queues a recompute for {@code user} on a background thread. A request for a user
+     * whose recompute is still queued is merged into it, using the newest profile values.
+     */
+    public void recomputeForUserAsync(User user) {
+        Long userId = user.getId();
+        if (pending.put(userId, user) != null) {
+            return;
+        }
+        executor.execute(() -> {
+            User latest = pending.remove(userId);
+            try {
+                recomputeForUser(latest);
+            } catch (Exception e) {
+                log.error("Metrics recompute for user {} failed", userId, e);
+            }
+        });
+    }
+
+    /** Recomputes all activities of {@code user} with the user's current profile values. */
+    public Result recomputeForUser(User user) {
+        long start = System.nanoTime();
+
+        List<ActivityMetrics> all = activityMetricsRepository.findAllWithTrainingByUserId(user.getId());
+        if (all.isEmpty()) {
+            return new Result(0, 0, 0, 0, 0, (System.nanoTime() - start) / 1_000_000);
+        }
+
+        boolean hasHrMax = user.getMaxHeartRate() != null && user.getMaxHeartRate() > 0;
+        HeartRateZoneConfig zoneConfig = hasHrMax ? HeartRateZoneConfig.fromHrMax(user.getMaxHeartRate()) : null;
+        Integer hrRest = user.getHrRest();
+        double k = TRIMPCalculator.kForGender(user.getGender());
+
+        AtomicInteger fromHistogram = new AtomicInteger();
+        AtomicInteger fromStream = new AtomicInteger();
+        long computeStart = System.nanoTime();
+        List<ActivityMetrics> updated;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            updated = pool.submit(() -> all.parallelStream()
+                    .filter(m -> recompute(m, zoneConfig, hrRest, k, fromHistogram, fromStream))
+                    .toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Metrics recompute interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Metrics recompute failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        long computeMillis = (System.nanoTime() - computeStart) / 1_000_000;
+
+        activityBatchWriter.updateHrMetrics(updated);
+        dailyMetricsBatchWriter.upsertLoad(user.getId(), dailyLoads(all));
+
+        LocalDate first = all.get(0).getCompletedTraining().getTrainingDate();
+        LocalDate today = LocalDate.now();
+        dailyMetricsService.refreshLoadModels(user, first.isAfter(today) ? today : first, today);
+
+        Result result = new Result(all.size(), fromHistogram.get(), fromStream.get(),
+                all.size() - updated.size(), computeMillis, (System.nanoTime() - start) / 1_000_000);
+        log.info("Metrics recompute for user {}: {} activities ({} from histogram, {} from stream, {} skipped), "
+                        + "{} ms compute, {} ms total",
+                user.getId(), result.activities(), result.fromHistogram(), result.fromStream(),
+                result.skipped(), result.computeMillis(), result.totalMillis());
+        return result;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Recomputes one activity in memory.
+     *
+     * @return {@code false} when neither a histogram nor a stream is available
+     */
+    private boolean recompute(ActivityMetrics metrics, HeartRateZoneConfig zoneConfig, Integer hrRest, double k,
+                              AtomicInteger fromHistogram, AtomicInteger fromStream) {
+        HrHistogram histogram = decodeHistogram(metrics);
+        if (histogram != null) {
+            fromHistogram.incrementAndGet();
+        } else {
+            Optional<ActivityStream> stream = activityStreamStorage.load(metrics.getCompletedTraining().getId());
+            if (stream.isEmpty()) {
+                return false;
+            }
+            histogram = HrHistogram.of(stream.get());
+            metrics.setHrHistogram(histogram.encode());
+            fromStream.incrementAndGet();
+        }
+
+        FusedActivityMetricsEngine.Result r =
+                fusedActivityMetricsEngine.computeFromHistogram(histogram, zoneConfig, hrRest, k);
+        activityMetricsService.applyHrMetrics(metrics, r.zones(), r.trimp());
+        return true;
+    }
+
+    private static HrHistogram decodeHistogram(ActivityMetrics metrics) {
+        if (metrics.getHrHistogram() == null) {
+            return null;
+        }
+        try {
+            return HrHistogram.decode(metrics.getHrHistogram());
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring unreadable HR histogram of activity metrics {}: {}", metrics.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    /** Per-day strain and TRIMP sums, with the same null handling as the per-day SUM queries. */
+    private static List<DailyLoad> dailyLoads(List<ActivityMetrics> all) {
+        Map<LocalDate, double[]> strain = new TreeMap<>();
+        Map<LocalDate, Double> trimp = new TreeMap<>();
+        for (ActivityMetrics m : all) {
+            LocalDate date = m.getCompletedTraining().getTrainingDate();
+            double[] sum = strain.computeIfAbsent(date, d -> new double[1]);
+            if (m.getStrain21() != null) sum[0] += m.getStrain21();
+            if (m.getTrimp() != null) trimp.merge(date, m.getTrimp(), Double::sum);
+        }
+        List<DailyLoad> loads = new ArrayList<>(strain.size());
+        strain.forEach((date, sum) -> loads.add(new DailyLoad(date, sum[0], trimp.get(date))));
+        return loads;
+    }
+}
@@ -1,11 +1,12 @@
 package com.trainingsplan.service;
 
 import com.trainingsplan.entity.BodyMetric;
-import com.trainingsplan.entity.CompletedTraining;
+import com.trainingsplan.entity.AggregateGranularity;
 import com.trainingsplan.entity.DailyMetrics;
+import com.trainingsplan.entity.TrainingAggregate;
 import com.trainingsplan.repository.BodyMetricRepository;
-import com.trainingsplan.repository.CompletedTrainingRepository;
 import com.trainingsplan.repository.DailyMetricsRepository;
+import com.trainingsplan.repository.TrainingAggregateRepository;
 import com.trainingsplan.security.SecurityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -55,7 +56,7 @@ public class RaceTimePredictionService {
     // ── Dependencies ─────────────────────────────────────────────────────────
 
     @Autowired private BodyMetricRepository        bodyMetricRepository;
-    @Autowired private CompletedTrainingRepository completedTrainingRepository;
+    @Autowired private TrainingAggregateRepository trainingAggregateRepository;
     @Autowired private DailyMetricsRepository      dailyMetricsRepository;
     @Autowired private Vo2MaxService               vo2MaxService;
     @Autowired private SecurityUtils               securityUtils;
@@ -86,31 +87,29 @@ public class RaceTimePredictionService {
         LocalDate sixWeeksAgo = today.minusWeeks(6);
         LocalDate fourWeeksAgo= today.minusWeeks(4);
 
-        List<CompletedTraining> allRecent = completedTrainingRepository
-                .findByUserIdAndTrainingDateBetweenOrderByTrainingDate(userId, sixWeeksAgo, today);
-
-        List<CompletedTraining> recentRuns = allRecent.stream()
+        List<TrainingAggregate> recentRunDays = trainingAggregateRepository
+                .findByUserIdAndGranularityAndPeriodStartBetween(userId, AggregateGranularity.DAY, sixWeeksAgo, today)
+                .stream()
                 .filter(this::isRunning)
                 .toList();
 
-        List<CompletedTraining> last4wRuns = recentRuns.stream()
-                .filter(t -> !t.getTrainingDate().isBefore(fourWeeksAgo))
+        List<TrainingAggregate> last4wRunDays = recentRunDays.stream()
+                .filter(d -> !d.getPeriodStart().isBefore(fourWeeksAgo))
                 .toList();
 
         // 3 ── Training volume stats ─────────────────────────────────────────
-        double totalKm4w = last4wRuns.stream()
-                .filter(t -> t.getDistanceKm() != null)
-                .mapToDouble(CompletedTraining::getDistanceKm)
+        double totalKm4w = last4wRunDays.stream()
+                .mapToDouble(TrainingAggregate::getDistanceKm)
                 .sum();
         double avgWeeklyKm = totalKm4w / 4.0;
 
-        double maxLongRunKm = recentRuns.stream()
-                .filter(t -> t.getDistanceKm() != null)
-                .mapToDouble(CompletedTraining::getDistanceKm)
+        double maxLongRunKm = recentRunDays.stream()
+                .filter(d -> d.getMaxDistanceKm() != null)
+                .mapToDouble(TrainingAggregate::getMaxDistanceKm)
                 .max()
                 .orElse(0);
 
-        double runsPerWeek = last4wRuns.size() / 4.0;
+        double runsPerWeek = last4wRunDays.stream().mapToInt(TrainingAggregate::getActivityCount).sum() / 4.0;
 
         // 4 ── ACWR / readiness (last 7 days) ────────────────────────────────
         List<DailyMetrics> recentMetrics = dailyMetricsRepository
@@ -196,11 +195,8 @@ public class RaceTimePredictionService {
         return "HOCH";
     }
 
-    private boolean isRunning(CompletedTraining t) {
-        String sport = t.getSport();
-        if (sport != null) return sport.toLowerCase().contains("run");
-        return t.getAveragePaceSecondsPerKm() != null
-                || (t.getDistanceKm() != null && t.getAveragePowerWatts() == null);
+    private boolean isRunning(TrainingAggregate day) {
+        return day.getSport().toLowerCase().contains("run");
     }
 
     private String formatSeconds(int totalSeconds) {
@@ -2,12 +2,15 @@ package com.trainingsplan.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trainingsplan.dto.DailyActivitySumsDto;
 import com.trainingsplan.entity.ActivityMetrics;
 import com.trainingsplan.entity.AcwrFlag;
 import com.trainingsplan.entity.DailyMetrics;
 import com.trainingsplan.entity.Recommendation;
 import com.trainingsplan.entity.User;
 import com.trainingsplan.repository.ActivityMetricsRepository;
+import com.trainingsplan.repository.DailyMetricsBatchWriter;
+import com.trainingsplan.repository.DailyMetricsBatchWriter.Columns;
 import com.trainingsplan.repository.DailyMetricsRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
@@ -15,7 +18,11 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Computes the Readiness Proxy score (v1) from load and activity metrics.
@@ -53,31 +60,67 @@ public class ReadinessService {
     @Autowired
     private DailyMetricsRepository dailyMetricsRepository;
 
+    @Autowired
+    private DailyMetricsBatchWriter dailyMetricsBatchWriter;
+
     @Autowired
     private ActivityMetricsRepository activityMetricsRepository;
 
     @Autowired
     private CoachCardService coachCardService;
 
+    @Autowired
+    private UserDataVersions userDataVersions;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
-     * Computes and persists the readiness score for {@code user} on {@code date}.
-     *
-     * <p>Must be called AFTER {@link LoadModelService#updateAcwr} has persisted today's
-     * ACWR data, so that the acwrFlag is available.
+     * Computes readiness and the coach card for every day in [{@code from}, {@code to}] into
+     * {@code acc}, reading the Z4/Z5 minutes of [{@code from}-1, {@code to}] with one grouped query.
+     * ACWR of those days must already be applied to {@code acc}.
+     */
+    void applyRange(DailyMetricsAccumulator acc, LocalDate from, LocalDate to) {
+        Map<LocalDate, DailyActivitySumsDto> sums = activityMetricsRepository
+                .findDailySumsByUserIdAndDateRange(acc.user().getId(), from.minusDays(1), to).stream()
+                .collect(Collectors.toMap(DailyActivitySumsDto::date, Function.identity()));
+        applyRange(acc, from, to, sums);
+    }
+
+    /**
+     * Computes readiness and the coach card for every day in [{@code from}, {@code to}] into
+     * {@code acc}, reading the ACWR flag and yesterday's strain from the accumulator and the
+     * Z4/Z5 minutes from {@code sums}, which must cover [{@code from}-1, {@code to}].
+     * The latest eligible decoupling is read once for the whole range.
      */
-    public void compute(User user, LocalDate date) {
+    void applyRange(DailyMetricsAccumulator acc, LocalDate from, LocalDate to,
+                    Map<LocalDate, DailyActivitySumsDto> sums) {
+        List<ActivityMetrics> latestDecoupling = activityMetricsRepository
+                .findEligibleDecouplingByUserId(acc.user().getId(), PageRequest.of(0, 1));
+        Double lastDecouplingPct = latestDecoupling.isEmpty() ? null
+                : latestDecoupling.get(0).getDecouplingPct();
+
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            DailyMetrics yesterday = acc.peek(date.minusDays(1));
+            DailyMetrics daily = acc.row(date);
+            double z45Sum = z45Min(sums, date.minusDays(1)) + z45Min(sums, date);
+            evaluate(daily.getAcwrFlag(), yesterday != null ? yesterday.getDailyStrain21() : null,
+                    lastDecouplingPct, z45Sum, daily);
+        }
+    }
+
+    private static double z45Min(Map<LocalDate, DailyActivitySumsDto> sums, LocalDate date) {
+        DailyActivitySumsDto day = sums.get(date);
+        return day != null && day.z4z5Min() != null ? day.z4z5Min() : 0.0;
+    }
+
+    /** Scores readiness from the given inputs and writes score, reasons and coach card to {@code daily}. */
+    private void evaluate(AcwrFlag acwrFlag, Double yesterdayStrain, Double lastDecouplingPct, double z45Sum,
+                          DailyMetrics daily) {
         int score = 80;
         List<String> reasons = new ArrayList<>();
         boolean redFlag = false;
 
         // ── 1. ACWR flag ──────────────────────────────────────────────────────
-        AcwrFlag acwrFlag = dailyMetricsRepository
-                .findByUserIdAndDate(user.getId(), date)
-                .map(DailyMetrics::getAcwrFlag)
-                .orElse(null);
-
         if (acwrFlag == AcwrFlag.RED) {
             score -= 35;
             reasons.add("Hohes ACWR – Verletzungsrisiko (ROT)");
@@ -88,35 +131,21 @@ public class ReadinessService {
         }
 
         // ── 2. Yesterday's strain21 ──────────────────────────────────────────
-        Double yesterdayStrain = dailyMetricsRepository
-                .findByUserIdAndDate(user.getId(), date.minusDays(1))
-                .map(DailyMetrics::getDailyStrain21)
-                .orElse(null);
-
         if (yesterdayStrain != null && yesterdayStrain > 14.0) {
             score -= 15;
             reasons.add("Hohe gestrige Belastung (strain21 > 14)");
         }
 
         // ── 3. Last eligible decoupling ───────────────────────────────────────
-        List<ActivityMetrics> latestDecoupling = activityMetricsRepository
-                .findEligibleDecouplingByUserId(user.getId(), PageRequest.of(0, 1));
-
-        if (!latestDecoupling.isEmpty()) {
-            Double decPct = latestDecoupling.get(0).getDecouplingPct();
-            if (decPct != null && decPct > 10.0) {
-                score -= 10;
-                reasons.add("Starkes Herzdriften zuletzt (>10%)");
-            } else if (decPct != null && decPct > 5.0) {
-                score -= 5;
-                reasons.add("Leichtes Herzdriften zuletzt (>5%)");
-            }
+        if (lastDecouplingPct != null && lastDecouplingPct > 10.0) {
+            score -= 10;
+            reasons.add("Starkes Herzdriften zuletzt (>10%)");
+        } else if (lastDecouplingPct != null && lastDecouplingPct > 5.0) {
+            score -= 5;
+            reasons.add("Leichtes Herzdriften zuletzt (>5%)");
         }
 
         // ── 4. Z4+Z5 minutes in last 2 days ──────────────────────────────────
-        double z45Sum = activityMetricsRepository
-                .sumZ4Z5MinByUserIdAndDateRange(user.getId(), date.minusDays(1), date);
-
         if (z45Sum > 20.0) {
             score -= 10;
             reasons.add("Viele Hochintensivminuten letzte 2 Tage (>20 min Z4/Z5)");
@@ -152,21 +181,12 @@ public class ReadinessService {
             reasonsJson = "[]";
         }
 
-        // ── Persist ───────────────────────────────────────────────────────────
-        DailyMetrics daily = dailyMetricsRepository
-                .findByUserIdAndDate(user.getId(), date)
-                .orElse(new DailyMetrics());
-
-        daily.setUser(user);
-        daily.setDate(date);
+        // ── Result ────────────────────────────────────────────────────────────
         daily.setReadinessScore(score);
         daily.setRecommendation(recommendation);
         daily.setReasonsJson(reasonsJson);
 
         // ── Coach card ─────────────────────────────────────────────────────────
-        Double lastDecouplingPct = latestDecoupling.isEmpty() ? null
-                : latestDecoupling.get(0).getDecouplingPct();
-
         CoachCardService.CoachCard card = coachCardService.generate(
                 recommendation, acwrFlag, score, yesterdayStrain, lastDecouplingPct, z45Sum);
 
@@ -178,18 +198,19 @@ public class ReadinessService {
         }
         daily.setCoachTitle(card.title());
         daily.setCoachBulletsJson(coachBulletsJson);
-
-        dailyMetricsRepository.save(daily);
     }
 
     /**
-     * Recomputes readiness for the last 90 days for the given user.
+     * Recomputes readiness for the last 90 days for the given user with one read and one
+     * batched write of the readiness columns.
      * Requires ACWR to already be populated for those days.
      */
     public void recomputeForUser(User user) {
         LocalDate today = LocalDate.now();
-        for (int i = 89; i >= 0; i--) {
-            compute(user, today.minusDays(i));
-        }
+        LocalDate from = today.minusDays(89);
+        DailyMetricsAccumulator acc = DailyMetricsAccumulator.load(dailyMetricsRepository, user, from.minusDays(1), today);
+        applyRange(acc, from, today);
+        dailyMetricsBatchWriter.writeRows(user.getId(), acc.touchedRows(), EnumSet.of(Columns.READINESS));
+        userDataVersions.bump(user.getId());
     }
 }
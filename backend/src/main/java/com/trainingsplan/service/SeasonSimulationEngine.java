@@ -0,0 +1,338 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.dto.AthleteState;
+import com.trainingsplan.dto.Workout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pacr.training.simulation.dto.FatigueBandDTO;
+import pacr.training.simulation.dto.SeasonSimulationResultDTO;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Monte-Carlo simulation of a 4–24 week training block, built on the fatigue rules of
+ * {@link WeekSimulationEngine}: each workout adds its TRIMP-based fatigue increase, each
+ * rest day recovers {@link WeekSimulationEngine#REST_DAY_RECOVERY}, fatigue stays within
+ * [0, 1]. Each run multiplies every workout's fatigue increase and every rest day's recovery
+ * by a sampled factor {@code 1 + sigma * N(0, 1)} (never below 0), with sigma
+ * {@code simulation.season.trimp-noise} and {@code simulation.season.recovery-noise}.
+ *
+ * <p>The result holds percentile bands (p10–p90) of the fatigue timeline and, per
+ * {@link WeekRiskAnalyzer} flag, the share of runs raising it in any week and per week.
+ * Weeks are analysed like {@link WeekRiskAnalyzer#analyzeWeek}; the intensity cluster
+ * depends only on the plan, so its probability is 0 or 1.
+ *
+ * <p>Runs are split across a fork-join pool of {@code simulation.season.parallelism}
+ * threads (0 = one per CPU). The workouts are resolved to per-day fatigue increases once;
+ * a run then touches only primitive locals and counters, and fatigue is collected into
+ * per-day histograms of {@link #BINS} bins, so percentiles are accurate to 1/{@link #BINS}.
+ * Runs are seeded in fixed blocks, so a seed gives the same result on any pool size.
+ */
+@Service
+public class SeasonSimulationEngine {
+
+    static final int MIN_WEEKS = 4;
+    static final int MAX_WEEKS = 24;
+    static final int MAX_RUNS = 100_000;
+    static final int BINS = 1000;
+
+    private static final int WEEK_DAYS = WeekSimulationEngine.WEEK_DAYS;
+    private static final int BLOCK_RUNS = 64;
+    private static final long SEED_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final double[] PERCENTILES = {0.10, 0.25, 0.50, 0.75, 0.90};
+    private static final String[] FLAGS = {
+            WeekRiskAnalyzer.OVERTRAINING_RISK, WeekRiskAnalyzer.FATIGUE_SPIKE, WeekRiskAnalyzer.INTENSITY_CLUSTER
+    };
+    private static final int OVERTRAINING = 0;
+    private static final int SPIKE = 1;
+    private static final int CLUSTER = 2;
+
+    private final TrainingLoadCalculator trainingLoadCalculator;
+    private final FatigueModel fatigueModel;
+    private final double trimpNoise;
+    private final double recoveryNoise;
+    private final int parallelism;
+
+    public SeasonSimulationEngine(TrainingLoadCalculator trainingLoadCalculator,
+                                  FatigueModel fatigueModel,
+                                  @Value("${simulation.season.trimp-noise:0.15}") double trimpNoise,
+                                  @Value("${simulation.season.recovery-noise:0.30}") double recoveryNoise,
+                                  @Value("${simulation.season.parallelism:0}") int parallelism) {
+        this.trainingLoadCalculator = trainingLoadCalculator;
+        this.fatigueModel = fatigueModel;
+        this.trimpNoise = trimpNoise;
+        this.recoveryNoise = recoveryNoise;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Simulates {@code weeks} weeks from the earliest workout date (today without workouts)
+     * {@code runs} times. Workouts after the block are ignored.
+     */
+    public SeasonSimulationResultDTO simulateSeason(List<Workout> workouts, AthleteState initialState,
+                                                    int weeks, int runs, long seed) {
+        if (initialState == null) {
+            throw new IllegalArgumentException("initialState is required");
+        }
+        if (weeks < MIN_WEEKS || weeks > MAX_WEEKS) {
+            throw new IllegalArgumentException("weeks must be between " + MIN_WEEKS + " and " + MAX_WEEKS);
+        }
+        if (runs < 1 || runs > MAX_RUNS) {
+            throw new IllegalArgumentException("runs must be between 1 and " + MAX_RUNS);
+        }
+
+        List<Workout> dated = workouts == null ? List.of() : workouts.stream()
+                .filter(Objects::nonNull)
+                .filter(workout -> workout.date() != null)
+                .sorted(Comparator.comparing(Workout::date))
+                .toList();
+        LocalDate startDate = dated.isEmpty() ? LocalDate.now() : dated.get(0).date();
+        Plan plan = plan(dated, startDate, weeks, clamp(initialState.fatigue()));
+
+        Counts counts = run(plan, runs, seed);
+        return result(plan, counts, startDate, runs);
+    }
+
+    /** The season resolved to primitive arrays, shared read-only by all runs. */
+    private record Plan(int weeks, double initialFatigue, int[] dayStart, double[] increases, boolean[] cluster) {
+
+        int days() {
+            return weeks * WEEK_DAYS;
+        }
+    }
+
+    /** Per-day fatigue histograms and flag counts of a range of runs. */
+    private record Counts(int[] histogram, int[] weekFlags, int[] seasonFlags) {
+
+        static Counts of(Plan plan) {
+            return new Counts(new int[plan.days() * BINS], new int[plan.weeks() * FLAGS.length], new int[FLAGS.length]);
+        }
+
+        Counts add(Counts other) {
+            addInto(histogram, other.histogram);
+            addInto(weekFlags, other.weekFlags);
+            addInto(seasonFlags, other.seasonFlags);
+            return this;
+        }
+
+        private static void addInto(int[] target, int[] source) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] += source[i];
+            }
+        }
+    }
+
+    private Plan plan(List<Workout> dated, LocalDate startDate, int weeks, double initialFatigue) {
+        int days = weeks * WEEK_DAYS;
+        int[] perDay = new int[days];
+        int[] highIntensity = new int[weeks];
+        List<Double> increases = new ArrayList<>();
+        for (Workout workout : dated) {
+            long day = ChronoUnit.DAYS.between(startDate, workout.date());
+            if (day >= days) break;
+            perDay[(int) day]++;
+            increases.add(fatigueModel.predictFatigueIncrease(trainingLoadCalculator.calculateTRIMP(workout)));
+            if (WeekRiskAnalyzer.isHighIntensity(workout.activityName())) {
+                highIntensity[(int) day / WEEK_DAYS]++;
+            }
+        }
+
+        int[] dayStart = new int[days + 1];
+        for (int day = 0; day < days; day++) {
+            dayStart[day + 1] = dayStart[day] + perDay[day];
+        }
+        boolean[] cluster = new boolean[weeks];
+        for (int week = 0; week < weeks; week++) {
+            cluster[week] = highIntensity[week] > WeekRiskAnalyzer.HIGH_INTENSITY_CLUSTER_THRESHOLD;
+        }
+        return new Plan(weeks, initialFatigue, dayStart,
+                increases.stream().mapToDouble(Double::doubleValue).toArray(), cluster);
+    }
+
+    private Counts run(Plan plan, int runs, long seed) {
+        int blocks = (runs + BLOCK_RUNS - 1) / BLOCK_RUNS;
+        int blocksPerTask = Math.max(1, blocks / (parallelism * 4));
+        if (parallelism == 1 || blocks <= blocksPerTask) {
+            return simulateBlocks(plan, runs, seed, 0, blocks);
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(new BlockTask(plan, runs, seed, 0, blocks, blocksPerTask)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Season simulation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Season simulation failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private final class BlockTask extends RecursiveTask<Counts> {
+
+        private final Plan plan;
+        private final int runs;
+        private final long seed;
+        private final int fromBlock;
+        private final int toBlock;
+        private final int blocksPerTask;
+
+        BlockTask(Plan plan, int runs, long seed, int fromBlock, int toBlock, int blocksPerTask) {
+            this.plan = plan;
+            this.runs = runs;
+            this.seed = seed;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+            this.blocksPerTask = blocksPerTask;
+        }
+
+        @Override
+        protected Counts compute() {
+            if (toBlock - fromBlock <= blocksPerTask) {
+                return simulateBlocks(plan, runs, seed, fromBlock, toBlock);
+            }
+            int mid = (fromBlock + toBlock) >>> 1;
+            BlockTask left = new BlockTask(plan, runs, seed, fromBlock, mid, blocksPerTask);
+            left.fork();
+            Counts right = new BlockTask(plan, runs, seed, mid, toBlock, blocksPerTask).compute();
+            return left.join().add(right);
+        }
+    }
+
+    /** Simulates the runs of blocks [{@code fromBlock}, {@code toBlock}); each block has its own seed. */
+    private Counts simulateBlocks(Plan plan, int runs, long seed, int fromBlock, int toBlock) {
+        Counts counts = Counts.of(plan);
+        for (int block = fromBlock; block < toBlock; block++) {
+            SplittableRandom random = new SplittableRandom(seed + block * SEED_GAMMA);
+            int end = Math.min(runs, (block + 1) * BLOCK_RUNS);
+            for (int run = block * BLOCK_RUNS; run < end; run++) {
+                simulateRun(plan, random, counts);
+            }
+        }
+        return counts;
+    }
+
+    /** One run of the season, recorded into {@code counts}. */
+    private void simulateRun(Plan plan, SplittableRandom random, Counts counts) {
+        int[] dayStart = plan.dayStart();
+        double[] increases = plan.increases();
+        int[] histogram = counts.histogram();
+        int[] weekFlags = counts.weekFlags();
+        boolean overtrainingSeason = false;
+        boolean spikeSeason = false;
+
+        double fatigue = plan.initialFatigue();
+        for (int week = 0; week < plan.weeks(); week++) {
+            double peak = fatigue;
+            double previous = 0;
+            boolean spike = false;
+            for (int dayOfWeek = 0; dayOfWeek < WEEK_DAYS; dayOfWeek++) {
+                int day = week * WEEK_DAYS + dayOfWeek;
+                int from = dayStart[day];
+                int to = dayStart[day + 1];
+                if (from == to) {
+                    double recovery = WeekSimulationEngine.REST_DAY_RECOVERY * noiseFactor(random, recoveryNoise);
+                    fatigue = clamp(fatigue - recovery);
+                } else {
+                    for (int i = from; i < to; i++) {
+                        fatigue = clamp(fatigue + increases[i] * noiseFactor(random, trimpNoise));
+                    }
+                }
+                if (dayOfWeek > 0 && fatigue - previous > WeekRiskAnalyzer.FATIGUE_SPIKE_THRESHOLD) {
+                    spike = true;
+                }
+                previous = fatigue;
+                peak = Math.max(peak, fatigue);
+                histogram[day * BINS + bin(fatigue)]++;
+            }
+
+            int flags = week * FLAGS.length;
+            if (peak > WeekRiskAnalyzer.OVERTRAINING_THRESHOLD) {
+                weekFlags[flags + OVERTRAINING]++;
+                overtrainingSeason = true;
+            }
+            if (spike) {
+                weekFlags[flags + SPIKE]++;
+                spikeSeason = true;
+            }
+            if (plan.cluster()[week]) {
+                weekFlags[flags + CLUSTER]++;
+            }
+        }
+
+        int[] seasonFlags = counts.seasonFlags();
+        if (overtrainingSeason) seasonFlags[OVERTRAINING]++;
+        if (spikeSeason) seasonFlags[SPIKE]++;
+        for (boolean cluster : plan.cluster()) {
+            if (cluster) {
+                seasonFlags[CLUSTER]++;
+                break;
+            }
+        }
+    }
+
+    private static double noiseFactor(SplittableRandom random, double sigma) {
+        return sigma == 0 ? 1.0 : Math.max(0.0, 1.0 + sigma * random.nextGaussian());
+    }
+
+    private SeasonSimulationResultDTO result(Plan plan, Counts counts, LocalDate startDate, int runs) {
+        List<FatigueBandDTO> bands = new ArrayList<>(plan.days());
+        double[] values = new double[PERCENTILES.length];
+        for (int day = 0; day < plan.days(); day++) {
+            percentiles(counts.histogram(), day * BINS, runs, values);
+            bands.add(new FatigueBandDTO(startDate.plusDays(day), values[0], values[1], values[2], values[3], values[4]));
+        }
+
+        List<Map<String, Double>> weekly = new ArrayList<>(plan.weeks());
+        for (int week = 0; week < plan.weeks(); week++) {
+            Map<String, Double> probabilities = new LinkedHashMap<>();
+            for (int flag = 0; flag < FLAGS.length; flag++) {
+                probabilities.put(FLAGS[flag], counts.weekFlags()[week * FLAGS.length + flag] / (double) runs);
+            }
+            weekly.add(probabilities);
+        }
+        Map<String, Double> season = new LinkedHashMap<>();
+        for (int flag = 0; flag < FLAGS.length; flag++) {
+            season.put(FLAGS[flag], counts.seasonFlags()[flag] / (double) runs);
+        }
+
+        return SeasonSimulationResultDTO.builder()
+                .weeks(plan.weeks())
+                .runs(runs)
+                .fatigueBands(bands)
+                .flagProbabilities(season)
+                .weeklyFlagProbabilities(weekly)
+                .build();
+    }
+
+    /** Fills {@code values} with the {@link #PERCENTILES} of one day's histogram, as bin midpoints. */
+    private static void percentiles(int[] histogram, int offset, int runs, double[] values) {
+        int next = 0;
+        long cumulative = 0;
+        for (int bin = 0; bin < BINS && next < PERCENTILES.length; bin++) {
+            cumulative += histogram[offset + bin];
+            while (next < PERCENTILES.length && cumulative >= Math.ceil(PERCENTILES[next] * runs)) {
+                values[next++] = (bin + 0.5) / BINS;
+            }
+        }
+    }
+
+    private static int bin(double fatigue) {
+        return Math.min(BINS - 1, (int) (fatigue * BINS));
+    }
+
+    private static double clamp(double value) {
+        return Math.max(0.0, Math.min(1.0, value));
+    }
+}
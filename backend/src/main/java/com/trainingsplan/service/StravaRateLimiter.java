@@ -0,0 +1,219 @@
+package com.trainingsplan.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Client-side budget for the Strava API, shared by every Strava call of this process.
+ *
+ * <p>Strava limits an application per 15 minutes (windows starting at :00, :15, :30 and
+ * :45) and per UTC day, and reports limits and current usage as {@code "15min,daily"} in
+ * the {@code X-RateLimit-Limit} / {@code X-RateLimit-Usage} headers of every response; the
+ * stricter read limits in {@code X-ReadRateLimit-*} take precedence when present.
+ *
+ * <p>Each window is a token bucket refilled evenly over the window. Every response clamps
+ * the buckets to what Strava reports as left, so the local estimate cannot run ahead of the
+ * server. Once a window is used up, or Strava answers 429, no permits are handed out until
+ * that window resets.
+ */
+@Component
+public class StravaRateLimiter {
+
+    static final long SHORT_WINDOW_MILLIS = Duration.ofMinutes(15).toMillis();
+    static final long DAY_MILLIS = Duration.ofDays(1).toMillis();
+
+    private final LongSupplier clock;
+    private final Bucket shortTerm;
+    private final Bucket daily;
+    /** Epoch millis before which no permit is handed out; guarded by {@code this}. */
+    private long blockedUntil;
+
+    @Autowired
+    public StravaRateLimiter(@Value("${strava.rate-limit.short-term:100}") long shortTermLimit,
+                             @Value("${strava.rate-limit.daily:1000}") long dailyLimit) {
+        this(shortTermLimit, dailyLimit, System::currentTimeMillis);
+    }
+
+    StravaRateLimiter(long shortTermLimit, long dailyLimit, LongSupplier clock) {
+        this.clock = clock;
+        long now = clock.getAsLong();
+        this.shortTerm = new Bucket(shortTermLimit, SHORT_WINDOW_MILLIS, now);
+        this.daily = new Bucket(dailyLimit, DAY_MILLIS, now);
+    }
+
+    /**
+     * Takes a permit if one is available now.
+     *
+     * @return 0 when a permit was taken, otherwise the milliseconds until one may be available
+     */
+    public synchronized long tryAcquire() {
+        long now = clock.getAsLong();
+        if (now < blockedUntil) {
+            return blockedUntil - now;
+        }
+        shortTerm.refill(now);
+        daily.refill(now);
+        long wait = Math.max(shortTerm.waitMillis(), daily.waitMillis());
+        if (wait > 0) {
+            return wait;
+        }
+        shortTerm.tokens -= 1;
+        daily.tokens -= 1;
+        return 0;
+    }
+
+    /**
+     * Waits for a permit, but not longer than {@code maxWait}.
+     *
+     * @return {@code false} when no permit becomes available within {@code maxWait}
+     */
+    public boolean acquire(Duration maxWait) throws InterruptedException {
+        long deadline = clock.getAsLong() + maxWait.toMillis();
+        while (true) {
+            long wait = tryAcquire();
+            if (wait == 0) {
+                return true;
+            }
+            if (clock.getAsLong() + wait > deadline) {
+                return false;
+            }
+            Thread.sleep(wait);
+        }
+    }
+
+    /** Milliseconds until a permit may be available; 0 when one is available now. */
+    public synchronized long waitMillis() {
+        long now = clock.getAsLong();
+        if (now < blockedUntil) {
+            return blockedUntil - now;
+        }
+        shortTerm.refill(now);
+        daily.refill(now);
+        return Math.max(shortTerm.waitMillis(), daily.waitMillis());
+    }
+
+    /**
+     * Share of the quota still available in the tighter of the two windows, between 0 and 1;
+     * 0 while blocked. Lets background work leave a reserve for requests of users.
+     */
+    public synchronized double remainingFraction() {
+        long now = clock.getAsLong();
+        if (now < blockedUntil) {
+            return 0;
+        }
+        shortTerm.refill(now);
+        daily.refill(now);
+        return Math.min(shortTerm.fraction(), daily.fraction());
+    }
+
+    /** Updates limits and usage from the headers of a Strava response. */
+    public void onResponse(HttpHeaders headers) {
+        String limit = headers.getFirst("X-ReadRateLimit-Limit");
+        String usage = headers.getFirst("X-ReadRateLimit-Usage");
+        if (usage == null) {
+            limit = headers.getFirst("X-RateLimit-Limit");
+            usage = headers.getFirst("X-RateLimit-Usage");
+        }
+        update(limit, usage);
+    }
+
+    /** Strava answered 429: hand out nothing until the current 15-minute window has reset. */
+    public synchronized void onRateLimited() {
+        long now = clock.getAsLong();
+        shortTerm.tokens = 0;
+        blockedUntil = Math.max(blockedUntil, nextWindow(now, SHORT_WINDOW_MILLIS));
+    }
+
+    synchronized void update(String limitHeader, String usageHeader) {
+        long[] limits = parsePair(limitHeader);
+        if (limits != null) {
+            shortTerm.capacity = limits[0];
+            daily.capacity = limits[1];
+        }
+        long[] usage = parsePair(usageHeader);
+        if (usage == null) {
+            return;
+        }
+        long now = clock.getAsLong();
+        shortTerm.refill(now);
+        daily.refill(now);
+        shortTerm.clamp(usage[0]);
+        daily.clamp(usage[1]);
+        if (usage[0] >= shortTerm.capacity) {
+            blockedUntil = Math.max(blockedUntil, nextWindow(now, SHORT_WINDOW_MILLIS));
+        }
+        if (usage[1] >= daily.capacity) {
+            blockedUntil = Math.max(blockedUntil, nextWindow(now, DAY_MILLIS));
+        }
+    }
+
+    synchronized double shortTermTokens() {
+        return shortTerm.tokens;
+    }
+
+    /** Start of the window after the one containing {@code now}; windows are aligned to UTC. */
+    private static long nextWindow(long now, long windowMillis) {
+        return (now / windowMillis + 1) * windowMillis;
+    }
+
+    /** Parses {@code "a,b"}; null when absent or malformed. */
+    private static long[] parsePair(String header) {
+        if (header == null) {
+            return null;
+        }
+        String[] parts = header.split(",");
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            return new long[]{Long.parseLong(parts[0].trim()), Long.parseLong(parts[1].trim())};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class Bucket {
+        long capacity;
+        final long windowMillis;
+        double tokens;
+        long refilledAt;
+
+        Bucket(long capacity, long windowMillis, long now) {
+            this.capacity = capacity;
+            this.windowMillis = windowMillis;
+            this.tokens = capacity;
+            this.refilledAt = now;
+        }
+
+        void refill(long now) {
+            if (now > refilledAt) {
+                tokens = Math.min(capacity, tokens + (double) (now - refilledAt) * capacity / windowMillis);
+                refilledAt = now;
+            }
+        }
+
+        long waitMillis() {
+            if (tokens >= 1) {
+                return 0;
+            }
+            if (capacity <= 0) {
+                return windowMillis;
+            }
+            return (long) Math.ceil((1 - tokens) * windowMillis / capacity);
+        }
+
+        double fraction() {
+            return capacity <= 0 ? 0 : Math.max(0, tokens) / capacity;
+        }
+
+        /** Lowers the estimate to what the server reports as left. */
+        void clamp(long used) {
+            tokens = Math.min(tokens, Math.max(0, capacity - used));
+        }
+    }
+}
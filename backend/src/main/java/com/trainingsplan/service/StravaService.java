@@ -4,33 +4,50 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.trainingsplan.dto.StravaActivityDto;
-import com.trainingsplan.dto.ProfileCompletionDto;
+import com.trainingsplan.dto.StravaActivityRefDto;
 import com.trainingsplan.dto.StravaStatusDto;
 import com.trainingsplan.entity.ActivityMetrics;
 import com.trainingsplan.entity.CompletedTraining;
+import com.trainingsplan.entity.StravaSyncState;
 import com.trainingsplan.entity.StravaToken;
 import com.trainingsplan.entity.User;
+import com.trainingsplan.port.ActivityStreamStoragePort;
+import com.trainingsplan.repository.ActivityBatchWriter;
 import com.trainingsplan.repository.ActivityMetricsRepository;
 import com.trainingsplan.repository.CompletedTrainingRepository;
+import com.trainingsplan.repository.StravaStreamFetchRepository;
+import com.trainingsplan.repository.StravaSyncStateRepository;
 import com.trainingsplan.repository.StravaTokenRepository;
+import com.trainingsplan.repository.UserRepository;
 import com.trainingsplan.security.SecurityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.client.RestClient;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -39,6 +56,12 @@ public class StravaService {
 
     private static final Logger log = LoggerFactory.getLogger(StravaService.class);
 
+    /** The listing runs in the user's request, so it waits only briefly for the rate limiter. */
+    private static final Duration LISTING_PERMIT_WAIT = Duration.ofSeconds(5);
+
+    /** How long a user may take on Strava's consent page. */
+    private static final Duration OAUTH_STATE_VALIDITY = Duration.ofMinutes(15);
+
     @Value("${strava.client-id}")
     private String clientId;
 
@@ -51,13 +74,40 @@ public class StravaService {
     @Value("${strava.frontend-url}")
     private String frontendUrl;
 
+    @Value("${strava.api-base-url:https://www.strava.com/api/v3}")
+    private String apiBaseUrl;
+
+    @Value("${strava.sync.overlap-hours:72}")
+    private long syncOverlapHours;
+
+    @Value("${strava.sync.min-interval-seconds:60}")
+    private long syncMinIntervalSeconds;
+
+    @Value("${strava.sync.reconcile-interval-hours:24}")
+    private long syncReconcileIntervalHours;
+
+    @Value("${strava.scheduler.initial-sync-days:28}")
+    private long initialSyncDays;
+
     private final StravaTokenRepository tokenRepository;
     private final ObjectMapper objectMapper;
     private final CompletedTrainingRepository completedTrainingRepository;
     private final ActivityMetricsService activityMetricsService;
     private final ActivityMetricsRepository activityMetricsRepository;
     private final SecurityUtils securityUtils;
-    private final UserProfileValidationService userProfileValidationService;
+    private final ActivityStreamStoragePort activityStreamStorage;
+    private final DailyMetricsDirtyTracker dailyMetricsDirtyTracker;
+    private final UserDataVersions userDataVersions;
+    private final TrainingAggregateService trainingAggregateService;
+    private final StravaSyncStateRepository syncStateRepository;
+    private final ActivityBatchWriter activityBatchWriter;
+    private final StravaTokenCache tokenCache;
+    private final UserRepository userRepository;
+    private final StravaStreamFetcher streamFetcher;
+    private final StravaStreamFetchRepository streamFetchRepository;
+    private final StravaRateLimiter rateLimiter;
+    private final StravaSyncLease syncLease;
+    private final TransactionTemplate transaction;
     private final RestClient restClient;
 
     public StravaService(StravaTokenRepository tokenRepository, ObjectMapper objectMapper,
@@ -65,26 +115,64 @@ public class StravaService {
                          ActivityMetricsService activityMetricsService,
                          ActivityMetricsRepository activityMetricsRepository,
                          SecurityUtils securityUtils,
-                         UserProfileValidationService userProfileValidationService) {
+                         ActivityStreamStoragePort activityStreamStorage,
+                         DailyMetricsDirtyTracker dailyMetricsDirtyTracker,
+                         UserDataVersions userDataVersions,
+                         TrainingAggregateService trainingAggregateService,
+                         StravaSyncStateRepository syncStateRepository,
+                         ActivityBatchWriter activityBatchWriter,
+                         StravaTokenCache tokenCache,
+                         UserRepository userRepository,
+                         StravaStreamFetcher streamFetcher,
+                         StravaStreamFetchRepository streamFetchRepository,
+                         StravaRateLimiter rateLimiter,
+                         StravaSyncLease syncLease,
+                         PlatformTransactionManager transactionManager) {
         this.tokenRepository = tokenRepository;
         this.objectMapper = objectMapper;
         this.completedTrainingRepository = completedTrainingRepository;
         this.activityMetricsService = activityMetricsService;
         this.activityMetricsRepository = activityMetricsRepository;
         this.securityUtils = securityUtils;
-        this.userProfileValidationService = userProfileValidationService;
+        this.activityStreamStorage = activityStreamStorage;
+        this.dailyMetricsDirtyTracker = dailyMetricsDirtyTracker;
+        this.userDataVersions = userDataVersions;
+        this.trainingAggregateService = trainingAggregateService;
+        this.syncStateRepository = syncStateRepository;
+        this.activityBatchWriter = activityBatchWriter;
+        this.tokenCache = tokenCache;
+        this.userRepository = userRepository;
+        this.streamFetcher = streamFetcher;
+        this.streamFetchRepository = streamFetchRepository;
+        this.rateLimiter = rateLimiter;
+        this.syncLease = syncLease;
+        this.transaction = new TransactionTemplate(transactionManager);
         this.restClient = RestClient.create();
     }
 
+    /**
+     * The Strava authorization URL for the current user. The callback carries no session,
+     * so the user travels in the signed {@code state} parameter.
+     */
     public String getAuthorizationUrl() {
+        User user = securityUtils.getCurrentUser();
+        if (user == null) {
+            throw new IllegalStateException("Connecting Strava requires a signed-in user");
+        }
         return "https://www.strava.com/oauth/authorize" +
                 "?client_id=" + clientId +
                 "&redirect_uri=" + redirectUri +
                 "&response_type=code" +
-                "&scope=activity:read_all";
+                "&scope=activity:read_all" +
+                "&state=" + oauthState(user.getId(), Instant.now().plus(OAUTH_STATE_VALIDITY).getEpochSecond());
     }
 
-    public void exchangeCodeForToken(String code) {
+    /** Stores the token granted for {@code code} for the user named in {@code state}. */
+    @Transactional
+    public void exchangeCodeForToken(String code, String state) {
+        Long userId = userIdFromState(state);
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown user in Strava OAuth state"));
         MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
         formData.add("client_id", clientId);
         formData.add("client_secret", clientSecret);
@@ -101,7 +189,8 @@ public class StravaService {
 
             JsonNode root = objectMapper.readTree(responseBody);
 
-            StravaToken token = tokenRepository.findFirstByOrderByIdAsc().orElse(new StravaToken());
+            StravaToken token = tokenRepository.findByUserId(userId).orElseGet(StravaToken::new);
+            token.setUser(user);
             token.setAccessToken(root.path("access_token").asText());
             token.setRefreshToken(root.path("refresh_token").asText());
             token.setExpiresAt(root.path("expires_at").asLong());
@@ -114,44 +203,51 @@ public class StravaService {
             token.setAthleteCity(athlete.path("city").asText(null));
             token.setProfileMedium(athlete.path("profile_medium").asText(null));
 
-            tokenRepository.save(token);
+            // An athlete is connected to one user at a time; webhook events are routed by athlete
+            tokenRepository.findByAthleteIdWithUser(token.getAthleteId())
+                    .filter(other -> other.getUser() != null && !userId.equals(other.getUser().getId()))
+                    .ifPresent(other -> disconnect(other.getUser().getId()));
+
+            tokenCache.put(userId, tokenRepository.save(token));
         } catch (Exception e) {
             throw new RuntimeException("Failed to exchange Strava code for token", e);
         }
     }
 
-    private StravaToken refreshTokenIfExpired(StravaToken token) {
-        long nowPlusBuffer = System.currentTimeMillis() / 1000 + 300;
-        if (token.getExpiresAt() != null && token.getExpiresAt() > nowPlusBuffer) {
-            return token;
-        }
+    /** {@code userId.expiresAt.signature}, signed with the client secret. */
+    private String oauthState(Long userId, long expiresAt) {
+        String payload = userId + "." + expiresAt;
+        return payload + "." + sign(payload);
+    }
 
-        MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
-        formData.add("client_id", clientId);
-        formData.add("client_secret", clientSecret);
-        formData.add("grant_type", "refresh_token");
-        formData.add("refresh_token", token.getRefreshToken());
+    private Long userIdFromState(String state) {
+        String[] parts = state != null ? state.split("\\.") : new String[0];
+        if (parts.length != 3
+                || !MessageDigest.isEqual(sign(parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII),
+                                          parts[2].getBytes(StandardCharsets.US_ASCII))) {
+            throw new IllegalArgumentException("Invalid Strava OAuth state");
+        }
+        if (Long.parseLong(parts[1]) < Instant.now().getEpochSecond()) {
+            throw new IllegalArgumentException("Expired Strava OAuth state");
+        }
+        return Long.parseLong(parts[0]);
+    }
 
+    private String sign(String payload) {
         try {
-            String responseBody = restClient.post()
-                    .uri("https://www.strava.com/oauth/token")
-                    .contentType(MediaType.APPLICATION_FORM_URLENCODED)
-                    .body(formData)
-                    .retrieve()
-                    .body(String.class);
-
-            JsonNode root = objectMapper.readTree(responseBody);
-            token.setAccessToken(root.path("access_token").asText());
-            token.setRefreshToken(root.path("refresh_token").asText());
-            token.setExpiresAt(root.path("expires_at").asLong());
-            return tokenRepository.save(token);
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(clientSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
         } catch (Exception e) {
-            throw new RuntimeException("Failed to refresh Strava token", e);
+            throw new IllegalStateException("Cannot sign Strava OAuth state", e);
         }
     }
 
     public StravaStatusDto getStatus() {
-        Optional<StravaToken> tokenOpt = tokenRepository.findFirstByOrderByIdAsc();
+        Long userId = securityUtils.getCurrentUserId();
+        Optional<StravaToken> tokenOpt = userId != null && tokenCache.isConnected(userId)
+                ? tokenCache.findToken(userId) : Optional.empty();
         if (tokenOpt.isEmpty()) {
             return new StravaStatusDto(false, null, null, null);
         }
@@ -159,38 +255,160 @@ public class StravaService {
         return new StravaStatusDto(true, token.getAthleteName(), token.getAthleteCity(), token.getProfileMedium());
     }
 
-    @Transactional
+    /**
+     * Syncs the current user's Strava activities into completed trainings and returns the
+     * activities listed by this sync that fall into [{@code start}, {@code end}].
+     *
+     * <p>Only what the {@link StravaSyncPlan} requires is listed: normally the activities
+     * after the user's high-water mark, so the cost follows the number of new activities
+     * rather than the width of the viewed range. Deletions on Strava are reconciled on the
+     * slower reconcile interval and for newly backfilled ranges. While another sync or a
+     * webhook event holds the user's {@link StravaSyncLease} nothing is listed.
+     */
     public List<StravaActivityDto> getActivities(LocalDate start, LocalDate end) {
-        Optional<StravaToken> tokenOpt = tokenRepository.findFirstByOrderByIdAsc();
-        if (tokenOpt.isEmpty()) {
+        User currentUser = securityUtils.getCurrentUser();
+        if (currentUser == null || !tokenCache.isConnected(currentUser.getId())) {
             return List.of();
         }
 
-        StravaToken token = refreshTokenIfExpired(tokenOpt.get());
-        long after = start.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
-        long before = end.atStartOfDay(ZoneOffset.UTC).toEpochSecond() + 86399;
+        List<StravaActivityDto> listed = syncLeased(currentUser, start).orElse(List.of());
+        List<StravaActivityDto> inRange = new ArrayList<>();
+        for (StravaActivityDto dto : listed) {
+            LocalDate date = activityDate(dto);
+            if (date != null && !date.isBefore(start) && !date.isAfter(end)) {
+                inRange.add(dto);
+            }
+        }
+        return inRange;
+    }
 
+    /**
+     * Background sync of one user, for the {@link StravaSyncScheduler}: lists what the
+     * {@link StravaSyncPlan} requires for the range synced so far, or the last
+     * {@code strava.scheduler.initial-sync-days} for a user never synced.
+     *
+     * @return {@code false} when the user is not connected or the lease is held elsewhere
+     */
+    public boolean syncUser(User user) {
+        if (!tokenCache.isConnected(user.getId())) {
+            return false;
+        }
+        return syncLeased(user, null).isPresent();
+    }
+
+    /**
+     * Runs {@link #sync} in a transaction while holding the user's lease, which is taken
+     * before and released after that transaction. Empty when the lease is held elsewhere.
+     */
+    private Optional<List<StravaActivityDto>> syncLeased(User user, LocalDate start) {
+        Optional<String> lease = syncLease.tryAcquire(user);
+        if (lease.isEmpty()) {
+            return Optional.empty();
+        }
         try {
-            List<StravaActivityDto> activities = fetchAllActivitiesInRange(token.getAccessToken(), after, before);
-            User currentUser = securityUtils.getCurrentUser();
-            syncActivitiesToDb(activities, token.getAccessToken(), currentUser);
-            removeDeletedActivitiesFromDb(activities, currentUser, start, end);
-            return activities;
+            return Optional.ofNullable(transaction.execute(status -> sync(user, start)));
+        } finally {
+            syncLease.release(user.getId(), lease.get());
+        }
+    }
+
+    /**
+     * Lists and stores the user's activities as planned for a range starting at
+     * {@code start}; null means the range synced so far. Returns the listed activities.
+     */
+    private List<StravaActivityDto> sync(User user, LocalDate start) {
+        StravaSyncState state = syncStateRepository.findByUserId(user.getId())
+                .orElseGet(() -> newSyncState(user));
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate from = start != null ? start
+                : state.getSyncedFrom() != null ? state.getSyncedFrom()
+                : now.toLocalDate().minusDays(initialSyncDays);
+        StravaSyncPlan plan = StravaSyncPlan.of(state, from, now,
+                Duration.ofHours(syncOverlapHours), Duration.ofSeconds(syncMinIntervalSeconds),
+                Duration.ofHours(syncReconcileIntervalHours));
+        if (plan.windows().isEmpty()) {
+            return List.of();
+        }
+
+        try {
+            String accessToken = tokenCache.accessToken(user.getId()).orElseThrow();
+            List<StravaActivityDto> listed = new ArrayList<>();
+            Long highWaterMark = state.getHighWaterMark();
+            for (StravaSyncPlan.Window window : plan.windows()) {
+                List<StravaActivityDto> activities = fetchActivities(accessToken, window.after(), window.before());
+                syncActivitiesToDb(activities, user);
+                if (window.reconcileFrom() != null) {
+                    removeDeletedActivitiesFromDb(activities, user, window.reconcileFrom(), window.reconcileTo());
+                }
+                highWaterMark = latestStart(activities, highWaterMark);
+                listed.addAll(activities);
+            }
+
+            state.setSyncedFrom(plan.syncedFrom());
+            state.setHighWaterMark(highWaterMark);
+            if (plan.listsRecent()) {
+                state.setLastSyncedAt(now);
+            }
+            if (plan.reconciles()) {
+                state.setLastReconciledAt(now);
+            }
+            syncStateRepository.save(state);
+            userDataVersions.bump(user.getId());
+            return listed;
         } catch (Exception e) {
             throw new RuntimeException("Failed to fetch Strava activities", e);
         }
     }
 
-    private List<StravaActivityDto> fetchAllActivitiesInRange(String accessToken, long after, long before) throws Exception {
+    private static StravaSyncState newSyncState(User user) {
+        StravaSyncState state = new StravaSyncState();
+        state.setUser(user);
+        return state;
+    }
+
+    /** Latest UTC start time (epoch seconds) among {@code activities} and {@code current}. */
+    private static Long latestStart(List<StravaActivityDto> activities, Long current) {
+        Long latest = current;
+        for (StravaActivityDto dto : activities) {
+            if (dto.getStartDate() == null) continue;
+            try {
+                long startEpoch = OffsetDateTime.parse(dto.getStartDate()).toEpochSecond();
+                if (latest == null || startEpoch > latest) {
+                    latest = startEpoch;
+                }
+            } catch (Exception ignored) {
+                // Activity without a parseable UTC start does not move the watermark
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Lists the activities starting in ({@code after}, {@code before}); no upper bound when
+     * {@code before} is null. Every page takes a permit from the shared rate limiter.
+     */
+    private List<StravaActivityDto> fetchActivities(String accessToken, long after, Long before) throws Exception {
         List<StravaActivityDto> allActivities = new ArrayList<>();
+        String range = "after=" + after + (before != null ? "&before=" + before : "");
         int page = 1;
 
         while (true) {
+            if (!rateLimiter.acquire(LISTING_PERMIT_WAIT)) {
+                throw new IllegalStateException("Strava rate limit reached");
+            }
             String responseBody = restClient.get()
-                    .uri("https://www.strava.com/api/v3/athlete/activities?after=" + after + "&before=" + before + "&per_page=200&page=" + page)
+                    .uri(apiBaseUrl + "/athlete/activities?" + range + "&per_page=200&page=" + page)
                     .header("Authorization", "Bearer " + accessToken)
-                    .retrieve()
-                    .body(String.class);
+                    .exchange((request, response) -> {
+                        rateLimiter.onResponse(response.getHeaders());
+                        if (response.getStatusCode().value() == 429) {
+                            rateLimiter.onRateLimited();
+                        }
+                        if (response.getStatusCode().isError()) {
+                            throw new IllegalStateException("Strava answered " + response.getStatusCode().value());
+                        }
+                        return new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8);
+                    });
 
             List<StravaActivityDto> pageItems = objectMapper.readValue(responseBody, new TypeReference<List<StravaActivityDto>>() {});
             if (pageItems.isEmpty()) {
@@ -198,39 +416,71 @@ public class StravaService {
             }
 
             allActivities.addAll(pageItems);
+            if (pageItems.size() < 200) {
+                break;
+            }
             page++;
         }
 
         return allActivities;
     }
 
-    private void syncActivitiesToDb(List<StravaActivityDto> activities, String accessToken, User user) {
+    /**
+     * Stores the listed activities: one query resolves which Strava ids are already synced,
+     * new activities are inserted and moved start times updated in JDBC batches. Streams
+     * and metrics of the new activities are fetched in the background by the
+     * {@link StravaStreamFetcher}.
+     */
+    private void syncActivitiesToDb(List<StravaActivityDto> activities, User user) {
+        Map<Long, StravaActivityDto> listed = new LinkedHashMap<>();
         for (StravaActivityDto dto : activities) {
-            if (dto.getId() == null) {
-                continue;
+            if (dto.getId() != null) {
+                listed.putIfAbsent(dto.getId(), dto);
             }
-            try {
-                Optional<CompletedTraining> existing = completedTrainingRepository.findByStravaActivityId(dto.getId());
-                if (existing.isPresent()) {
-                    CompletedTraining ct = existing.get();
-                    LocalDateTime startDateTime = parseStravaStartDateTime(dto);
-                    if (startDateTime != null && (ct.getUploadDate() == null || !startDateTime.equals(ct.getUploadDate()))) {
-                        ct.setUploadDate(startDateTime);
-                        completedTrainingRepository.save(ct);
-                    }
-                    continue;
-                }
+        }
+        if (listed.isEmpty()) {
+            return;
+        }
 
-                CompletedTraining ct = convertStravaActivityToCompletedTraining(dto);
-                ct.setUser(user);
-                CompletedTraining saved = completedTrainingRepository.save(ct);
-                fetchStreamsAndPersistMetrics(dto.getId(), saved, accessToken, user);
-            } catch (Exception e) {
-                log.warn("Failed to persist Strava activity id={}: {}", dto.getId(), e.getMessage());
+        Map<Long, StravaActivityRefDto> existing = new HashMap<>();
+        for (StravaActivityRefDto ref : completedTrainingRepository.findStravaRefsByStravaActivityIdIn(listed.keySet())) {
+            existing.put(ref.stravaActivityId(), ref);
+        }
+
+        List<CompletedTraining> added = new ArrayList<>();
+        Map<Long, LocalDateTime> movedStarts = new HashMap<>();
+        for (StravaActivityDto dto : listed.values()) {
+            StravaActivityRefDto ref = existing.get(dto.getId());
+            if (ref != null) {
+                LocalDateTime startDateTime = parseStravaStartDateTime(dto);
+                if (startDateTime != null && !startDateTime.equals(ref.uploadDate())) {
+                    movedStarts.put(ref.id(), startDateTime);
+                }
+                continue;
+            }
+            if (activityDate(dto) == null) {
+                log.warn("Skipping Strava activity id={} without start date", dto.getId());
+                continue;
             }
+            CompletedTraining ct = convertStravaActivityToCompletedTraining(dto);
+            ct.setUser(user);
+            added.add(ct);
+        }
+
+        activityBatchWriter.updateUploadDates(movedStarts);
+        List<CompletedTraining> stored = activityBatchWriter.insertStravaTrainings(added);
+
+        if (user != null) {
+            streamFetcher.enqueue(stored);
+            trainingAggregateService.activitiesChanged(user.getId(),
+                    stored.stream().map(CompletedTraining::getTrainingDate).toList());
         }
     }
 
+    /**
+     * Deletes the local Strava activities in [{@code start}, {@code end}] that are missing
+     * from {@code activities}, which must be the complete listing of that period.
+     */
     private void removeDeletedActivitiesFromDb(List<StravaActivityDto> activities, User user, LocalDate start, LocalDate end) {
         Set<Long> remoteStravaIds = new HashSet<>();
         for (StravaActivityDto activity : activities) {
@@ -239,109 +489,135 @@ public class StravaService {
             }
         }
 
-        List<CompletedTraining> localSyncedActivities;
+        List<StravaActivityRefDto> localSyncedActivities;
         if (user != null && user.getId() != null) {
-            localSyncedActivities = completedTrainingRepository.findByUserIdAndSourceAndTrainingDateBetween(
-                    user.getId(), "STRAVA", start, end);
+            localSyncedActivities = completedTrainingRepository.findStravaRefsByUserIdAndTrainingDateBetween(
+                    user.getId(), start, end);
         } else {
-            localSyncedActivities = completedTrainingRepository.findByUserIsNullAndSourceAndTrainingDateBetween(
-                    "STRAVA", start, end);
+            localSyncedActivities = completedTrainingRepository.findOrphanedStravaRefsByTrainingDateBetween(start, end);
         }
 
-        for (CompletedTraining localActivity : localSyncedActivities) {
-            Long localStravaId = localActivity.getStravaActivityId();
-            if (localStravaId == null || remoteStravaIds.contains(localStravaId)) {
-                continue;
+        List<StravaActivityRefDto> removed = new ArrayList<>();
+        for (StravaActivityRefDto localActivity : localSyncedActivities) {
+            if (!remoteStravaIds.contains(localActivity.stravaActivityId())) {
+                removed.add(localActivity);
             }
-
-            activityMetricsRepository.deleteByCompletedTrainingId(localActivity.getId());
-            completedTrainingRepository.delete(localActivity);
-            log.info("Removed local Strava activity {} because it no longer exists on Strava", localStravaId);
         }
+        deleteLocalActivities(removed, user);
     }
 
     /**
-     * Fetches time, heartrate, velocity_smooth, and distance streams from Strava for one activity
-     * and persists zone metrics + aerobic decoupling.
-     * Silently skips on any error (stream may not exist for activities without HR sensor).
+     * Deletes the given local activities: queued stream fetches, metrics and activities with
+     * one statement each, then the stored streams.
      */
-    private void fetchStreamsAndPersistMetrics(Long stravaActivityId, CompletedTraining ct,
-                                               String accessToken, User user) {
-        try {
-            ProfileCompletionDto completion = userProfileValidationService.getProfileCompletion(user);
-            if (!completion.complete()) {
-                log.info("Skipping metric calculation for Strava activity {}. Incomplete profile: {}",
-                        stravaActivityId, completion.missingFields());
-                return;
-            }
-
-            String url = "https://www.strava.com/api/v3/activities/" + stravaActivityId
-                    + "/streams?keys=time,heartrate,velocity_smooth,distance&key_by_type=true";
-            String body = restClient.get()
-                    .uri(url)
-                    .header("Authorization", "Bearer " + accessToken)
-                    .retrieve()
-                    .body(String.class);
-
-            JsonNode root     = objectMapper.readTree(body);
-            JsonNode timeData = root.path("time").path("data");
-            JsonNode hrData   = root.path("heartrate").path("data");
-            JsonNode velData  = root.path("velocity_smooth").path("data");
-            JsonNode distData = root.path("distance").path("data");
-
-            if (timeData.isMissingNode() || !timeData.isArray() || timeData.isEmpty()) return;
-
-            List<Integer> timeSeconds = new ArrayList<>(timeData.size());
-            for (JsonNode t : timeData) timeSeconds.add(t.intValue());
-
-            List<Integer> heartRates = new ArrayList<>(timeSeconds.size());
-            if (!hrData.isMissingNode() && hrData.isArray() && hrData.size() == timeSeconds.size()) {
-                for (JsonNode hr : hrData) heartRates.add(hr.isNull() ? null : hr.intValue());
-            } else {
-                for (int i = 0; i < timeSeconds.size(); i++) heartRates.add(null);
-            }
+    private void deleteLocalActivities(List<StravaActivityRefDto> removed, User user) {
+        if (removed.isEmpty()) {
+            return;
+        }
 
-            List<Double> velocities = new ArrayList<>(timeSeconds.size());
-            if (!velData.isMissingNode() && velData.isArray() && velData.size() == timeSeconds.size()) {
-                for (JsonNode v : velData) velocities.add(v.isNull() ? null : v.doubleValue());
-            } else {
-                for (int i = 0; i < timeSeconds.size(); i++) velocities.add(null);
+        List<Long> removedIds = removed.stream().map(StravaActivityRefDto::id).toList();
+        streamFetchRepository.deleteByCompletedTrainingIdIn(removedIds);
+        activityMetricsRepository.deleteByCompletedTrainingIdIn(removedIds);
+        completedTrainingRepository.deleteByIdIn(removedIds);
+
+        List<LocalDate> removedDates = new ArrayList<>();
+        for (StravaActivityRefDto localActivity : removed) {
+            activityStreamStorage.delete(localActivity.id());
+            removedDates.add(localActivity.trainingDate());
+            if (user != null && user.getId() != null) {
+                dailyMetricsDirtyTracker.markDirty(user, localActivity.trainingDate());
             }
+        }
+        log.info("Removed {} local Strava activities that no longer exist on Strava: {}", removed.size(),
+                removed.stream().map(StravaActivityRefDto::stravaActivityId).toList());
+        if (user != null) {
+            trainingAggregateService.activitiesChanged(user.getId(), removedDates);
+        }
+    }
 
-            List<Double> distances = null;
-            if (!distData.isMissingNode() && distData.isArray() && distData.size() == timeSeconds.size()) {
-                distances = new ArrayList<>(timeSeconds.size());
-                for (JsonNode d : distData) distances.add(d.isNull() ? null : d.doubleValue());
-            }
+    /**
+     * Creates or updates the local copy of one Strava activity, e.g. for a webhook event;
+     * the caller holds the user's {@link StravaSyncLease}.
+     * A new activity goes through the same path as a listed one; an existing one takes over
+     * the Strava fields and its old and new day are refreshed. A local copy that belongs to
+     * another user is left alone.
+     */
+    @Transactional
+    public void applyActivity(StravaActivityDto dto, User user) {
+        LocalDate date = activityDate(dto);
+        if (date == null) {
+            log.warn("Skipping Strava activity id={} without start date", dto.getId());
+            return;
+        }
+        Optional<CompletedTraining> existing = completedTrainingRepository.findByStravaActivityId(dto.getId());
+        if (existing.isEmpty()) {
+            syncActivitiesToDb(List.of(dto), user);
+            if (user != null) userDataVersions.bump(user.getId());
+            return;
+        }
 
-            activityMetricsService.calculateAndPersist(ct, timeSeconds, heartRates, velocities, distances, user);
-        } catch (Exception e) {
-            log.warn("Could not fetch/compute streams for Strava activity {}: {}", stravaActivityId, e.getMessage());
+        CompletedTraining ct = existing.get();
+        if (ct.getUser() != null && user != null && !ct.getUser().getId().equals(user.getId())) {
+            log.warn("Not applying Strava activity id={} for user {}: it belongs to user {}",
+                    dto.getId(), user.getId(), ct.getUser().getId());
+            return;
+        }
+        LocalDate previousDate = ct.getTrainingDate();
+        applyStravaFields(dto, ct);
+        if (ct.getUser() == null) {
+            ct.setUser(user);
+        }
+        completedTrainingRepository.save(ct);
+
+        User owner = ct.getUser();
+        if (owner != null) {
+            List<LocalDate> days = date.equals(previousDate) || previousDate == null
+                    ? List.of(date) : List.of(previousDate, date);
+            days.forEach(day -> dailyMetricsDirtyTracker.markDirty(owner, day));
+            trainingAggregateService.activitiesChanged(owner.getId(), days);
+            userDataVersions.bump(owner.getId());
         }
     }
 
+    /** Deletes the user's local copy of a Strava activity with its metrics and stream, if there is one. */
+    @Transactional
+    public void removeActivity(Long stravaActivityId, User user) {
+        completedTrainingRepository.findByStravaActivityIdAndUserId(stravaActivityId, user.getId()).ifPresent(ct -> {
+            deleteLocalActivities(List.of(new StravaActivityRefDto(
+                    ct.getId(), ct.getStravaActivityId(), ct.getTrainingDate(), ct.getUploadDate())), user);
+            userDataVersions.bump(user.getId());
+        });
+    }
+
     /**
      * Retroactively computes zone metrics for a CompletedTraining that was synced from Strava.
      * Called on demand (e.g. from the activity dialog) for activities synced before this feature existed.
+     * Uses the locally stored stream when there is one and only refetches from Strava otherwise.
      */
     public ActivityMetrics computeMetricsForCompletedTraining(Long completedTrainingId) {
         CompletedTraining ct = completedTrainingRepository.findById(completedTrainingId)
                 .orElseThrow(() -> new RuntimeException("CompletedTraining not found: " + completedTrainingId));
 
+        User user = securityUtils.getCurrentUser();
+        boolean ownActivity = user != null && ct.getUser() != null && user.getId().equals(ct.getUser().getId());
+        if (ownActivity && activityMetricsService.recalculateFromStoredStream(ct, user)) {
+            return activityMetricsRepository.findByCompletedTrainingId(completedTrainingId).orElse(null);
+        }
+
         if (ct.getStravaActivityId() == null) {
             throw new RuntimeException("Activity " + completedTrainingId + " is not a Strava activity");
         }
 
-        StravaToken token = tokenRepository.findFirstByOrderByIdAsc()
-                .orElseThrow(() -> new RuntimeException("No Strava token found"));
-        token = refreshTokenIfExpired(token);
+        if (user == null || !tokenCache.isConnected(user.getId())) {
+            throw new RuntimeException("No Strava token found");
+        }
 
-        User user = securityUtils.getCurrentUser();
-        if (ct.getUser() == null && user != null) {
+        if (ct.getUser() == null) {
             ct.setUser(user);
             ct = completedTrainingRepository.save(ct);
+            trainingAggregateService.activitiesChanged(user.getId(), List.of(ct.getTrainingDate()));
         }
-        fetchStreamsAndPersistMetrics(ct.getStravaActivityId(), ct, token.getAccessToken(), user);
+        streamFetcher.fetchNow(ct, user);
 
         return activityMetricsRepository.findByCompletedTrainingId(completedTrainingId).orElse(null);
     }
@@ -350,14 +626,18 @@ public class StravaService {
         CompletedTraining ct = new CompletedTraining();
         ct.setSource("STRAVA");
         ct.setStravaActivityId(dto.getId());
+        applyStravaFields(dto, ct);
+        return ct;
+    }
+
+    /** Copies the activity's Strava fields onto {@code ct}; values Strava does not report are left as they are. */
+    private void applyStravaFields(StravaActivityDto dto, CompletedTraining ct) {
         ct.setActivityName(dto.getName());
 
         String sport = dto.getSportType() != null ? dto.getSportType() : dto.getType();
         ct.setSport(sport);
 
-        // Prefer start_date_local (user timezone) over UTC to get the correct calendar date
-        String dateStr = dto.getStartDateLocal() != null ? dto.getStartDateLocal() : dto.getStartDate();
-        ct.setTrainingDate(LocalDate.parse(dateStr.substring(0, 10)));
+        ct.setTrainingDate(activityDate(dto));
         LocalDateTime startDateTime = parseStravaStartDateTime(dto);
         if (startDateTime != null) {
             ct.setUploadDate(startDateTime);
@@ -390,8 +670,12 @@ public class StravaService {
         if (dto.getAverageWatts() != null) {
             ct.setAveragePowerWatts(dto.getAverageWatts().intValue());
         }
+    }
 
-        return ct;
+    /** Calendar date of the activity; start_date_local (user timezone) is preferred over UTC. */
+    private static LocalDate activityDate(StravaActivityDto dto) {
+        String dateStr = dto.getStartDateLocal() != null ? dto.getStartDateLocal() : dto.getStartDate();
+        return dateStr != null ? LocalDate.parse(dateStr.substring(0, 10)) : null;
     }
 
     private LocalDateTime parseStravaStartDateTime(StravaActivityDto dto) {
@@ -412,6 +696,17 @@ public class StravaService {
     }
 
     public void disconnect() {
-        tokenRepository.deleteAll();
+        Long userId = securityUtils.getCurrentUserId();
+        if (userId != null) {
+            disconnect(userId);
+        }
+    }
+
+    /** Removes the user's token and sync state; a reconnect may be a different athlete and starts over with a full sync. */
+    @Transactional
+    public void disconnect(Long userId) {
+        tokenRepository.findByUserId(userId).ifPresent(tokenRepository::delete);
+        syncStateRepository.findByUserId(userId).ifPresent(syncStateRepository::delete);
+        tokenCache.evict(userId);
     }
 }
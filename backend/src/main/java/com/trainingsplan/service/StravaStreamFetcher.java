@@ -0,0 +1,331 @@
+package com.trainingsplan.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trainingsplan.dto.ProfileCompletionDto;
+import com.trainingsplan.entity.CompletedTraining;
+import com.trainingsplan.entity.StravaStreamFetch;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.repository.CompletedTrainingRepository;
+import com.trainingsplan.repository.StravaStreamFetchRepository;
+import com.trainingsplan.repository.UserRepository;
+import com.trainingsplan.service.stream.ActivityStream;
+import com.trainingsplan.service.stream.StravaStreamDecoder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetches the time/heartrate/velocity/distance streams of synced Strava activities and
+ * persists their metrics in the background, so a sync of hundreds of new activities
+ * neither blocks the request nor runs one HTTP call after another.
+ *
+ * <p>Pending fetches are stored in {@code strava_stream_fetches} ({@link #enqueue}), so a
+ * restart or a rate-limit pause only delays them. Due fetches run on virtual threads, at
+ * most {@code strava.streams.concurrency} at a time, each after taking a permit from the
+ * shared {@link StravaRateLimiter}. Failures are retried with exponential backoff up to
+ * {@code strava.streams.max-attempts}; a 429 or a used-up quota postpones the fetch to
+ * when the limiter allows requests again without counting as an attempt. Activities
+ * without streams (404) and users with an incomplete profile are dropped.
+ *
+ * <p>The queue is polled every {@code strava.streams.poll-seconds} and right after a sync
+ * has committed new entries. Before a worker runs a fetch it claims the row with one
+ * conditional update until {@code strava.streams.claim-seconds} from now, so backend
+ * instances sharing the queue never fetch the same streams twice; a claim left behind by
+ * a dead instance simply expires.
+ */
+@Service
+public class StravaStreamFetcher {
+
+    private static final Logger log = LoggerFactory.getLogger(StravaStreamFetcher.class);
+
+    static final String STREAM_KEYS = "time,heartrate,velocity_smooth,distance";
+    /** Longer rate-limit waits postpone the fetch instead of holding a worker. */
+    private static final Duration MAX_PERMIT_WAIT = Duration.ofSeconds(10);
+    private static final Duration MAX_BACKOFF = Duration.ofHours(6);
+    private static final int DISPATCH_BATCH = 200;
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final StravaStreamFetchRepository fetchRepository;
+    private final CompletedTrainingRepository completedTrainingRepository;
+    private final UserRepository userRepository;
+    private final ActivityMetricsService activityMetricsService;
+    private final UserProfileValidationService userProfileValidationService;
+    private final StravaTokenCache tokenCache;
+    private final StravaRateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transaction;
+    private final RestClient restClient;
+    private final String apiBaseUrl;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final long pollSeconds;
+    private final Duration claimDuration;
+    private final String instance = StravaSyncLease.instanceId();
+    private final AtomicLong claims = new AtomicLong();
+
+    private final Semaphore permits;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("strava-stream-", 1).factory());
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "strava-stream-poll");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public StravaStreamFetcher(StravaStreamFetchRepository fetchRepository,
+                               CompletedTrainingRepository completedTrainingRepository,
+                               UserRepository userRepository,
+                               ActivityMetricsService activityMetricsService,
+                               UserProfileValidationService userProfileValidationService,
+                               StravaTokenCache tokenCache,
+                               StravaRateLimiter rateLimiter,
+                               ObjectMapper objectMapper,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${strava.api-base-url:https://www.strava.com/api/v3}") String apiBaseUrl,
+                               @Value("${strava.streams.concurrency:8}") int concurrency,
+                               @Value("${strava.streams.max-attempts:6}") int maxAttempts,
+                               @Value("${strava.streams.backoff-seconds:30}") long backoffSeconds,
+                               @Value("${strava.streams.poll-seconds:30}") long pollSeconds,
+                               @Value("${strava.streams.claim-seconds:300}") long claimSeconds) {
+        this.fetchRepository = fetchRepository;
+        this.completedTrainingRepository = completedTrainingRepository;
+        this.userRepository = userRepository;
+        this.activityMetricsService = activityMetricsService;
+        this.userProfileValidationService = userProfileValidationService;
+        this.tokenCache = tokenCache;
+        this.rateLimiter = rateLimiter;
+        this.objectMapper = objectMapper;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.restClient = RestClient.create();
+        this.apiBaseUrl = apiBaseUrl;
+        this.permits = new Semaphore(Math.max(1, concurrency));
+        this.maxAttempts = maxAttempts;
+        this.backoff = Duration.ofSeconds(backoffSeconds);
+        this.pollSeconds = pollSeconds;
+        this.claimDuration = Duration.ofSeconds(claimSeconds);
+    }
+
+    @PostConstruct
+    void start() {
+        poller.scheduleWithFixedDelay(this::dispatchDue, pollSeconds, pollSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        poller.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Queues stream fetches for newly synced activities, in the caller's transaction with
+     * one statement. The fetches start once the transaction has committed.
+     */
+    public void enqueue(List<CompletedTraining> trainings) {
+        if (trainings.isEmpty()) return;
+        fetchRepository.enqueue(trainings.stream().map(CompletedTraining::getId).toList(), LocalDateTime.now());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatchDue();
+                }
+            });
+        } else {
+            dispatchDue();
+        }
+    }
+
+    /**
+     * Fetches the streams of {@code ct} and persists its metrics right away, for an
+     * on-demand request. Errors are logged and otherwise ignored.
+     */
+    public void fetchNow(CompletedTraining ct, User user) {
+        try {
+            if (!profileComplete(ct.getStravaActivityId(), user)) return;
+            if (!rateLimiter.acquire(MAX_PERMIT_WAIT)) {
+                log.warn("Strava rate limit reached, streams of activity {} not fetched", ct.getStravaActivityId());
+                return;
+            }
+            fetchStream(user.getId(), ct.getStravaActivityId())
+                    .ifPresent(stream -> activityMetricsService.calculateAndPersist(ct, stream, user));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Could not fetch/compute streams for Strava activity {}: {}", ct.getStravaActivityId(), e.getMessage());
+        }
+    }
+
+    /** Starts every due, unclaimed fetch that is not already running here. */
+    void dispatchDue() {
+        try {
+            List<StravaStreamFetch> due = fetchRepository.findDue(LocalDateTime.now(), PageRequest.of(0, DISPATCH_BATCH));
+            for (StravaStreamFetch fetch : due) {
+                if (inFlight.add(fetch.getId())) {
+                    workers.execute(() -> runLimited(fetch.getId()));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Dispatching Strava stream fetches failed", e);
+        }
+    }
+
+    private void runLimited(Long id) {
+        try {
+            permits.acquire();
+            try {
+                claimAndProcess(id);
+            } finally {
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.remove(id);
+        }
+    }
+
+    /**
+     * Claims the fetch once a worker is free and processes the row as it is then. Skipped
+     * when another worker, here or on another instance, claimed or finished it meanwhile.
+     */
+    private void claimAndProcess(Long id) {
+        String token = instance + "-" + claims.incrementAndGet();
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            Integer claimed = transaction.execute(status -> fetchRepository.claim(id, token, now, now.plus(claimDuration)));
+            if (claimed == null || claimed == 0) return;
+        } catch (Exception e) {
+            log.warn("Claiming Strava stream fetch {} failed: {}", id, e.getMessage());
+            return;
+        }
+        try {
+            fetchRepository.findById(id).ifPresent(this::process);
+        } finally {
+            try {
+                transaction.executeWithoutResult(status -> fetchRepository.release(id, token));
+            } catch (Exception e) {
+                log.warn("Releasing Strava stream fetch {} failed, the claim expires: {}", id, e.getMessage());
+            }
+        }
+    }
+
+    /** Runs one fetch: on success the metrics are persisted and the entry deleted in one transaction. */
+    void process(StravaStreamFetch fetch) {
+        try {
+            Optional<CompletedTraining> training = completedTrainingRepository.findById(fetch.getCompletedTrainingId());
+            Optional<User> user = userRepository.findById(fetch.getUserId());
+            if (training.isEmpty() || user.isEmpty() || !profileComplete(fetch.getStravaActivityId(), user.get())) {
+                fetchRepository.deleteById(fetch.getId());
+                return;
+            }
+            if (!rateLimiter.acquire(MAX_PERMIT_WAIT)) {
+                postpone(fetch);
+                return;
+            }
+            Optional<ActivityStream> stream = fetchStream(fetch.getUserId(), fetch.getStravaActivityId());
+            transaction.executeWithoutResult(status -> {
+                stream.ifPresent(s -> activityMetricsService.calculateAndPersist(training.get(), s, user.get()));
+                fetchRepository.deleteById(fetch.getId());
+            });
+        } catch (RateLimitedException e) {
+            postpone(fetch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            retryLater(fetch, e);
+        }
+    }
+
+    private boolean profileComplete(Long stravaActivityId, User user) {
+        ProfileCompletionDto completion = userProfileValidationService.getProfileCompletion(user);
+        if (!completion.complete()) {
+            log.info("Skipping metric calculation for Strava activity {}. Incomplete profile: {}",
+                    stravaActivityId, completion.missingFields());
+        }
+        return completion.complete();
+    }
+
+    /** Rate limit: try again once the limiter hands out permits, without counting an attempt. */
+    private void postpone(StravaStreamFetch fetch) {
+        fetch.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(Math.max(1000, rateLimiter.waitMillis()))));
+        fetchRepository.save(fetch);
+    }
+
+    private void retryLater(StravaStreamFetch fetch, Exception e) {
+        int attempts = fetch.getAttempts() + 1;
+        if (attempts >= maxAttempts) {
+            log.warn("Giving up on streams of Strava activity {} after {} attempts: {}",
+                    fetch.getStravaActivityId(), attempts, e.getMessage());
+            fetchRepository.deleteById(fetch.getId());
+            return;
+        }
+        log.warn("Could not fetch/compute streams for Strava activity {} (attempt {}): {}",
+                fetch.getStravaActivityId(), attempts, e.getMessage());
+        Duration delay = backoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        fetch.setAttempts(attempts);
+        fetch.setNextAttemptAt(LocalDateTime.now().plus(delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay));
+        String message = String.valueOf(e.getMessage());
+        fetch.setLastError(message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message);
+        fetchRepository.save(fetch);
+    }
+
+    /**
+     * Requests the streams of one activity with the token of {@code userId}. Empty when the
+     * activity has no usable streams.
+     *
+     * @throws RateLimitedException when Strava answers 429
+     */
+    Optional<ActivityStream> fetchStream(Long userId, Long stravaActivityId) {
+        String accessToken = tokenCache.accessToken(userId)
+                .orElseThrow(() -> new IllegalStateException("No Strava token found"));
+        return restClient.get()
+                .uri(apiBaseUrl + "/activities/" + stravaActivityId + "/streams?keys=" + STREAM_KEYS + "&key_by_type=true")
+                .header("Authorization", "Bearer " + accessToken)
+                .exchange((request, response) -> {
+                    rateLimiter.onResponse(response.getHeaders());
+                    int status = response.getStatusCode().value();
+                    if (status == 429) {
+                        rateLimiter.onRateLimited();
+                        throw new RateLimitedException();
+                    }
+                    if (status == 404) {
+                        return Optional.empty();
+                    }
+                    if (response.getStatusCode().isError()) {
+                        throw new IOException("Strava answered " + status + " for streams of activity " + stravaActivityId);
+                    }
+                    return StravaStreamDecoder.decode(objectMapper.getFactory(), response.getBody());
+                });
+    }
+
+    /** Strava answered 429 Too Many Requests. */
+    static final class RateLimitedException extends RuntimeException {
+        RateLimitedException() {
+            super("Strava rate limit exceeded");
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.entity.StravaSyncState;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.repository.StravaSyncStateRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lease on a user's Strava data, held in the user's {@code strava_sync_state} row, so that
+ * two syncs or webhook events never store the same user's activities at the same time,
+ * whether they run on one backend instance or on several.
+ *
+ * <p>Every acquisition gets its own token, so a second acquisition fails even in the same
+ * instance and a release only gives up the lease it was handed. A lease is taken with one
+ * conditional update and expires after {@code strava.sync.lease-seconds}, so an instance
+ * that dies mid-sync blocks the user only until then. Both the lease and its release run in
+ * transactions of their own: they must be visible to the other holders while the work
+ * itself is still running.
+ */
+@Component
+public class StravaSyncLease {
+
+    private static final Logger log = LoggerFactory.getLogger(StravaSyncLease.class);
+
+    private final StravaSyncStateRepository syncStateRepository;
+    private final TransactionTemplate transaction;
+    private final Duration duration;
+    private final String instance;
+    private final AtomicLong acquisitions = new AtomicLong();
+
+    public StravaSyncLease(StravaSyncStateRepository syncStateRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${strava.sync.lease-seconds:600}") long leaseSeconds) {
+        this.syncStateRepository = syncStateRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.duration = Duration.ofSeconds(leaseSeconds);
+        this.instance = instanceId();
+    }
+
+    /**
+     * Takes the lease on the user's Strava data, creating the sync state row first if the
+     * user has none yet.
+     *
+     * @return the token to release the lease with; empty while the lease is held elsewhere
+     */
+    public Optional<String> tryAcquire(User user) {
+        Long userId = user.getId();
+        if (syncStateRepository.findByUserId(userId).isEmpty()) {
+            try {
+                transaction.executeWithoutResult(status -> {
+                    StravaSyncState state = new StravaSyncState();
+                    state.setUser(user);
+                    syncStateRepository.save(state);
+                });
+            } catch (DataIntegrityViolationException e) {
+                // Created concurrently by another request or instance
+            }
+        }
+        String token = instance + "-" + acquisitions.incrementAndGet();
+        LocalDateTime now = LocalDateTime.now();
+        Integer taken = transaction.execute(status ->
+                syncStateRepository.acquireLease(userId, token, now, now.plus(duration)));
+        if (taken == null || taken == 0) {
+            log.debug("Strava data of user {} is leased elsewhere", userId);
+            return Optional.empty();
+        }
+        return Optional.of(token);
+    }
+
+    /**
+     * Gives back the lease taken with {@code token}, unless it expired and was taken by
+     * someone else meanwhile. Failures are logged, the lease then simply expires.
+     */
+    public void release(Long userId, String token) {
+        try {
+            transaction.executeWithoutResult(status -> syncStateRepository.releaseLease(userId, token));
+        } catch (Exception e) {
+            log.warn("Releasing the Strava sync lease of user {} failed: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Identifies this process in lease and queue claim tokens: host name plus a random
+     * suffix.
+     */
+    static String instanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        String id = host + "-" + UUID.randomUUID().toString().substring(0, 8);
+        // Leaves room for the acquisition counter within the 100 characters of the owner columns
+        return id.length() <= 80 ? id : id.substring(id.length() - 80);
+    }
+}
@@ -0,0 +1,83 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.entity.StravaSyncState;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides which Strava activity windows a sync has to list, given the user's
+ * {@link StravaSyncState} and the calendar range being viewed.
+ *
+ * <ul>
+ *   <li>Routine sync: activities starting after the high-water mark minus an overlap (late
+ *       uploads of slightly older activities), at most once per minimum interval.</li>
+ *   <li>Backfill: when the viewed range starts before anything synced so far, that gap is
+ *       listed once and its deletions reconciled.</li>
+ *   <li>Reconciliation: once per reconcile interval (and on the first sync) the whole
+ *       synced period is listed, so activities deleted on Strava are removed locally.</li>
+ * </ul>
+ *
+ * <p>Strava filters by UTC start time while local activities are keyed by local date, so
+ * listings that reconcile deletions start one day before the first reconciled date.
+ *
+ * @param windows   windows to list, in order; empty when nothing is due
+ * @param syncedFrom earliest synced day after this sync
+ * @param reconciles whether this sync runs the full reconciliation
+ */
+public record StravaSyncPlan(List<Window> windows, LocalDate syncedFrom, boolean reconciles) {
+
+    /**
+     * One listing of {@code /athlete/activities}.
+     *
+     * @param after          exclusive lower bound on the start time, epoch seconds
+     * @param before         exclusive upper bound, epoch seconds; null for "up to now"
+     * @param reconcileFrom  first local date whose missing activities are deleted; null for none
+     * @param reconcileTo    last local date whose missing activities are deleted
+     */
+    public record Window(long after, Long before, LocalDate reconcileFrom, LocalDate reconcileTo) {
+
+        boolean reconciles() {
+            return reconcileFrom != null;
+        }
+    }
+
+    public static StravaSyncPlan of(StravaSyncState state, LocalDate requestedStart, LocalDateTime now,
+                                    Duration overlap, Duration minInterval, Duration reconcileInterval) {
+        LocalDate syncedFrom = state.getSyncedFrom();
+        LocalDate newFrom = syncedFrom == null || requestedStart.isBefore(syncedFrom) ? requestedStart : syncedFrom;
+
+        boolean reconcileDue = syncedFrom == null || state.getLastReconciledAt() == null
+                || !state.getLastReconciledAt().plus(reconcileInterval).isAfter(now);
+        if (reconcileDue) {
+            Window full = new Window(epoch(newFrom.minusDays(1)), null, newFrom, now.toLocalDate());
+            return new StravaSyncPlan(List.of(full), newFrom, true);
+        }
+
+        List<Window> windows = new ArrayList<>();
+        if (newFrom.isBefore(syncedFrom)) {
+            windows.add(new Window(epoch(newFrom.minusDays(1)), epoch(syncedFrom.plusDays(1)),
+                    newFrom, syncedFrom.minusDays(1)));
+        }
+        boolean incrementalDue = state.getLastSyncedAt() == null
+                || !state.getLastSyncedAt().plus(minInterval).isAfter(now);
+        if (incrementalDue) {
+            long mark = state.getHighWaterMark() != null ? state.getHighWaterMark() : epoch(syncedFrom);
+            windows.add(new Window(mark - overlap.toSeconds(), null, null, null));
+        }
+        return new StravaSyncPlan(windows, newFrom, false);
+    }
+
+    /** Whether the sync lists the activities after the high-water mark. */
+    boolean listsRecent() {
+        return !windows.isEmpty() && windows.get(windows.size() - 1).before() == null;
+    }
+
+    static long epoch(LocalDate date) {
+        return date.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+    }
+}
@@ -0,0 +1,198 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.dto.StravaSyncCandidateDto;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.repository.StravaSyncStateRepository;
+import com.trainingsplan.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Syncs the Strava activities of every connected user in the background, so dashboards are
+ * current when athletes open the app instead of waiting for a sync on first load.
+ *
+ * <p>Every {@code strava.scheduler.interval-seconds} the users whose sync is due are
+ * dispatched, recently active users first and within each group the longest-waiting
+ * first. A user seen within {@code strava.scheduler.active-window-hours} is due every
+ * {@code strava.scheduler.active-interval-minutes}, any other user every
+ * {@code strava.scheduler.idle-interval-hours}. At most {@code strava.scheduler.workers}
+ * users sync at a time, started in dispatch order. After syncing an active user their
+ * dashboard is built, so the first request finds it cached.
+ *
+ * <p>The scheduler only spends Strava quota while more than
+ * {@code strava.scheduler.quota-reserve} of it is left in the shared
+ * {@link StravaRateLimiter}, keeping the rest for syncs users start themselves, webhooks
+ * and stream fetches. Users that are not started stay due for the next round. Each sync
+ * holds the user's {@link StravaSyncLease}, so several backend instances can run the
+ * scheduler side by side; a failed sync is retried after the active interval.
+ */
+@Service
+public class StravaSyncScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(StravaSyncScheduler.class);
+
+    private final StravaSyncStateRepository syncStateRepository;
+    private final UserRepository userRepository;
+    private final StravaService stravaService;
+    private final DashboardService dashboardService;
+    private final StravaRateLimiter rateLimiter;
+    private final boolean enabled;
+    private final long intervalSeconds;
+    private final Duration activeWindow;
+    private final Duration activeInterval;
+    private final Duration idleInterval;
+    private final double quotaReserve;
+
+    private final Semaphore permits;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final Map<Long, LocalDateTime> failedUntil = new ConcurrentHashMap<>();
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("strava-sync-", 1).factory());
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "strava-sync-poll");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public StravaSyncScheduler(StravaSyncStateRepository syncStateRepository,
+                               UserRepository userRepository,
+                               StravaService stravaService,
+                               DashboardService dashboardService,
+                               StravaRateLimiter rateLimiter,
+                               @Value("${strava.scheduler.enabled:true}") boolean enabled,
+                               @Value("${strava.scheduler.interval-seconds:60}") long intervalSeconds,
+                               @Value("${strava.scheduler.workers:4}") int workers,
+                               @Value("${strava.scheduler.active-window-hours:72}") long activeWindowHours,
+                               @Value("${strava.scheduler.active-interval-minutes:15}") long activeIntervalMinutes,
+                               @Value("${strava.scheduler.idle-interval-hours:12}") long idleIntervalHours,
+                               @Value("${strava.scheduler.quota-reserve:0.5}") double quotaReserve) {
+        this.syncStateRepository = syncStateRepository;
+        this.userRepository = userRepository;
+        this.stravaService = stravaService;
+        this.dashboardService = dashboardService;
+        this.rateLimiter = rateLimiter;
+        this.enabled = enabled;
+        this.intervalSeconds = intervalSeconds;
+        // Fair, so users start in the order they were dispatched
+        this.permits = new Semaphore(Math.max(1, workers), true);
+        this.activeWindow = Duration.ofHours(activeWindowHours);
+        this.activeInterval = Duration.ofMinutes(activeIntervalMinutes);
+        this.idleInterval = Duration.ofHours(idleIntervalHours);
+        this.quotaReserve = quotaReserve;
+    }
+
+    @PostConstruct
+    void start() {
+        if (enabled) {
+            poller.scheduleWithFixedDelay(this::dispatchDue, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        poller.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /** Starts the sync of every due user that is not already running, in priority order. */
+    void dispatchDue() {
+        try {
+            if (!quotaAvailable()) return;
+            LocalDateTime now = LocalDateTime.now();
+            failedUntil.values().removeIf(until -> !until.isAfter(now));
+            for (StravaSyncCandidateDto candidate : dueInOrder(syncStateRepository.findSyncCandidates(), now)) {
+                if (!failedUntil.containsKey(candidate.userId()) && inFlight.add(candidate.userId())) {
+                    workers.execute(() -> runLimited(candidate));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Dispatching background Strava syncs failed", e);
+        }
+    }
+
+    private void runLimited(StravaSyncCandidateDto candidate) {
+        try {
+            permits.acquire();
+            try {
+                process(candidate);
+            } finally {
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.remove(candidate.userId());
+        }
+    }
+
+    /** Syncs one user unless the quota reserve has been reached meanwhile. */
+    void process(StravaSyncCandidateDto candidate) {
+        if (!quotaAvailable()) return;
+        Long userId = candidate.userId();
+        try {
+            User user = userRepository.findById(userId).orElse(null);
+            if (user == null) return;
+            if (stravaService.syncUser(user) && isActive(candidate, LocalDateTime.now())) {
+                warmDashboard(user);
+            }
+            failedUntil.remove(userId);
+        } catch (Exception e) {
+            log.warn("Background Strava sync of user {} failed: {}", userId, e.getMessage());
+            failedUntil.put(userId, LocalDateTime.now().plus(activeInterval));
+        }
+    }
+
+    /** Builds the user's dashboard; the sync itself has succeeded, so a failure here does not back it off. */
+    private void warmDashboard(User user) {
+        try {
+            dashboardService.getDashboard(user);
+        } catch (Exception e) {
+            log.warn("Warming the dashboard of user {} after a background sync failed", user.getId(), e);
+        }
+    }
+
+    /**
+     * The candidates whose sync is due at {@code now}: active users before idle ones, each
+     * group ordered by last sync, never synced first.
+     */
+    List<StravaSyncCandidateDto> dueInOrder(List<StravaSyncCandidateDto> candidates, LocalDateTime now) {
+        Comparator<StravaSyncCandidateDto> priority = Comparator
+                .comparing((StravaSyncCandidateDto c) -> !isActive(c, now))
+                .thenComparing(StravaSyncCandidateDto::lastSyncedAt, Comparator.nullsFirst(Comparator.naturalOrder()));
+        return candidates.stream()
+                .filter(c -> isDue(c, now))
+                .sorted(priority)
+                .toList();
+    }
+
+    private boolean isDue(StravaSyncCandidateDto candidate, LocalDateTime now) {
+        if (candidate.lastSyncedAt() == null) return true;
+        Duration interval = isActive(candidate, now) ? activeInterval : idleInterval;
+        return !candidate.lastSyncedAt().plus(interval).isAfter(now);
+    }
+
+    private boolean isActive(StravaSyncCandidateDto candidate, LocalDateTime now) {
+        return candidate.lastSeenAt() != null && candidate.lastSeenAt().isAfter(now.minus(activeWindow));
+    }
+
+    private boolean quotaAvailable() {
+        return rateLimiter.remainingFraction() > quotaReserve;
+    }
+}
@@ -0,0 +1,305 @@
+package com.trainingsplan.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trainingsplan.entity.StravaToken;
+import com.trainingsplan.repository.StravaTokenRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-user Strava access tokens, kept in memory so a Strava call does not look its token
+ * up in the database.
+ *
+ * <p>A user's token is loaded on first use and refreshed ahead of expiry by a background
+ * timer: every
+ * {@code strava.token.refresh-check-seconds}, cached tokens expiring within
+ * {@code strava.token.refresh-ahead-seconds} are refreshed. A caller that still finds its
+ * token about to expire refreshes it itself. Concurrent refreshes for the same user share
+ * one in-flight request (single flight), so a burst of parallel Strava calls never spends
+ * the refresh token twice.
+ *
+ * <p>Tokens are written through to {@code strava_token}; {@link #put} and {@link #evict}
+ * keep the cache in step with connects and disconnects on this instance. For connects on
+ * other instances, users without a token are only remembered for
+ * {@code strava.token.absent-ttl-seconds}. A refresh that fails because another instance
+ * already rotated the refresh token is repeated once with the row read from the database.
+ */
+@Service
+public class StravaTokenCache {
+
+    private static final Logger log = LoggerFactory.getLogger(StravaTokenCache.class);
+
+    /** A token expiring within this margin is refreshed before it is handed out. */
+    private static final long EXPIRY_MARGIN_SECONDS = 300;
+
+    private final StravaTokenRepository tokenRepository;
+    private final ObjectMapper objectMapper;
+    private final RestClient restClient;
+    private final String clientId;
+    private final String clientSecret;
+    private final String tokenUrl;
+    private final long refreshAheadSeconds;
+    private final long refreshCheckSeconds;
+    private final long absentTtlSeconds;
+
+    private final Map<Long, Entry> tokens = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<Entry>> refreshes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "strava-token-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** A cached token; without {@code tokenId} the user has none, rechecked after {@code expiresAt}. */
+    private record Entry(Long tokenId, String accessToken, String refreshToken, long expiresAt) {
+        static Entry of(StravaToken token) {
+            return new Entry(token.getId(), token.getAccessToken(), token.getRefreshToken(),
+                    token.getExpiresAt() != null ? token.getExpiresAt() : 0);
+        }
+
+        static Entry absent(long recheckAt) {
+            return new Entry(null, null, null, recheckAt);
+        }
+
+        boolean isAbsent() {
+            return tokenId == null;
+        }
+    }
+
+    public StravaTokenCache(StravaTokenRepository tokenRepository,
+                            ObjectMapper objectMapper,
+                            @Value("${strava.client-id}") String clientId,
+                            @Value("${strava.client-secret}") String clientSecret,
+                            @Value("${strava.oauth-token-url:https://www.strava.com/oauth/token}") String tokenUrl,
+                            @Value("${strava.token.refresh-ahead-seconds:900}") long refreshAheadSeconds,
+                            @Value("${strava.token.refresh-check-seconds:60}") long refreshCheckSeconds,
+                            @Value("${strava.token.absent-ttl-seconds:60}") long absentTtlSeconds) {
+        this.tokenRepository = tokenRepository;
+        this.objectMapper = objectMapper;
+        this.restClient = RestClient.create();
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        this.tokenUrl = tokenUrl;
+        this.refreshAheadSeconds = refreshAheadSeconds;
+        this.refreshCheckSeconds = refreshCheckSeconds;
+        this.absentTtlSeconds = absentTtlSeconds;
+    }
+
+    @PostConstruct
+    void start() {
+        refresher.scheduleWithFixedDelay(this::refreshExpiring, refreshCheckSeconds, refreshCheckSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /** A valid access token of the user, refreshed first if needed; empty when Strava is not connected. */
+    public Optional<String> accessToken(Long userId) {
+        Entry entry = entry(userId);
+        if (entry.isAbsent()) return Optional.empty();
+        if (entry.expiresAt() - EXPIRY_MARGIN_SECONDS <= nowSeconds()) {
+            entry = refresh(userId, entry);
+        }
+        return entry.isAbsent() ? Optional.empty() : Optional.of(entry.accessToken());
+    }
+
+    public boolean isConnected(Long userId) {
+        return userId != null && !entry(userId).isAbsent();
+    }
+
+    /** The stored token with its athlete details, read from the database. */
+    public Optional<StravaToken> findToken(Long userId) {
+        return tokenRepository.findByUserId(userId);
+    }
+
+    /** Caches a token that was just stored for {@code userId}. */
+    public void put(Long userId, StravaToken token) {
+        tokens.put(userId, Entry.of(token));
+    }
+
+    /**
+     * Whether the athlete revoked this app's access: refreshes the user's token and reports
+     * whether Strava rejects the refresh token as an invalid grant. Any other failure does
+     * not count as revoked.
+     */
+    public boolean isRevoked(Long userId) {
+        Entry entry = entry(userId);
+        if (entry.isAbsent()) return false;
+        try {
+            refresh(userId, entry);
+            return false;
+        } catch (InvalidGrantException e) {
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Could not check the Strava authorization of user {}: {}", userId, e.getMessage());
+            return false;
+        }
+    }
+
+    /** Forgets the user's token, e.g. after a disconnect; the next use reads the database again. */
+    public void evict(Long userId) {
+        tokens.remove(userId);
+    }
+
+    /**
+     * Refreshes every cached token that expires within the refresh-ahead window and forgets
+     * users without a token whose entry is due for a recheck.
+     */
+    void refreshExpiring() {
+        long now = nowSeconds();
+        tokens.values().removeIf(entry -> entry.isAbsent() && entry.expiresAt() <= now);
+        long due = now + refreshAheadSeconds;
+        tokens.forEach((userId, entry) -> {
+            if (entry.isAbsent() || entry.expiresAt() > due) return;
+            try {
+                refresh(userId, entry);
+            } catch (Exception e) {
+                log.warn("Background refresh of the Strava token of user {} failed: {}", userId, e.getMessage());
+            }
+        });
+    }
+
+    private Entry entry(Long userId) {
+        Entry entry = tokens.get(userId);
+        if (entry != null && !(entry.isAbsent() && entry.expiresAt() <= nowSeconds())) return entry;
+        Entry loaded = load(userId);
+        // A put or refresh that raced with the load is newer than what was read
+        return tokens.compute(userId, (id, cached) -> cached == null || cached == entry ? loaded : cached);
+    }
+
+    private Entry load(Long userId) {
+        return tokenRepository.findByUserId(userId)
+                .map(Entry::of)
+                .orElseGet(() -> Entry.absent(nowSeconds() + absentTtlSeconds));
+    }
+
+    /**
+     * Refreshes the user's token unless a refresh is already running, in which case its
+     * result is shared. An absent entry when the token was removed meanwhile.
+     */
+    private Entry refresh(Long userId, Entry stale) {
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> running = refreshes.putIfAbsent(userId, mine);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            // A flight that completed just before ours was registered already did the work
+            Entry current = tokens.get(userId);
+            Entry result = current != null && !current.isAbsent() && current.expiresAt() > stale.expiresAt()
+                    ? current
+                    : requestRefresh(userId, stale);
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            refreshes.remove(userId, mine);
+        }
+    }
+
+    private static Entry await(CompletableFuture<Entry> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private Entry requestRefresh(Long userId, Entry stale) {
+        JsonNode root;
+        try {
+            root = post(stale.refreshToken());
+        } catch (RuntimeException e) {
+            // Another instance may have rotated the refresh token: continue from the stored row
+            Optional<StravaToken> stored = tokenRepository.findById(stale.tokenId());
+            if (stored.isEmpty()) {
+                tokens.remove(userId);
+                return Entry.absent(nowSeconds());
+            }
+            Entry current = Entry.of(stored.get());
+            if (Objects.equals(current.refreshToken(), stale.refreshToken())) {
+                throw e;
+            }
+            if (current.expiresAt() - EXPIRY_MARGIN_SECONDS > nowSeconds()) {
+                tokens.put(userId, current);
+                return current;
+            }
+            root = post(current.refreshToken());
+        }
+
+        Optional<StravaToken> stored = tokenRepository.findById(stale.tokenId());
+        if (stored.isEmpty()) {
+            // Disconnected while the refresh was running
+            tokens.remove(userId);
+            return Entry.absent(nowSeconds());
+        }
+        StravaToken token = stored.get();
+        token.setAccessToken(root.path("access_token").asText());
+        token.setRefreshToken(root.path("refresh_token").asText());
+        token.setExpiresAt(root.path("expires_at").asLong());
+        Entry refreshed = Entry.of(tokenRepository.save(token));
+        tokens.put(userId, refreshed);
+        return refreshed;
+    }
+
+    /**
+     * Exchanges {@code refreshToken} at Strava's token endpoint.
+     *
+     * @throws InvalidGrantException when Strava rejects the refresh token
+     */
+    private JsonNode post(String refreshToken) {
+        MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
+        formData.add("client_id", clientId);
+        formData.add("client_secret", clientSecret);
+        formData.add("grant_type", "refresh_token");
+        formData.add("refresh_token", refreshToken);
+        try {
+            String responseBody = restClient.post()
+                    .uri(tokenUrl)
+                    .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                    .body(formData)
+                    .retrieve()
+                    .body(String.class);
+            return objectMapper.readTree(responseBody);
+        } catch (HttpClientErrorException.BadRequest | HttpClientErrorException.Unauthorized e) {
+            throw new InvalidGrantException(e);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to refresh Strava token", e);
+        }
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    /** Strava rejected the refresh token: it was revoked by the athlete or already rotated. */
+    static final class InvalidGrantException extends RuntimeException {
+        InvalidGrantException(Throwable cause) {
+            super("Strava rejected the refresh token", cause);
+        }
+    }
+}
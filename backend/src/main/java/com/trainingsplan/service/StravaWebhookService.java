@@ -0,0 +1,432 @@
+package com.trainingsplan.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trainingsplan.dto.StravaActivityDto;
+import com.trainingsplan.dto.StravaWebhookEventDto;
+import com.trainingsplan.entity.StravaToken;
+import com.trainingsplan.entity.StravaWebhookAction;
+import com.trainingsplan.entity.StravaWebhookEvent;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.repository.StravaTokenRepository;
+import com.trainingsplan.repository.StravaWebhookEventRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Receives Strava push subscription events and applies them in the background, so new,
+ * edited and deleted activities reach the database without a user-facing sync.
+ *
+ * <p>{@link #receive} only records the event in {@code strava_webhook_events}, which holds
+ * at most one row per activity: a burst of {@code create}/{@code update} events for the
+ * same activity collapses into one fetch, a {@code delete} replaces whatever was queued,
+ * and events older than the queued one are ignored. Workers take due rows, fetch the
+ * activity once a permit from the shared {@link StravaRateLimiter} is available and apply
+ * it through {@link StravaService#applyActivity} (which queues the streams and metrics
+ * with the {@link StravaStreamFetcher}) or {@link StravaService#removeActivity}, holding the
+ * user's {@link StravaSyncLease} so it never overlaps with a sync of the same user. Failures
+ * are retried with exponential backoff up to {@code strava.webhook.max-attempts}; a 429 or
+ * a used-up quota postpones the event without counting as an attempt, as does a lease that
+ * is held elsewhere.
+ *
+ * <p>The endpoint is open, so an event is never trusted on its own. Events are only
+ * accepted for the configured {@code strava.webhook.subscription-id}, none at all without
+ * one. Every activity event, deletes included, is checked against Strava with the owner's
+ * token: only an activity of that athlete is applied, and only the owner's own copy is
+ * removed once Strava answers 404. A deauthorization disconnects the user only after
+ * Strava rejects their refresh token.
+ *
+ * <p>Like the stream fetches, the queue is polled every {@code strava.webhook.poll-seconds}
+ * and right after an event arrives, and a worker claims a row until
+ * {@code strava.webhook.claim-seconds} from now before processing it, so several backend
+ * instances can share the queue.
+ */
+@Service
+public class StravaWebhookService {
+
+    private static final Logger log = LoggerFactory.getLogger(StravaWebhookService.class);
+
+    /** Longer rate-limit waits postpone the event instead of holding a worker. */
+    private static final Duration MAX_PERMIT_WAIT = Duration.ofSeconds(10);
+    private static final Duration MAX_BACKOFF = Duration.ofHours(6);
+    private static final Duration LEASE_RETRY = Duration.ofSeconds(15);
+    private static final int DISPATCH_BATCH = 200;
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final StravaWebhookEventRepository eventRepository;
+    private final StravaTokenRepository tokenRepository;
+    private final StravaService stravaService;
+    private final StravaTokenCache tokenCache;
+    private final StravaRateLimiter rateLimiter;
+    private final StravaSyncLease syncLease;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transaction;
+    private final RestClient restClient;
+    private final String apiBaseUrl;
+    private final String verifyToken;
+    private final Long subscriptionId;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final long pollSeconds;
+    private final Duration claimDuration;
+    private final String instance = StravaSyncLease.instanceId();
+    private final AtomicLong claims = new AtomicLong();
+
+    private final Semaphore permits;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("strava-webhook-", 1).factory());
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "strava-webhook-poll");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public StravaWebhookService(StravaWebhookEventRepository eventRepository,
+                                StravaTokenRepository tokenRepository,
+                                StravaService stravaService,
+                                StravaTokenCache tokenCache,
+                                StravaRateLimiter rateLimiter,
+                                StravaSyncLease syncLease,
+                                ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${strava.api-base-url:https://www.strava.com/api/v3}") String apiBaseUrl,
+                                @Value("${strava.webhook.verify-token:}") String verifyToken,
+                                @Value("${strava.webhook.subscription-id:}") Long subscriptionId,
+                                @Value("${strava.webhook.concurrency:4}") int concurrency,
+                                @Value("${strava.webhook.max-attempts:6}") int maxAttempts,
+                                @Value("${strava.webhook.backoff-seconds:30}") long backoffSeconds,
+                                @Value("${strava.webhook.poll-seconds:30}") long pollSeconds,
+                                @Value("${strava.webhook.claim-seconds:300}") long claimSeconds) {
+        this.eventRepository = eventRepository;
+        this.tokenRepository = tokenRepository;
+        this.stravaService = stravaService;
+        this.tokenCache = tokenCache;
+        this.rateLimiter = rateLimiter;
+        this.syncLease = syncLease;
+        this.objectMapper = objectMapper;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.restClient = RestClient.create();
+        this.apiBaseUrl = apiBaseUrl;
+        this.verifyToken = verifyToken;
+        this.subscriptionId = subscriptionId;
+        this.permits = new Semaphore(Math.max(1, concurrency));
+        this.maxAttempts = maxAttempts;
+        this.backoff = Duration.ofSeconds(backoffSeconds);
+        this.pollSeconds = pollSeconds;
+        this.claimDuration = Duration.ofSeconds(claimSeconds);
+    }
+
+    @PostConstruct
+    void start() {
+        poller.scheduleWithFixedDelay(this::dispatchDue, pollSeconds, pollSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        poller.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Answers the subscription handshake: the challenge to echo when {@code token} matches
+     * {@code strava.webhook.verify-token}, empty otherwise or when no token is configured.
+     */
+    public Optional<String> verifySubscription(String mode, String token, String challenge) {
+        if (verifyToken.isBlank() || !"subscribe".equals(mode) || !verifyToken.equals(token) || challenge == null) {
+            return Optional.empty();
+        }
+        return Optional.of(challenge);
+    }
+
+    /**
+     * Records a pushed event and wakes the workers. Strava expects an answer within two
+     * seconds, so nothing is fetched here.
+     */
+    public void receive(StravaWebhookEventDto event) {
+        if (enqueue(event)) {
+            poller.execute(this::dispatchDue);
+        }
+    }
+
+    /** Merges the event into the queue; false when it needs no processing. */
+    boolean enqueue(StravaWebhookEventDto event) {
+        if (subscriptionId == null) {
+            log.warn("Ignoring Strava webhook event: strava.webhook.subscription-id is not configured");
+            return false;
+        }
+        if (!subscriptionId.equals(event.subscriptionId())) {
+            log.warn("Ignoring Strava webhook event for unknown subscription {}", event.subscriptionId());
+            return false;
+        }
+        if ("athlete".equals(event.objectType())) {
+            if (event.updates() != null && "false".equals(event.updates().get("authorized")) && event.ownerId() != null) {
+                workers.execute(() -> deauthorize(event.ownerId()));
+            }
+            return false;
+        }
+        StravaWebhookAction action = action(event);
+        if (action == null || event.objectId() == null || event.ownerId() == null) {
+            log.debug("Ignoring Strava webhook event {}", event);
+            return false;
+        }
+
+        try {
+            transaction.executeWithoutResult(status -> merge(event, action));
+        } catch (DataIntegrityViolationException | OptimisticLockingFailureException e) {
+            // A concurrent event for the same activity won the insert or update: merge into it
+            transaction.executeWithoutResult(status -> merge(event, action));
+        }
+        return true;
+    }
+
+    private static StravaWebhookAction action(StravaWebhookEventDto event) {
+        if (!"activity".equals(event.objectType()) || event.aspectType() == null) return null;
+        return switch (event.aspectType()) {
+            case "create", "update" -> StravaWebhookAction.UPSERT;
+            case "delete" -> StravaWebhookAction.DELETE;
+            default -> null;
+        };
+    }
+
+    private void merge(StravaWebhookEventDto event, StravaWebhookAction action) {
+        LocalDateTime now = LocalDateTime.now();
+        long eventTime = event.eventTime() != null ? event.eventTime() : System.currentTimeMillis() / 1000;
+        StravaWebhookEvent queued = eventRepository.findByStravaActivityId(event.objectId()).orElse(null);
+        if (queued == null) {
+            queued = new StravaWebhookEvent();
+            queued.setStravaActivityId(event.objectId());
+            queued.setReceivedAt(now);
+        } else if (queued.getEventTime() > eventTime) {
+            return;
+        }
+        queued.setAthleteId(event.ownerId());
+        queued.setAction(action);
+        queued.setEventTime(eventTime);
+        queued.setAttempts(0);
+        queued.setLastError(null);
+        queued.setNextAttemptAt(now);
+        eventRepository.save(queued);
+    }
+
+    /**
+     * The athlete reportedly revoked access: once Strava confirms by rejecting the refresh
+     * token, drop the token as a disconnect from the app would.
+     */
+    void deauthorize(Long athleteId) {
+        try {
+            tokenRepository.findByAthleteIdWithUser(athleteId)
+                    .map(StravaToken::getUser)
+                    .filter(user -> tokenCache.isRevoked(user.getId()))
+                    .ifPresent(user -> {
+                        log.info("Strava athlete {} revoked access, disconnecting user {}", athleteId, user.getId());
+                        stravaService.disconnect(user.getId());
+                    });
+        } catch (Exception e) {
+            log.warn("Handling the deauthorization of Strava athlete {} failed: {}", athleteId, e.getMessage());
+        }
+    }
+
+    /** Starts every due, unclaimed event that is not already running here. */
+    void dispatchDue() {
+        try {
+            List<StravaWebhookEvent> due = eventRepository.findDue(LocalDateTime.now(), PageRequest.of(0, DISPATCH_BATCH));
+            for (StravaWebhookEvent event : due) {
+                if (inFlight.add(event.getId())) {
+                    workers.execute(() -> runLimited(event.getId()));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Dispatching Strava webhook events failed", e);
+        }
+    }
+
+    private void runLimited(Long id) {
+        try {
+            permits.acquire();
+            try {
+                claimAndProcess(id);
+            } finally {
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.remove(id);
+        }
+    }
+
+    /**
+     * Claims the event once a worker is free and processes the row as it is then. Skipped
+     * when another worker, here or on another instance, claimed or finished it meanwhile.
+     */
+    private void claimAndProcess(Long id) {
+        String token = instance + "-" + claims.incrementAndGet();
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            Integer claimed = transaction.execute(status -> eventRepository.claim(id, token, now, now.plus(claimDuration)));
+            if (claimed == null || claimed == 0) return;
+        } catch (Exception e) {
+            log.warn("Claiming Strava webhook event {} failed: {}", id, e.getMessage());
+            return;
+        }
+        try {
+            eventRepository.findById(id).ifPresent(this::process);
+        } finally {
+            try {
+                transaction.executeWithoutResult(status -> eventRepository.release(id, token));
+            } catch (Exception e) {
+                log.warn("Releasing Strava webhook event {} failed, the claim expires: {}", id, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Applies one queued event: the activity is fetched with the owner's token whatever the
+     * event says, then the local change and the removal of the row commit together. When a
+     * newer event was merged meanwhile, the row stays for that one.
+     */
+    void process(StravaWebhookEvent event) {
+        try {
+            Optional<User> owner = tokenRepository.findByAthleteIdWithUser(event.getAthleteId()).map(StravaToken::getUser);
+            if (owner.isEmpty()) {
+                log.debug("Dropping Strava webhook event for athlete {} without a connected user", event.getAthleteId());
+                eventRepository.delete(event);
+                return;
+            }
+            User user = owner.get();
+
+            if (!rateLimiter.acquire(MAX_PERMIT_WAIT)) {
+                postpone(event);
+                return;
+            }
+            Optional<StravaActivityDto> fetched = fetchActivity(user.getId(), event.getStravaActivityId());
+            if (fetched.isPresent() && !ownedBy(fetched.get(), event.getAthleteId())) {
+                log.warn("Dropping Strava webhook event: activity {} does not belong to athlete {}",
+                        event.getStravaActivityId(), event.getAthleteId());
+                eventRepository.delete(event);
+                return;
+            }
+            Optional<String> lease = syncLease.tryAcquire(user);
+            if (lease.isEmpty()) {
+                postpone(event, LEASE_RETRY);
+                return;
+            }
+            try {
+                transaction.executeWithoutResult(status -> {
+                    // Gone or no longer visible to the owner's token counts as deleted
+                    fetched.ifPresentOrElse(dto -> stravaService.applyActivity(dto, user),
+                            () -> stravaService.removeActivity(event.getStravaActivityId(), user));
+                    eventRepository.delete(event);
+                });
+            } finally {
+                syncLease.release(user.getId(), lease.get());
+            }
+        } catch (OptimisticLockingFailureException e) {
+            log.debug("Strava webhook event for activity {} changed while processing", event.getStravaActivityId());
+        } catch (StravaStreamFetcher.RateLimitedException e) {
+            postpone(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            retryLater(event, e);
+        }
+    }
+
+    private static boolean ownedBy(StravaActivityDto activity, Long athleteId) {
+        return activity.getAthlete() != null && athleteId.equals(activity.getAthlete().id());
+    }
+
+    /**
+     * Requests one activity with the token of {@code userId}. Empty when Strava answers 404,
+     * i.e. it was deleted or is not visible to this token.
+     *
+     * @throws StravaStreamFetcher.RateLimitedException when Strava answers 429
+     */
+    Optional<StravaActivityDto> fetchActivity(Long userId, Long stravaActivityId) {
+        String accessToken = tokenCache.accessToken(userId)
+                .orElseThrow(() -> new IllegalStateException("No Strava token found"));
+        return restClient.get()
+                .uri(apiBaseUrl + "/activities/" + stravaActivityId)
+                .header("Authorization", "Bearer " + accessToken)
+                .exchange((request, response) -> {
+                    rateLimiter.onResponse(response.getHeaders());
+                    int status = response.getStatusCode().value();
+                    if (status == 429) {
+                        rateLimiter.onRateLimited();
+                        throw new StravaStreamFetcher.RateLimitedException();
+                    }
+                    if (status == 404) {
+                        return Optional.empty();
+                    }
+                    if (response.getStatusCode().isError()) {
+                        throw new IOException("Strava answered " + status + " for activity " + stravaActivityId);
+                    }
+                    return Optional.of(objectMapper.readValue(response.getBody(), StravaActivityDto.class));
+                });
+    }
+
+    /** Rate limit: try again once the limiter hands out permits, without counting an attempt. */
+    private void postpone(StravaWebhookEvent event) {
+        postpone(event, Duration.ofMillis(Math.max(1000, rateLimiter.waitMillis())));
+    }
+
+    private void postpone(StravaWebhookEvent event, Duration delay) {
+        event.setNextAttemptAt(LocalDateTime.now().plus(delay));
+        saveIfUnchanged(event);
+    }
+
+    private void retryLater(StravaWebhookEvent event, Exception e) {
+        int attempts = event.getAttempts() + 1;
+        if (attempts >= maxAttempts) {
+            log.warn("Giving up on Strava webhook event for activity {} after {} attempts: {}",
+                    event.getStravaActivityId(), attempts, e.getMessage());
+            try {
+                eventRepository.delete(event);
+            } catch (OptimisticLockingFailureException ignored) {
+                // A newer event replaced this one and is processed on its own
+            }
+            return;
+        }
+        log.warn("Could not apply Strava webhook event for activity {} (attempt {}): {}",
+                event.getStravaActivityId(), attempts, e.getMessage());
+        Duration delay = backoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        event.setAttempts(attempts);
+        event.setNextAttemptAt(LocalDateTime.now().plus(delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay));
+        String message = String.valueOf(e.getMessage());
+        event.setLastError(message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message);
+        saveIfUnchanged(event);
+    }
+
+    /** Saves the row unless a newer event was merged into it, which then takes precedence. */
+    private void saveIfUnchanged(StravaWebhookEvent event) {
+        try {
+            eventRepository.save(event);
+        } catch (OptimisticLockingFailureException ignored) {
+            // The merged event is due right away
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.trainingsplan.service;
 
+import com.trainingsplan.service.stream.ActivityStream;
 import com.trainingsplan.service.trimp.TRIMPQuality;
 import com.trainingsplan.service.trimp.TRIMPResult;
 import org.springframework.stereotype.Service;
@@ -101,6 +102,56 @@ public class TRIMPCalculator {
         return new TRIMPResult(trimp, quality, coverage);
     }
 
+    /**
+     * Computes TRIMP from the primitive columns of an {@link ActivityStream}.
+     * Same formula and edge-case handling as the {@code List}-based overload.
+     *
+     * @param stream samples of one activity (missing HR is tracked by the stream's bitmap)
+     * @param hrRest resting heart rate in bpm (must be &gt; 0)
+     * @param hrMax  maximum heart rate in bpm (must be &gt; hrRest)
+     * @param k      Bannister sex coefficient (see {@link #K_MALE} / {@link #K_FEMALE})
+     * @return computed result, or {@code null} if the input is insufficient
+     */
+    public TRIMPResult calculate(ActivityStream stream, int hrRest, int hrMax, double k) {
+        if (stream == null || stream.size() < 2) {
+            return null;
+        }
+
+        double hrRange = hrMax - hrRest;
+        if (hrRange <= 0) {
+            return null;
+        }
+
+        int n = stream.size();
+        double trimp = 0.0;
+        double validDurationSec = 0.0;
+
+        for (int i = 0; i < n - 1; i++) {
+            double dt = stream.time(i + 1) - stream.time(i);
+            if (dt <= 0) continue;
+            if (!stream.hasHeartRate(i)) continue;
+
+            validDurationSec += dt;
+
+            double dtMin = dt / 60.0;
+            double deltaHR = (stream.heartRate(i) - hrRest) / hrRange;
+            deltaHR = Math.max(0.0, Math.min(1.0, deltaHR));
+
+            trimp += dtMin * deltaHR * Math.exp(k * deltaHR);
+        }
+
+        double totalDurationSec = Math.max(0, stream.time(n - 1) - stream.time(0));
+        double coverage = (totalDurationSec > 0)
+                ? Math.min(validDurationSec / totalDurationSec, 1.0)
+                : 0.0;
+
+        TRIMPQuality quality = (coverage < LOW_QUALITY_THRESHOLD)
+                ? TRIMPQuality.LOW
+                : TRIMPQuality.OK;
+
+        return new TRIMPResult(trimp, quality, coverage);
+    }
+
     private double computeTotalDuration(List<Integer> timeSeconds) {
         int n = timeSeconds.size();
         Integer first = null, last = null;
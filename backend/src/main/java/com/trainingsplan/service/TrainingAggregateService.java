@@ -0,0 +1,113 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.entity.AggregateGranularity;
+import com.trainingsplan.repository.TrainingAggregateWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Keeps the materialized {@code training_aggregates} buckets (day, ISO week, month, year ×
+ * sport × training type) in line with {@code completed_trainings}, so that statistics
+ * consumers read O(buckets) rows instead of scanning a user's activity history.
+ *
+ * <p>Every code path that inserts, deletes or retypes activities reports the affected
+ * training dates via {@link #activitiesChanged}. Only the buckets containing those dates
+ * are rebuilt: the day buckets from the activities, the longer periods from the day buckets.
+ *
+ * <p>Inside a transaction the rebuild runs after commit, in its own transaction, so it sees
+ * the committed activity rows and a failed request leaves the aggregates untouched. A
+ * rebuild that loses a deadlock or lock wait to a concurrent one of the same user is
+ * retried; one that still fails is logged and never fails the change that triggered it,
+ * the buckets then stay stale until the next change of those days or
+ * {@link #rebuildForUser}.
+ */
+@Service
+public class TrainingAggregateService {
+
+    private static final Logger log = LoggerFactory.getLogger(TrainingAggregateService.class);
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final List<AggregateGranularity> ROLLUPS = List.of(
+            AggregateGranularity.WEEK, AggregateGranularity.MONTH, AggregateGranularity.YEAR);
+
+    private final TrainingAggregateWriter writer;
+    private final TransactionTemplate newTransaction;
+
+    public TrainingAggregateService(TrainingAggregateWriter writer, PlatformTransactionManager transactionManager) {
+        this.writer = writer;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /** Rebuilds the buckets of {@code userId} that contain any of {@code trainingDates}. */
+    public void activitiesChanged(Long userId, Collection<LocalDate> trainingDates) {
+        if (userId == null || trainingDates.isEmpty()) return;
+        Set<LocalDate> days = new TreeSet<>(trainingDates);
+        afterCommit(() -> inOwnTransaction(userId, () -> {
+            writer.rebuildDays(userId, days);
+            rollUp(userId, days);
+        }));
+    }
+
+    /** Rebuilds all buckets of {@code userId}, e.g. after activities were reassigned in bulk. */
+    public void rebuildForUser(Long userId) {
+        if (userId == null) return;
+        afterCommit(() -> inOwnTransaction(userId, () -> rollUp(userId, writer.rebuildAllDays(userId))));
+    }
+
+    /** Runs {@code rebuild} in a new transaction, retried on lock conflicts; failures are logged. */
+    private void inOwnTransaction(Long userId, Runnable rebuild) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                newTransaction.executeWithoutResult(status -> rebuild.run());
+                return;
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    log.error("Rebuilding training aggregates of user {} failed after {} attempts", userId, attempt, e);
+                    return;
+                }
+                log.debug("Training aggregates of user {} locked, retrying: {}", userId, e.getMessage());
+            } catch (Exception e) {
+                log.error("Rebuilding training aggregates of user {} failed", userId, e);
+                return;
+            }
+        }
+    }
+
+    private void rollUp(Long userId, Collection<LocalDate> days) {
+        for (AggregateGranularity granularity : ROLLUPS) {
+            Set<LocalDate> starts = new TreeSet<>();
+            for (LocalDate day : days) {
+                starts.add(granularity.start(day));
+            }
+            writer.rollUp(userId, granularity, starts);
+        }
+    }
+
+    private static void afterCommit(Runnable work) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            work.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                work.run();
+            }
+        });
+    }
+}
@@ -6,12 +6,18 @@ import com.trainingsplan.dto.Workout;
 import org.springframework.stereotype.Service;
 import pacr.training.simulation.dto.WorkoutImpactDTO;
 
+import java.util.List;
+import java.util.stream.Stream;
+
 @Service
 public class TrainingImpactService {
 
     private static final String DEFAULT_GOAL = "Improve aerobic running fitness";
     private static final int DEFAULT_WEEKS_TO_RACE = 8;
     private static final double FATIGUE_SCORE_SCALE = 100.0;
+    static final int MAX_BATCH_SIZE = 500;
+    /** Below this many workouts the engine is faster than handing work to other threads. */
+    private static final int PARALLEL_THRESHOLD = 64;
 
     private final AthleteStateService athleteStateService;
     private final TrainingImpactEngine trainingImpactEngine;
@@ -33,6 +39,31 @@ public class TrainingImpactService {
         return trainingImpactEngine.predictImpact(workout, athleteState);
     }
 
+    /**
+     * Predicts the impact of each workout on the same athlete state, e.g. for the candidates
+     * of a planning screen. The state is loaded once; the predictions are independent of
+     * each other and are evaluated in parallel for large batches.
+     *
+     * @return one impact per workout, in the order of {@code workouts}
+     */
+    public List<WorkoutImpactDTO> predictImpacts(String userId, List<Workout> workouts) {
+        if (workouts == null || workouts.isEmpty()) {
+            throw new IllegalArgumentException("workouts are required");
+        }
+        if (workouts.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("at most " + MAX_BATCH_SIZE + " workouts per request");
+        }
+        if (workouts.contains(null)) {
+            throw new IllegalArgumentException("workouts must not contain null");
+        }
+
+        Long numericUserId = parseNumericUserId(userId);
+        AthleteState athleteState = mapAthleteState(athleteStateService.getAthleteState(numericUserId));
+
+        Stream<Workout> stream = workouts.size() >= PARALLEL_THRESHOLD ? workouts.parallelStream() : workouts.stream();
+        return stream.map(workout -> trainingImpactEngine.predictImpact(workout, athleteState)).toList();
+    }
+
     private Long parseNumericUserId(String userId) {
         if (userId == null || userId.isBlank()) {
             throw new IllegalArgumentException("userId is required");
@@ -59,7 +90,7 @@ public class TrainingImpactService {
                 fitness,
                 dto.getEfficiencyScore(),
                 dto.getLongRunCapacityMinutes(),
-                dto.getRunningZones()
+                dto.getRunningZones() != null ? List.copyOf(dto.getRunningZones()) : null
         );
     }
 
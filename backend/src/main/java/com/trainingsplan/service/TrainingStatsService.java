@@ -1,8 +1,9 @@
 package com.trainingsplan.service;
 
 import com.trainingsplan.dto.TrainingStatsDto;
-import com.trainingsplan.entity.CompletedTraining;
-import com.trainingsplan.repository.CompletedTrainingRepository;
+import com.trainingsplan.dto.TrainingStatsSumDto;
+import com.trainingsplan.entity.AggregateGranularity;
+import com.trainingsplan.repository.TrainingAggregateRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -12,35 +13,40 @@ import java.time.YearMonth;
 import java.time.format.TextStyle;
 import java.time.temporal.IsoFields;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
 
+/**
+ * Distance, duration, elevation and activity count per day, ISO week, month or year.
+ *
+ * <p>Buckets are read from the materialized {@code training_aggregates} of the matching
+ * granularity (see {@link TrainingAggregateService}); filtering by training type / sport
+ * and summing over them happen in one {@code GROUP BY} query, so the cost depends on the
+ * number of buckets, not on the length of the activity history. Week and month buckets
+ * always cover the whole period. Distances are rounded once per bucket.
+ */
 @Service
 public class TrainingStatsService {
 
     @Autowired
-    private CompletedTrainingRepository completedTrainingRepository;
+    private TrainingAggregateRepository trainingAggregateRepository;
 
     public TrainingStatsDto getStats(Long userId, String period, String trainingType, String sport) {
         LocalDate today = LocalDate.now();
         LocalDate from = resolveFromDate(period, today);
         LocalDate to = resolveToDate(period, today, from);
 
-        List<CompletedTraining> trainings = completedTrainingRepository
-                .findByUserIdAndTrainingDateBetweenOrderByTrainingDate(userId, from, to);
-
-        trainings = applyFilters(trainings, trainingType, sport);
-
-        List<TrainingStatsDto.Bucket> buckets = buildBuckets(period, trainings, from, to);
+        List<TrainingStatsDto.Bucket> buckets = buildBuckets(
+                userId, period, from, to, normalizeFilter(trainingType), normalizeFilter(sport));
 
         double totalDistanceKm = buckets.stream().mapToDouble(TrainingStatsDto.Bucket::getDistanceKm).sum();
         int totalDurationSeconds = buckets.stream().mapToInt(TrainingStatsDto.Bucket::getDurationSeconds).sum();
         int totalActivityCount = buckets.stream().mapToInt(TrainingStatsDto.Bucket::getActivityCount).sum();
 
-        totalDistanceKm = Math.round(totalDistanceKm * 100.0) / 100.0;
+        totalDistanceKm = round2(totalDistanceKm);
 
         return new TrainingStatsDto(buckets, totalDistanceKm, totalDurationSeconds, totalActivityCount);
     }
@@ -66,80 +72,61 @@ public class TrainingStatsService {
         return today;
     }
 
-    private List<CompletedTraining> applyFilters(List<CompletedTraining> trainings,
-                                                  String trainingType, String sport) {
-        List<CompletedTraining> result = trainings;
-
-        if (trainingType != null && !trainingType.isBlank()) {
-            result = result.stream()
-                    .filter(ct -> trainingType.equalsIgnoreCase(ct.getTrainingType()))
-                    .toList();
-        }
-
-        if (sport != null && !sport.isBlank()) {
-            result = result.stream()
-                    .filter(ct -> sport.equalsIgnoreCase(ct.getSport()))
-                    .toList();
-        }
-
-        return result;
+    /** Filters are matched case-insensitively; blank means no filter. */
+    private String normalizeFilter(String value) {
+        return value == null || value.isBlank() ? null : value.toLowerCase(Locale.ROOT);
     }
 
-    private List<TrainingStatsDto.Bucket> buildBuckets(String period,
-                                                        List<CompletedTraining> trainings,
-                                                        LocalDate from, LocalDate to) {
+    private List<TrainingStatsDto.Bucket> buildBuckets(Long userId, String period,
+                                                        LocalDate from, LocalDate to,
+                                                        String trainingType, String sport) {
         if ("all".equals(period)) {
-            return buildAllBucket(trainings, from, to);
+            return buildAllBucket(trainingAggregateRepository.sumTotal(
+                    userId, AggregateGranularity.YEAR, from, to, trainingType, sport), from, to);
         }
         if ("day".equals(period) || "currentWeek".equals(period)) {
-            return buildDayBuckets(trainings, from, to);
+            return buildDayBuckets(sums(userId, AggregateGranularity.DAY, from, to, trainingType, sport), from, to);
         }
         if ("week".equals(period)) {
-            return buildWeekBuckets(trainings, from, to);
+            return buildWeekBuckets(sums(userId, AggregateGranularity.WEEK, from, to, trainingType, sport), from, to);
         }
         if ("year".equals(period)) {
-            return buildYearBuckets(trainings, from, to);
+            return buildYearBuckets(sums(userId, AggregateGranularity.YEAR, from, to, trainingType, sport), to);
         }
         // default: month
-        return buildMonthBuckets(trainings, from, to);
+        return buildMonthBuckets(sums(userId, AggregateGranularity.MONTH, from, to, trainingType, sport), from, to);
+    }
+
+    /** Sums per period of {@code granularity}, including the period that contains {@code from}. */
+    private List<TrainingStatsSumDto> sums(Long userId, AggregateGranularity granularity,
+                                           LocalDate from, LocalDate to,
+                                           String trainingType, String sport) {
+        return trainingAggregateRepository.sumByPeriod(
+                userId, granularity, granularity.start(from), to, trainingType, sport);
     }
 
     // -------------------------------------------------------------------------
     // "all" — single aggregate bucket
     // -------------------------------------------------------------------------
 
-    private List<TrainingStatsDto.Bucket> buildAllBucket(List<CompletedTraining> trainings,
-                                                          LocalDate from, LocalDate to) {
-        double distanceKm = 0.0;
-        int durationSeconds = 0;
-        int elevationGainM = 0;
-
-        for (CompletedTraining ct : trainings) {
-            distanceKm    += Optional.ofNullable(ct.getDistanceKm()).orElse(0.0);
-            durationSeconds += Optional.ofNullable(ct.getDurationSeconds()).orElse(0);
-            elevationGainM  += Optional.ofNullable(ct.getElevationGainM()).orElse(0);
-        }
-
-        distanceKm = Math.round(distanceKm * 100.0) / 100.0;
-
+    private List<TrainingStatsDto.Bucket> buildAllBucket(TrainingStatsSumDto sums, LocalDate from, LocalDate to) {
         TrainingStatsDto.Bucket bucket = new TrainingStatsDto.Bucket(
                 "Gesamt",
                 from.toString(),
                 to.toString(),
-                distanceKm,
-                durationSeconds,
-                elevationGainM,
-                trainings.size()
+                0.0, 0, 0, 0
         );
-
-        return List.of(bucket);
+        if (sums != null) {
+            add(bucket, sums);
+        }
+        return List.of(finish(bucket));
     }
 
     // -------------------------------------------------------------------------
     // "day" — one bucket per day (last 30 days)
     // -------------------------------------------------------------------------
 
-    private List<TrainingStatsDto.Bucket> buildDayBuckets(List<CompletedTraining> trainings,
+    private List<TrainingStatsDto.Bucket> buildDayBuckets(List<TrainingStatsSumDto> sums,
                                                            LocalDate from, LocalDate to) {
         Map<LocalDate, TrainingStatsDto.Bucket> bucketMap = new LinkedHashMap<>();
 
@@ -154,14 +141,14 @@ public class TrainingStatsService {
             day = day.plusDays(1);
         }
 
-        for (CompletedTraining ct : trainings) {
-            TrainingStatsDto.Bucket bucket = bucketMap.get(ct.getTrainingDate());
+        for (TrainingStatsSumDto row : sums) {
+            TrainingStatsDto.Bucket bucket = bucketMap.get(row.periodStart());
             if (bucket != null) {
-                accumulate(bucket, ct);
+                add(bucket, row);
             }
         }
 
-        return new ArrayList<>(bucketMap.values());
+        return finish(bucketMap.values());
     }
 
     private String dayLabel(LocalDate date) {
@@ -172,45 +159,32 @@ public class TrainingStatsService {
     // "week" — group by ISO week
     // -------------------------------------------------------------------------
 
-    private List<TrainingStatsDto.Bucket> buildWeekBuckets(List<CompletedTraining> trainings,
+    private List<TrainingStatsDto.Bucket> buildWeekBuckets(List<TrainingStatsSumDto> weeklySums,
                                                              LocalDate from, LocalDate to) {
-        // Key: "YYYY-WW" — preserves insertion order via LinkedHashMap
-        Map<String, TrainingStatsDto.Bucket> bucketMap = new LinkedHashMap<>();
+        // Key: Monday of the ISO week — preserves insertion order via LinkedHashMap
+        Map<LocalDate, TrainingStatsDto.Bucket> bucketMap = new LinkedHashMap<>();
 
         // Pre-populate all weeks in range so empty weeks appear in result
-        LocalDate weekStart = from.minusDays(from.getDayOfWeek().getValue() - 1);
+        LocalDate weekStart = AggregateGranularity.WEEK.start(from);
         while (!weekStart.isAfter(to)) {
             LocalDate weekEnd = weekStart.plusDays(6);
-            String key = isoWeekKey(weekStart);
-            if (!bucketMap.containsKey(key)) {
-                bucketMap.put(key, new TrainingStatsDto.Bucket(
-                        weekLabel(weekStart),
-                        weekStart.toString(),
-                        weekEnd.isAfter(to) ? to.toString() : weekEnd.toString(),
-                        0.0, 0, 0, 0
-                ));
-            }
+            bucketMap.put(weekStart, new TrainingStatsDto.Bucket(
+                    weekLabel(weekStart),
+                    weekStart.toString(),
+                    weekEnd.isAfter(to) ? to.toString() : weekEnd.toString(),
+                    0.0, 0, 0, 0
+            ));
             weekStart = weekStart.plusWeeks(1);
         }
 
-        for (CompletedTraining ct : trainings) {
-            LocalDate date = ct.getTrainingDate();
-            String key = isoWeekKey(date);
-            TrainingStatsDto.Bucket bucket = bucketMap.get(key);
-            if (bucket == null) {
-                // Activity outside the pre-populated range — skip (shouldn't happen)
-                continue;
+        for (TrainingStatsSumDto row : weeklySums) {
+            TrainingStatsDto.Bucket bucket = bucketMap.get(row.periodStart());
+            if (bucket != null) {
+                add(bucket, row);
             }
-            accumulate(bucket, ct);
         }
 
-        return new ArrayList<>(bucketMap.values());
-    }
-
-    private String isoWeekKey(LocalDate date) {
-        int week = date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
-        int year = date.get(IsoFields.WEEK_BASED_YEAR);
-        return year + "-" + String.format("%02d", week);
+        return finish(bucketMap.values());
     }
 
     private String weekLabel(LocalDate mondayOfWeek) {
@@ -223,7 +197,7 @@ public class TrainingStatsService {
     // "month" — group by YearMonth
     // -------------------------------------------------------------------------
 
-    private List<TrainingStatsDto.Bucket> buildMonthBuckets(List<CompletedTraining> trainings,
+    private List<TrainingStatsDto.Bucket> buildMonthBuckets(List<TrainingStatsSumDto> sums,
                                                               LocalDate from, LocalDate to) {
         Map<YearMonth, TrainingStatsDto.Bucket> bucketMap = new LinkedHashMap<>();
 
@@ -242,16 +216,14 @@ public class TrainingStatsService {
             current = current.plusMonths(1);
         }
 
-        for (CompletedTraining ct : trainings) {
-            YearMonth ym = YearMonth.from(ct.getTrainingDate());
-            TrainingStatsDto.Bucket bucket = bucketMap.get(ym);
-            if (bucket == null) {
-                continue;
+        for (TrainingStatsSumDto row : sums) {
+            TrainingStatsDto.Bucket bucket = bucketMap.get(YearMonth.from(row.periodStart()));
+            if (bucket != null) {
+                add(bucket, row);
             }
-            accumulate(bucket, ct);
         }
 
-        return new ArrayList<>(bucketMap.values());
+        return finish(bucketMap.values());
     }
 
     private String monthLabel(YearMonth ym) {
@@ -263,41 +235,50 @@ public class TrainingStatsService {
     // "year" — group by year
     // -------------------------------------------------------------------------
 
-    private List<TrainingStatsDto.Bucket> buildYearBuckets(List<CompletedTraining> trainings,
-                                                             LocalDate from, LocalDate to) {
-        Map<Integer, TrainingStatsDto.Bucket> bucketMap = new LinkedHashMap<>();
-
-        // Only pre-populate years that actually contain data (avoids showing 2000–2024 empties)
-        for (CompletedTraining ct : trainings) {
-            int year = ct.getTrainingDate().getYear();
-            bucketMap.computeIfAbsent(year, y -> new TrainingStatsDto.Bucket(
+    private List<TrainingStatsDto.Bucket> buildYearBuckets(List<TrainingStatsSumDto> sums, LocalDate to) {
+        // Only years that actually contain data (avoids showing 2000–2024 empties); rows are ordered by year
+        List<TrainingStatsDto.Bucket> buckets = new ArrayList<>(sums.size());
+        for (TrainingStatsSumDto row : sums) {
+            int y = row.periodStart().getYear();
+            LocalDate yearEnd = LocalDate.of(y, 12, 31);
+            TrainingStatsDto.Bucket bucket = new TrainingStatsDto.Bucket(
                     String.valueOf(y),
                     LocalDate.of(y, 1, 1).toString(),
-                    LocalDate.of(y, 12, 31).isAfter(to) ? to.toString() : LocalDate.of(y, 12, 31).toString(),
+                    yearEnd.isAfter(to) ? to.toString() : yearEnd.toString(),
                     0.0, 0, 0, 0
-            ));
-            accumulate(bucketMap.get(year), ct);
+            );
+            add(bucket, row);
+            buckets.add(bucket);
         }
 
-        return new ArrayList<>(bucketMap.values());
+        return finish(buckets);
     }
 
     // -------------------------------------------------------------------------
     // Shared accumulator
     // -------------------------------------------------------------------------
 
-    private void accumulate(TrainingStatsDto.Bucket bucket, CompletedTraining ct) {
-        double newDistance = bucket.getDistanceKm()
-                + Optional.ofNullable(ct.getDistanceKm()).orElse(0.0);
-        newDistance = Math.round(newDistance * 100.0) / 100.0;
-        bucket.setDistanceKm(newDistance);
+    private void add(TrainingStatsDto.Bucket bucket, TrainingStatsSumDto sums) {
+        bucket.setDistanceKm(bucket.getDistanceKm() + sums.distanceKm());
+        bucket.setDurationSeconds(bucket.getDurationSeconds() + (int) sums.durationSeconds());
+        bucket.setElevationGainM(bucket.getElevationGainM() + (int) sums.elevationGainM());
+        bucket.setActivityCount(bucket.getActivityCount() + (int) sums.activityCount());
+    }
 
-        bucket.setDurationSeconds(bucket.getDurationSeconds()
-                + Optional.ofNullable(ct.getDurationSeconds()).orElse(0));
+    private List<TrainingStatsDto.Bucket> finish(Collection<TrainingStatsDto.Bucket> buckets) {
+        List<TrainingStatsDto.Bucket> result = new ArrayList<>(buckets.size());
+        for (TrainingStatsDto.Bucket bucket : buckets) {
+            result.add(finish(bucket));
+        }
+        return result;
+    }
 
-        bucket.setElevationGainM(bucket.getElevationGainM()
-                + Optional.ofNullable(ct.getElevationGainM()).orElse(0));
+    private TrainingStatsDto.Bucket finish(TrainingStatsDto.Bucket bucket) {
+        bucket.setDistanceKm(round2(bucket.getDistanceKm()));
+        return bucket;
+    }
 
-        bucket.setActivityCount(bucket.getActivityCount() + 1);
+    private static double round2(double value) {
+        return Math.round(value * 100.0) / 100.0;
     }
 }
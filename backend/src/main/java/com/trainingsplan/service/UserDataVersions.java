@@ -0,0 +1,67 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.repository.UserRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Per-user change counters for cached read models such as the dashboard.
+ *
+ * <p>Every write that can change what a user sees (activity ingest and deletion, daily
+ * metrics recomputes, profile edits, competition registrations and schedule changes)
+ * calls {@link #bump}; changes to shared data (e.g. a competition's date) call
+ * {@link #bumpAll}. A cached read model stores the {@link #current} version it was built
+ * from and is stale once the version has moved on.
+ *
+ * <p>The counter is the {@code users.data_version} column, so a change made on one backend
+ * instance invalidates the read models cached by all of them. Inside a transaction the bump
+ * is deferred until the transaction has completed and then committed on its own, so a read
+ * model rebuilt concurrently cannot be stored under the new version while still seeing the
+ * old data, and the user row is not locked for the length of the writing transaction.
+ */
+@Service
+public class UserDataVersions {
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate ownTransaction;
+
+    public UserDataVersions(UserRepository userRepository, PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.ownTransaction = new TransactionTemplate(transactionManager);
+        this.ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /** Current version of {@code userId}'s data; strictly increases with every bump. */
+    public long current(Long userId) {
+        return userRepository.findDataVersionById(userId).orElse(0L);
+    }
+
+    /** Marks the data of {@code userId} as changed. */
+    public void bump(Long userId) {
+        if (userId == null) return;
+        afterTransaction(() -> userRepository.incrementDataVersion(userId));
+    }
+
+    /** Marks the data of all users as changed. */
+    public void bumpAll() {
+        afterTransaction(userRepository::incrementAllDataVersions);
+    }
+
+    private void afterTransaction(Runnable increment) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ownTransaction.executeWithoutResult(status -> increment.run());
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                // The completed transaction's resources are still bound here, hence a new one
+                ownTransaction.executeWithoutResult(s -> increment.run());
+            }
+        });
+    }
+}
@@ -5,6 +5,7 @@ import com.trainingsplan.entity.User;
 import com.trainingsplan.entity.UserStatus;
 import com.trainingsplan.port.ImageStoragePort;
 import com.trainingsplan.repository.UserRepository;
+import com.trainingsplan.security.PrincipalCache;
 import com.trainingsplan.security.SecurityUtils;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
@@ -17,6 +18,7 @@ import java.nio.file.Files;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -25,11 +27,19 @@ public class UserService {
     private final UserRepository userRepository;
     private final SecurityUtils securityUtils;
     private final ImageStoragePort imageStoragePort;
+    private final MetricsRecomputeService metricsRecomputeService;
+    private final UserDataVersions userDataVersions;
+    private final PrincipalCache principalCache;
 
-    public UserService(UserRepository userRepository, SecurityUtils securityUtils, ImageStoragePort imageStoragePort) {
+    public UserService(UserRepository userRepository, SecurityUtils securityUtils, ImageStoragePort imageStoragePort,
+                       MetricsRecomputeService metricsRecomputeService, UserDataVersions userDataVersions,
+                       PrincipalCache principalCache) {
         this.userRepository = userRepository;
         this.securityUtils = securityUtils;
         this.imageStoragePort = imageStoragePort;
+        this.metricsRecomputeService = metricsRecomputeService;
+        this.userDataVersions = userDataVersions;
+        this.principalCache = principalCache;
     }
 
     public User createUser(String username, String email) {
@@ -50,11 +60,19 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("User not found: " + id));
     }
 
+    /**
+     * Updates the profile. When hrMax, resting HR or gender change, the HR-derived metrics
+     * of all the user's activities are recomputed in the background.
+     */
     public User updateUser(Long id, String username, String email,
                            String firstName, String lastName,
                            LocalDate dateOfBirth, Integer heightCm, Double weightKg,
                            Integer maxHeartRate, Integer hrRest, String gender, String status) {
         User user = findById(id);
+        boolean hrProfileChanged = !Objects.equals(user.getMaxHeartRate(), maxHeartRate)
+                || !Objects.equals(user.getHrRest(), hrRest)
+                || !Objects.equals(user.getGender(), gender);
+        String previousUsername = user.getUsername();
         user.setUsername(username);
         user.setEmail(email);
         user.setFirstName(firstName);
@@ -68,7 +86,14 @@ public class UserService {
         if (status != null && !status.isBlank()) {
             user.setStatus(UserStatus.valueOf(status));
         }
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        userDataVersions.bump(saved.getId());
+        principalCache.evict(previousUsername);
+        principalCache.evict(saved.getUsername());
+        if (hrProfileChanged) {
+            metricsRecomputeService.recomputeForUserAsync(saved);
+        }
+        return saved;
     }
 
     public User updatePaceZoneReference(Long userId, Double distanceM, Integer timeSeconds,
@@ -78,7 +103,9 @@ public class UserService {
         user.setPaceRefTimeSeconds(timeSeconds);
         user.setPaceRefLabel(label);
         user.setThresholdPaceSecPerKm(thresholdPace);
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        principalCache.evict(saved.getUsername());
+        return saved;
     }
 
     public void uploadProfileImage(Long targetUserId, MultipartFile file) {
@@ -93,6 +120,7 @@ public class UserService {
 
         targetUser.setProfileImageFilename(newFilename);
         userRepository.save(targetUser);
+        principalCache.evict(targetUser.getUsername());
 
         if (oldFilename != null && !oldFilename.isBlank() && !oldFilename.equals(newFilename)) {
             imageStoragePort.delete(oldFilename);
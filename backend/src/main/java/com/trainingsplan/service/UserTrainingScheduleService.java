@@ -23,6 +23,9 @@ public class UserTrainingScheduleService {
     @Autowired
     private TrainingRepository trainingRepository;
 
+    @Autowired
+    private UserDataVersions userDataVersions;
+
     /**
      * Generates UserTrainingEntry records for all Training templates in the registration's plan.
      * Dates are computed relative to the competition race day.
@@ -62,6 +65,7 @@ public class UserTrainingScheduleService {
             entries.add(entry);
         }
 
+        userDataVersions.bump(registration.getUser().getId());
         return entryRepository.saveAll(entries);
     }
 
@@ -71,6 +75,7 @@ public class UserTrainingScheduleService {
     @Transactional
     public void clearSchedule(CompetitionRegistration registration) {
         entryRepository.deleteByCompetitionRegistrationId(registration.getId());
+        userDataVersions.bump(registration.getUser().getId());
     }
 
     /**
@@ -106,6 +111,7 @@ public class UserTrainingScheduleService {
                 .orElseThrow(() -> new RuntimeException("UserTrainingEntry not found: " + entryId));
         entry.setCompleted(completed);
         entry.setCompletionStatus(status);
+        userDataVersions.bump(entry.getCompetitionRegistration().getUser().getId());
         return entryRepository.save(entry);
     }
 }
@@ -17,9 +17,9 @@ public class WeekRiskAnalyzer {
     public static final String FATIGUE_SPIKE = "FATIGUE_SPIKE";
     public static final String INTENSITY_CLUSTER = "INTENSITY_CLUSTER";
 
-    private static final double OVERTRAINING_THRESHOLD = 0.90;
-    private static final double FATIGUE_SPIKE_THRESHOLD = 0.20;
-    private static final int HIGH_INTENSITY_CLUSTER_THRESHOLD = 2;
+    static final double OVERTRAINING_THRESHOLD = 0.90;
+    static final double FATIGUE_SPIKE_THRESHOLD = 0.20;
+    static final int HIGH_INTENSITY_CLUSTER_THRESHOLD = 2;
 
     public List<String> analyzeWeek(List<Workout> workouts, WeekSimulationResultDTO simulation) {
         List<String> riskFlags = new ArrayList<>();
@@ -68,7 +68,7 @@ public class WeekRiskAnalyzer {
         return highIntensityCount;
     }
 
-    private boolean isHighIntensity(String activityName) {
+    static boolean isHighIntensity(String activityName) {
         if (activityName == null || activityName.isBlank()) {
             return false;
         }
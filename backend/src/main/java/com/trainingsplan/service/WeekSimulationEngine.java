@@ -19,8 +19,8 @@ import java.util.stream.Collectors;
 @Service
 public class WeekSimulationEngine {
 
-    private static final int WEEK_DAYS = 7;
-    private static final double REST_DAY_RECOVERY = 0.05;
+    static final int WEEK_DAYS = 7;
+    static final double REST_DAY_RECOVERY = 0.05;
 
     private final TrainingImpactEngine trainingImpactEngine;
     private final WeekRiskAnalyzer weekRiskAnalyzer;
@@ -3,6 +3,7 @@ package com.trainingsplan.service;
 import com.trainingsplan.service.hrzone.HeartRateZoneConfig;
 import com.trainingsplan.service.hrzone.HrZone;
 import com.trainingsplan.service.hrzone.ZoneTimeResult;
+import com.trainingsplan.service.stream.ActivityStream;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -74,6 +75,51 @@ public class ZoneTimeCalculator {
         );
     }
 
+    /**
+     * Same algorithm as {@link #calculate(List, List, HeartRateZoneConfig)}, reading the
+     * primitive columns of an {@link ActivityStream} instead of boxed lists.
+     *
+     * @param stream samples of one activity (missing HR is tracked by the stream's bitmap)
+     * @param config zone boundary config derived from user's hrMax
+     * @return computed result, or {@link ZoneTimeResult#unknown()} if input is insufficient
+     */
+    public ZoneTimeResult calculate(ActivityStream stream, HeartRateZoneConfig config) {
+        if (stream == null || stream.size() < 2) {
+            return ZoneTimeResult.unknown();
+        }
+
+        int n = stream.size();
+        double[] zoneSec = new double[HrZone.values().length];
+        double validDurationSec = 0;
+
+        for (int i = 0; i < n - 1; i++) {
+            double dt = stream.time(i + 1) - stream.time(i);
+            if (dt <= 0) continue;
+            if (!stream.hasHeartRate(i)) continue;
+
+            validDurationSec += dt;
+
+            HrZone zone = config.zoneFor(stream.heartRate(i));
+            if (zone != null) {
+                zoneSec[zone.ordinal()] += dt;
+            }
+        }
+
+        double totalDurationSec = Math.max(0, stream.time(n - 1) - stream.time(0));
+        double coverage = (totalDurationSec > 0)
+                ? Math.min(validDurationSec / totalDurationSec, 1.0)
+                : 0.0;
+
+        return new ZoneTimeResult(
+                zoneSec[0] / 60.0,
+                zoneSec[1] / 60.0,
+                zoneSec[2] / 60.0,
+                zoneSec[3] / 60.0,
+                zoneSec[4] / 60.0,
+                coverage
+        );
+    }
+
     private double computeTotalDuration(List<Integer> timeSeconds) {
         int n = timeSeconds.size();
         // Walk from each end to find the first/last non-null value
@@ -0,0 +1,184 @@
+package com.trainingsplan.service.stream;
+
+import java.util.Arrays;
+
+/**
+ * Columnar, primitive-backed sample buffer for one activity.
+ *
+ * <p>Holds the time, heart rate, velocity and distance channels of a FIT file or
+ * Strava stream without boxing a single sample:
+ * <ul>
+ *   <li>{@code time}      – {@code int[]} seconds since activity start (never missing)</li>
+ *   <li>{@code heartRate} – {@code short[]} bpm</li>
+ *   <li>{@code velocity}  – {@code float[]} m/s (optional channel)</li>
+ *   <li>{@code distance}  – {@code float[]} cumulative metres (optional channel)</li>
+ * </ul>
+ *
+ * <p>Missing values are tracked in a per-channel presence bitmap (one bit per sample)
+ * instead of {@code null} entries. A channel that was never enabled behaves like the
+ * {@code null} list of the old {@code List}-based API; an enabled channel whose bit is
+ * clear behaves like a {@code null} entry.
+ *
+ * <p>Not thread-safe. Instances are filled once by an ingest path and then only read.
+ */
+public final class ActivityStream {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private int size;
+
+    private int[]   time;
+    private short[] heartRate;
+    private float[] velocity;   // null until the channel is enabled
+    private float[] distance;   // null until the channel is enabled
+
+    private long[] heartRatePresent;
+    private long[] velocityPresent;
+    private long[] distancePresent;
+
+    public ActivityStream() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSamples initial capacity; the buffer grows as needed
+     */
+    public ActivityStream(int expectedSamples) {
+        int capacity = Math.max(expectedSamples, 16);
+        this.time             = new int[capacity];
+        this.heartRate        = new short[capacity];
+        this.heartRatePresent = new long[words(capacity)];
+    }
+
+    // ── Writing ──────────────────────────────────────────────────────────────
+
+    /** Enables the velocity channel; all samples start out as missing. */
+    public ActivityStream withVelocity() {
+        if (velocity == null) {
+            velocity        = new float[time.length];
+            velocityPresent = new long[words(time.length)];
+        }
+        return this;
+    }
+
+    /** Enables the distance channel; all samples start out as missing. */
+    public ActivityStream withDistance() {
+        if (distance == null) {
+            distance        = new float[time.length];
+            distancePresent = new long[words(time.length)];
+        }
+        return this;
+    }
+
+    /**
+     * Appends a sample with the given timestamp. All value channels are initially
+     * missing for the new sample.
+     *
+     * @return the index of the new sample
+     */
+    public int append(int timeSeconds) {
+        if (size == time.length) {
+            grow();
+        }
+        time[size] = timeSeconds;
+        return size++;
+    }
+
+    /** Sets the heart rate of sample {@code index}; values &le; 0 are stored as missing. */
+    public void setHeartRate(int index, int bpm) {
+        checkIndex(index);
+        if (bpm <= 0) {
+            clear(heartRatePresent, index);
+            return;
+        }
+        heartRate[index] = (short) Math.min(bpm, Short.MAX_VALUE);
+        set(heartRatePresent, index);
+    }
+
+    /** Sets the velocity (m/s) of sample {@code index}, enabling the channel if necessary. */
+    public void setVelocity(int index, double metresPerSecond) {
+        checkIndex(index);
+        withVelocity();
+        velocity[index] = (float) metresPerSecond;
+        set(velocityPresent, index);
+    }
+
+    /** Sets the cumulative distance (m) of sample {@code index}, enabling the channel if necessary. */
+    public void setDistance(int index, double metres) {
+        checkIndex(index);
+        withDistance();
+        distance[index] = (float) metres;
+        set(distancePresent, index);
+    }
+
+    // ── Reading ──────────────────────────────────────────────────────────────
+
+    public int size() { return size; }
+
+    public int time(int index) { return time[index]; }
+
+    /** True when sample {@code index} carries a valid (&gt; 0) heart rate. */
+    public boolean hasHeartRate(int index) { return isSet(heartRatePresent, index); }
+
+    /** Heart rate in bpm, or 0 when missing. */
+    public int heartRate(int index) {
+        return isSet(heartRatePresent, index) ? heartRate[index] : 0;
+    }
+
+    /** True when the velocity channel was enabled during ingest. */
+    public boolean hasVelocityChannel() { return velocity != null; }
+
+    /** True when the distance channel was enabled during ingest. */
+    public boolean hasDistanceChannel() { return distance != null; }
+
+    public boolean hasVelocity(int index) {
+        return velocity != null && isSet(velocityPresent, index);
+    }
+
+    /** Velocity in m/s, or 0 when missing. */
+    public double velocity(int index) {
+        return hasVelocity(index) ? velocity[index] : 0.0;
+    }
+
+    public boolean hasDistance(int index) {
+        return distance != null && isSet(distancePresent, index);
+    }
+
+    /** Cumulative distance in metres, or 0 when missing. */
+    public double distance(int index) {
+        return hasDistance(index) ? distance[index] : 0.0;
+    }
+
+    // ── Internals ────────────────────────────────────────────────────────────
+
+    private void grow() {
+        int capacity = time.length + (time.length >> 1);
+        time             = Arrays.copyOf(time, capacity);
+        heartRate        = Arrays.copyOf(heartRate, capacity);
+        heartRatePresent = Arrays.copyOf(heartRatePresent, words(capacity));
+        if (velocity != null) {
+            velocity        = Arrays.copyOf(velocity, capacity);
+            velocityPresent = Arrays.copyOf(velocityPresent, words(capacity));
+        }
+        if (distance != null) {
+            distance        = Arrays.copyOf(distance, capacity);
+            distancePresent = Arrays.copyOf(distancePresent, words(capacity));
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Sample index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    private static int words(int bits) { return (bits + 63) >>> 6; }
+
+    private static void set(long[] bitmap, int index)   { bitmap[index >>> 6] |=  (1L << index); }
+
+    private static void clear(long[] bitmap, int index) { bitmap[index >>> 6] &= ~(1L << index); }
+
+    private static boolean isSet(long[] bitmap, int index) {
+        return (bitmap[index >>> 6] & (1L << index)) != 0;
+    }
+}
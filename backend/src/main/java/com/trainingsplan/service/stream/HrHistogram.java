@@ -0,0 +1,134 @@
+package com.trainingsplan.service.stream;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Seconds spent at each heart rate (bpm) during one activity.
+ *
+ * <p>Zone minutes, HR coverage, strain and Bannister TRIMP depend only on this
+ * distribution, so they can be recomputed for new profile values (hrMax, hrRest, sex)
+ * from the histogram alone, in O(bpm range) instead of O(samples).
+ *
+ * <p>Built with the same interval rule as the calculators: sample {@code i} contributes
+ * {@code time[i+1] - time[i]} seconds at its HR; non-positive intervals are skipped and
+ * the last sample contributes nothing. HR above {@value #MAX_BPM} is clamped.
+ *
+ * <p>Encoded layout (version 1), typically around 200 bytes:
+ * <pre>
+ *   version   1 byte    1
+ *   flags     1 byte    bit 0 = sufficient (stream had at least two samples)
+ *   duration  varint    time[n-1] - time[0] in seconds
+ *   minBpm    varint    lowest bpm with recorded time
+ *   count     varint    number of bins from minBpm to the highest bpm with recorded time
+ *   seconds   varint    per bin
+ * </pre>
+ */
+public final class HrHistogram {
+
+    public static final int MAX_BPM = 255;
+
+    private static final byte VERSION = 1;
+    private static final int FLAG_SUFFICIENT = 1;
+
+    private final int[] seconds = new int[MAX_BPM + 1];
+    private int totalDurationSec;
+    private boolean sufficient;
+
+    /** An empty histogram for a stream with fewer than two samples. */
+    public HrHistogram() {}
+
+    /** An empty histogram covering {@code totalDurationSec} seconds, to be filled via {@link #add}. */
+    public HrHistogram(int totalDurationSec) {
+        this.totalDurationSec = Math.max(0, totalDurationSec);
+        this.sufficient = true;
+    }
+
+    /** Builds the histogram of {@code stream} in one pass. */
+    public static HrHistogram of(ActivityStream stream) {
+        if (stream == null || stream.size() < 2) {
+            return new HrHistogram();
+        }
+        int n = stream.size();
+        HrHistogram histogram = new HrHistogram(stream.time(n - 1) - stream.time(0));
+        for (int i = 0; i < n - 1; i++) {
+            int dt = stream.time(i + 1) - stream.time(i);
+            if (dt > 0 && stream.hasHeartRate(i)) {
+                histogram.add(stream.heartRate(i), dt);
+            }
+        }
+        return histogram;
+    }
+
+    /** Records {@code dt} seconds at {@code bpm}. */
+    public void add(int bpm, int dt) {
+        seconds[Math.max(0, Math.min(bpm, MAX_BPM))] += dt;
+    }
+
+    /** Seconds recorded at exactly {@code bpm} (0..{@value #MAX_BPM}). */
+    public int seconds(int bpm) { return seconds[bpm]; }
+
+    /** Seconds with a valid HR sample. */
+    public int hrSeconds() {
+        int sum = 0;
+        for (int s : seconds) sum += s;
+        return sum;
+    }
+
+    /** Elapsed time from first to last sample in seconds. */
+    public int totalDurationSec() { return totalDurationSec; }
+
+    /** {@code false} when the source stream had fewer than two samples (zones are unknown). */
+    public boolean isSufficient() { return sufficient; }
+
+    public byte[] encode() {
+        int min = 0, max = -1;
+        for (int bpm = 0; bpm <= MAX_BPM; bpm++) {
+            if (seconds[bpm] != 0) {
+                if (max < 0) min = bpm;
+                max = bpm;
+            }
+        }
+        int count = max - min + 1;
+
+        ByteBuffer out = ByteBuffer.allocate(2 + 5 * (3 + count));
+        out.put(VERSION);
+        out.put((byte) (sufficient ? FLAG_SUFFICIENT : 0));
+        ActivityStreamCodec.putVarint(out, totalDurationSec);
+        ActivityStreamCodec.putVarint(out, min);
+        ActivityStreamCodec.putVarint(out, count);
+        for (int bpm = min; bpm <= max; bpm++) {
+            ActivityStreamCodec.putVarint(out, seconds[bpm]);
+        }
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    /**
+     * @throws IllegalArgumentException when {@code data} is not a valid encoded histogram
+     */
+    public static HrHistogram decode(byte[] data) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(data);
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported HR histogram version " + version);
+            }
+            int flags = in.get();
+            HrHistogram histogram = new HrHistogram();
+            histogram.sufficient = (flags & FLAG_SUFFICIENT) != 0;
+            histogram.totalDurationSec = ActivityStreamCodec.getVarint(in);
+            int min = ActivityStreamCodec.getVarint(in);
+            int count = ActivityStreamCodec.getVarint(in);
+            if (min < 0 || count < 0 || min + count > MAX_BPM + 1) {
+                throw new IllegalArgumentException("Malformed HR histogram");
+            }
+            for (int bpm = min; bpm < min + count; bpm++) {
+                histogram.seconds[bpm] = ActivityStreamCodec.getVarint(in);
+            }
+            return histogram;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated HR histogram", e);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.trainingsplan.service.stream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Streaming decoder for a Strava {@code /activities/{id}/streams?key_by_type=true} response.
+ *
+ * <p>Reads the {@code time}, {@code heartrate}, {@code velocity_smooth} and {@code distance}
+ * data arrays token by token into growable primitive arrays and builds an
+ * {@link ActivityStream} from them, so no {@code JsonNode} tree or boxed sample is ever
+ * created. Streams may arrive in any order; every other key is skipped.
+ *
+ * <p>Semantics match the former tree walk: without a non-empty {@code time} stream the
+ * result is empty, value channels whose length differs from {@code time} are dropped,
+ * {@code null} samples stay missing and the velocity channel is always enabled.
+ */
+public final class StravaStreamDecoder {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /** Exactly representable powers of ten for {@link #decimalValue}. */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+    private StravaStreamDecoder() {}
+
+    /** Decodes a streams response body read from {@code in}. */
+    public static Optional<ActivityStream> decode(JsonFactory factory, InputStream in) throws IOException {
+        try (JsonParser parser = factory.createParser(in)) {
+            return decode(parser);
+        }
+    }
+
+    static Optional<ActivityStream> decode(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return Optional.empty();
+        }
+
+        IntSamples time = null;
+        IntSamples heartRate = null;
+        FloatSamples velocity = null;
+        FloatSamples distance = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            int hint = time != null ? time.size : DEFAULT_CAPACITY;
+            switch (key) {
+                case "time"            -> time      = readInts(parser, hint);
+                case "heartrate"       -> heartRate = readInts(parser, hint);
+                case "velocity_smooth" -> velocity  = readFloats(parser, hint);
+                case "distance"        -> distance  = readFloats(parser, hint);
+                default                -> parser.skipChildren();
+            }
+        }
+
+        if (time == null || time.size == 0) return Optional.empty();
+
+        int n = time.size;
+        ActivityStream stream = new ActivityStream(n).withVelocity();
+        for (int i = 0; i < n; i++) stream.append(time.values[i]);
+
+        if (heartRate != null && heartRate.size == n) {
+            for (int i = 0; i < n; i++) {
+                if (heartRate.values[i] != IntSamples.MISSING) stream.setHeartRate(i, heartRate.values[i]);
+            }
+        }
+
+        if (velocity != null && velocity.size == n) {
+            for (int i = 0; i < n; i++) {
+                if (!Float.isNaN(velocity.values[i])) stream.setVelocity(i, velocity.values[i]);
+            }
+        }
+
+        if (distance != null && distance.size == n) {
+            stream.withDistance();
+            for (int i = 0; i < n; i++) {
+                if (!Float.isNaN(distance.values[i])) stream.setDistance(i, distance.values[i]);
+            }
+        }
+        return Optional.of(stream);
+    }
+
+    // ── Stream objects ───────────────────────────────────────────────────────
+
+    /**
+     * Reads one stream object ({@code {"data":[...],"series_type":...}}), positioned on its
+     * {@code START_OBJECT}. Null when the object has no data array.
+     */
+    private static IntSamples readInts(JsonParser parser, int capacity) throws IOException {
+        IntSamples samples = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            boolean data = "data".equals(parser.currentName());
+            if (parser.nextToken() == JsonToken.START_ARRAY && data) {
+                samples = new IntSamples(capacity);
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == JsonToken.VALUE_NULL) {
+                        samples.add(IntSamples.MISSING);
+                    } else if (token.isNumeric()) {
+                        samples.add(parser.getValueAsInt());
+                    } else {
+                        parser.skipChildren();
+                        samples.add(IntSamples.MISSING);
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return samples;
+    }
+
+    private static FloatSamples readFloats(JsonParser parser, int capacity) throws IOException {
+        FloatSamples samples = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            boolean data = "data".equals(parser.currentName());
+            if (parser.nextToken() == JsonToken.START_ARRAY && data) {
+                samples = new FloatSamples(capacity);
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+                        samples.add((float) decimalValue(parser));
+                    } else if (token == JsonToken.VALUE_NUMBER_INT) {
+                        samples.add((float) parser.getDoubleValue());
+                    } else {
+                        parser.skipChildren();
+                        samples.add(Float.NaN);
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Parses a plain decimal such as {@code 2.873} straight from the parser's character
+     * buffer. Jackson materialises a {@code String} per floating-point token, which
+     * dominates allocation on velocity and distance streams. With at most 15 digits the
+     * mantissa and the power of ten are exact doubles, so the single division rounds
+     * exactly like {@link Double#parseDouble}. Exponents and longer numbers fall back to
+     * Jackson.
+     */
+    private static double decimalValue(JsonParser parser) throws IOException {
+        char[] chars = parser.getTextCharacters();
+        int i = parser.getTextOffset();
+        int end = i + parser.getTextLength();
+        boolean negative = i < end && chars[i] == '-';
+        if (negative) i++;
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                if (++digits >= POWERS_OF_TEN.length) return parser.getDoubleValue();
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction) scale++;
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                return parser.getDoubleValue();
+            }
+        }
+        double value = mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    // ── Growable primitive arrays ────────────────────────────────────────────
+
+    private static final class IntSamples {
+        /** Stored for {@code null}; harmless as a timestamp, where the tree walk also read 0. */
+        static final int MISSING = 0;
+
+        int[] values;
+        int size;
+
+        IntSamples(int capacity) {
+            values = new int[Math.max(capacity, 16)];
+        }
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size + (size >> 1));
+            values[size++] = value;
+        }
+    }
+
+    private static final class FloatSamples {
+        float[] values;
+        int size;
+
+        FloatSamples(int capacity) {
+            values = new float[Math.max(capacity, 16)];
+        }
+
+        /** {@code NaN} marks a missing sample. */
+        void add(float value) {
+            if (size == values.length) values = Arrays.copyOf(values, size + (size >> 1));
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package pacr.training.simulation.dto;
+
+import java.time.LocalDate;
+
+public class FatigueBandDTO {
+
+    private LocalDate date;
+    private double p10;
+    private double p25;
+    private double p50;
+    private double p75;
+    private double p90;
+
+    public FatigueBandDTO() {
+    }
+
+    public FatigueBandDTO(LocalDate date, double p10, double p25, double p50, double p75, double p90) {
+        this.date = date;
+        this.p10 = p10;
+        this.p25 = p25;
+        this.p50 = p50;
+        this.p75 = p75;
+        this.p90 = p90;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    public double getP10() {
+        return p10;
+    }
+
+    public void setP10(double p10) {
+        this.p10 = p10;
+    }
+
+    public double getP25() {
+        return p25;
+    }
+
+    public void setP25(double p25) {
+        this.p25 = p25;
+    }
+
+    public double getP50() {
+        return p50;
+    }
+
+    public void setP50(double p50) {
+        this.p50 = p50;
+    }
+
+    public double getP75() {
+        return p75;
+    }
+
+    public void setP75(double p75) {
+        this.p75 = p75;
+    }
+
+    public double getP90() {
+        return p90;
+    }
+
+    public void setP90(double p90) {
+        this.p90 = p90;
+    }
+}
@@ -0,0 +1,109 @@
+package pacr.training.simulation.dto;
+
+import java.util.List;
+import java.util.Map;
+
+public class SeasonSimulationResultDTO {
+
+    private int weeks;
+    private int runs;
+    private List<FatigueBandDTO> fatigueBands;
+    private Map<String, Double> flagProbabilities;
+    private List<Map<String, Double>> weeklyFlagProbabilities;
+
+    public SeasonSimulationResultDTO() {
+    }
+
+    private SeasonSimulationResultDTO(Builder builder) {
+        this.weeks = builder.weeks;
+        this.runs = builder.runs;
+        this.fatigueBands = builder.fatigueBands;
+        this.flagProbabilities = builder.flagProbabilities;
+        this.weeklyFlagProbabilities = builder.weeklyFlagProbabilities;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getWeeks() {
+        return weeks;
+    }
+
+    public void setWeeks(int weeks) {
+        this.weeks = weeks;
+    }
+
+    public int getRuns() {
+        return runs;
+    }
+
+    public void setRuns(int runs) {
+        this.runs = runs;
+    }
+
+    public List<FatigueBandDTO> getFatigueBands() {
+        return fatigueBands;
+    }
+
+    public void setFatigueBands(List<FatigueBandDTO> fatigueBands) {
+        this.fatigueBands = fatigueBands;
+    }
+
+    public Map<String, Double> getFlagProbabilities() {
+        return flagProbabilities;
+    }
+
+    public void setFlagProbabilities(Map<String, Double> flagProbabilities) {
+        this.flagProbabilities = flagProbabilities;
+    }
+
+    public List<Map<String, Double>> getWeeklyFlagProbabilities() {
+        return weeklyFlagProbabilities;
+    }
+
+    public void setWeeklyFlagProbabilities(List<Map<String, Double>> weeklyFlagProbabilities) {
+        this.weeklyFlagProbabilities = weeklyFlagProbabilities;
+    }
+
+    public static class Builder {
+
+        private int weeks;
+        private int runs;
+        private List<FatigueBandDTO> fatigueBands;
+        private Map<String, Double> flagProbabilities;
+        private List<Map<String, Double>> weeklyFlagProbabilities;
+
+        private Builder() {
+        }
+
+        public Builder weeks(int weeks) {
+            this.weeks = weeks;
+            return this;
+        }
+
+        public Builder runs(int runs) {
+            this.runs = runs;
+            return this;
+        }
+
+        public Builder fatigueBands(List<FatigueBandDTO> fatigueBands) {
+            this.fatigueBands = fatigueBands;
+            return this;
+        }
+
+        public Builder flagProbabilities(Map<String, Double> flagProbabilities) {
+            this.flagProbabilities = flagProbabilities;
+            return this;
+        }
+
+        public Builder weeklyFlagProbabilities(List<Map<String, Double>> weeklyFlagProbabilities) {
+            this.weeklyFlagProbabilities = weeklyFlagProbabilities;
+            return this;
+        }
+
+        public SeasonSimulationResultDTO build() {
+            return new SeasonSimulationResultDTO(this);
+        }
+    }
+}
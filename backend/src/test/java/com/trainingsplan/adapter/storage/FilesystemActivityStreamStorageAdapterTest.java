@@ -0,0 +1,55 @@
+package com.trainingsplan.adapter.storage;
+
+import com.trainingsplan.service.stream.ActivityStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilesystemActivityStreamStorageAdapterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FilesystemActivityStreamStorageAdapter storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = new FilesystemActivityStreamStorageAdapter(tempDir.toString());
+    }
+
+    @Test
+    void storeLoadDelete() {
+        ActivityStream stream = new ActivityStream().withVelocity();
+        for (int t = 0; t < 600; t++) {
+            int i = stream.append(t);
+            stream.setHeartRate(i, 140);
+            stream.setVelocity(i, 3.0);
+        }
+
+        storage.store(12345L, stream);
+        assertTrue(Files.exists(tempDir.resolve("12").resolve("12345.ast")));
+
+        ActivityStream loaded = storage.load(12345L).orElseThrow();
+        assertEquals(600, loaded.size());
+        assertEquals(140, loaded.heartRate(599));
+        assertEquals(3.0, loaded.velocity(599), 1e-9);
+
+        storage.delete(12345L);
+        assertTrue(storage.load(12345L).isEmpty());
+    }
+
+    @Test
+    void missingOrCorruptFile_loadsEmpty() throws Exception {
+        assertEquals(Optional.empty(), storage.load(1L));
+
+        Files.createDirectories(tempDir.resolve("0"));
+        Files.write(tempDir.resolve("0").resolve("2.ast"), new byte[]{1, 2, 3});
+        assertEquals(Optional.empty(), storage.load(2L));
+    }
+}
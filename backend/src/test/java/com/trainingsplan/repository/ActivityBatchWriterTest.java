@@ -0,0 +1,116 @@
+package com.trainingsplan.repository;
+
+import com.trainingsplan.entity.CompletedTraining;
+import com.trainingsplan.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Runs the Strava inserts of {@link ActivityBatchWriter} against H2 in MariaDB mode. */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ActivityBatchWriter.class)
+class ActivityBatchWriterTest {
+
+    /** The application's own component scan would pull the whole context into this slice. */
+    @Configuration
+    @EntityScan("com.trainingsplan.entity")
+    @EnableJpaRepositories("com.trainingsplan.repository")
+    static class JpaSlice {
+    }
+
+    @Autowired
+    private ActivityBatchWriter writer;
+    @Autowired
+    private CompletedTrainingRepository completedTrainingRepository;
+    @Autowired
+    private StravaStreamFetchRepository streamFetchRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void insertStravaTrainings_alreadyStoredActivity_keptWithItsId() {
+        User user = user();
+        CompletedTraining stored = strava(1L, user, "Morning run");
+        writer.insertStravaTrainings(List.of(stored));
+
+        CompletedTraining again = strava(1L, user, "Renamed run");
+        CompletedTraining added = strava(2L, user, "Evening run");
+        writer.insertStravaTrainings(List.of(again, added));
+
+        assertEquals(stored.getId(), again.getId());
+        assertNotNull(added.getId());
+        assertEquals(2, completedTrainingRepository.count());
+        assertEquals("Morning run", completedTrainingRepository.findByStravaActivityId(1L).orElseThrow().getActivityName());
+    }
+
+    @Test
+    void insertStravaTrainings_rejectedRow_othersStored() {
+        User user = user();
+        CompletedTraining good = strava(4L, user, "Run");
+        CompletedTraining bad = strava(5L, user, "x".repeat(300));
+        CompletedTraining alsoGood = strava(6L, user, "Ride");
+
+        List<CompletedTraining> stored = writer.insertStravaTrainings(List.of(good, bad, alsoGood));
+
+        assertEquals(List.of(good, alsoGood), stored);
+        assertNull(bad.getId());
+        assertEquals(2, completedTrainingRepository.count());
+    }
+
+    @Test
+    void deleteStreamFetches_ofDeletedActivities_removed() {
+        User user = user();
+        CompletedTraining removed = strava(7L, user, "Run");
+        CompletedTraining kept = strava(8L, user, "Ride");
+        writer.insertStravaTrainings(List.of(removed, kept));
+        streamFetchRepository.enqueue(List.of(removed.getId(), kept.getId()), LocalDateTime.now());
+
+        assertEquals(1, streamFetchRepository.deleteByCompletedTrainingIdIn(List.of(removed.getId())));
+
+        assertEquals(kept.getId(), streamFetchRepository.findAll().get(0).getCompletedTrainingId());
+    }
+
+    @Test
+    void enqueueStreamFetch_twice_queuedOnce() {
+        CompletedTraining training = strava(3L, user(), "Run");
+        writer.insertStravaTrainings(List.of(training));
+
+        streamFetchRepository.enqueue(List.of(training.getId()), LocalDateTime.now());
+        streamFetchRepository.enqueue(List.of(training.getId()), LocalDateTime.now());
+
+        assertEquals(1, streamFetchRepository.count());
+    }
+
+    private User user() {
+        User user = new User();
+        user.setUsername("writer");
+        user.setEmail("writer@example.com");
+        user.setPasswordHash("hash");
+        user.setCreatedAt(LocalDateTime.now());
+        return userRepository.save(user);
+    }
+
+    private static CompletedTraining strava(long stravaId, User user, String name) {
+        CompletedTraining ct = new CompletedTraining();
+        ct.setSource("STRAVA");
+        ct.setStravaActivityId(stravaId);
+        ct.setActivityName(name);
+        ct.setSport("Run");
+        ct.setTrainingDate(LocalDate.of(2026, 5, 1));
+        ct.setUploadDate(LocalDateTime.of(2026, 5, 1, 7, 0));
+        ct.setUser(user);
+        return ct;
+    }
+}
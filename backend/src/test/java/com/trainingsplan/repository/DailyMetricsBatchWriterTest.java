@@ -0,0 +1,105 @@
+package com.trainingsplan.repository;
+
+import com.trainingsplan.entity.AcwrFlag;
+import com.trainingsplan.entity.DailyMetrics;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.repository.DailyMetricsBatchWriter.Columns;
+import com.trainingsplan.repository.DailyMetricsBatchWriter.DailyLoad;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Runs the upserts of {@link DailyMetricsBatchWriter} against H2 in MariaDB mode. */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(DailyMetricsBatchWriter.class)
+class DailyMetricsBatchWriterTest {
+
+    /** The application's own component scan would pull the whole context into this slice. */
+    @Configuration
+    @EntityScan("com.trainingsplan.entity")
+    @EnableJpaRepositories("com.trainingsplan.repository")
+    static class JpaSlice {
+    }
+
+    private static final LocalDate DAY = LocalDate.of(2026, 5, 1);
+
+    @Autowired
+    private DailyMetricsBatchWriter writer;
+    @Autowired
+    private DailyMetricsRepository dailyMetricsRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void writers_setOnlyTheirOwnColumns() {
+        Long userId = user().getId();
+        writer.upsertLoad(userId, List.of(new DailyLoad(DAY, 12.0, 80.0)));
+
+        // Rows computed before the load was written: their stale strain must not be stored
+        DailyMetrics acwr = row(DAY);
+        acwr.setDailyStrain21(0.0);
+        acwr.setAcute7(42.0);
+        acwr.setAcwrFlag(AcwrFlag.GREEN);
+        writer.writeAcwr(userId, List.of(acwr));
+
+        DailyMetrics fitness = row(DAY);
+        fitness.setCtl(30.0);
+        fitness.setReadinessScore(55);
+        writer.writeRows(userId, List.of(fitness), EnumSet.of(Columns.FITNESS));
+
+        DailyMetrics stored = dailyMetricsRepository.findByUserIdAndDate(userId, DAY).orElseThrow();
+        assertEquals(12.0, stored.getDailyStrain21());
+        assertEquals(80.0, stored.getDailyTrimp());
+        assertEquals(42.0, stored.getAcute7());
+        assertEquals(AcwrFlag.GREEN, stored.getAcwrFlag());
+        assertEquals(30.0, stored.getCtl());
+        assertNull(stored.getReadinessScore());
+        assertEquals(1, dailyMetricsRepository.count());
+    }
+
+    @Test
+    void writeRows_insertsMissingDays_updatesExistingOnes() {
+        Long userId = user().getId();
+        writer.upsertLoad(userId, List.of(new DailyLoad(DAY, 5.0, null)));
+
+        DailyMetrics existing = row(DAY);
+        existing.setDailyStrain21(7.0);
+        existing.setEf7(1.5);
+        DailyMetrics added = row(DAY.plusDays(1));
+        added.setDailyStrain21(3.0);
+        writer.writeRows(userId, List.of(existing, added), EnumSet.allOf(Columns.class));
+
+        assertEquals(2, dailyMetricsRepository.count());
+        assertEquals(7.0, dailyMetricsRepository.findByUserIdAndDate(userId, DAY).orElseThrow().getDailyStrain21());
+        assertEquals(1.5, dailyMetricsRepository.findByUserIdAndDate(userId, DAY).orElseThrow().getEf7());
+        assertEquals(3.0, dailyMetricsRepository.findByUserIdAndDate(userId, DAY.plusDays(1)).orElseThrow().getDailyStrain21());
+    }
+
+    private User user() {
+        User user = new User();
+        user.setUsername("metrics");
+        user.setEmail("metrics@example.com");
+        user.setPasswordHash("hash");
+        user.setCreatedAt(LocalDateTime.now());
+        return userRepository.save(user);
+    }
+
+    private static DailyMetrics row(LocalDate date) {
+        DailyMetrics dm = new DailyMetrics();
+        dm.setDate(date);
+        return dm;
+    }
+}
@@ -0,0 +1,104 @@
+package com.trainingsplan.repository;
+
+import com.trainingsplan.entity.StravaStreamFetch;
+import com.trainingsplan.entity.StravaWebhookAction;
+import com.trainingsplan.entity.StravaWebhookEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Runs the claim queries of the Strava stream fetch and webhook queues against H2. */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class StravaQueueClaimTest {
+
+    /** The application's own component scan would pull the whole context into this slice. */
+    @Configuration
+    @EntityScan("com.trainingsplan.entity")
+    @EnableJpaRepositories("com.trainingsplan.repository")
+    static class JpaSlice {
+    }
+
+    @Autowired
+    private StravaStreamFetchRepository fetchRepository;
+    @Autowired
+    private StravaWebhookEventRepository eventRepository;
+
+    @Test
+    void streamFetch_claimedOnce_hiddenFromDueUntilReleased() {
+        LocalDateTime now = now();
+        Long id = fetchRepository.saveAndFlush(fetch(1L, now)).getId();
+
+        assertEquals(1, fetchRepository.claim(id, "a-1", now, now.plusMinutes(5)));
+        assertEquals(0, fetchRepository.claim(id, "b-1", now, now.plusMinutes(5)));
+        assertTrue(fetchRepository.findDue(now, PageRequest.of(0, 10)).isEmpty());
+
+        assertEquals(0, fetchRepository.release(id, "b-1"));
+        assertEquals(1, fetchRepository.release(id, "a-1"));
+        assertEquals(List.of(id), fetchRepository.findDue(now, PageRequest.of(0, 10)).stream()
+                .map(StravaStreamFetch::getId).toList());
+        assertEquals(1, fetchRepository.claim(id, "b-2", now, now.plusMinutes(5)));
+    }
+
+    @Test
+    void streamFetch_expiredClaim_takenOver_notYetDue_notClaimed() {
+        LocalDateTime now = now();
+        Long id = fetchRepository.saveAndFlush(fetch(1L, now)).getId();
+        Long later = fetchRepository.saveAndFlush(fetch(2L, now.plusMinutes(1))).getId();
+
+        assertEquals(1, fetchRepository.claim(id, "dead-1", now, now.minusSeconds(1)));
+        assertEquals(1, fetchRepository.claim(id, "b-1", now, now.plusMinutes(5)));
+        assertEquals(0, fetchRepository.claim(later, "b-2", now, now.plusMinutes(5)));
+    }
+
+    @Test
+    void webhookEvent_claimLeavesRevision_soANewerMergeStillWins() {
+        LocalDateTime now = now();
+        StravaWebhookEvent event = eventRepository.saveAndFlush(event(now));
+        Integer revision = event.getRevision();
+
+        assertEquals(1, eventRepository.claim(event.getId(), "a-1", now, now.plusMinutes(5)));
+        assertEquals(0, eventRepository.claim(event.getId(), "b-1", now, now.plusMinutes(5)));
+        assertTrue(eventRepository.findDue(now, PageRequest.of(0, 10)).isEmpty());
+
+        assertEquals(1, eventRepository.release(event.getId(), "a-1"));
+        assertEquals(revision, eventRepository.findById(event.getId()).orElseThrow().getRevision());
+    }
+
+    /** Whole seconds, so storing the timestamp never rounds it past {@code now}. */
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    private static StravaStreamFetch fetch(Long completedTrainingId, LocalDateTime nextAttemptAt) {
+        StravaStreamFetch fetch = new StravaStreamFetch();
+        fetch.setCompletedTrainingId(completedTrainingId);
+        fetch.setStravaActivityId(9001L);
+        fetch.setUserId(7L);
+        fetch.setNextAttemptAt(nextAttemptAt);
+        fetch.setCreatedAt(nextAttemptAt);
+        return fetch;
+    }
+
+    private static StravaWebhookEvent event(LocalDateTime now) {
+        StravaWebhookEvent event = new StravaWebhookEvent();
+        event.setStravaActivityId(11L);
+        event.setAthleteId(4242L);
+        event.setAction(StravaWebhookAction.UPSERT);
+        event.setEventTime(1L);
+        event.setNextAttemptAt(now);
+        event.setReceivedAt(now);
+        return event;
+    }
+}
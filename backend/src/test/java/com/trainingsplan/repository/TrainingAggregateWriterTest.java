@@ -0,0 +1,145 @@
+package com.trainingsplan.repository;
+
+import com.trainingsplan.entity.AggregateGranularity;
+import com.trainingsplan.entity.CompletedTraining;
+import com.trainingsplan.entity.TrainingAggregate;
+import com.trainingsplan.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Runs the in-place bucket rebuilds of {@link TrainingAggregateWriter} against H2 in MariaDB mode. */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(TrainingAggregateWriter.class)
+class TrainingAggregateWriterTest {
+
+    /** The application's own component scan would pull the whole context into this slice. */
+    @Configuration
+    @EntityScan("com.trainingsplan.entity")
+    @EnableJpaRepositories("com.trainingsplan.repository")
+    static class JpaSlice {
+    }
+
+    private static final LocalDate MON = LocalDate.of(2026, 3, 2);
+    private static final LocalDate TUE = MON.plusDays(1);
+
+    @Autowired
+    private TrainingAggregateWriter writer;
+    @Autowired
+    private TrainingAggregateRepository aggregateRepository;
+    @Autowired
+    private CompletedTrainingRepository completedTrainingRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        User u = new User();
+        u.setUsername("aggregates");
+        u.setEmail("aggregates@example.com");
+        u.setPasswordHash("hash");
+        u.setCreatedAt(LocalDateTime.now());
+        user = userRepository.save(u);
+    }
+
+    @Test
+    void rebuild_updatesBucketsInPlace_dropsVanishedTypes() {
+        CompletedTraining tempo = training(MON, "TEMPO", 10.0);
+        training(MON, "EASY", 5.0);
+        training(TUE, "EASY", 8.0);
+        rebuild(Set.of(MON, TUE));
+        Long easyWeekId = bucket(AggregateGranularity.WEEK, MON, "EASY").getId();
+
+        tempo.setTrainingType("EASY");
+        completedTrainingRepository.saveAndFlush(tempo);
+        rebuild(Set.of(MON));
+
+        assertEquals(List.of("EASY"), buckets(AggregateGranularity.DAY, MON).stream()
+                .map(TrainingAggregate::getTrainingType).toList());
+        TrainingAggregate easyDay = bucket(AggregateGranularity.DAY, MON, "EASY");
+        assertEquals(2, easyDay.getActivityCount());
+        assertEquals(15.0, easyDay.getDistanceKm(), 1e-9);
+        assertEquals(10.0, easyDay.getMaxDistanceKm(), 1e-9);
+
+        TrainingAggregate easyWeek = bucket(AggregateGranularity.WEEK, MON, "EASY");
+        assertEquals(easyWeekId, easyWeek.getId());
+        assertEquals(3, easyWeek.getActivityCount());
+        assertEquals(23.0, easyWeek.getDistanceKm(), 1e-9);
+        assertEquals(1, buckets(AggregateGranularity.WEEK, MON).size());
+    }
+
+    @Test
+    void rebuild_lastActivityOfDayRemoved_bucketsDeleted() {
+        CompletedTraining only = training(MON, "EASY", 5.0);
+        rebuild(Set.of(MON));
+
+        completedTrainingRepository.delete(only);
+        completedTrainingRepository.flush();
+        rebuild(Set.of(MON));
+
+        assertEquals(0, aggregateRepository.count());
+    }
+
+    @Test
+    void rebuildAllDays_regroupsEverything() {
+        training(MON, "EASY", 5.0);
+        training(TUE, "TEMPO", 8.0);
+        rebuild(Set.of(MON));
+
+        List<LocalDate> days = writer.rebuildAllDays(user.getId());
+
+        assertEquals(Set.of(MON, TUE), Set.copyOf(days));
+        assertEquals(2, buckets(AggregateGranularity.DAY, MON).size() + buckets(AggregateGranularity.DAY, TUE).size());
+        assertTrue(buckets(AggregateGranularity.WEEK, MON).isEmpty());
+    }
+
+    private void rebuild(Set<LocalDate> days) {
+        writer.rebuildDays(user.getId(), days);
+        writer.rollUp(user.getId(), AggregateGranularity.WEEK, Set.of(MON));
+    }
+
+    /** Read past the persistence context, the writer changes rows behind its back. */
+    private List<TrainingAggregate> buckets(AggregateGranularity granularity, LocalDate start) {
+        entityManager.clear();
+        return aggregateRepository.findAll().stream()
+                .filter(a -> a.getGranularity() == granularity && a.getPeriodStart().equals(start))
+                .toList();
+    }
+
+    private TrainingAggregate bucket(AggregateGranularity granularity, LocalDate start, String type) {
+        return buckets(granularity, start).stream()
+                .filter(a -> a.getTrainingType().equals(type))
+                .findFirst().orElseThrow();
+    }
+
+    private CompletedTraining training(LocalDate date, String type, double distanceKm) {
+        CompletedTraining ct = new CompletedTraining();
+        ct.setUser(user);
+        ct.setTrainingDate(date);
+        ct.setUploadDate(date.atTime(7, 0));
+        ct.setSport("Run");
+        ct.setTrainingType(type);
+        ct.setDistanceKm(distanceKm);
+        ct.setDurationSeconds(3000);
+        return completedTrainingRepository.saveAndFlush(ct);
+    }
+}
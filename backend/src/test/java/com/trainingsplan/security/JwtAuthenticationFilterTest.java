@@ -0,0 +1,128 @@
+package com.trainingsplan.security;
+
+import com.trainingsplan.entity.User;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests token verification in {@link JwtService} and the principal caching of
+ * {@link JwtAuthenticationFilter} / {@link PrincipalCache}. The user lookup is mocked.
+ */
+class JwtAuthenticationFilterTest {
+
+    private static final String SECRET = "TestSecretKeyThatIsDefinitelyAtLeast32CharactersLong!";
+
+    private UserDetailsServiceImpl userDetailsService;
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+    private JwtService jwtService;
+    private PrincipalCache cache;
+    private UserActivityTracker activityTracker;
+    private JwtAuthenticationFilter filter;
+    private User alice;
+
+    @BeforeEach
+    void setUp() {
+        userDetailsService = mock(UserDetailsServiceImpl.class);
+        jwtService = new JwtService(SECRET, 60_000L);
+        cache = new PrincipalCache(userDetailsService, 1_000L, 2, now::get);
+        activityTracker = mock(UserActivityTracker.class);
+        filter = new JwtAuthenticationFilter(jwtService, cache, activityTracker);
+
+        alice = user(1L, "alice");
+        when(userDetailsService.loadUserByUsername("alice")).thenReturn(alice);
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void validToken_authenticates_userLoadedOnceAcrossRequests() throws Exception {
+        String token = jwtService.generateToken(alice);
+
+        for (int i = 0; i < 3; i++) {
+            SecurityContextHolder.clearContext();
+            filter.doFilter(request(token), new MockHttpServletResponse(), new MockFilterChain());
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            assertNotNull(auth);
+            assertSame(alice, auth.getPrincipal());
+        }
+        verify(userDetailsService, times(1)).loadUserByUsername("alice");
+        verify(activityTracker, times(3)).touch(1L);
+    }
+
+    @Test
+    void tamperedToken_notAuthenticated_noLookup() throws Exception {
+        String token = jwtService.generateToken(alice);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request(tampered), new MockHttpServletResponse(), chain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertNotNull(chain.getRequest(), "request must continue down the chain");
+        verifyNoInteractions(userDetailsService, activityTracker);
+    }
+
+    @Test
+    void expiredToken_rejected() {
+        JwtService shortLived = new JwtService(SECRET, -1_000L);
+        String token = shortLived.generateToken(alice);
+
+        assertThrows(JwtException.class, () -> jwtService.parseToken(token));
+        assertFalse(jwtService.isTokenValid(token, alice));
+    }
+
+    @Test
+    void principalCache_expiresAfterTtl_andEvictReloads() {
+        cache.get("alice");
+        cache.get("alice");
+        verify(userDetailsService, times(1)).loadUserByUsername("alice");
+
+        now.addAndGet(1_001L);
+        cache.get("alice");
+        verify(userDetailsService, times(2)).loadUserByUsername("alice");
+
+        cache.evict("alice");
+        cache.get("alice");
+        verify(userDetailsService, times(3)).loadUserByUsername("alice");
+    }
+
+    @Test
+    void principalCache_boundedSize() {
+        when(userDetailsService.loadUserByUsername("bob")).thenReturn(user(2L, "bob"));
+        when(userDetailsService.loadUserByUsername("carol")).thenReturn(user(3L, "carol"));
+
+        cache.get("alice");
+        cache.get("bob");
+        cache.get("carol");
+
+        assertEquals(2, cache.size());
+    }
+
+    private static MockHttpServletRequest request(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+
+    private static User user(Long id, String username) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        return user;
+    }
+}
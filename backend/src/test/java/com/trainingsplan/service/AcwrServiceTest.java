@@ -3,6 +3,7 @@ package com.trainingsplan.service;
 import com.trainingsplan.entity.AcwrFlag;
 import com.trainingsplan.entity.DailyMetrics;
 import com.trainingsplan.entity.User;
+import com.trainingsplan.repository.DailyMetricsBatchWriter;
 import com.trainingsplan.repository.DailyMetricsRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,6 +13,7 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -40,6 +42,7 @@ import static org.mockito.Mockito.*;
 class AcwrServiceTest {
 
     private DailyMetricsRepository dailyMetricsRepository;
+    private DailyMetricsBatchWriter dailyMetricsBatchWriter;
     private LoadModelService service;
 
     private static final LocalDate TODAY = LocalDate.of(2026, 2, 24);
@@ -48,10 +51,13 @@ class AcwrServiceTest {
     @BeforeEach
     void setUp() {
         dailyMetricsRepository = mock(DailyMetricsRepository.class);
+        dailyMetricsBatchWriter = mock(DailyMetricsBatchWriter.class);
 
         service = new LoadModelService();
         // Inject mock via reflection since the service uses @Autowired field injection
         injectField(service, "dailyMetricsRepository", dailyMetricsRepository);
+        injectField(service, "dailyMetricsBatchWriter", dailyMetricsBatchWriter);
+        injectField(service, "userDataVersions", mock(UserDataVersions.class));
 
         user = new User();
 
@@ -270,21 +276,67 @@ class AcwrServiceTest {
         assertEquals(AcwrFlag.RED, saved.getAcwrFlag());
     }
 
-    // ── 9. recomputeAcwrForUser calls repository 90 times ────────────────────
+    // ── 9. recomputeAcwrForUser: one read, one batched write ─────────────────
 
     /**
-     * recomputeAcwrForUser iterates today-89 through today (inclusive = 90 days).
-     * Each call to updateAcwr issues exactly one findByUserIdAndDateBetween query.
+     * recomputeAcwrForUser covers today-89 through today (inclusive = 90 days) with a
+     * single read of [today-116, today] and a single batched write of 90 rows.
      */
     @Test
-    void recomputeAcwrForUser_callsRepository90Times() {
+    void recomputeAcwrForUser_readsOnceAndWritesOneBatch() {
         when(dailyMetricsRepository.findByUserIdAndDateBetween(any(), any(), any()))
                 .thenReturn(List.of());
+        LocalDate today = LocalDate.now();
 
         service.recomputeAcwrForUser(user);
 
-        verify(dailyMetricsRepository, times(90))
-                .findByUserIdAndDateBetween(any(), any(), any());
+        verify(dailyMetricsRepository).findByUserIdAndDateBetween(
+                user.getId(), today.minusDays(89 + 27), today);
+        List<DailyMetrics> written = captureWriteAcwr();
+        assertEquals(90, written.size());
+        assertEquals(today.minusDays(89), written.get(0).getDate());
+        assertEquals(today, written.get(89).getDate());
+        verify(dailyMetricsRepository, never()).save(any());
+    }
+
+    // ── 11. Range sweep matches per-day computation ──────────────────────────
+
+    /**
+     * Over a year of random strain with rest blocks, every day of the sweep equals
+     * {@link LoadModelService#updateAcwr} for that day, existing rows are updated in place
+     * and missing days become new rows.
+     */
+    @Test
+    void recomputeAcwrRange_matchesPerDayUpdate() {
+        LocalDate from = TODAY.minusDays(364);
+        Random rnd = new Random(3);
+        List<DailyMetrics> history = new ArrayList<>();
+        for (LocalDate d = from.minusDays(27); !d.isAfter(TODAY); d = d.plusDays(1)) {
+            boolean restBlock = d.getMonthValue() == 6;  // > 28 days without load
+            if (!restBlock && rnd.nextInt(5) != 0) {
+                history.add(metricsOnDate(d, rnd.nextInt(4) == 0 ? 0.0 : rnd.nextDouble() * 18));
+            }
+        }
+        when(dailyMetricsRepository.findByUserIdAndDateBetween(any(), any(), any()))
+                .thenAnswer(inv -> history.stream()
+                        .filter(dm -> !dm.getDate().isBefore(inv.getArgument(1))
+                                && !dm.getDate().isAfter(inv.getArgument(2)))
+                        .toList());
+
+        service.recomputeAcwrRange(user, from, TODAY);
+        List<DailyMetrics> swept = captureWriteAcwr();
+
+        assertEquals(365, swept.size());
+        assertTrue(swept.containsAll(history.stream().filter(dm -> !dm.getDate().isBefore(from)).toList()));
+        for (DailyMetrics s : swept) {
+            DailyMetrics expected = perDay(s.getDate());
+            assertEquals(expected.getAcute7(), s.getAcute7(), 1e-9, s.getDate().toString());
+            assertEquals(expected.getChronic28(), s.getChronic28(), 1e-9);
+            if (expected.getAcwr() == null) assertNull(s.getAcwr(), s.getDate().toString());
+            else assertEquals(expected.getAcwr(), s.getAcwr(), 1e-9);
+            assertEquals(expected.getAcwrFlag(), s.getAcwrFlag());
+            assertEquals(expected.getAcwrMessage(), s.getAcwrMessage());
+        }
     }
 
     // ── 10. Repository queried with correct 28-day date range ─────────────────
@@ -329,6 +381,22 @@ class AcwrServiceTest {
         return list;
     }
 
+    /** Runs the per-day path for {@code date} and returns what it saved. */
+    private DailyMetrics perDay(LocalDate date) {
+        clearInvocations(dailyMetricsRepository);
+        service.updateAcwr(user, date);
+        ArgumentCaptor<DailyMetrics> captor = ArgumentCaptor.forClass(DailyMetrics.class);
+        verify(dailyMetricsRepository).save(captor.capture());
+        return captor.getValue();
+    }
+
+    private List<DailyMetrics> captureWriteAcwr() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<DailyMetrics>> captor = ArgumentCaptor.forClass(List.class);
+        verify(dailyMetricsBatchWriter).writeAcwr(eq(user.getId()), captor.capture());
+        return captor.getValue();
+    }
+
     private DailyMetrics captureLastSave() {
         ArgumentCaptor<DailyMetrics> captor = ArgumentCaptor.forClass(DailyMetrics.class);
         verify(dailyMetricsRepository, atLeastOnce()).save(captor.capture());
@@ -1,11 +1,12 @@
 package com.trainingsplan.service;
 
 import com.trainingsplan.dto.AthleteStateDTO;
-import com.trainingsplan.entity.CompletedTraining;
+import com.trainingsplan.entity.AggregateGranularity;
 import com.trainingsplan.entity.DailyMetrics;
+import com.trainingsplan.entity.TrainingAggregate;
 import com.trainingsplan.entity.User;
-import com.trainingsplan.repository.CompletedTrainingRepository;
 import com.trainingsplan.repository.DailyMetricsRepository;
+import com.trainingsplan.repository.TrainingAggregateRepository;
 import com.trainingsplan.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -27,7 +28,7 @@ class AthleteStateServiceTest {
 
     private UserRepository userRepository;
     private DailyMetricsRepository dailyMetricsRepository;
-    private CompletedTrainingRepository completedTrainingRepository;
+    private TrainingAggregateRepository trainingAggregateRepository;
     private DailyMetricsService dailyMetricsService;
     private PaceZoneService paceZoneService;
     private AthleteStateService service;
@@ -36,14 +37,14 @@ class AthleteStateServiceTest {
     void setUp() {
         userRepository = mock(UserRepository.class);
         dailyMetricsRepository = mock(DailyMetricsRepository.class);
-        completedTrainingRepository = mock(CompletedTrainingRepository.class);
+        trainingAggregateRepository = mock(TrainingAggregateRepository.class);
         dailyMetricsService = mock(DailyMetricsService.class);
         paceZoneService = mock(PaceZoneService.class);
 
         service = new AthleteStateService(
                 userRepository,
                 dailyMetricsRepository,
-                completedTrainingRepository,
+                trainingAggregateRepository,
                 dailyMetricsService,
                 paceZoneService
         );
@@ -68,16 +69,16 @@ class AthleteStateServiceTest {
         dmYesterday.setDailyStrain21(11.0);
         dmYesterday.setDailyTrimp(60.0);
 
-        CompletedTraining run = new CompletedTraining();
+        TrainingAggregate run = new TrainingAggregate();
         run.setSport("RUN");
-        run.setMovingTimeSeconds(7200);
+        run.setMaxDurationSeconds(7200);
 
         when(userRepository.findById(11L)).thenReturn(Optional.of(user));
         when(dailyMetricsRepository.findByUserIdAndDateBetween(
                 eq(11L), eq(today.minusDays(27)), eq(today)))
                 .thenReturn(List.of(dmYesterday, dmToday));
-        when(completedTrainingRepository.findByUserIdAndTrainingDateBetweenOrderByTrainingDate(
-                eq(11L), any(), eq(today)))
+        when(trainingAggregateRepository.findByUserIdAndGranularityAndPeriodStartBetween(
+                eq(11L), eq(AggregateGranularity.DAY), any(), eq(today)))
                 .thenReturn(List.of(run));
         when(paceZoneService.calculateZones(300))
                 .thenReturn(List.of(
@@ -109,8 +110,8 @@ class AthleteStateServiceTest {
         when(dailyMetricsRepository.findByUserIdAndDateBetween(
                 eq(4L), eq(today.minusDays(27)), eq(today)))
                 .thenReturn(List.of());
-        when(completedTrainingRepository.findByUserIdAndTrainingDateBetweenOrderByTrainingDate(
-                eq(4L), any(), eq(today)))
+        when(trainingAggregateRepository.findByUserIdAndGranularityAndPeriodStartBetween(
+                eq(4L), eq(AggregateGranularity.DAY), any(), eq(today)))
                 .thenReturn(List.of());
 
         AthleteStateDTO dto = service.getAthleteState(4L);
@@ -0,0 +1,151 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests debouncing and coalescing of {@link DailyMetricsDirtyTracker} with mocked
+ * {@link DailyMetricsService} and {@link LoadModelService}.
+ */
+class DailyMetricsDirtyTrackerTest {
+
+    private static final long DEBOUNCE_MS = 150;
+    private static final long MAX_DELAY_MS = 10_000;
+
+    private DailyMetricsService dailyMetricsService;
+    private LoadModelService loadModelService;
+    private DailyMetricsDirtyTracker tracker;
+    private LocalDate today;
+
+    @BeforeEach
+    void setUp() {
+        dailyMetricsService = mock(DailyMetricsService.class);
+        loadModelService = mock(LoadModelService.class);
+        tracker = new DailyMetricsDirtyTracker(dailyMetricsService, loadModelService, DEBOUNCE_MS, MAX_DELAY_MS);
+        today = LocalDate.now();
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracker.shutdown();
+    }
+
+    @Test
+    void singleOldDate_rebuildsDPlus27() {
+        User user = user(1L);
+        LocalDate d = today.minusDays(60);
+
+        tracker.markDirty(user, d);
+
+        verify(dailyMetricsService, timeout(2000)).recomputeRange(user, d, d.plusDays(27));
+        verify(loadModelService, timeout(2000)).recomputeFitnessRange(user, d.plusDays(28), today);
+        assertEquals(0, tracker.pendingUsers());
+    }
+
+    @Test
+    void recentDate_windowEndsToday() {
+        User user = user(1L);
+        LocalDate d = today.minusDays(10);
+
+        tracker.markDirty(user, d);
+
+        verify(dailyMetricsService, timeout(2000)).recomputeRange(user, d, today);
+    }
+
+    @Test
+    void burstForSameUser_coalescedIntoOneJob() {
+        User user = user(1L);
+        LocalDate latest = today.minusDays(40);
+
+        tracker.markDirty(user, today.minusDays(50));
+        tracker.markDirty(user, latest);
+        tracker.markDirty(user, today.minusDays(70));
+        tracker.markDirty(user, today.minusDays(45));
+
+        verify(dailyMetricsService, timeout(2000))
+                .recomputeRange(user, today.minusDays(70), latest.plusDays(27));
+        verify(dailyMetricsService, after(3 * DEBOUNCE_MS).times(1)).recomputeRange(any(), any(), any());
+    }
+
+    @Test
+    void differentUsers_separateJobs() {
+        User a = user(1L);
+        User b = user(2L);
+        LocalDate d = today.minusDays(5);
+
+        tracker.markDirty(a, d);
+        tracker.markDirty(b, d);
+
+        verify(dailyMetricsService, timeout(2000)).recomputeRange(eq(a), eq(d), eq(today));
+        verify(dailyMetricsService, timeout(2000)).recomputeRange(eq(b), eq(d), eq(today));
+    }
+
+    @Test
+    void markDuringDebounce_restartsDelay() throws InterruptedException {
+        tracker.shutdown();
+        tracker = new DailyMetricsDirtyTracker(dailyMetricsService, loadModelService, 400, MAX_DELAY_MS);
+        User user = user(1L);
+        LocalDate d = today.minusDays(30);
+
+        tracker.markDirty(user, d);
+        Thread.sleep(200);
+        tracker.markDirty(user, d);
+        Thread.sleep(250);   // past the first deadline, not the second
+
+        verify(dailyMetricsService, never()).recomputeRange(any(), any(), any());
+        verify(dailyMetricsService, timeout(2000)).recomputeRange(user, d, today.minusDays(3));
+    }
+
+    @Test
+    void steadyMarks_recomputeAfterMaxDelay() throws InterruptedException {
+        tracker.shutdown();
+        tracker = new DailyMetricsDirtyTracker(dailyMetricsService, loadModelService, 300, 500);
+        User user = user(1L);
+        LocalDate d = today.minusDays(30);
+
+        // Every mark lands within the debounce of the previous one
+        for (int i = 0; i < 10; i++) {
+            tracker.markDirty(user, d);
+            Thread.sleep(100);
+        }
+
+        verify(dailyMetricsService, atLeastOnce()).recomputeRange(user, d, today.minusDays(3));
+    }
+
+    @Test
+    void failingRecompute_retriedUpToMaxAttempts() {
+        doThrow(new IllegalStateException("boom")).when(dailyMetricsService).recomputeRange(any(), any(), any());
+        User user = user(1L);
+        LocalDate d = today.minusDays(30);
+
+        tracker.markDirty(user, d);
+
+        verify(dailyMetricsService, timeout(3000).times(DailyMetricsDirtyTracker.MAX_ATTEMPTS))
+                .recomputeRange(user, d, today.minusDays(3));
+        verify(dailyMetricsService, after(2 * DEBOUNCE_MS).times(DailyMetricsDirtyTracker.MAX_ATTEMPTS))
+                .recomputeRange(any(), any(), any());
+        assertEquals(0, tracker.pendingUsers());
+    }
+
+    @Test
+    void futureDate_ignored() {
+        tracker.markDirty(user(1L), today.plusDays(1));
+
+        assertEquals(0, tracker.pendingUsers());
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
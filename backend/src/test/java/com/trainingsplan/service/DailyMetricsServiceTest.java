@@ -0,0 +1,204 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.dto.DailyActivitySumsDto;
+import com.trainingsplan.dto.EfSampleDto;
+import com.trainingsplan.entity.AcwrFlag;
+import com.trainingsplan.entity.DailyMetrics;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.repository.ActivityMetricsRepository;
+import com.trainingsplan.repository.DailyMetricsBatchWriter;
+import com.trainingsplan.repository.DailyMetricsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the accumulator-based update paths of {@link DailyMetricsService}:
+ * each update reads {@code daily_metrics} once and writes all touched rows in one batch.
+ * Real {@link LoadModelService} and {@link ReadinessService}, mocked repositories.
+ */
+class DailyMetricsServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 2, 24);
+
+    private ActivityMetricsRepository activityMetricsRepository;
+    private DailyMetricsRepository dailyMetricsRepository;
+    private DailyMetricsBatchWriter dailyMetricsBatchWriter;
+    private DailyMetricsService service;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        activityMetricsRepository = mock(ActivityMetricsRepository.class);
+        dailyMetricsRepository = mock(DailyMetricsRepository.class);
+        dailyMetricsBatchWriter = mock(DailyMetricsBatchWriter.class);
+
+        LoadModelService loadModelService = new LoadModelService();
+        injectField(loadModelService, "dailyMetricsRepository", dailyMetricsRepository);
+        injectField(loadModelService, "dailyMetricsBatchWriter", dailyMetricsBatchWriter);
+
+        ReadinessService readinessService = new ReadinessService();
+        injectField(readinessService, "dailyMetricsRepository", dailyMetricsRepository);
+        injectField(readinessService, "activityMetricsRepository", activityMetricsRepository);
+        injectField(readinessService, "coachCardService", new CoachCardService());
+
+        service = new DailyMetricsService();
+        injectField(service, "activityMetricsRepository", activityMetricsRepository);
+        injectField(service, "dailyMetricsRepository", dailyMetricsRepository);
+        injectField(service, "dailyMetricsBatchWriter", dailyMetricsBatchWriter);
+        injectField(service, "loadModelService", loadModelService);
+        injectField(service, "readinessService", readinessService);
+        injectField(service, "userDataVersions", mock(UserDataVersions.class));
+
+        user = new User();
+        user.setId(7L);
+
+        when(activityMetricsRepository.findEfByUserIdAndDateRange(any(), any(), any())).thenReturn(List.of());
+        when(activityMetricsRepository.findEligibleDecouplingByUserId(any(), any())).thenReturn(List.of());
+    }
+
+    // ── 1. Upload: training date + today → one read, one write ───────────────
+
+    @Test
+    void updateDays_trainingDateAndToday_oneReadOneWrite() {
+        LocalDate trainingDate = TODAY.minusDays(3);
+        // 27 earlier days at 10.0 already stored, trainingDate gets 20.0 from the new upload
+        List<DailyMetrics> stored = new ArrayList<>();
+        for (int i = 30; i >= 4; i--) {
+            stored.add(row(TODAY.minusDays(i), 10.0));
+        }
+        when(dailyMetricsRepository.findByUserIdAndDateBetween(7L, trainingDate.minusDays(27), TODAY))
+                .thenReturn(stored);
+        when(activityMetricsRepository.findDailySumsByUserIdAndDateRange(7L, trainingDate.minusDays(1), TODAY))
+                .thenReturn(List.of(sums(trainingDate, 20.0)));
+
+        service.updateDays(user, List.of(TODAY, trainingDate));
+
+        verify(dailyMetricsRepository, times(1)).findByUserIdAndDateBetween(any(), any(), any());
+        verify(dailyMetricsRepository, never()).findByUserIdAndDate(any(), any());
+        verify(dailyMetricsRepository, never()).save(any());
+
+        List<DailyMetrics> written = captureWriteRows();
+        assertEquals(List.of(trainingDate, TODAY), written.stream().map(DailyMetrics::getDate).toList());
+
+        DailyMetrics day = written.get(0);
+        assertEquals(20.0, day.getDailyStrain21(), 1e-9);
+        assertEquals(80.0, day.getAcute7(), 1e-9);             // 6×10 + 20
+        assertEquals(290.0 / 4, day.getChronic28(), 1e-9);     // 27×10 + 20
+        assertNotNull(day.getReadinessScore());
+        assertNotNull(day.getCoachTitle());
+
+        DailyMetrics today = written.get(1);
+        assertEquals(0.0, today.getDailyStrain21(), 1e-9);
+        assertEquals(50.0, today.getAcute7(), 1e-9);           // 3×10 + 20
+        assertEquals(AcwrFlag.BLUE, today.getAcwrFlag());
+        assertNotNull(today.getRecommendation());
+    }
+
+    // ── 2. Existing rows are reused, not duplicated ──────────────────────────
+
+    @Test
+    void updateDays_existingRow_updatedInPlace() {
+        DailyMetrics existing = row(TODAY, 5.0);
+        when(dailyMetricsRepository.findByUserIdAndDateBetween(any(), any(), any()))
+                .thenReturn(new ArrayList<>(List.of(existing)));
+        when(activityMetricsRepository.findDailySumsByUserIdAndDateRange(eq(7L), any(), any()))
+                .thenReturn(List.of(sums(TODAY, 12.0)));
+
+        service.updateDays(user, List.of(TODAY));
+
+        List<DailyMetrics> written = captureWriteRows();
+        assertEquals(1, written.size());
+        assertSame(existing, written.get(0));
+        assertEquals(12.0, existing.getDailyStrain21(), 1e-9);
+    }
+
+    // ── 3. Range recompute → one read, one write for the whole range ─────────
+
+    @Test
+    void recomputeRange_oneReadOneWrite() {
+        when(dailyMetricsRepository.findByUserIdAndDateBetween(any(), any(), any()))
+                .thenReturn(new ArrayList<>());
+        List<DailyActivitySumsDto> days = new ArrayList<>();
+        for (int i = 9; i >= 0; i--) {
+            days.add(sums(TODAY.minusDays(i), 8.0));
+        }
+        when(activityMetricsRepository.findDailySumsByUserIdAndDateRange(eq(7L), any(), any())).thenReturn(days);
+
+        service.recomputeRange(user, TODAY.minusDays(9), TODAY);
+
+        verify(dailyMetricsRepository, times(1)).findByUserIdAndDateBetween(any(), any(), any());
+        List<DailyMetrics> written = captureWriteRows();
+        assertEquals(10, written.size());
+        assertEquals(56.0, written.get(9).getAcute7(), 1e-9);      // 7×8
+        assertEquals(80.0 / 4, written.get(9).getChronic28(), 1e-9); // 10×8, nothing before the range
+    }
+
+    // ── 4. Range recompute → activity queries do not grow with the range ─────
+
+    @Test
+    void recomputeRange_yearOfDays_fixedNumberOfActivityQueries() {
+        LocalDate from = TODAY.minusDays(364);
+        when(dailyMetricsRepository.findByUserIdAndDateBetween(any(), any(), any()))
+                .thenReturn(new ArrayList<>());
+        when(activityMetricsRepository.findEfByUserIdAndDateRange(any(), any(), any())).thenReturn(List.of(
+                new EfSampleDto(from.minusDays(10), 0.03),
+                new EfSampleDto(TODAY.minusDays(10), 0.02),
+                new EfSampleDto(TODAY, 0.01)));
+
+        service.recomputeRange(user, from, TODAY);
+
+        verify(activityMetricsRepository, times(1)).findDailySumsByUserIdAndDateRange(7L, from.minusDays(1), TODAY);
+        verify(activityMetricsRepository, times(1)).findEfByUserIdAndDateRange(7L, from.minusDays(27), TODAY);
+        verify(activityMetricsRepository, times(1)).findEligibleDecouplingByUserId(any(), any());
+
+        List<DailyMetrics> written = captureWriteRows();
+        assertEquals(365, written.size());
+        DailyMetrics first = written.get(0);
+        assertNull(first.getEf7());                                // sample 10 days before the range
+        assertEquals(0.03, first.getEf28(), 1e-9);
+        DailyMetrics today = written.get(364);
+        assertEquals(0.01, today.getEf7(), 1e-9);
+        assertEquals(0.015, today.getEf28(), 1e-9);
+    }
+
+    // ── Helpers ──────────────────────────────────────────────────────────────
+
+    private static DailyActivitySumsDto sums(LocalDate date, double strain) {
+        return new DailyActivitySumsDto(date, strain, null, 0.0);
+    }
+
+    private DailyMetrics row(LocalDate date, double strain) {
+        DailyMetrics dm = new DailyMetrics();
+        dm.setUser(user);
+        dm.setDate(date);
+        dm.setDailyStrain21(strain);
+        return dm;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<DailyMetrics> captureWriteRows() {
+        ArgumentCaptor<List<DailyMetrics>> captor = ArgumentCaptor.forClass(List.class);
+        verify(dailyMetricsBatchWriter, times(1)).writeRows(eq(7L), captor.capture(), any());
+        return captor.getValue();
+    }
+
+    private void injectField(Object target, String fieldName, Object value) {
+        try {
+            var field = target.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to inject field: " + fieldName, e);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.trainingsplan.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trainingsplan.dto.IngestJobStatus;
+import com.trainingsplan.dto.StravaSyncCandidateDto;
+import com.trainingsplan.entity.ActivityMetrics;
+import com.trainingsplan.entity.CompletedTraining;
+import com.trainingsplan.entity.DailyMetrics;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.port.ActivityStreamStoragePort;
+import com.trainingsplan.repository.ActivityBatchWriter;
+import com.trainingsplan.repository.ActivityMetricsRepository;
+import com.trainingsplan.repository.CompetitionRegistrationRepository;
+import com.trainingsplan.repository.CompletedTrainingRepository;
+import com.trainingsplan.repository.DailyMetricsBatchWriter;
+import com.trainingsplan.repository.DailyMetricsRepository;
+import com.trainingsplan.repository.StravaSyncStateRepository;
+import com.trainingsplan.repository.UserRepository;
+import com.trainingsplan.repository.UserTrainingEntryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs {@link DailyMetricsService} against H2 without a surrounding transaction, the way the
+ * ingest workers, the dirty tracker and the sync scheduler call it: every repository call
+ * gets its own session, so nothing may rely on lazy loading afterwards.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({DailyMetricsService.class, LoadModelService.class, ReadinessService.class, CoachCardService.class,
+        DailyMetricsBatchWriter.class, ActivityBatchWriter.class, UserDataVersions.class})
+class DailyMetricsWithoutSessionTest {
+
+    /** The application's own component scan would pull the whole context into this slice. */
+    @Configuration
+    @EntityScan("com.trainingsplan.entity")
+    @EnableJpaRepositories("com.trainingsplan.repository")
+    static class JpaSlice {
+    }
+
+    private static final double EF = 0.02;
+
+    @Autowired
+    private DailyMetricsService dailyMetricsService;
+    @Autowired
+    private DailyMetricsRepository dailyMetricsRepository;
+    @Autowired
+    private ActivityMetricsRepository activityMetricsRepository;
+    @Autowired
+    private CompletedTrainingRepository completedTrainingRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ActivityBatchWriter activityBatchWriter;
+    @Autowired
+    private LoadModelService loadModelService;
+    @Autowired
+    private UserDataVersions userDataVersions;
+    @Autowired
+    private CompetitionRegistrationRepository competitionRegistrationRepository;
+    @Autowired
+    private UserTrainingEntryRepository userTrainingEntryRepository;
+    @Autowired
+    private StravaSyncStateRepository syncStateRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private User user;
+    private LocalDate today;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUsername("sessionless");
+        user.setEmail("sessionless@example.com");
+        user.setPasswordHash("hash");
+        user.setCreatedAt(LocalDateTime.now());
+        user.setMaxHeartRate(190);
+        user.setHrRest(50);
+        user = userRepository.save(user);
+        today = LocalDate.now();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dailyMetricsRepository.deleteAll();
+        activityMetricsRepository.deleteAll();
+        completedTrainingRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void updateDays_activityWithEfInWindow_setsEf() {
+        LocalDate date = today.minusDays(2);
+        activity(date, 10.0);
+
+        dailyMetricsService.updateDays(user, List.of(date, today));
+
+        DailyMetrics day = dailyMetricsRepository.findByUserIdAndDate(user.getId(), date).orElseThrow();
+        assertEquals(10.0, day.getDailyStrain21(), 1e-9);
+        assertEquals(EF, day.getEf7(), 1e-9);
+        assertEquals(EF, dailyMetricsRepository.findByUserIdAndDate(user.getId(), today).orElseThrow().getEf28(), 1e-9);
+    }
+
+    @Test
+    void archiveImport_recomputesDailyMetricsOfImportedDays(@TempDir Path tempDir) throws Exception {
+        LocalDateTime start = today.minusDays(3).atTime(7, 30);
+        Path zip = tempDir.resolve("export.zip");
+        Files.write(zip, FitArchiveImportServiceTest.zipBytes(Map.of(
+                "a.fit", FitArchiveImportServiceTest.fitFile(start, 600),
+                "b.fit", FitArchiveImportServiceTest.fitFile(start.plusDays(1), 600))));
+        FitArchiveImportService importService = new FitArchiveImportService(
+                new CompletedTrainingService(), FitArchiveImportServiceTest.activityMetricsService(), activityBatchWriter,
+                mock(ActivityStreamStoragePort.class), completedTrainingRepository, mock(BodyMetricService.class),
+                dailyMetricsService, mock(TrainingAggregateService.class), 2, 1);
+
+        FitArchiveImportService.Result result = importService.importArchive(zip, user, ignoredProgress());
+
+        assertEquals(2, result.imported());
+        DailyMetrics day = dailyMetricsRepository.findByUserIdAndDate(user.getId(), start.toLocalDate()).orElseThrow();
+        assertNotNull(day.getEf7());
+        assertTrue(day.getDailyStrain21() > 0);
+    }
+
+    @Test
+    void dirtyTracker_rebuildsDaysAfterBackDatedActivity() throws InterruptedException {
+        LocalDate date = today.minusDays(10);
+        activity(date, 10.0);
+        DailyMetricsDirtyTracker tracker = new DailyMetricsDirtyTracker(dailyMetricsService, loadModelService, 10, 1000);
+        try {
+            tracker.markDirty(user, date);
+
+            // Days between the activity and today are only written by the tracker
+            LocalDate between = date.plusDays(5);
+            DailyMetrics day = null;
+            for (int i = 0; i < 100 && day == null; i++) {
+                Thread.sleep(50);
+                day = dailyMetricsRepository.findByUserIdAndDate(user.getId(), between).orElse(null);
+            }
+            assertNotNull(day);
+            assertEquals(EF, day.getEf28(), 1e-9);
+        } finally {
+            tracker.shutdown();
+        }
+    }
+
+    @Test
+    void syncScheduler_warmsDashboardOfActiveUser() {
+        LocalDate date = today.minusDays(2);
+        activity(date, 10.0);
+        StravaService stravaService = mock(StravaService.class);
+        when(stravaService.syncUser(any())).thenReturn(true);
+        DashboardService dashboardService = new DashboardService(dailyMetricsRepository, activityMetricsRepository,
+                completedTrainingRepository, dailyMetricsService, new ObjectMapper(), competitionRegistrationRepository,
+                userTrainingEntryRepository, userDataVersions, transactionManager, 10);
+        StravaSyncScheduler scheduler = new StravaSyncScheduler(syncStateRepository, userRepository, stravaService,
+                dashboardService, new StravaRateLimiter(100, 1000), false, 60, 1, 72, 15, 12, 0.5);
+        try {
+            scheduler.process(new StravaSyncCandidateDto(user.getId(), null, LocalDateTime.now().minusHours(1)));
+        } finally {
+            scheduler.shutdown();
+        }
+
+        DailyMetrics todayRow = dailyMetricsRepository.findByUserIdAndDate(user.getId(), today).orElseThrow();
+        assertEquals(EF, todayRow.getEf28(), 1e-9);
+        // Served from the cache the scheduler filled
+        assertSame(dashboardService.getDashboard(user), dashboardService.getDashboard(user));
+    }
+
+    private void activity(LocalDate date, double strain21) {
+        CompletedTraining training = new CompletedTraining();
+        training.setTrainingDate(date);
+        training.setUploadDate(date.atTime(7, 0));
+        training.setUser(user);
+        training = completedTrainingRepository.save(training);
+
+        ActivityMetrics metrics = new ActivityMetrics();
+        metrics.setCompletedTraining(training);
+        metrics.setStrain21(strain21);
+        metrics.setEfficiencyFactor(EF);
+        activityMetricsRepository.save(metrics);
+    }
+
+    private static FitArchiveImportService.Progress ignoredProgress() {
+        return new FitArchiveImportService.Progress() {
+            @Override
+            public void stage(IngestJobStatus status) {
+            }
+
+            @Override
+            public void filesDiscovered(int count) {
+            }
+
+            @Override
+            public void fileProcessed(boolean success) {
+            }
+        };
+    }
+}
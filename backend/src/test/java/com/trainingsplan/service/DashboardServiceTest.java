@@ -0,0 +1,203 @@
+package com.trainingsplan.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trainingsplan.dto.DashboardDto;
+import com.trainingsplan.dto.RegistrationProgressDto;
+import com.trainingsplan.entity.Competition;
+import com.trainingsplan.entity.CompetitionRegistration;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.repository.ActivityMetricsRepository;
+import com.trainingsplan.repository.CompetitionRegistrationRepository;
+import com.trainingsplan.repository.CompletedTrainingRepository;
+import com.trainingsplan.repository.DailyMetricsRepository;
+import com.trainingsplan.repository.UserRepository;
+import com.trainingsplan.repository.UserTrainingEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the per-user read model cache of {@link DashboardService} and the competition
+ * progress built from the grouped entry counts. Repositories are mocked.
+ */
+class DashboardServiceTest {
+
+    private DailyMetricsRepository dailyMetricsRepository;
+    private DailyMetricsService dailyMetricsService;
+    private CompetitionRegistrationRepository competitionRegistrationRepository;
+    private UserTrainingEntryRepository userTrainingEntryRepository;
+    private UserDataVersions versions;
+    private DashboardService service;
+
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setUp() {
+        dailyMetricsRepository = mock(DailyMetricsRepository.class);
+        dailyMetricsService = mock(DailyMetricsService.class);
+        competitionRegistrationRepository = mock(CompetitionRegistrationRepository.class);
+        userTrainingEntryRepository = mock(UserTrainingEntryRepository.class);
+        versions = new UserDataVersions(inMemoryVersions(), mock(PlatformTransactionManager.class));
+        service = new DashboardService(dailyMetricsRepository, mock(ActivityMetricsRepository.class),
+                mock(CompletedTrainingRepository.class), dailyMetricsService, new ObjectMapper(),
+                competitionRegistrationRepository, userTrainingEntryRepository, versions,
+                mock(PlatformTransactionManager.class), 10);
+
+        alice = user(1L);
+        bob = user(2L);
+    }
+
+    @Test
+    void repeatedGet_servedFromCache_noRecompute() {
+        DashboardDto first = service.getDashboard(alice);
+        DashboardDto second = service.getDashboard(alice);
+
+        assertSame(first, second);
+        verify(dailyMetricsService, times(1)).computeToday(alice);
+        verify(dailyMetricsRepository, times(1)).findByUserIdAndDateBetween(any(), any(), any());
+    }
+
+    @Test
+    void bump_invalidatesOnlyThatUser() {
+        DashboardDto aliceBefore = service.getDashboard(alice);
+        DashboardDto bobBefore = service.getDashboard(bob);
+
+        versions.bump(alice.getId());
+
+        assertNotSame(aliceBefore, service.getDashboard(alice));
+        assertSame(bobBefore, service.getDashboard(bob));
+        verify(dailyMetricsService, times(2)).computeToday(alice);
+        verify(dailyMetricsService, times(1)).computeToday(bob);
+    }
+
+    @Test
+    void bumpAll_invalidatesEveryone() {
+        service.getDashboard(alice);
+        service.getDashboard(bob);
+
+        versions.bumpAll();
+        service.getDashboard(alice);
+        service.getDashboard(bob);
+
+        verify(dailyMetricsService, times(2)).computeToday(alice);
+        verify(dailyMetricsService, times(2)).computeToday(bob);
+    }
+
+    @Test
+    void cacheFull_leastRecentlyRequestedUserEvicted() {
+        service.getDashboard(alice);
+        service.getDashboard(bob);
+        for (long id = 3; id <= 11; id++) {
+            service.getDashboard(user(id));
+        }
+
+        service.getDashboard(bob);
+        service.getDashboard(alice);
+
+        verify(dailyMetricsService, times(1)).computeToday(bob);
+        verify(dailyMetricsService, times(2)).computeToday(alice);
+    }
+
+    @Test
+    void bumpByOwnRecompute_doesNotInvalidateFreshEntry() {
+        // computeToday writes daily metrics, which bumps the version
+        doAnswer(inv -> {
+            versions.bump(inv.<User>getArgument(0).getId());
+            return null;
+        }).when(dailyMetricsService).computeToday(any());
+
+        service.getDashboard(alice);
+        service.getDashboard(alice);
+
+        verify(dailyMetricsService, times(1)).computeToday(alice);
+    }
+
+    @Test
+    void competitionProgress_builtFromGroupedCounts_withoutPerRegistrationQueries() {
+        LocalDate today = LocalDate.now();
+        CompetitionRegistration marathon = registration(10L, 100L, "Marathon", today.plusDays(30));
+        CompetitionRegistration tenK = registration(11L, 101L, "10K", today.plusDays(10));
+        CompetitionRegistration unplanned = registration(12L, 102L, "Trail", today.plusDays(5));
+        when(competitionRegistrationRepository.findUpcomingByUserId(1L, today))
+                .thenReturn(List.of(marathon, tenK, unplanned));
+        when(userTrainingEntryRepository.findProgressByUserId(1L, today)).thenReturn(List.of(
+                new RegistrationProgressDto(10L, 40L, 12L, today.minusDays(30)),
+                new RegistrationProgressDto(11L, 8L, 8L, today.minusDays(10))));
+
+        DashboardDto dashboard = service.getDashboard(alice);
+
+        // Next competition falls back to the registration date when no plan exists
+        DashboardDto.NextCompetitionDto next = dashboard.getNextCompetition();
+        assertEquals("Trail", next.getCompetitionName());
+        assertEquals(5, next.getDaysUntil());
+
+        List<DashboardDto.TrainingProgressDto> progress = dashboard.getTrainingProgress();
+        assertEquals(2, progress.size());
+        assertEquals(101L, progress.get(0).getCompetitionId());
+        assertEquals(8, progress.get(0).getCompleted());
+        assertEquals(100L, progress.get(1).getCompetitionId());
+        assertEquals(40, progress.get(1).getTotal());
+        assertEquals(12, progress.get(1).getCompleted());
+
+        verify(userTrainingEntryRepository, never()).findByCompetitionRegistrationId(any());
+    }
+
+    @Test
+    void nextCompetition_elapsedMeasuredFromFirstPlannedTraining() {
+        LocalDate today = LocalDate.now();
+        CompetitionRegistration race = registration(10L, 100L, "Half", today.plusDays(30));
+        when(competitionRegistrationRepository.findUpcomingByUserId(1L, today)).thenReturn(List.of(race));
+        when(userTrainingEntryRepository.findProgressByUserId(1L, today)).thenReturn(List.of(
+                new RegistrationProgressDto(10L, 20L, 5L, today.minusDays(30))));
+
+        DashboardDto.NextCompetitionDto next = service.getDashboard(alice).getNextCompetition();
+
+        assertEquals(50.0, next.getElapsedPct(), 1e-9);
+    }
+
+    private static CompetitionRegistration registration(Long id, Long competitionId, String name, LocalDate date) {
+        Competition competition = new Competition();
+        competition.setId(competitionId);
+        competition.setName(name);
+        competition.setDate(date);
+        CompetitionRegistration registration = new CompetitionRegistration();
+        registration.setId(id);
+        registration.setCompetition(competition);
+        return registration;
+    }
+
+    /** A user repository that keeps the data versions in a map. */
+    private static UserRepository inMemoryVersions() {
+        Map<Long, Long> stored = new HashMap<>();
+        UserRepository repository = mock(UserRepository.class);
+        when(repository.findDataVersionById(any())).thenAnswer(inv -> Optional.ofNullable(stored.get(inv.<Long>getArgument(0))));
+        when(repository.incrementDataVersion(any())).thenAnswer(inv -> {
+            stored.merge(inv.getArgument(0), 1L, Long::sum);
+            return 1;
+        });
+        when(repository.incrementAllDataVersions()).thenAnswer(inv -> {
+            for (Long id : List.of(1L, 2L)) {
+                stored.merge(id, 1L, Long::sum);
+            }
+            return 2;
+        });
+        return repository;
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
@@ -1,7 +1,6 @@
 package com.trainingsplan.service;
 
-import com.trainingsplan.entity.ActivityMetrics;
-import com.trainingsplan.entity.CompletedTraining;
+import com.trainingsplan.dto.EfSampleDto;
 import com.trainingsplan.entity.DailyMetrics;
 import com.trainingsplan.entity.User;
 import com.trainingsplan.repository.ActivityMetricsRepository;
@@ -43,26 +42,23 @@ class EfRollingAverageTest {
         // Inject mocks via reflection since the service uses @Autowired fields
         injectField(service, "activityMetricsRepository", activityMetricsRepository);
         injectField(service, "dailyMetricsRepository", dailyMetricsRepository);
+        injectField(service, "userDataVersions", mock(UserDataVersions.class));
 
         user = new User();
 
         when(dailyMetricsRepository.findByUserIdAndDate(any(), any()))
                 .thenReturn(Optional.empty());
         when(dailyMetricsRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
-
-        // Default: strain queries return 0 so updateDailyStrain (if called) won't fail
-        when(activityMetricsRepository.sumStrain21ByUserIdAndDate(any(), any())).thenReturn(null);
-        when(activityMetricsRepository.sumTrimpByUserIdAndDate(any(), any())).thenReturn(null);
     }
 
     // ── 1. Single activity — ef7 and ef28 both equal that EF ─────────────────
 
     @Test
     void singleActivity_ef7AndEf28EqualThatEf() {
-        ActivityMetrics am = activityOnDate(TODAY, 12.0, 150); // EF = (12/3.6)/150 = 0.02222
+        EfSampleDto am = activityOnDate(TODAY, 12.0, 150); // EF = (12/3.6)/150 = 0.02222
         double expectedEf = (12.0 / 3.6) / 150.0;
 
-        when(activityMetricsRepository.findWithEfByUserIdAndDateRange(any(), any(), any()))
+        when(activityMetricsRepository.findEfByUserIdAndDateRange(any(), any(), any()))
                 .thenReturn(List.of(am));
 
         service.updateDailyEf(user, TODAY);
@@ -77,15 +73,15 @@ class EfRollingAverageTest {
     @Test
     void multipleActivitiesIn7Days_ef7IsAverage() {
         // EF1 = (10/3.6)/140 = 0.01984, EF2 = (14/3.6)/160 = 0.02431
-        ActivityMetrics am1 = activityOnDate(TODAY.minusDays(2), 10.0, 140);
-        ActivityMetrics am2 = activityOnDate(TODAY,              14.0, 160);
+        EfSampleDto am1 = activityOnDate(TODAY.minusDays(2), 10.0, 140);
+        EfSampleDto am2 = activityOnDate(TODAY,              14.0, 160);
 
         double ef1 = (10.0 / 3.6) / 140.0;
         double ef2 = (14.0 / 3.6) / 160.0;
         double expectedEf7  = (ef1 + ef2) / 2.0;
         double expectedEf28 = (ef1 + ef2) / 2.0;
 
-        when(activityMetricsRepository.findWithEfByUserIdAndDateRange(any(), any(), any()))
+        when(activityMetricsRepository.findEfByUserIdAndDateRange(any(), any(), any()))
                 .thenReturn(List.of(am1, am2));
 
         service.updateDailyEf(user, TODAY);
@@ -99,13 +95,13 @@ class EfRollingAverageTest {
 
     @Test
     void activityOlderThan7Days_excludedFromEf7ButIncludedInEf28() {
-        ActivityMetrics amOld    = activityOnDate(TODAY.minusDays(10), 12.0, 150); // outside 7-day window
-        ActivityMetrics amRecent = activityOnDate(TODAY,               12.0, 150); // inside both windows
+        EfSampleDto amOld    = activityOnDate(TODAY.minusDays(10), 12.0, 150); // outside 7-day window
+        EfSampleDto amRecent = activityOnDate(TODAY,               12.0, 150); // inside both windows
 
         double ef = (12.0 / 3.6) / 150.0;
 
         // The repository is called with 28-day start date; both activities are returned.
-        when(activityMetricsRepository.findWithEfByUserIdAndDateRange(any(), any(), any()))
+        when(activityMetricsRepository.findEfByUserIdAndDateRange(any(), any(), any()))
                 .thenReturn(List.of(amOld, amRecent));
 
         service.updateDailyEf(user, TODAY);
@@ -121,14 +117,14 @@ class EfRollingAverageTest {
 
     @Test
     void multipleActivitiesSameDay_allCountedInAverage() {
-        ActivityMetrics am1 = activityOnDate(TODAY, 10.0, 140);
-        ActivityMetrics am2 = activityOnDate(TODAY, 14.0, 160);
+        EfSampleDto am1 = activityOnDate(TODAY, 10.0, 140);
+        EfSampleDto am2 = activityOnDate(TODAY, 14.0, 160);
 
         double ef1 = (10.0 / 3.6) / 140.0;
         double ef2 = (14.0 / 3.6) / 160.0;
         double expectedAvg = (ef1 + ef2) / 2.0;
 
-        when(activityMetricsRepository.findWithEfByUserIdAndDateRange(any(), any(), any()))
+        when(activityMetricsRepository.findEfByUserIdAndDateRange(any(), any(), any()))
                 .thenReturn(List.of(am1, am2));
 
         service.updateDailyEf(user, TODAY);
@@ -142,7 +138,7 @@ class EfRollingAverageTest {
 
     @Test
     void noActivities_ef7AndEf28AreNull() {
-        when(activityMetricsRepository.findWithEfByUserIdAndDateRange(any(), any(), any()))
+        when(activityMetricsRepository.findEfByUserIdAndDateRange(any(), any(), any()))
                 .thenReturn(List.of());
 
         service.updateDailyEf(user, TODAY);
@@ -158,12 +154,13 @@ class EfRollingAverageTest {
     void activityWithNullEf_excludedFromAverage() {
         // The repository query already filters out null EF via IS NOT NULL.
         // Simulate: one valid activity and one that slipped through (shouldn't happen in prod,
-        // but the averageEfInWindow logic must not throw on null EF from the list).
-        ActivityMetrics amValid = activityOnDate(TODAY, 12.0, 150);
+        // but the rolling average must not throw on null EF from the list).
+        EfSampleDto amValid = activityOnDate(TODAY, 12.0, 150);
+        EfSampleDto amNoHr = new EfSampleDto(TODAY, null);
         double expectedEf = (12.0 / 3.6) / 150.0;
 
-        when(activityMetricsRepository.findWithEfByUserIdAndDateRange(any(), any(), any()))
-                .thenReturn(List.of(amValid));
+        when(activityMetricsRepository.findEfByUserIdAndDateRange(any(), any(), any()))
+                .thenReturn(List.of(amValid, amNoHr));
 
         service.updateDailyEf(user, TODAY);
 
@@ -177,9 +174,9 @@ class EfRollingAverageTest {
     @Test
     void efFormula_3kmhAt150bpm_correctValue() {
         // 3.0 km/h ÷ 3.6 = 0.8333 m/s; 0.8333 / 150 = 0.005556
-        ActivityMetrics am = activityOnDate(TODAY, 3.0, 150);
+        EfSampleDto am = activityOnDate(TODAY, 3.0, 150);
 
-        when(activityMetricsRepository.findWithEfByUserIdAndDateRange(any(), any(), any()))
+        when(activityMetricsRepository.findEfByUserIdAndDateRange(any(), any(), any()))
                 .thenReturn(List.of(am));
 
         service.updateDailyEf(user, TODAY);
@@ -194,7 +191,7 @@ class EfRollingAverageTest {
     void activityOutside28DayWindow_notReturnedByRepo_notCounted() {
         // The repository is the gatekeeper for the 28-day window.
         // An empty result means both ef7 and ef28 are null.
-        when(activityMetricsRepository.findWithEfByUserIdAndDateRange(any(), any(), any()))
+        when(activityMetricsRepository.findEfByUserIdAndDateRange(any(), any(), any()))
                 .thenReturn(List.of());
 
         service.updateDailyEf(user, TODAY);
@@ -208,26 +205,26 @@ class EfRollingAverageTest {
 
     @Test
     void recomputeEfForUser_calls90Days() {
-        when(activityMetricsRepository.findWithEfByUserIdAndDateRange(any(), any(), any()))
+        when(activityMetricsRepository.findEfByUserIdAndDateRange(any(), any(), any()))
                 .thenReturn(List.of());
 
         service.recomputeEfForUser(user);
 
-        // findWithEfByUserIdAndDateRange should be called once per day = 90 times
+        // findEfByUserIdAndDateRange should be called once per day = 90 times
         verify(activityMetricsRepository, times(90))
-                .findWithEfByUserIdAndDateRange(any(), any(), any());
+                .findEfByUserIdAndDateRange(any(), any(), any());
     }
 
     // ── 10. Repository is queried with correct 28-day range ───────────────────
 
     @Test
     void updateDailyEf_queriesRepositoryWith28DayRange() {
-        when(activityMetricsRepository.findWithEfByUserIdAndDateRange(any(), any(), any()))
+        when(activityMetricsRepository.findEfByUserIdAndDateRange(any(), any(), any()))
                 .thenReturn(List.of());
 
         service.updateDailyEf(user, TODAY);
 
-        verify(activityMetricsRepository).findWithEfByUserIdAndDateRange(
+        verify(activityMetricsRepository).findEfByUserIdAndDateRange(
                 eq(user.getId()),
                 eq(TODAY.minusDays(27)),
                 eq(TODAY));
@@ -235,21 +232,9 @@ class EfRollingAverageTest {
 
     // ── Helpers ───────────────────────────────────────────────────────────────
 
-    /**
-     * Creates an {@link ActivityMetrics} whose EF is pre-set based on the given speed and HR.
-     * The speed and HR are also stored on the linked {@link CompletedTraining} so callers
-     * do not need to recompute the EF separately.
-     */
-    private ActivityMetrics activityOnDate(LocalDate date, double speedKmh, int avgHr) {
-        CompletedTraining ct = new CompletedTraining();
-        ct.setTrainingDate(date);
-        ct.setAverageSpeedKmh(speedKmh);
-        ct.setAverageHeartRate(avgHr);
-
-        ActivityMetrics am = new ActivityMetrics();
-        am.setCompletedTraining(ct);
-        am.setEfficiencyFactor((speedKmh / 3.6) / avgHr);
-        return am;
+    /** Creates the EF sample of an activity on {@code date} with the given speed and HR. */
+    private EfSampleDto activityOnDate(LocalDate date, double speedKmh, int avgHr) {
+        return new EfSampleDto(date, (speedKmh / 3.6) / avgHr);
     }
 
     private DailyMetrics captureLastSave() {
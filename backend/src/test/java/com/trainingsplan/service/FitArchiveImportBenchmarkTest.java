@@ -0,0 +1,81 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.dto.IngestJobStatus;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.port.ActivityStreamStoragePort;
+import com.trainingsplan.repository.ActivityBatchWriter;
+import com.trainingsplan.repository.CompletedTrainingRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Decode throughput of {@link FitArchiveImportService} in files per second, sequential vs.
+ * parallel, on a synthetic archive of one-hour runs (3,600 records each).
+ *
+ * <p>Skipped in the regular build; run with
+ * {@code mvn test -Dtest=FitArchiveImportBenchmarkTest -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class FitArchiveImportBenchmarkTest {
+
+    private static final int FILES = 400;
+    private static final int SECONDS_PER_FILE = 3600;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void decodeThroughput() throws Exception {
+        Path zip = tempDir.resolve("export.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            LocalDateTime start = LocalDateTime.of(2020, 1, 1, 7, 0);
+            for (int i = 0; i < FILES; i++) {
+                out.putNextEntry(new ZipEntry("run-" + i + ".fit"));
+                out.write(FitArchiveImportServiceTest.fitFile(start.plusDays(i), SECONDS_PER_FILE));
+                out.closeEntry();
+            }
+        }
+
+        User user = new User();
+        user.setId(1L);
+        user.setMaxHeartRate(190);
+        user.setHrRest(50);
+
+        int cpus = Runtime.getRuntime().availableProcessors();
+        for (int parallelism : IntStream.of(1, cpus).distinct().toArray()) {
+            FitArchiveImportService service = service(parallelism);
+            service.importArchive(zip, user, NO_PROGRESS); // warm-up
+            FitArchiveImportService.Result r = service.importArchive(zip, user, NO_PROGRESS);
+            assertEquals(FILES, r.imported());
+            System.out.printf(Locale.ROOT, "parallelism=%d: %d files in %d ms -> %.1f files/s%n",
+                    parallelism, FILES, r.decodeMillis(), r.filesPerSecond());
+        }
+    }
+
+    private static FitArchiveImportService service(int parallelism) {
+        return new FitArchiveImportService(
+                new CompletedTrainingService(), FitArchiveImportServiceTest.activityMetricsService(),
+                mock(ActivityBatchWriter.class), mock(ActivityStreamStoragePort.class),
+                mock(CompletedTrainingRepository.class),
+                mock(BodyMetricService.class), mock(DailyMetricsService.class),
+                mock(TrainingAggregateService.class), parallelism, 200);
+    }
+
+    private static final FitArchiveImportService.Progress NO_PROGRESS = new FitArchiveImportService.Progress() {
+        @Override public void stage(IngestJobStatus status) {}
+        @Override public void filesDiscovered(int count) {}
+        @Override public void fileProcessed(boolean success) {}
+    };
+}
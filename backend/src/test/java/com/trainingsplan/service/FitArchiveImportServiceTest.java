@@ -0,0 +1,309 @@
+package com.trainingsplan.service;
+
+import com.garmin.fit.*;
+import com.trainingsplan.dto.IngestJobStatus;
+import com.trainingsplan.entity.ActivityMetrics;
+import com.trainingsplan.entity.CompletedTraining;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.port.ActivityStreamStoragePort;
+import com.trainingsplan.repository.ActivityBatchWriter;
+import com.trainingsplan.repository.CompletedTrainingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link FitArchiveImportService} against archives built from synthetic FIT files.
+ * FIT decoding and metric computation are real; persistence and daily metrics are mocked.
+ */
+class FitArchiveImportServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 6, 1, 7, 30);
+
+    @TempDir
+    Path tempDir;
+
+    private ActivityBatchWriter batchWriter;
+    private ActivityStreamStoragePort streamStorage;
+    private CompletedTrainingRepository completedTrainingRepository;
+    private BodyMetricService bodyMetricService;
+    private DailyMetricsService dailyMetricsService;
+    private TrainingAggregateService trainingAggregateService;
+    private FitArchiveImportService service;
+    private User user;
+
+    private final List<CompletedTraining> inserted = Collections.synchronizedList(new ArrayList<>());
+    private final List<ActivityMetrics> insertedMetrics = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        batchWriter = mock(ActivityBatchWriter.class);
+        streamStorage = mock(ActivityStreamStoragePort.class);
+        completedTrainingRepository = mock(CompletedTrainingRepository.class);
+        bodyMetricService = mock(BodyMetricService.class);
+        dailyMetricsService = mock(DailyMetricsService.class);
+        trainingAggregateService = mock(TrainingAggregateService.class);
+
+        AtomicInteger ids = new AtomicInteger();
+        doAnswer(inv -> {
+            List<CompletedTraining> trainings = inv.getArgument(0);
+            trainings.forEach(t -> t.setId((long) ids.incrementAndGet()));
+            inserted.addAll(trainings);
+            insertedMetrics.addAll(inv.getArgument(1));
+            return null;
+        }).when(batchWriter).insertAll(any(), any());
+
+        service = new FitArchiveImportService(
+                new CompletedTrainingService(), activityMetricsService(), batchWriter, streamStorage,
+                completedTrainingRepository, bodyMetricService, dailyMetricsService, trainingAggregateService, 2, 2);
+
+        user = new User();
+        user.setId(7L);
+        user.setMaxHeartRate(190);
+        user.setHrRest(50);
+    }
+
+    @Test
+    void importsTopLevelAndNestedFitFiles_inBatches() throws Exception {
+        Path zip = archive(Map.of(
+                "DI_CONNECT/a.fit", fitFile(START.plusDays(2), 600),
+                "DI_CONNECT/b.FIT", fitFile(START, 600),
+                "readme.txt", new byte[]{1},
+                "DI_CONNECT/UploadedFiles_0-_Part1.zip", zipBytes(Map.of(
+                        "c.fit", fitFile(START.plusDays(1), 600),
+                        "d.fit", fitFile(START.plusDays(3), 600),
+                        "e.fit", fitFile(START.plusDays(4), 600)))));
+        RecordingProgress progress = new RecordingProgress();
+
+        FitArchiveImportService.Result result = service.importArchive(zip, user, progress);
+
+        assertEquals(5, result.imported());
+        assertEquals(0, result.failed());
+        assertEquals(5, progress.discovered.get());
+        assertEquals(5, progress.processed.get());
+        assertEquals(List.of(IngestJobStatus.PARSING, IngestJobStatus.SAVING, IngestJobStatus.COMPUTING_METRICS),
+                progress.stages);
+
+        // batch size 2 → 3 inserts
+        verify(batchWriter, times(3)).insertAll(any(), any());
+        CompletedTraining first = inserted.stream()
+                .filter(t -> START.equals(t.getStartTime())).findFirst().orElseThrow();
+        assertEquals(START.toLocalDate(), first.getTrainingDate());
+        assertEquals("b.FIT", first.getOriginalFilename());
+        assertSame(user, first.getUser());
+        assertEquals(5, insertedMetrics.size());
+        assertFalse(insertedMetrics.get(0).getZonesUnknown());
+        assertNotNull(insertedMetrics.get(0).getTrimp());
+
+        verify(streamStorage).store(eq(first.getId()), argThat(s -> s.size() == 600));
+        verify(streamStorage, times(5)).store(any(), any());
+        verify(bodyMetricService, times(5)).calculateAndStore(any(), eq(user));
+        // Daily metrics recomputed exactly once, from the earliest imported day
+        verify(dailyMetricsService).recomputeRange(user, START.toLocalDate(), LocalDate.now());
+        verifyNoMoreInteractions(dailyMetricsService);
+        // Aggregates refreshed once for all imported days
+        verify(trainingAggregateService).activitiesChanged(eq(user.getId()), argThat(days -> days.size() == 5));
+    }
+
+    @Test
+    void largeArchive_savedWhileDecoding() throws Exception {
+        Map<String, byte[]> files = new HashMap<>();
+        for (int i = 0; i < 12; i++) {
+            files.put("f" + i + ".fit", fitFile(START.plusDays(i), 60));
+        }
+        Path zip = archive(files);
+        RecordingProgress progress = new RecordingProgress();
+        List<Integer> processedAtInsert = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(inv -> {
+            processedAtInsert.add(progress.processed.get());
+            return null;
+        }).when(batchWriter).insertAll(any(), any());
+        // One worker, batches of 2 → at most 1×2 + 2 activities decoded but not yet saved
+        service = new FitArchiveImportService(
+                new CompletedTrainingService(), activityMetricsService(), batchWriter, streamStorage,
+                completedTrainingRepository, bodyMetricService, dailyMetricsService, trainingAggregateService, 1, 2);
+
+        FitArchiveImportService.Result result = service.importArchive(zip, user, progress);
+
+        assertEquals(12, result.imported());
+        assertEquals(6, processedAtInsert.size());
+        assertTrue(processedAtInsert.get(0) <= 4, "first batch saved after " + processedAtInsert.get(0) + " files");
+        verify(dailyMetricsService).recomputeRange(user, START.toLocalDate(), LocalDate.now());
+    }
+
+    @Test
+    void corruptFile_countedAsFailed_importContinues() throws Exception {
+        byte[] corrupt = fitFile(START, 600);
+        corrupt[corrupt.length / 2] ^= 0x5a;
+        Path zip = archive(Map.of(
+                "ok.fit", fitFile(START, 600),
+                "bad.fit", corrupt));
+        RecordingProgress progress = new RecordingProgress();
+
+        FitArchiveImportService.Result result = service.importArchive(zip, user, progress);
+
+        assertEquals(1, result.imported());
+        assertEquals(1, result.failed());
+        assertEquals(1, progress.failedCount.get());
+        assertEquals(2, progress.processed.get());
+    }
+
+    @Test
+    void alreadyImportedAndDuplicateStartTimes_skipped() throws Exception {
+        when(completedTrainingRepository.findStartTimesByUserId(7L)).thenReturn(List.of(START));
+        Path zip = archive(Map.of(
+                "old.fit", fitFile(START, 600),
+                "new.fit", fitFile(START.plusDays(1), 600),
+                "nested.zip", zipBytes(Map.of("new-copy.fit", fitFile(START.plusDays(1), 600)))));
+
+        FitArchiveImportService.Result result = service.importArchive(zip, user, new RecordingProgress());
+
+        assertEquals(1, result.imported());
+        assertEquals(2, result.skipped());
+        assertEquals(START.plusDays(1), inserted.get(0).getStartTime());
+    }
+
+    @Test
+    void emptyArchive_noDailyRecompute() throws Exception {
+        Path zip = archive(Map.of("readme.txt", new byte[]{1}));
+
+        FitArchiveImportService.Result result = service.importArchive(zip, user, new RecordingProgress());
+
+        assertEquals(0, result.imported());
+        verifyNoInteractions(batchWriter, dailyMetricsService);
+    }
+
+    // ── Helpers ──────────────────────────────────────────────────────────────
+
+    static ActivityMetricsService activityMetricsService() {
+        ActivityMetricsService service = new ActivityMetricsService();
+        injectField(service, "fusedActivityMetricsEngine", new FusedActivityMetricsEngine());
+        injectField(service, "strainCalculator", new StrainCalculator());
+        return service;
+    }
+
+    /**
+     * Encodes a running activity starting at {@code start} with one record per second,
+     * a session message and a slowly rising heart rate.
+     */
+    static byte[] fitFile(LocalDateTime start, int seconds) throws IOException {
+        java.io.File tmp = Files.createTempFile("fixture-", ".fit").toFile();
+        try {
+            DateTime startTime = new DateTime(Date.from(start.atZone(ZoneId.systemDefault()).toInstant()));
+            FileEncoder encoder = new FileEncoder(tmp, Fit.ProtocolVersion.V2_0);
+
+            FileIdMesg fileId = new FileIdMesg();
+            fileId.setType(com.garmin.fit.File.ACTIVITY);
+            fileId.setManufacturer(Manufacturer.GARMIN);
+            fileId.setTimeCreated(startTime);
+            encoder.write(fileId);
+
+            for (int i = 0; i < seconds; i++) {
+                RecordMesg record = new RecordMesg();
+                DateTime ts = new DateTime(startTime);
+                ts.add(i);
+                record.setTimestamp(ts);
+                record.setHeartRate((short) (120 + (40 * i) / seconds));
+                record.setSpeed(3.0f);
+                record.setDistance(3.0f * i);
+                encoder.write(record);
+            }
+
+            SessionMesg session = new SessionMesg();
+            session.setStartTime(startTime);
+            session.setSport(Sport.RUNNING);
+            session.setTotalDistance(3.0f * seconds);
+            session.setTotalTimerTime((float) seconds);
+            session.setAvgSpeed(3.0f);
+            session.setAvgHeartRate((short) 140);
+            session.setMaxHeartRate((short) 160);
+            encoder.write(session);
+
+            encoder.close();
+            return Files.readAllBytes(tmp.toPath());
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    static byte[] zipBytes(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeZip(bytes, entries);
+        return bytes.toByteArray();
+    }
+
+    private Path archive(Map<String, byte[]> entries) throws IOException {
+        Path zip = tempDir.resolve("export.zip");
+        try (OutputStream out = Files.newOutputStream(zip)) {
+            writeZip(out, entries);
+        }
+        return zip;
+    }
+
+    private static void writeZip(OutputStream out, Map<String, byte[]> entries) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(e.getKey()));
+                zip.write(e.getValue());
+                zip.closeEntry();
+            }
+        }
+    }
+
+    private static void injectField(Object target, String fieldName, Object value) {
+        try {
+            var field = target.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to inject field: " + fieldName, e);
+        }
+    }
+
+    private static class RecordingProgress implements FitArchiveImportService.Progress {
+        final List<IngestJobStatus> stages = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger discovered = new AtomicInteger();
+        final AtomicInteger processed = new AtomicInteger();
+        final AtomicInteger failedCount = new AtomicInteger();
+
+        @Override
+        public void stage(IngestJobStatus status) {
+            stages.add(status);
+        }
+
+        @Override
+        public void filesDiscovered(int count) {
+            discovered.addAndGet(count);
+        }
+
+        @Override
+        public void fileProcessed(boolean success) {
+            processed.incrementAndGet();
+            if (!success) failedCount.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.entity.DailyMetrics;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.repository.DailyMetricsRepository;
+import com.trainingsplan.service.FitnessFatigueEngine.State;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link FitnessFatigueEngine} and the CTL/ATL/TSB range update in
+ * {@link LoadModelService}.
+ */
+class FitnessFatigueEngineTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 2, 24);
+
+    @Test
+    void constantLoad_convergesToLoad_formNearZero() {
+        LoadModelService service = new LoadModelService();
+        DailyMetricsRepository repository = mock(DailyMetricsRepository.class);
+        injectField(service, "dailyMetricsRepository", repository);
+        when(repository.findFirstByUserIdAndDateBeforeAndCtlIsNotNullOrderByDateDesc(any(), any()))
+                .thenReturn(Optional.empty());
+        User user = new User();
+        user.setId(7L);
+
+        LocalDate from = DAY.minusDays(364);
+        List<DailyMetrics> rows = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(DAY); date = date.plusDays(1)) {
+            DailyMetrics daily = new DailyMetrics();
+            daily.setDate(date);
+            daily.setDailyTrimp(80.0);
+            rows.add(daily);
+        }
+        DailyMetricsAccumulator acc = new DailyMetricsAccumulator(user, from.minusDays(1), DAY, rows);
+
+        service.applyFitnessRange(acc, from, DAY);
+
+        DailyMetrics last = acc.peek(DAY);
+        assertEquals(80.0, last.getCtl(), 0.05);
+        assertEquals(80.0, last.getAtl(), 1e-9);
+        assertEquals(0.0, last.getTsb(), 0.05);
+    }
+
+    @Test
+    void loadBlock_fatigueRisesFaster_formNegative() {
+        State s = State.ZERO;
+        for (int i = 0; i < 14; i++) {
+            s = FitnessFatigueEngine.next(s, 100.0);
+        }
+        assertTrue(s.atl() > s.ctl());
+        assertTrue(s.tsb() < 0);
+    }
+
+    @Test
+    void firstDay_matchesClosedForm() {
+        State s = FitnessFatigueEngine.next(State.ZERO, 42.0);
+
+        assertEquals(42.0 * (1 - Math.exp(-1.0 / 42)), s.ctl(), 1e-12);
+        assertEquals(42.0 * (1 - Math.exp(-1.0 / 7)), s.atl(), 1e-12);
+    }
+
+    @Test
+    void decay_equalsRestDaysStepByStep() {
+        State start = new State(60.0, 90.0);
+        State stepped = start;
+        for (int i = 0; i < 10; i++) {
+            stepped = FitnessFatigueEngine.next(stepped, 0.0);
+        }
+
+        State decayed = FitnessFatigueEngine.decay(start, 10);
+
+        assertEquals(stepped.ctl(), decayed.ctl(), 1e-9);
+        assertEquals(stepped.atl(), decayed.atl(), 1e-9);
+        assertSame(start, FitnessFatigueEngine.decay(start, 0));
+    }
+
+    @Test
+    void applyFitnessRange_continuesFromStoredStateBeforeRange() {
+        LoadModelService service = new LoadModelService();
+        DailyMetricsRepository repository = mock(DailyMetricsRepository.class);
+        injectField(service, "dailyMetricsRepository", repository);
+        User user = new User();
+        user.setId(7L);
+
+        // Last computed day lies 5 days before the range, outside the accumulator
+        DailyMetrics stored = new DailyMetrics();
+        stored.setDate(DAY.minusDays(5));
+        stored.setCtl(50.0);
+        stored.setAtl(70.0);
+        when(repository.findFirstByUserIdAndDateBeforeAndCtlIsNotNullOrderByDateDesc(any(), any()))
+                .thenReturn(Optional.of(stored));
+
+        List<DailyMetrics> rows = new ArrayList<>();
+        DailyMetrics today = new DailyMetrics();
+        today.setDate(DAY);
+        today.setDailyTrimp(120.0);
+        rows.add(today);
+        DailyMetricsAccumulator acc = new DailyMetricsAccumulator(user, DAY.minusDays(1), DAY, rows);
+
+        service.applyFitnessRange(acc, DAY, DAY);
+
+        State expected = FitnessFatigueEngine.next(
+                FitnessFatigueEngine.decay(new State(50.0, 70.0), 4), 120.0);
+        assertEquals(expected.ctl(), today.getCtl(), 1e-9);
+        assertEquals(expected.atl(), today.getAtl(), 1e-9);
+        assertEquals(expected.tsb(), today.getTsb(), 1e-9);
+    }
+
+    @Test
+    void applyFitnessRange_usesPreviousDayInAccumulator_withoutQuery() {
+        LoadModelService service = new LoadModelService();
+        DailyMetricsRepository repository = mock(DailyMetricsRepository.class);
+        injectField(service, "dailyMetricsRepository", repository);
+        User user = new User();
+        user.setId(7L);
+
+        DailyMetrics yesterday = new DailyMetrics();
+        yesterday.setDate(DAY.minusDays(1));
+        yesterday.setCtl(40.0);
+        yesterday.setAtl(30.0);
+        DailyMetricsAccumulator acc = new DailyMetricsAccumulator(user, DAY.minusDays(1), DAY,
+                new ArrayList<>(List.of(yesterday)));
+
+        service.applyFitnessRange(acc, DAY, DAY);
+
+        State expected = FitnessFatigueEngine.next(new State(40.0, 30.0), 0.0);
+        assertEquals(expected.ctl(), acc.peek(DAY).getCtl(), 1e-9);
+        verifyNoInteractions(repository);
+    }
+
+    private void injectField(Object target, String fieldName, Object value) {
+        try {
+            var field = target.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to inject field: " + fieldName, e);
+        }
+    }
+}
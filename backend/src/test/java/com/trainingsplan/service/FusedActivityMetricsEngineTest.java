@@ -0,0 +1,204 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.service.decoupling.DecouplingResult;
+import com.trainingsplan.service.hrzone.HeartRateZoneConfig;
+import com.trainingsplan.service.hrzone.ZoneTimeResult;
+import com.trainingsplan.service.stream.ActivityStream;
+import com.trainingsplan.service.stream.HrHistogram;
+import com.trainingsplan.service.trimp.TRIMPResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that {@link FusedActivityMetricsEngine} reproduces the results of the
+ * individual calculators bit for bit (delta 0).
+ */
+class FusedActivityMetricsEngineTest {
+
+    private FusedActivityMetricsEngine engine;
+    private ZoneTimeCalculator zoneCalc;
+    private TRIMPCalculator trimpCalc;
+    private AerobicDecouplingCalculator decouplingCalc;
+
+    private static final HeartRateZoneConfig CONFIG_190 = HeartRateZoneConfig.fromHrMax(190);
+
+    @BeforeEach
+    void setUp() {
+        engine         = new FusedActivityMetricsEngine();
+        zoneCalc       = new ZoneTimeCalculator();
+        trimpCalc      = new TRIMPCalculator();
+        decouplingCalc = new AerobicDecouplingCalculator();
+    }
+
+    // ── Parity ────────────────────────────────────────────────────────────────
+
+    @Test
+    void steadyRun_withDistance_matchesCalculators() {
+        assertParity(synthetic(3601, 1, true, true, 0.0, 42L), 50, TRIMPCalculator.K_MALE);
+    }
+
+    @Test
+    void irregularSampling_hrGapsAndAboveMax_matchesCalculators() {
+        assertParity(synthetic(5000, 3, true, true, 0.15, 7L), 55, TRIMPCalculator.K_FEMALE);
+    }
+
+    @Test
+    void noDistanceChannel_timeSplit_matchesCalculators() {
+        assertParity(synthetic(4000, 1, true, false, 0.05, 11L), 48, TRIMPCalculator.K_MALE);
+    }
+
+    @Test
+    void shortActivity_tooShortDecoupling_matchesCalculators() {
+        ActivityStream s = synthetic(600, 1, true, true, 0.0, 3L);
+        assertParity(s, 50, TRIMPCalculator.K_MALE);
+        assertEquals("TOO_SHORT", engine.compute(s, CONFIG_190, 50, TRIMPCalculator.K_MALE).decoupling().reason());
+    }
+
+    @Test
+    void sparseHr_lowCoverage_matchesCalculators() {
+        ActivityStream s = synthetic(3000, 1, true, true, 0.5, 5L);
+        assertParity(s, 50, TRIMPCalculator.K_MALE);
+        assertEquals("HR_COVERAGE_TOO_LOW",
+                engine.compute(s, CONFIG_190, 50, TRIMPCalculator.K_MALE).decoupling().reason());
+    }
+
+    // ── Optional outputs ──────────────────────────────────────────────────────
+
+    @Test
+    void noVelocityChannel_decouplingSkipped() {
+        FusedActivityMetricsEngine.Result r = engine.compute(
+                synthetic(2000, 1, false, false, 0.0, 1L), CONFIG_190, 50, TRIMPCalculator.K_MALE);
+
+        assertNotNull(r.zones());
+        assertNotNull(r.trimp());
+        assertNull(r.decoupling());
+    }
+
+    @Test
+    void noZoneConfig_zonesAndTrimpSkipped() {
+        FusedActivityMetricsEngine.Result r = engine.compute(
+                synthetic(2000, 1, true, true, 0.0, 1L), null, 50, TRIMPCalculator.K_MALE);
+
+        assertNull(r.zones());
+        assertNull(r.trimp());
+        assertNotNull(r.decoupling());
+    }
+
+    @Test
+    void noHrRest_trimpSkipped() {
+        FusedActivityMetricsEngine.Result r = engine.compute(
+                synthetic(2000, 1, true, true, 0.0, 1L), CONFIG_190, null, TRIMPCalculator.K_MALE);
+
+        assertNotNull(r.zones());
+        assertNull(r.trimp());
+    }
+
+    @Test
+    void singleSample_unknownZones() {
+        ActivityStream s = new ActivityStream().withVelocity();
+        s.setHeartRate(s.append(0), 140);
+
+        FusedActivityMetricsEngine.Result r = engine.compute(s, CONFIG_190, 50, TRIMPCalculator.K_MALE);
+
+        assertTrue(r.zones().isUnknown());
+        assertNull(r.trimp());
+        assertEquals("INSUFFICIENT_DATA", r.decoupling().reason());
+    }
+
+    // ── Histogram recompute ───────────────────────────────────────────────────
+
+    @Test
+    void computeFromHistogram_matchesStreamPass_forOtherProfiles() {
+        ActivityStream s = synthetic(5000, 3, true, true, 0.15, 7L);
+        HrHistogram histogram = HrHistogram.decode(
+                engine.compute(s, CONFIG_190, 50, TRIMPCalculator.K_MALE).histogram().encode());
+
+        for (int hrMax : new int[]{170, 185, 205}) {
+            HeartRateZoneConfig config = HeartRateZoneConfig.fromHrMax(hrMax);
+            for (double k : new double[]{TRIMPCalculator.K_MALE, TRIMPCalculator.K_FEMALE}) {
+                FusedActivityMetricsEngine.Result expected = engine.compute(s, config, 45, k);
+                FusedActivityMetricsEngine.Result actual = engine.computeFromHistogram(histogram, config, 45, k);
+
+                assertEquals(expected.zones().getZ1Min(), actual.zones().getZ1Min(), 0.0);
+                assertEquals(expected.zones().getZ2Min(), actual.zones().getZ2Min(), 0.0);
+                assertEquals(expected.zones().getZ3Min(), actual.zones().getZ3Min(), 0.0);
+                assertEquals(expected.zones().getZ4Min(), actual.zones().getZ4Min(), 0.0);
+                assertEquals(expected.zones().getZ5Min(), actual.zones().getZ5Min(), 0.0);
+                assertEquals(expected.zones().getHrDataCoverage(), actual.zones().getHrDataCoverage(), 0.0);
+                assertEquals(expected.trimp().trimp(), actual.trimp().trimp(), 1e-9);
+                assertEquals(expected.trimp().quality(), actual.trimp().quality());
+                assertNull(actual.decoupling());
+            }
+        }
+    }
+
+    @Test
+    void computeFromHistogram_insufficientStream_unknownZones() {
+        ActivityStream s = new ActivityStream();
+        s.setHeartRate(s.append(0), 140);
+        HrHistogram histogram = engine.compute(s, CONFIG_190, 50, TRIMPCalculator.K_MALE).histogram();
+
+        FusedActivityMetricsEngine.Result r =
+                engine.computeFromHistogram(histogram, CONFIG_190, 50, TRIMPCalculator.K_MALE);
+
+        assertTrue(r.zones().isUnknown());
+        assertNull(r.trimp());
+    }
+
+    // ── Helpers ──────────────────────────────────────────────────────────────
+
+    private void assertParity(ActivityStream s, int hrRest, double k) {
+        FusedActivityMetricsEngine.Result fused = engine.compute(s, CONFIG_190, hrRest, k);
+
+        ZoneTimeResult z = zoneCalc.calculate(s, CONFIG_190);
+        assertEquals(z.isUnknown(), fused.zones().isUnknown());
+        assertEquals(z.getZ1Min(), fused.zones().getZ1Min(), 0.0);
+        assertEquals(z.getZ2Min(), fused.zones().getZ2Min(), 0.0);
+        assertEquals(z.getZ3Min(), fused.zones().getZ3Min(), 0.0);
+        assertEquals(z.getZ4Min(), fused.zones().getZ4Min(), 0.0);
+        assertEquals(z.getZ5Min(), fused.zones().getZ5Min(), 0.0);
+        assertEquals(z.getHrDataCoverage(), fused.zones().getHrDataCoverage(), 0.0);
+
+        TRIMPResult t = trimpCalc.calculate(s, hrRest, CONFIG_190.getHrMax(), k);
+        assertEquals(t, fused.trimp());
+
+        if (s.hasVelocityChannel()) {
+            DecouplingResult d = decouplingCalc.calculate(s);
+            assertEquals(d, fused.decoupling());
+        }
+    }
+
+    /**
+     * Builds a run with a slowly rising HR, occasional spikes above hrMax, a speed drop in
+     * the second half, and {@code hrGapRate} of samples without HR.
+     */
+    private static ActivityStream synthetic(int n, int maxStep, boolean velocity, boolean distance,
+                                            double hrGapRate, long seed) {
+        Random rnd = new Random(seed);
+        ActivityStream s = new ActivityStream(n);
+        if (velocity) s.withVelocity();
+        if (distance) s.withDistance();
+
+        int t = 0;
+        double dist = 0;
+        for (int i = 0; i < n; i++) {
+            int idx = s.append(t);
+            if (rnd.nextDouble() >= hrGapRate) {
+                int hr = 110 + (60 * i) / n + rnd.nextInt(15);
+                if (rnd.nextInt(200) == 0) hr = 200; // above hrMax
+                s.setHeartRate(idx, hr);
+            }
+            double v = (i < n / 2 ? 3.2 : 2.9) + rnd.nextDouble() * 0.2;
+            if (velocity && rnd.nextInt(50) != 0) s.setVelocity(idx, v);
+            if (distance) s.setDistance(idx, dist);
+            int step = 1 + rnd.nextInt(maxStep);
+            dist += v * step;
+            t += step;
+        }
+        return s;
+    }
+}
@@ -0,0 +1,166 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.dto.IngestJobDto;
+import com.trainingsplan.dto.IngestJobStatus;
+import com.trainingsplan.entity.CompletedTraining;
+import com.trainingsplan.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IngestJobServiceTest {
+
+    private static final LocalDate DATE = LocalDate.of(2026, 3, 1);
+
+    private CompletedTrainingService completedTrainingService;
+    private FitArchiveImportService fitArchiveImportService;
+    private IngestJobService service;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        completedTrainingService = mock(CompletedTrainingService.class);
+        fitArchiveImportService = mock(FitArchiveImportService.class);
+        service = new IngestJobService(completedTrainingService, fitArchiveImportService, 1, 1, 60, 16);
+        user = new User();
+        user.setId(7L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void successfulImport_reportsDoneWithTrainingId() throws Exception {
+        CompletedTraining saved = new CompletedTraining();
+        saved.setId(42L);
+        when(completedTrainingService.importFitFile(any(), eq("run.fit"), eq(DATE), eq(null), eq(user), any()))
+                .thenAnswer(inv -> {
+                    assertArrayEquals(new byte[]{1, 2, 3}, ((InputStream) inv.getArgument(0)).readAllBytes());
+                    return saved;
+                });
+
+        IngestJobDto queued = service.submitFitUpload(fit("run.fit"), DATE, null, user);
+        assertEquals(IngestJobStatus.QUEUED, queued.status());
+
+        IngestJobDto done = awaitFinished(queued.id());
+        assertEquals(IngestJobStatus.DONE, done.status());
+        assertEquals(100, done.progressPct());
+        assertEquals(42L, done.completedTrainingId());
+        assertNull(done.error());
+    }
+
+    @Test
+    void failedImport_reportsFailedWithMessage() throws Exception {
+        when(completedTrainingService.importFitFile(any(), any(), any(), any(), any(), any()))
+                .thenThrow(new IOException("CRC failed"));
+
+        IngestJobDto queued = service.submitFitUpload(fit("bad.fit"), DATE, null, user);
+
+        IngestJobDto failed = awaitFinished(queued.id());
+        assertEquals(IngestJobStatus.FAILED, failed.status());
+        assertEquals("CRC failed", failed.error());
+        assertNull(failed.completedTrainingId());
+    }
+
+    @Test
+    void jobOfOtherUser_notVisible() throws Exception {
+        when(completedTrainingService.importFitFile(any(), any(), any(), any(), any(), any()))
+                .thenReturn(new CompletedTraining());
+
+        IngestJobDto queued = service.submitFitUpload(fit("run.fit"), DATE, null, user);
+
+        assertTrue(service.getJob(queued.id(), 8L).isEmpty());
+        assertTrue(service.getJob("unknown", 7L).isEmpty());
+    }
+
+    @Test
+    void queueFull_rejectsSubmission() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(completedTrainingService.importFitFile(any(), any(), any(), any(), any(), any()))
+                .thenAnswer(inv -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return new CompletedTraining();
+                });
+
+        // 1 worker busy + 1 queued slot
+        service.submitFitUpload(fit("a.fit"), DATE, null, user);
+        waitUntilStarted();
+        service.submitFitUpload(fit("b.fit"), DATE, null, user);
+
+        assertThrows(RejectedExecutionException.class,
+                () -> service.submitFitUpload(fit("c.fit"), DATE, null, user));
+        release.countDown();
+    }
+
+    @Test
+    void archiveImport_reportsFileCounters() throws Exception {
+        when(fitArchiveImportService.importArchive(any(), eq(user), any())).thenAnswer(inv -> {
+            FitArchiveImportService.Progress progress = inv.getArgument(2);
+            progress.stage(IngestJobStatus.PARSING);
+            progress.filesDiscovered(3);
+            progress.fileProcessed(true);
+            progress.fileProcessed(true);
+            progress.fileProcessed(false);
+            return new FitArchiveImportService.Result(2, 0, 1, 10, 20);
+        });
+
+        IngestJobDto queued = service.submitArchiveImport(
+                new ByteArrayInputStream(new byte[]{1, 2, 3}), "export.zip", user);
+
+        IngestJobDto done = awaitFinished(queued.id());
+        assertEquals(IngestJobStatus.DONE, done.status());
+        assertEquals(3, done.filesTotal());
+        assertEquals(3, done.filesDone());
+        assertEquals(1, done.filesFailed());
+    }
+
+    @Test
+    void archiveTooLarge_rejected() {
+        assertThrows(IngestJobService.ArchiveTooLargeException.class, () -> service.submitArchiveImport(
+                new ByteArrayInputStream(new byte[17]), "export.zip", user));
+        verifyNoInteractions(fitArchiveImportService);
+    }
+
+    // ── Helpers ──────────────────────────────────────────────────────────────
+
+    private static MockMultipartFile fit(String name) {
+        return new MockMultipartFile("file", name, "application/octet-stream", new byte[]{1, 2, 3});
+    }
+
+    private IngestJobDto awaitFinished(String jobId) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            IngestJobDto job = service.getJob(jobId, user.getId()).orElseThrow();
+            if (job.status().isFinished()) return job;
+            Thread.sleep(10);
+        }
+        fail("Job " + jobId + " did not finish");
+        return null;
+    }
+
+    private void waitUntilStarted() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            try {
+                verify(completedTrainingService).importFitFile(any(), any(), any(), any(), any(), any());
+                return;
+            } catch (AssertionError e) {
+                Thread.sleep(10);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.entity.ActivityMetrics;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.port.ActivityStreamStoragePort;
+import com.trainingsplan.repository.ActivityBatchWriter;
+import com.trainingsplan.repository.ActivityMetricsRepository;
+import com.trainingsplan.repository.DailyMetricsBatchWriter;
+import com.trainingsplan.service.stream.ActivityStream;
+import com.trainingsplan.service.stream.ActivityStreamCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Recompute throughput of {@link MetricsRecomputeService} on a synthetic 5-year history
+ * (about 1,500 runs of 30–120 minutes at 1 Hz), from stored HR histograms vs. from stored
+ * raw streams, sequential and parallel. Persistence is mocked, so this measures the
+ * compute phase only.
+ *
+ * <p>Skipped in the regular build; run with
+ * {@code mvn test -Dtest=MetricsRecomputeBenchmarkTest -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class MetricsRecomputeBenchmarkTest {
+
+    private static final int YEARS = 5;
+
+    @Test
+    void fiveYearHistory() {
+        User oldProfile = MetricsRecomputeServiceTest.user(195, 55, "MALE");
+        User newProfile = MetricsRecomputeServiceTest.user(182, 48, "MALE");
+        ActivityMetricsService metricsService = FitArchiveImportServiceTest.activityMetricsService();
+
+        // ~6 runs per week, stored as encoded streams plus ingest-time metrics
+        Random rnd = new Random(5);
+        Map<Long, byte[]> encodedStreams = new HashMap<>();
+        List<ActivityMetrics> history = new ArrayList<>();
+        LocalDate start = LocalDate.now().minusYears(YEARS);
+        long id = 0;
+        for (LocalDate day = start; day.isBefore(LocalDate.now()); day = day.plusDays(1)) {
+            if (rnd.nextInt(7) == 0) continue;
+            ActivityStream stream = MetricsRecomputeServiceTest.stream(1800 + rnd.nextInt(5400), rnd.nextInt(50));
+            history.add(metricsService.computeMetrics(MetricsRecomputeServiceTest.training(++id, day), stream, oldProfile));
+            encodedStreams.put(id, ActivityStreamCodec.encode(stream));
+        }
+        List<byte[]> histograms = history.stream().map(ActivityMetrics::getHrHistogram).toList();
+        long samples = encodedStreams.values().stream()
+                .mapToLong(b -> ActivityStreamCodec.decode(ByteBuffer.wrap(b)).size()).sum();
+        System.out.printf(Locale.ROOT, "history: %d activities, %d samples, histograms %d KB, streams %d KB%n",
+                history.size(), samples,
+                histograms.stream().mapToInt(b -> b.length).sum() / 1024,
+                encodedStreams.values().stream().mapToInt(b -> b.length).sum() / 1024);
+
+        ActivityMetricsRepository repository = mock(ActivityMetricsRepository.class);
+        when(repository.findAllWithTrainingByUserId(7L)).thenReturn(history);
+        ActivityStreamStoragePort storage = mock(ActivityStreamStoragePort.class);
+        when(storage.load(anyLong())).thenAnswer(inv -> Optional.ofNullable(encodedStreams.get(inv.<Long>getArgument(0)))
+                .map(b -> ActivityStreamCodec.decode(ByteBuffer.wrap(b))));
+
+        int cpus = Runtime.getRuntime().availableProcessors();
+        for (int parallelism : IntStream.of(1, cpus).distinct().toArray()) {
+            MetricsRecomputeService service = new MetricsRecomputeService(repository, new FusedActivityMetricsEngine(),
+                    metricsService, storage, mock(ActivityBatchWriter.class), mock(DailyMetricsBatchWriter.class),
+                    mock(DailyMetricsService.class), parallelism);
+
+            for (boolean fromHistogram : new boolean[]{true, false}) {
+                long best = Long.MAX_VALUE;
+                for (int run = 0; run < 5; run++) {
+                    for (int i = 0; i < history.size(); i++) {
+                        history.get(i).setHrHistogram(fromHistogram ? histograms.get(i) : null);
+                    }
+                    MetricsRecomputeService.Result r = service.recomputeForUser(newProfile);
+                    assertEquals(history.size(), fromHistogram ? r.fromHistogram() : r.fromStream());
+                    best = Math.min(best, Math.max(1, r.computeMillis()));
+                }
+                System.out.printf(Locale.ROOT, "parallelism=%d, from %s: %d ms -> %.0f activities/s%n",
+                        parallelism, fromHistogram ? "histogram" : "stream   ",
+                        best, history.size() * 1000.0 / best);
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.entity.ActivityMetrics;
+import com.trainingsplan.entity.CompletedTraining;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.port.ActivityStreamStoragePort;
+import com.trainingsplan.repository.ActivityBatchWriter;
+import com.trainingsplan.repository.ActivityMetricsRepository;
+import com.trainingsplan.repository.DailyMetricsBatchWriter;
+import com.trainingsplan.repository.DailyMetricsBatchWriter.DailyLoad;
+import com.trainingsplan.service.stream.ActivityStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link MetricsRecomputeService} with real metric computation and mocked persistence.
+ */
+class MetricsRecomputeServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 10);
+
+    private ActivityMetricsRepository activityMetricsRepository;
+    private ActivityStreamStoragePort streamStorage;
+    private ActivityBatchWriter activityBatchWriter;
+    private DailyMetricsBatchWriter dailyMetricsBatchWriter;
+    private DailyMetricsService dailyMetricsService;
+    private ActivityMetricsService activityMetricsService;
+    private MetricsRecomputeService service;
+
+    private User oldProfile;
+    private User newProfile;
+
+    @BeforeEach
+    void setUp() {
+        activityMetricsRepository = mock(ActivityMetricsRepository.class);
+        streamStorage = mock(ActivityStreamStoragePort.class);
+        activityBatchWriter = mock(ActivityBatchWriter.class);
+        dailyMetricsBatchWriter = mock(DailyMetricsBatchWriter.class);
+        dailyMetricsService = mock(DailyMetricsService.class);
+        activityMetricsService = FitArchiveImportServiceTest.activityMetricsService();
+        when(streamStorage.load(anyLong())).thenReturn(Optional.empty());
+
+        service = new MetricsRecomputeService(activityMetricsRepository, new FusedActivityMetricsEngine(),
+                activityMetricsService, streamStorage, activityBatchWriter, dailyMetricsBatchWriter,
+                dailyMetricsService, 2);
+
+        oldProfile = user(200, 60, "MALE");
+        newProfile = user(175, 48, "FEMALE");
+    }
+
+    @Test
+    void recomputesFromHistogram_matchesFreshIngestWithNewProfile() {
+        ActivityStream stream = stream(3600, 11);
+        ActivityMetrics stored = ingest(training(1L, DAY), stream, oldProfile);
+        when(activityMetricsRepository.findAllWithTrainingByUserId(7L)).thenReturn(List.of(stored));
+
+        MetricsRecomputeService.Result result = service.recomputeForUser(newProfile);
+
+        ActivityMetrics expected = activityMetricsService.computeMetrics(stored.getCompletedTraining(), stream, newProfile);
+        assertEquals(1, result.fromHistogram());
+        assertEquals(0, result.skipped());
+        assertEquals(expected.getZ1Min(), stored.getZ1Min(), 0.0);
+        assertEquals(expected.getZ4Min(), stored.getZ4Min(), 0.0);
+        assertEquals(expected.getZ5Min(), stored.getZ5Min(), 0.0);
+        assertEquals(expected.getStrain21(), stored.getStrain21(), 1e-12);
+        assertEquals(expected.getTrimp(), stored.getTrimp(), 1e-9);
+        verify(activityBatchWriter).updateHrMetrics(List.of(stored));
+        verifyNoInteractions(streamStorage);
+        verify(dailyMetricsService).refreshLoadModels(newProfile, DAY, LocalDate.now());
+    }
+
+    @Test
+    void missingHistogram_fallsBackToStoredStream_andBackfills() {
+        ActivityStream stream = stream(1800, 3);
+        ActivityMetrics withStream = ingest(training(1L, DAY), stream, oldProfile);
+        withStream.setHrHistogram(null);
+        ActivityMetrics withNothing = ingest(training(2L, DAY.plusDays(1)), stream, oldProfile);
+        withNothing.setHrHistogram(null);
+        Double untouchedTrimp = withNothing.getTrimp();
+        when(streamStorage.load(1L)).thenReturn(Optional.of(stream));
+        when(activityMetricsRepository.findAllWithTrainingByUserId(7L)).thenReturn(List.of(withStream, withNothing));
+
+        MetricsRecomputeService.Result result = service.recomputeForUser(newProfile);
+
+        assertEquals(1, result.fromStream());
+        assertEquals(1, result.skipped());
+        assertNotNull(withStream.getHrHistogram());
+        assertEquals(untouchedTrimp, withNothing.getTrimp());
+        verify(activityBatchWriter).updateHrMetrics(List.of(withStream));
+    }
+
+    @Test
+    void dailyLoads_summedPerDay_oneBatchedUpsert() {
+        ActivityMetrics a = ingest(training(1L, DAY), stream(1800, 1), oldProfile);
+        ActivityMetrics b = ingest(training(2L, DAY), stream(2400, 2), oldProfile);
+        ActivityMetrics c = ingest(training(3L, DAY.plusDays(2)), stream(600, 3), oldProfile);
+        when(activityMetricsRepository.findAllWithTrainingByUserId(7L)).thenReturn(List.of(a, b, c));
+
+        service.recomputeForUser(newProfile);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<DailyLoad>> loads = ArgumentCaptor.forClass(List.class);
+        verify(dailyMetricsBatchWriter).upsertLoad(eq(7L), loads.capture());
+        assertEquals(2, loads.getValue().size());
+        DailyLoad first = loads.getValue().get(0);
+        assertEquals(DAY, first.date());
+        assertEquals(a.getStrain21() + b.getStrain21(), first.strain21(), 1e-12);
+        assertEquals(a.getTrimp() + b.getTrimp(), first.trimp(), 1e-9);
+        assertEquals(DAY.plusDays(2), loads.getValue().get(1).date());
+    }
+
+    @Test
+    void noActivities_nothingWritten() {
+        when(activityMetricsRepository.findAllWithTrainingByUserId(7L)).thenReturn(List.of());
+
+        assertEquals(0, service.recomputeForUser(newProfile).activities());
+
+        verifyNoInteractions(activityBatchWriter, dailyMetricsBatchWriter, dailyMetricsService);
+    }
+
+    @Test
+    void hrRestRemoved_trimpCleared() {
+        ActivityMetrics stored = ingest(training(1L, DAY), stream(1800, 5), oldProfile);
+        when(activityMetricsRepository.findAllWithTrainingByUserId(7L)).thenReturn(List.of(stored));
+        assertNotNull(stored.getTrimp());
+
+        service.recomputeForUser(user(190, null, "MALE"));
+
+        assertNull(stored.getTrimp());
+        assertNull(stored.getTrimpQuality());
+        assertNotNull(stored.getStrain21());
+        verify(dailyMetricsBatchWriter).upsertLoad(eq(7L), any());
+    }
+
+    // ── Helpers ──────────────────────────────────────────────────────────────
+
+    private ActivityMetrics ingest(CompletedTraining training, ActivityStream stream, User profile) {
+        return activityMetricsService.computeMetrics(training, stream, profile);
+    }
+
+    static User user(Integer hrMax, Integer hrRest, String gender) {
+        User user = new User();
+        user.setId(7L);
+        user.setMaxHeartRate(hrMax);
+        user.setHrRest(hrRest);
+        user.setGender(gender);
+        return user;
+    }
+
+    static CompletedTraining training(Long id, LocalDate date) {
+        CompletedTraining training = new CompletedTraining();
+        training.setId(id);
+        training.setTrainingDate(date);
+        return training;
+    }
+
+    /** A 1 Hz run whose HR sweeps from 110 to about 185 bpm with a small per-seed wobble. */
+    static ActivityStream stream(int seconds, int seed) {
+        ActivityStream s = new ActivityStream(seconds);
+        for (int t = 0; t < seconds; t++) {
+            s.setHeartRate(s.append(t), 110 + (75 * t) / seconds + (t * seed) % 7);
+        }
+        return s;
+    }
+}
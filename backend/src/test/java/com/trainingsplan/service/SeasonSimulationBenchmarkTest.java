@@ -0,0 +1,53 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.dto.AthleteState;
+import com.trainingsplan.dto.Workout;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import pacr.training.simulation.dto.SeasonSimulationResultDTO;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Throughput of {@link SeasonSimulationEngine} in scenarios (simulated seasons) per second,
+ * on one core and on all cores, for 8, 16 and 24 week blocks with both noise sources on.
+ *
+ * <p>Skipped in the regular build; run with
+ * {@code mvn test -Dtest=SeasonSimulationBenchmarkTest -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class SeasonSimulationBenchmarkTest {
+
+    private static final int RUNS = 20_000;
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 10;
+
+    @Test
+    void scenariosPerSecond() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        AthleteState state = SeasonSimulationEngineTest.state(0.4);
+        for (int weeks : new int[]{8, 16, 24}) {
+            List<Workout> workouts = SeasonSimulationEngineTest.season(weeks);
+
+            double single = measure(SeasonSimulationEngineTest.engine(0.2, 0.3, 1), workouts, state, weeks);
+            double all = measure(SeasonSimulationEngineTest.engine(0.2, 0.3, cores), workouts, state, weeks);
+            System.out.printf(Locale.ROOT,
+                    "%2d weeks: 1 core %,12.0f scenarios/s | %d cores %,12.0f scenarios/s (%,.0f per core, %.1fx)%n",
+                    weeks, single, cores, all, all / cores, all / single);
+        }
+    }
+
+    private static double measure(SeasonSimulationEngine engine, List<Workout> workouts, AthleteState state, int weeks) {
+        for (int i = 0; i < WARMUP; i++) engine.simulateSeason(workouts, state, weeks, RUNS, i);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            SeasonSimulationResultDTO result = engine.simulateSeason(workouts, state, weeks, RUNS, i);
+            assertEquals(weeks * 7, result.getFatigueBands().size());
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return (double) RUNS * ITERATIONS / seconds;
+    }
+}
@@ -0,0 +1,128 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.dto.AthleteState;
+import com.trainingsplan.dto.Workout;
+import org.junit.jupiter.api.Test;
+import pacr.training.simulation.dto.FatigueBandDTO;
+import pacr.training.simulation.dto.SeasonSimulationResultDTO;
+import pacr.training.simulation.dto.WeekSimulationResultDTO;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeasonSimulationEngineTest {
+
+    private static final LocalDate START = LocalDate.of(2026, 3, 2);
+    private static final double BIN = 1.0 / SeasonSimulationEngine.BINS;
+
+    @Test
+    void withoutNoise_everyBandMatchesTheWeekSimulation() {
+        List<Workout> workouts = season(4);
+        AthleteState state = state(0.3);
+
+        SeasonSimulationResultDTO result = engine(0, 0, 2).simulateSeason(workouts, state, 4, 200, 1L);
+        WeekSimulationResultDTO firstWeek = weekEngine().simulateWeek(workouts.subList(0, 3), state);
+
+        assertEquals(28, result.getFatigueBands().size());
+        assertEquals(START, result.getFatigueBands().get(0).getDate());
+        assertEquals(START.plusDays(27), result.getFatigueBands().get(27).getDate());
+        for (int day = 0; day < 7; day++) {
+            FatigueBandDTO band = result.getFatigueBands().get(day);
+            double expected = firstWeek.getFatigueTimeline().get(day).getFatigue();
+            assertEquals(expected, band.getP10(), BIN);
+            assertEquals(expected, band.getP90(), BIN);
+        }
+    }
+
+    @Test
+    void sameSeed_sameResultOnAnyPoolSize() {
+        List<Workout> workouts = season(12);
+
+        SeasonSimulationResultDTO sequential = engine(0.2, 0.3, 1).simulateSeason(workouts, state(0.4), 12, 3000, 42L);
+        SeasonSimulationResultDTO parallel = engine(0.2, 0.3, 4).simulateSeason(workouts, state(0.4), 12, 3000, 42L);
+
+        for (int day = 0; day < 84; day++) {
+            assertEquals(sequential.getFatigueBands().get(day).getP50(), parallel.getFatigueBands().get(day).getP50());
+            assertEquals(sequential.getFatigueBands().get(day).getP90(), parallel.getFatigueBands().get(day).getP90());
+        }
+        assertEquals(sequential.getFlagProbabilities(), parallel.getFlagProbabilities());
+        assertEquals(sequential.getWeeklyFlagProbabilities(), parallel.getWeeklyFlagProbabilities());
+    }
+
+    @Test
+    void noise_widensBands_andOvertrainingBecomesAProbability() {
+        SeasonSimulationResultDTO result = engine(0.25, 0.4, 2).simulateSeason(season(8), state(0.5), 8, 4000, 7L);
+
+        for (FatigueBandDTO band : result.getFatigueBands()) {
+            assertTrue(band.getP10() <= band.getP25() && band.getP25() <= band.getP50()
+                    && band.getP50() <= band.getP75() && band.getP75() <= band.getP90(), band.getDate().toString());
+        }
+        FatigueBandDTO lastDay = result.getFatigueBands().get(55);
+        assertTrue(lastDay.getP90() - lastDay.getP10() > 0.05);
+
+        double overtraining = result.getFlagProbabilities().get(WeekRiskAnalyzer.OVERTRAINING_RISK);
+        assertTrue(overtraining > 0.0 && overtraining < 1.0, "overtraining probability " + overtraining);
+        double firstWeek = result.getWeeklyFlagProbabilities().get(0).get(WeekRiskAnalyzer.OVERTRAINING_RISK);
+        double lastWeek = result.getWeeklyFlagProbabilities().get(7).get(WeekRiskAnalyzer.OVERTRAINING_RISK);
+        assertTrue(firstWeek < lastWeek && lastWeek <= overtraining);
+        assertEquals(0.0, result.getFlagProbabilities().get(WeekRiskAnalyzer.INTENSITY_CLUSTER));
+    }
+
+    @Test
+    void intensityCluster_flaggedInItsWeekOnly() {
+        List<Workout> workouts = new ArrayList<>(season(4));
+        for (int i = 0; i < 3; i++) {
+            workouts.add(new Workout(START.plusDays(15 + i), "Intervals Z4", null, 10, null, null));
+        }
+
+        SeasonSimulationResultDTO result = engine(0.25, 0.4, 2).simulateSeason(workouts, state(0.0), 4, 500, 3L);
+
+        assertEquals(1.0, result.getFlagProbabilities().get(WeekRiskAnalyzer.INTENSITY_CLUSTER));
+        assertEquals(1.0, result.getWeeklyFlagProbabilities().get(2).get(WeekRiskAnalyzer.INTENSITY_CLUSTER));
+        assertEquals(0.0, result.getWeeklyFlagProbabilities().get(1).get(WeekRiskAnalyzer.INTENSITY_CLUSTER));
+        assertEquals(0.0, result.getWeeklyFlagProbabilities().get(3).get(WeekRiskAnalyzer.INTENSITY_CLUSTER));
+    }
+
+    @Test
+    void rejectsBlocksOutsideFourToTwentyFourWeeks() {
+        SeasonSimulationEngine engine = engine(0.1, 0.1, 1);
+
+        assertThrows(IllegalArgumentException.class, () -> engine.simulateSeason(List.of(), state(0.2), 3, 100, 1L));
+        assertThrows(IllegalArgumentException.class, () -> engine.simulateSeason(List.of(), state(0.2), 25, 100, 1L));
+        assertThrows(IllegalArgumentException.class, () -> engine.simulateSeason(List.of(), state(0.2), 4, 0, 1L));
+        assertThrows(IllegalArgumentException.class, () -> engine.simulateSeason(List.of(), null, 4, 100, 1L));
+    }
+
+    /** Three sessions per week: recovery run, tempo, long run; fatigue creeps up about 0.05 a week. */
+    static List<Workout> season(int weeks) {
+        List<Workout> workouts = new ArrayList<>();
+        for (int week = 0; week < weeks; week++) {
+            LocalDate monday = START.plusWeeks(week);
+            workouts.add(new Workout(monday, "Recovery Z1", 5.0, 30, 390, 130));
+            workouts.add(new Workout(monday.plusDays(2), "Tempo Z3", 7.0, 30, 290, 160));
+            workouts.add(new Workout(monday.plusDays(6), "Long run Z2", 7.5, 40, 330, 145));
+        }
+        return workouts;
+    }
+
+    static AthleteState state(double fatigue) {
+        return new AthleteState("Goal", 8, fatigue, 0.5, 1.1, 120, Collections.emptyList());
+    }
+
+    static SeasonSimulationEngine engine(double trimpNoise, double recoveryNoise, int parallelism) {
+        return new SeasonSimulationEngine(new TrainingLoadCalculator(), new FatigueModel(),
+                trimpNoise, recoveryNoise, parallelism);
+    }
+
+    private static WeekSimulationEngine weekEngine() {
+        TrainingImpactEngine impactEngine = new TrainingImpactEngine(
+                new TrainingLoadCalculator(), new FatigueModel(), new RecoveryModel(), new InjuryRiskModel());
+        return new WeekSimulationEngine(impactEngine, new WeekRiskAnalyzer());
+    }
+}
@@ -0,0 +1,96 @@
+package com.trainingsplan.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StravaRateLimiterTest {
+
+    private static final long T0 = Instant.parse("2025-06-15T10:07:00Z").toEpochMilli();
+
+    private final AtomicLong now = new AtomicLong(T0);
+
+    @Test
+    void bucketEmpties_thenRefillsEvenlyOverWindow() {
+        StravaRateLimiter limiter = new StravaRateLimiter(3, 1000, now::get);
+
+        assertEquals(0, limiter.tryAcquire());
+        assertEquals(0, limiter.tryAcquire());
+        assertEquals(0, limiter.tryAcquire());
+        long wait = limiter.tryAcquire();
+        assertEquals(StravaRateLimiter.SHORT_WINDOW_MILLIS / 3, wait);
+
+        now.addAndGet(wait);
+        assertEquals(0, limiter.tryAcquire());
+    }
+
+    @Test
+    void reportedUsage_clampsLocalEstimate() {
+        StravaRateLimiter limiter = new StravaRateLimiter(100, 1000, now::get);
+
+        limiter.update("100,1000", "97,300");
+
+        assertEquals(3.0, limiter.shortTermTokens(), 1e-9);
+    }
+
+    @Test
+    void shortWindowUsedUp_blockedUntilNextQuarterHour() {
+        StravaRateLimiter limiter = new StravaRateLimiter(100, 1000, now::get);
+
+        limiter.update("100,1000", "100,300");
+
+        long resetAt = Instant.parse("2025-06-15T10:15:00Z").toEpochMilli();
+        assertEquals(resetAt - T0, limiter.tryAcquire());
+    }
+
+    @Test
+    void dailyQuotaUsedUp_blockedUntilUtcMidnight() {
+        StravaRateLimiter limiter = new StravaRateLimiter(100, 1000, now::get);
+
+        limiter.update("100,1000", "12,1000");
+
+        long midnight = Instant.parse("2025-06-16T00:00:00Z").toEpochMilli();
+        assertEquals(midnight - T0, limiter.waitMillis());
+    }
+
+    @Test
+    void readLimitHeaders_takePrecedence() {
+        StravaRateLimiter limiter = new StravaRateLimiter(600, 6000, now::get);
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-RateLimit-Limit", "600,6000");
+        headers.add("X-RateLimit-Usage", "10,100");
+        headers.add("X-ReadRateLimit-Limit", "100,1000");
+        headers.add("X-ReadRateLimit-Usage", "95,100");
+
+        limiter.onResponse(headers);
+
+        assertEquals(5.0, limiter.shortTermTokens(), 1e-9);
+    }
+
+    @Test
+    void tooManyRequests_noPermitsUntilWindowResets() {
+        StravaRateLimiter limiter = new StravaRateLimiter(100, 1000, now::get);
+
+        limiter.onRateLimited();
+
+        assertTrue(limiter.tryAcquire() > 0);
+        now.set(Instant.parse("2025-06-15T10:15:00Z").toEpochMilli());
+        assertEquals(0, limiter.tryAcquire());
+    }
+
+    @Test
+    void remainingFraction_followsTighterWindow_zeroWhileBlocked() {
+        StravaRateLimiter limiter = new StravaRateLimiter(100, 1000, now::get);
+        assertEquals(1.0, limiter.remainingFraction(), 1e-9);
+
+        limiter.update("100,1000", "20,900");
+        assertEquals(0.1, limiter.remainingFraction(), 1e-9);
+
+        limiter.onRateLimited();
+        assertEquals(0.0, limiter.remainingFraction(), 1e-9);
+    }
+}
@@ -0,0 +1,243 @@
+package com.trainingsplan.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.trainingsplan.dto.ProfileCompletionDto;
+import com.trainingsplan.entity.CompletedTraining;
+import com.trainingsplan.entity.StravaStreamFetch;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.repository.CompletedTrainingRepository;
+import com.trainingsplan.repository.StravaStreamFetchRepository;
+import com.trainingsplan.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link StravaStreamFetcher} against a local stub of the Strava streams endpoint.
+ * Repositories and metric computation are mocked; HTTP, rate limiting and retry are real.
+ */
+class StravaStreamFetcherTest {
+
+    private static final String STREAMS = """
+            {"time":{"data":[0,1,2]},"heartrate":{"data":[120,121,null]},
+             "velocity_smooth":{"data":[3.0,3.1,3.2]},"distance":{"data":[0.0,3.1,6.3]}}
+            """;
+
+    private HttpServer server;
+    private volatile StubHandler handler;
+
+    private StravaStreamFetchRepository fetchRepository;
+    private ActivityMetricsService activityMetricsService;
+    private StravaRateLimiter rateLimiter;
+    private StravaStreamFetcher fetcher;
+    private CompletedTraining training;
+    private User user;
+
+    @FunctionalInterface
+    interface StubHandler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/activities/", exchange -> handler.handle(exchange));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        fetchRepository = mock(StravaStreamFetchRepository.class);
+        CompletedTrainingRepository completedTrainingRepository = mock(CompletedTrainingRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        activityMetricsService = mock(ActivityMetricsService.class);
+        UserProfileValidationService profileValidation = mock(UserProfileValidationService.class);
+        StravaTokenCache tokenCache = mock(StravaTokenCache.class);
+        rateLimiter = new StravaRateLimiter(100, 1000);
+
+        training = new CompletedTraining();
+        training.setId(5L);
+        training.setStravaActivityId(9001L);
+        training.setTrainingDate(LocalDate.of(2025, 6, 1));
+        user = new User();
+        user.setId(7L);
+        when(completedTrainingRepository.findById(anyLong())).thenReturn(Optional.of(training));
+        when(userRepository.findById(7L)).thenReturn(Optional.of(user));
+        when(profileValidation.getProfileCompletion(user)).thenReturn(new ProfileCompletionDto(true, List.of(), null));
+        when(tokenCache.accessToken(7L)).thenReturn(Optional.of("token-1"));
+
+        fetcher = new StravaStreamFetcher(fetchRepository, completedTrainingRepository, userRepository,
+                activityMetricsService, profileValidation, tokenCache, rateLimiter, new ObjectMapper(),
+                mock(PlatformTransactionManager.class),
+                "http://127.0.0.1:" + server.getAddress().getPort(), 3, 4, 30, 30, 300);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fetcher.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void success_persistsMetricsAndDeletesEntry() {
+        List<String> seen = new ArrayList<>();
+        handler = exchange -> {
+            seen.add(exchange.getRequestURI() + " " + exchange.getRequestHeaders().getFirst("Authorization"));
+            exchange.getResponseHeaders().add("X-RateLimit-Limit", "100,1000");
+            exchange.getResponseHeaders().add("X-RateLimit-Usage", "40,200");
+            respond(exchange, 200, STREAMS);
+        };
+
+        fetcher.process(fetch(1L, 0));
+
+        assertEquals(List.of("/activities/9001/streams?keys=" + StravaStreamFetcher.STREAM_KEYS
+                + "&key_by_type=true Bearer token-1"), seen);
+        verify(activityMetricsService).calculateAndPersist(eq(training),
+                argThat(s -> s.size() == 3 && s.hasHeartRate(1) && !s.hasHeartRate(2) && s.hasDistanceChannel()),
+                eq(user));
+        verify(fetchRepository).deleteById(1L);
+        assertEquals(60.0, rateLimiter.shortTermTokens(), 1e-6);
+    }
+
+    @Test
+    void serverError_retriedWithBackoff() {
+        handler = exchange -> respond(exchange, 503, "");
+        StravaStreamFetch fetch = fetch(1L, 1);
+
+        fetcher.process(fetch);
+
+        assertEquals(2, fetch.getAttempts());
+        // 30 s base, doubled for the second attempt
+        assertTrue(fetch.getNextAttemptAt().isAfter(LocalDateTime.now().plusSeconds(55)));
+        assertNotNull(fetch.getLastError());
+        verify(fetchRepository).save(fetch);
+        verify(fetchRepository, never()).deleteById(any());
+        verifyNoInteractions(activityMetricsService);
+    }
+
+    @Test
+    void lastAttemptFails_givesUp() {
+        handler = exchange -> respond(exchange, 500, "");
+
+        fetcher.process(fetch(1L, 3));
+
+        verify(fetchRepository).deleteById(1L);
+        verify(fetchRepository, never()).save(any());
+    }
+
+    @Test
+    void tooManyRequests_postponedToNextWindow_withoutCountingAttempt() {
+        handler = exchange -> {
+            exchange.getResponseHeaders().add("X-RateLimit-Usage", "100,300");
+            respond(exchange, 429, "");
+        };
+        StravaStreamFetch fetch = fetch(1L, 0);
+
+        fetcher.process(fetch);
+
+        assertEquals(0, fetch.getAttempts());
+        assertTrue(fetch.getNextAttemptAt().isAfter(LocalDateTime.now()));
+        assertTrue(rateLimiter.tryAcquire() > 0);
+        verify(fetchRepository).save(fetch);
+        verifyNoInteractions(activityMetricsService);
+    }
+
+    @Test
+    void noStreams_dropped() {
+        handler = exchange -> respond(exchange, 404, "{\"message\":\"Record Not Found\"}");
+
+        fetcher.process(fetch(1L, 0));
+
+        verify(fetchRepository).deleteById(1L);
+        verifyNoInteractions(activityMetricsService);
+    }
+
+    @Test
+    void dispatch_runsFetchesInParallel_upToConcurrencyCap() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        handler = exchange -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+            respond(exchange, 200, STREAMS);
+        };
+        List<StravaStreamFetch> due = new ArrayList<>();
+        for (long id = 1; id <= 12; id++) due.add(fetch(id, 0));
+        when(fetchRepository.findDue(any(), any())).thenReturn(due);
+        when(fetchRepository.claim(anyLong(), any(), any(), any())).thenReturn(1);
+        when(fetchRepository.findById(anyLong())).thenAnswer(inv -> Optional.of(due.get(inv.<Long>getArgument(0).intValue() - 1)));
+        CountDownLatch done = new CountDownLatch(12);
+        doAnswer(inv -> {
+            done.countDown();
+            return null;
+        }).when(fetchRepository).deleteById(any());
+
+        fetcher.dispatchDue();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        verify(activityMetricsService, times(12)).calculateAndPersist(any(), any(), any());
+        assertTrue(maxActive.get() > 1, "fetches should overlap");
+        assertTrue(maxActive.get() <= 3, "at most 3 concurrent fetches, saw " + maxActive.get());
+    }
+
+    @Test
+    void dispatch_fetchClaimedElsewhere_skipped() {
+        handler = exchange -> respond(exchange, 200, STREAMS);
+        when(fetchRepository.findDue(any(), any())).thenReturn(List.of(fetch(1L, 0)));
+        when(fetchRepository.claim(eq(1L), any(), any(), any())).thenReturn(0);
+
+        fetcher.dispatchDue();
+
+        verify(fetchRepository, timeout(2000)).claim(eq(1L), any(), any(), any());
+        verify(fetchRepository, after(100).never()).findById(any());
+        verify(fetchRepository, never()).release(any(), any());
+        verifyNoInteractions(activityMetricsService);
+    }
+
+    private static StravaStreamFetch fetch(Long id, int attempts) {
+        StravaStreamFetch fetch = new StravaStreamFetch();
+        fetch.setId(id);
+        fetch.setCompletedTrainingId(5L);
+        fetch.setStravaActivityId(9001L);
+        fetch.setUserId(7L);
+        fetch.setAttempts(attempts);
+        fetch.setNextAttemptAt(LocalDateTime.now());
+        return fetch;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.entity.User;
+import com.trainingsplan.repository.StravaSyncStateRepository;
+import com.trainingsplan.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link StravaSyncLease} and its two conditional updates against H2. Not
+ * transactional: like in production, every acquisition and release commits on its own.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StravaSyncLeaseTest {
+
+    /** The application's own component scan would pull the whole context into this slice. */
+    @Configuration
+    @EntityScan("com.trainingsplan.entity")
+    @EnableJpaRepositories("com.trainingsplan.repository")
+    static class JpaSlice {
+    }
+
+    @Autowired
+    private StravaSyncStateRepository syncStateRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private StravaSyncLease lease;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        lease = new StravaSyncLease(syncStateRepository, transactionManager, 600);
+        User u = new User();
+        u.setUsername("lease");
+        u.setEmail("lease@example.com");
+        u.setPasswordHash("hash");
+        u.setCreatedAt(LocalDateTime.now());
+        user = userRepository.save(u);
+    }
+
+    @AfterEach
+    void tearDown() {
+        syncStateRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void acquire_createsStateRow_secondAcquisitionRefused_evenOnSameInstance() {
+        Optional<String> first = lease.tryAcquire(user);
+
+        assertTrue(first.isPresent());
+        assertEquals(first.get(), syncStateRepository.findByUserId(user.getId()).orElseThrow().getLeaseOwner());
+        assertTrue(lease.tryAcquire(user).isEmpty());
+        assertTrue(new StravaSyncLease(syncStateRepository, transactionManager, 600).tryAcquire(user).isEmpty());
+    }
+
+    @Test
+    void release_freesLeaseForTheNextHolder() {
+        String first = lease.tryAcquire(user).orElseThrow();
+
+        lease.release(user.getId(), first);
+        Optional<String> second = lease.tryAcquire(user);
+
+        assertTrue(second.isPresent());
+        assertNotEquals(first, second.get());
+    }
+
+    @Test
+    void expiredLease_takenOver_staleReleaseLeavesNewHolder() {
+        StravaSyncLease expiring = new StravaSyncLease(syncStateRepository, transactionManager, -1);
+        String stale = expiring.tryAcquire(user).orElseThrow();
+
+        String current = lease.tryAcquire(user).orElseThrow();
+        expiring.release(user.getId(), stale);
+
+        assertEquals(current, syncStateRepository.findByUserId(user.getId()).orElseThrow().getLeaseOwner());
+        assertTrue(lease.tryAcquire(user).isEmpty());
+    }
+}
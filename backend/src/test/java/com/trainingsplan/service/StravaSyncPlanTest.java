@@ -0,0 +1,97 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.entity.StravaSyncState;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StravaSyncPlanTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 15, 12, 0);
+    private static final LocalDate SYNCED_FROM = LocalDate.of(2025, 5, 1);
+    private static final long HWM = StravaSyncPlan.epoch(LocalDate.of(2025, 6, 14));
+    private static final Duration OVERLAP = Duration.ofHours(72);
+    private static final Duration MIN_INTERVAL = Duration.ofSeconds(60);
+    private static final Duration RECONCILE = Duration.ofHours(24);
+
+    @Test
+    void firstSync_reconcilesFromRequestedStartUntilToday() {
+        LocalDate start = LocalDate.of(2025, 6, 9);
+
+        StravaSyncPlan plan = plan(new StravaSyncState(), start);
+
+        assertTrue(plan.reconciles());
+        assertEquals(start, plan.syncedFrom());
+        assertEquals(1, plan.windows().size());
+        StravaSyncPlan.Window w = plan.windows().get(0);
+        assertEquals(StravaSyncPlan.epoch(start.minusDays(1)), w.after());
+        assertNull(w.before());
+        assertEquals(start, w.reconcileFrom());
+        assertEquals(NOW.toLocalDate(), w.reconcileTo());
+        assertTrue(plan.listsRecent());
+    }
+
+    @Test
+    void routineSync_onlyListsAfterHighWaterMarkMinusOverlap_regardlessOfRange() {
+        StravaSyncPlan plan = plan(synced(NOW.minusHours(1), NOW.minusMinutes(5)), LocalDate.of(2025, 5, 5));
+
+        assertFalse(plan.reconciles());
+        assertEquals(SYNCED_FROM, plan.syncedFrom());
+        assertEquals(1, plan.windows().size());
+        StravaSyncPlan.Window w = plan.windows().get(0);
+        assertEquals(HWM - OVERLAP.toSeconds(), w.after());
+        assertNull(w.before());
+        assertNull(w.reconcileFrom());
+    }
+
+    @Test
+    void recentSync_nothingToList() {
+        StravaSyncPlan plan = plan(synced(NOW.minusHours(1), NOW.minusSeconds(10)), LocalDate.of(2025, 6, 9));
+
+        assertTrue(plan.windows().isEmpty());
+        assertFalse(plan.listsRecent());
+    }
+
+    @Test
+    void rangeBeforeSyncedPeriod_backfilledOnceWithReconciliation() {
+        LocalDate start = LocalDate.of(2025, 4, 7);
+
+        StravaSyncPlan plan = plan(synced(NOW.minusHours(1), NOW.minusSeconds(10)), start);
+
+        assertEquals(start, plan.syncedFrom());
+        assertEquals(1, plan.windows().size());
+        StravaSyncPlan.Window w = plan.windows().get(0);
+        assertEquals(StravaSyncPlan.epoch(start.minusDays(1)), w.after());
+        assertEquals(StravaSyncPlan.epoch(SYNCED_FROM.plusDays(1)), w.before());
+        assertEquals(start, w.reconcileFrom());
+        assertEquals(SYNCED_FROM.minusDays(1), w.reconcileTo());
+        assertFalse(plan.listsRecent());
+    }
+
+    @Test
+    void reconcileIntervalElapsed_fullListingOfSyncedPeriod() {
+        StravaSyncPlan plan = plan(synced(NOW.minusHours(24), NOW.minusMinutes(5)), LocalDate.of(2025, 6, 9));
+
+        assertTrue(plan.reconciles());
+        assertEquals(1, plan.windows().size());
+        assertEquals(SYNCED_FROM, plan.windows().get(0).reconcileFrom());
+        assertEquals(StravaSyncPlan.epoch(SYNCED_FROM.minusDays(1)), plan.windows().get(0).after());
+    }
+
+    private static StravaSyncPlan plan(StravaSyncState state, LocalDate start) {
+        return StravaSyncPlan.of(state, start, NOW, OVERLAP, MIN_INTERVAL, RECONCILE);
+    }
+
+    private static StravaSyncState synced(LocalDateTime reconciledAt, LocalDateTime syncedAt) {
+        StravaSyncState state = new StravaSyncState();
+        state.setSyncedFrom(SYNCED_FROM);
+        state.setHighWaterMark(HWM);
+        state.setLastReconciledAt(reconciledAt);
+        state.setLastSyncedAt(syncedAt);
+        return state;
+    }
+}
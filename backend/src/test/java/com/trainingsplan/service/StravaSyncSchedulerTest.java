@@ -0,0 +1,139 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.dto.StravaSyncCandidateDto;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.repository.StravaSyncStateRepository;
+import com.trainingsplan.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the due/priority rules and dispatching of {@link StravaSyncScheduler}. Repositories,
+ * the sync itself and the dashboard are mocked; the rate limiter is real.
+ */
+class StravaSyncSchedulerTest {
+
+    private final LocalDateTime now = LocalDateTime.now();
+
+    private StravaSyncStateRepository syncStateRepository;
+    private StravaService stravaService;
+    private DashboardService dashboardService;
+    private StravaRateLimiter rateLimiter;
+    private StravaSyncScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        syncStateRepository = mock(StravaSyncStateRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        stravaService = mock(StravaService.class);
+        dashboardService = mock(DashboardService.class);
+        rateLimiter = new StravaRateLimiter(100, 1000);
+        when(userRepository.findById(any())).thenAnswer(inv -> Optional.of(user(inv.getArgument(0))));
+        when(stravaService.syncUser(any())).thenReturn(true);
+
+        // active: seen within 72 h, synced every 15 min; idle: every 12 h
+        scheduler = new StravaSyncScheduler(syncStateRepository, userRepository, stravaService, dashboardService,
+                rateLimiter, false, 60, 2, 72, 15, 12, 0.5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void dueInOrder_activeFirst_thenLongestWaiting() {
+        List<StravaSyncCandidateDto> candidates = List.of(
+                new StravaSyncCandidateDto(1L, now.minusHours(13), null),                    // idle, due
+                new StravaSyncCandidateDto(2L, now.minusMinutes(5), now.minusHours(1)),      // active, not due
+                new StravaSyncCandidateDto(3L, now.minusMinutes(20), now.minusHours(1)),     // active, due
+                new StravaSyncCandidateDto(4L, null, null),                                  // never synced
+                new StravaSyncCandidateDto(5L, now.minusHours(2), now.minusDays(10)),        // idle, not due
+                new StravaSyncCandidateDto(6L, now.minusHours(3), now.minusMinutes(1)));     // active, due
+
+        List<Long> order = scheduler.dueInOrder(candidates, now).stream().map(StravaSyncCandidateDto::userId).toList();
+
+        assertEquals(List.of(6L, 3L, 4L, 1L), order);
+    }
+
+    @Test
+    void dispatch_syncsDueUsers_warmsDashboardsOfActiveOnly() {
+        when(syncStateRepository.findSyncCandidates()).thenReturn(List.of(
+                new StravaSyncCandidateDto(1L, null, now.minusHours(1)),
+                new StravaSyncCandidateDto(2L, null, null)));
+
+        scheduler.dispatchDue();
+
+        verify(stravaService, timeout(5000)).syncUser(argUser(1L));
+        verify(stravaService, timeout(5000)).syncUser(argUser(2L));
+        verify(dashboardService, timeout(5000)).getDashboard(argUser(1L));
+        verify(dashboardService, never()).getDashboard(argUser(2L));
+    }
+
+    @Test
+    void leasedElsewhere_noDashboardBuilt() {
+        when(stravaService.syncUser(any())).thenReturn(false);
+
+        scheduler.process(new StravaSyncCandidateDto(1L, null, now.minusHours(1)));
+
+        verify(stravaService).syncUser(argUser(1L));
+        verifyNoInteractions(dashboardService);
+    }
+
+    @Test
+    void quotaReserveReached_nothingSynced() {
+        rateLimiter.update("100,1000", "60,100");
+
+        scheduler.process(new StravaSyncCandidateDto(1L, null, now.minusHours(1)));
+        when(syncStateRepository.findSyncCandidates()).thenReturn(List.of(new StravaSyncCandidateDto(2L, null, null)));
+        scheduler.dispatchDue();
+
+        verifyNoInteractions(stravaService, syncStateRepository);
+    }
+
+    @Test
+    void failedSync_notRetriedBeforeBackoff() {
+        when(stravaService.syncUser(any())).thenThrow(new RuntimeException("Failed to fetch Strava activities"));
+        StravaSyncCandidateDto candidate = new StravaSyncCandidateDto(1L, null, null);
+        when(syncStateRepository.findSyncCandidates()).thenReturn(List.of(candidate));
+
+        scheduler.process(candidate);
+        scheduler.dispatchDue();
+
+        verify(stravaService, after(300).times(1)).syncUser(any());
+    }
+
+    @Test
+    void dashboardWarmUpFails_syncNotBackedOff() {
+        when(dashboardService.getDashboard(any())).thenThrow(new IllegalStateException("boom"));
+        StravaSyncCandidateDto candidate = new StravaSyncCandidateDto(1L, null, now.minusHours(1));
+        when(syncStateRepository.findSyncCandidates()).thenReturn(List.of(candidate));
+
+        scheduler.process(candidate);
+        scheduler.dispatchDue();
+
+        verify(stravaService, timeout(5000).times(2)).syncUser(argUser(1L));
+    }
+
+    // ── Helpers ──────────────────────────────────────────────────────────────
+
+    private static User argUser(long id) {
+        return argThat(u -> u != null && u.getId() == id);
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
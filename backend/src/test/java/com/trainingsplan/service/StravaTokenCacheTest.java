@@ -0,0 +1,246 @@
+package com.trainingsplan.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.trainingsplan.entity.StravaToken;
+import com.trainingsplan.repository.StravaTokenRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link StravaTokenCache} against a local stub of Strava's OAuth token endpoint.
+ * The token repository is mocked.
+ */
+class StravaTokenCacheTest {
+
+    private HttpServer server;
+    private final AtomicInteger refreshRequests = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile long responseDelayMillis;
+    private volatile String rejectedRefreshToken;
+
+    private StravaTokenRepository tokenRepository;
+    private StravaTokenCache cache;
+    private StravaToken token;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/oauth/token", this::tokenEndpoint);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        tokenRepository = mock(StravaTokenRepository.class);
+        token = new StravaToken();
+        token.setId(1L);
+        token.setAccessToken("old-access");
+        token.setRefreshToken("old-refresh");
+        when(tokenRepository.findByUserId(7L)).thenReturn(Optional.of(token));
+        when(tokenRepository.findById(1L)).thenReturn(Optional.of(token));
+        when(tokenRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        cache = cache(60);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void validToken_servedFromMemory() {
+        token.setExpiresAt(now() + 7200);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Optional.of("old-access"), cache.accessToken(7L));
+        }
+
+        verify(tokenRepository, times(1)).findByUserId(7L);
+        assertEquals(0, refreshRequests.get());
+    }
+
+    @Test
+    void concurrentCallers_shareOneRefresh() throws Exception {
+        token.setExpiresAt(now() + 60);
+        responseDelayMillis = 300;
+        cache.isConnected(7L);
+
+        int callers = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        List<Future<Optional<String>>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return cache.accessToken(7L);
+            }));
+        }
+        start.countDown();
+        for (Future<Optional<String>> result : results) {
+            assertEquals(Optional.of("new-access"), result.get());
+        }
+        pool.shutdown();
+
+        assertEquals(1, refreshRequests.get());
+        assertEquals("new-refresh", token.getRefreshToken());
+        assertEquals(Optional.of("new-access"), cache.accessToken(7L));
+        assertEquals(1, refreshRequests.get());
+    }
+
+    @Test
+    void backgroundRefresh_renewsTokensAheadOfExpiry() {
+        token.setExpiresAt(now() + 600);
+        assertEquals(Optional.of("old-access"), cache.accessToken(7L));
+        assertEquals(0, refreshRequests.get());
+
+        cache.refreshExpiring();
+
+        assertEquals(1, refreshRequests.get());
+        assertEquals(Optional.of("new-access"), cache.accessToken(7L));
+        cache.refreshExpiring();
+        assertEquals(1, refreshRequests.get());
+    }
+
+    @Test
+    void failedRefresh_thrown_nextCallRetries() {
+        token.setExpiresAt(now() - 10);
+        status = 500;
+
+        assertThrows(RuntimeException.class, () -> cache.accessToken(7L));
+
+        status = 200;
+        assertEquals(Optional.of("new-access"), cache.accessToken(7L));
+        assertEquals(2, refreshRequests.get());
+    }
+
+    @Test
+    void revoked_onlyWhenStravaRejectsTheRefreshToken() {
+        token.setExpiresAt(now() + 7200);
+        assertFalse(cache.isRevoked(7L));
+        assertEquals(1, refreshRequests.get());
+
+        rejectedRefreshToken = "new-refresh";
+        assertTrue(cache.isRevoked(7L));
+
+        status = 500;
+        rejectedRefreshToken = null;
+        assertFalse(cache.isRevoked(7L));
+    }
+
+    @Test
+    void notConnected_rememberedUntilPut() {
+        assertFalse(cache.isConnected(8L));
+        assertEquals(Optional.empty(), cache.accessToken(8L));
+        verify(tokenRepository, times(1)).findByUserId(8L);
+
+        StravaToken connected = new StravaToken();
+        connected.setId(2L);
+        connected.setAccessToken("fresh");
+        connected.setExpiresAt(now() + 7200);
+        cache.put(8L, connected);
+
+        assertEquals(Optional.of("fresh"), cache.accessToken(8L));
+    }
+
+    @Test
+    void notConnected_recheckedAfterTtl() {
+        cache.shutdown();
+        cache = cache(0);
+        assertFalse(cache.isConnected(8L));
+
+        StravaToken connectedElsewhere = new StravaToken();
+        connectedElsewhere.setId(2L);
+        connectedElsewhere.setAccessToken("fresh");
+        connectedElsewhere.setExpiresAt(now() + 7200);
+        when(tokenRepository.findByUserId(8L)).thenReturn(Optional.of(connectedElsewhere));
+
+        assertEquals(Optional.of("fresh"), cache.accessToken(8L));
+    }
+
+    @Test
+    void refreshTokenRotatedElsewhere_reloadedAndRetriedOnce() {
+        token.setExpiresAt(now() + 60);
+        cache.isConnected(7L);
+        // Another instance refreshed meanwhile: the cached refresh token is spent
+        token.setRefreshToken("rotated-refresh");
+        rejectedRefreshToken = "old-refresh";
+
+        assertEquals(Optional.of("new-access"), cache.accessToken(7L));
+
+        assertEquals(2, refreshRequests.get());
+        assertEquals("new-refresh", token.getRefreshToken());
+    }
+
+    @Test
+    void refreshRejected_tokenUnchanged_thrown() {
+        token.setExpiresAt(now() + 60);
+        rejectedRefreshToken = "old-refresh";
+
+        assertThrows(RuntimeException.class, () -> cache.accessToken(7L));
+        assertEquals(1, refreshRequests.get());
+    }
+
+    @Test
+    void evict_reloadsFromDatabase() {
+        token.setExpiresAt(now() + 7200);
+        cache.accessToken(7L);
+
+        cache.evict(7L);
+        when(tokenRepository.findByUserId(7L)).thenReturn(Optional.empty());
+
+        assertFalse(cache.isConnected(7L));
+    }
+
+    // ── Helpers ──────────────────────────────────────────────────────────────
+
+    private StravaTokenCache cache(long absentTtlSeconds) {
+        return new StravaTokenCache(tokenRepository, new ObjectMapper(), "client", "secret",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/oauth/token", 900, 60, absentTtlSeconds);
+    }
+
+    private void tokenEndpoint(HttpExchange exchange) throws IOException {
+        refreshRequests.incrementAndGet();
+        String form = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(form.contains("grant_type=refresh_token"), form);
+        int status = rejectedRefreshToken != null && form.endsWith("refresh_token=" + rejectedRefreshToken)
+                ? 400 : this.status;
+        try {
+            Thread.sleep(responseDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        String body = status == 200
+                ? "{\"access_token\":\"new-access\",\"refresh_token\":\"new-refresh\",\"expires_at\":" + (now() + 21600) + "}"
+                : "{\"message\":\"error\"}";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static long now() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
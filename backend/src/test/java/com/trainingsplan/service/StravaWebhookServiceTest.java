@@ -0,0 +1,348 @@
+package com.trainingsplan.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.trainingsplan.dto.StravaWebhookEventDto;
+import com.trainingsplan.entity.StravaToken;
+import com.trainingsplan.entity.StravaWebhookAction;
+import com.trainingsplan.entity.StravaWebhookEvent;
+import com.trainingsplan.entity.User;
+import com.trainingsplan.repository.StravaTokenRepository;
+import com.trainingsplan.repository.StravaWebhookEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Replays Strava webhook payloads against {@link StravaWebhookService}, with the activity
+ * endpoint served by a local stub. The event queue is an in-memory stand-in for the
+ * repository; applying activities is verified on a mocked {@link StravaService}.
+ */
+class StravaWebhookServiceTest {
+
+    private static final long ATHLETE = 4242L;
+
+    private HttpServer server;
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private volatile int status = 200;
+    /** Athlete reported as owner of activities served by the stub. */
+    private final Map<Long, Long> activityOwners = new ConcurrentHashMap<>();
+
+    private final Map<Long, StravaWebhookEvent> queue = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private StravaWebhookEventRepository eventRepository;
+    private StravaTokenRepository tokenRepository;
+    private StravaService stravaService;
+    private StravaTokenCache tokenCache;
+    private StravaSyncLease syncLease;
+    private StravaRateLimiter rateLimiter;
+    private StravaWebhookService service;
+    private User user;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/activities/", this::activity);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        eventRepository = inMemoryQueue();
+        tokenRepository = mock(StravaTokenRepository.class);
+        stravaService = mock(StravaService.class);
+        tokenCache = mock(StravaTokenCache.class);
+        syncLease = mock(StravaSyncLease.class);
+        rateLimiter = new StravaRateLimiter(100, 1000);
+
+        user = new User();
+        user.setId(7L);
+        StravaToken token = new StravaToken();
+        token.setAthleteId(ATHLETE);
+        token.setUser(user);
+        when(tokenRepository.findByAthleteIdWithUser(ATHLETE)).thenReturn(Optional.of(token));
+        when(tokenCache.accessToken(7L)).thenReturn(Optional.of("token-1"));
+        when(syncLease.tryAcquire(user)).thenReturn(Optional.of("lease-1"));
+
+        service = service(99L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void burstOfEvents_collapsesToOneFetchPerActivity() throws IOException {
+        replay("""
+                {"object_type":"activity","object_id":1,"aspect_type":"create","owner_id":4242,"subscription_id":99,"event_time":100}
+                {"object_type":"activity","object_id":1,"aspect_type":"update","owner_id":4242,"subscription_id":99,"event_time":101,"updates":{"title":"Tempo"}}
+                {"object_type":"activity","object_id":2,"aspect_type":"create","owner_id":4242,"subscription_id":99,"event_time":102}
+                {"object_type":"activity","object_id":1,"aspect_type":"update","owner_id":4242,"subscription_id":99,"event_time":103,"updates":{"type":"Run"}}
+                """);
+
+        assertEquals(2, queue.size());
+        processAll();
+
+        assertEquals(List.of("/activities/1 Bearer token-1", "/activities/2 Bearer token-1"), requests.stream().sorted().toList());
+        verify(stravaService).applyActivity(argThat(a -> a.getId() == 1L && "Run 1".equals(a.getName())), eq(user));
+        verify(stravaService).applyActivity(argThat(a -> a.getId() == 2L), eq(user));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void deleteReplacesQueuedCreate_removedOnceStravaConfirms() throws IOException {
+        status = 404;
+        replay("""
+                {"object_type":"activity","object_id":5,"aspect_type":"create","owner_id":4242,"subscription_id":99,"event_time":100}
+                {"object_type":"activity","object_id":5,"aspect_type":"delete","owner_id":4242,"subscription_id":99,"event_time":105}
+                {"object_type":"activity","object_id":5,"aspect_type":"update","owner_id":4242,"subscription_id":99,"event_time":104}
+                """);
+
+        assertEquals(StravaWebhookAction.DELETE, queue.get(5L).getAction());
+        processAll();
+
+        assertEquals(List.of("/activities/5 Bearer token-1"), requests);
+        verify(stravaService).removeActivity(5L, user);
+        verify(stravaService, never()).applyActivity(any(), any());
+    }
+
+    @Test
+    void activityGoneOnStrava_removedLocally() throws IOException {
+        status = 404;
+        replay("{\"object_type\":\"activity\",\"object_id\":6,\"aspect_type\":\"update\",\"owner_id\":4242,\"subscription_id\":99,\"event_time\":1}");
+
+        processAll();
+
+        verify(stravaService).removeActivity(6L, user);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void forgedDelete_activityStillOnStrava_notRemoved() throws IOException {
+        replay("{\"object_type\":\"activity\",\"object_id\":12,\"aspect_type\":\"delete\",\"owner_id\":4242,\"subscription_id\":99,\"event_time\":1}");
+
+        processAll();
+
+        verify(stravaService, never()).removeActivity(any(), any());
+        verify(stravaService).applyActivity(argThat(a -> a.getId() == 12L), eq(user));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void activityOfAnotherAthlete_ignored() throws IOException {
+        activityOwners.put(13L, 999L);
+        activityOwners.put(14L, 999L);
+        replay("""
+                {"object_type":"activity","object_id":13,"aspect_type":"update","owner_id":4242,"subscription_id":99,"event_time":1}
+                {"object_type":"activity","object_id":14,"aspect_type":"delete","owner_id":4242,"subscription_id":99,"event_time":1}
+                """);
+
+        processAll();
+
+        verifyNoInteractions(stravaService);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void noSubscriptionConfigured_everyEventRefused() throws IOException {
+        service.shutdown();
+        service = service(null);
+
+        replay("""
+                {"object_type":"activity","object_id":15,"aspect_type":"delete","owner_id":4242,"subscription_id":99,"event_time":1}
+                {"object_type":"athlete","object_id":4242,"aspect_type":"update","owner_id":4242,"subscription_id":99,"event_time":1,"updates":{"authorized":"false"}}
+                """);
+
+        assertTrue(queue.isEmpty());
+        verify(tokenCache, after(300).never()).isRevoked(any());
+        verifyNoInteractions(stravaService);
+    }
+
+    @Test
+    void rateLimited_postponedWithoutAttempt() throws IOException {
+        status = 429;
+        replay("{\"object_type\":\"activity\",\"object_id\":8,\"aspect_type\":\"create\",\"owner_id\":4242,\"subscription_id\":99,\"event_time\":1}");
+        StravaWebhookEvent event = queue.get(8L);
+
+        service.process(event);
+
+        assertEquals(0, event.getAttempts());
+        assertTrue(event.getNextAttemptAt().isAfter(LocalDateTime.now()));
+        assertTrue(rateLimiter.waitMillis() > 0);
+        verifyNoInteractions(stravaService);
+    }
+
+    @Test
+    void userLeasedBySync_postponedWithoutAttempt_appliedUnderLeaseLater() throws IOException {
+        when(syncLease.tryAcquire(user)).thenReturn(Optional.empty());
+        replay("{\"object_type\":\"activity\",\"object_id\":16,\"aspect_type\":\"create\",\"owner_id\":4242,\"subscription_id\":99,\"event_time\":1}");
+        StravaWebhookEvent event = queue.get(16L);
+
+        service.process(event);
+
+        assertEquals(0, event.getAttempts());
+        assertTrue(event.getNextAttemptAt().isAfter(LocalDateTime.now()));
+        verifyNoInteractions(stravaService);
+
+        when(syncLease.tryAcquire(user)).thenReturn(Optional.of("lease-2"));
+        service.process(event);
+
+        verify(stravaService).applyActivity(argThat(a -> a.getId() == 16L), eq(user));
+        verify(syncLease).release(7L, "lease-2");
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void serverError_retriedThenGivenUp() throws IOException {
+        status = 500;
+        replay("{\"object_type\":\"activity\",\"object_id\":8,\"aspect_type\":\"create\",\"owner_id\":4242,\"subscription_id\":99,\"event_time\":1}");
+        StravaWebhookEvent event = queue.get(8L);
+
+        service.process(event);
+        service.process(event);
+        assertEquals(2, event.getAttempts());
+        assertNotNull(event.getLastError());
+        service.process(event);
+
+        assertTrue(queue.isEmpty());
+        verifyNoInteractions(stravaService);
+    }
+
+    @Test
+    void foreignSubscriptionAndUnknownAthlete_ignored() throws IOException {
+        replay("""
+                {"object_type":"activity","object_id":9,"aspect_type":"create","owner_id":4242,"subscription_id":1,"event_time":1}
+                {"object_type":"activity","object_id":10,"aspect_type":"create","owner_id":777,"subscription_id":99,"event_time":1}
+                """);
+
+        assertEquals(1, queue.size());
+        processAll();
+
+        assertTrue(requests.isEmpty());
+        assertTrue(queue.isEmpty());
+        verifyNoInteractions(stravaService);
+    }
+
+    @Test
+    void deauthorization_confirmedByStrava_disconnects() throws IOException {
+        when(tokenCache.isRevoked(7L)).thenReturn(true);
+
+        replay("{\"object_type\":\"athlete\",\"object_id\":4242,\"aspect_type\":\"update\",\"owner_id\":4242,"
+                + "\"subscription_id\":99,\"event_time\":1,\"updates\":{\"authorized\":\"false\"}}");
+
+        assertTrue(queue.isEmpty());
+        verify(stravaService, timeout(5000)).disconnect(7L);
+    }
+
+    @Test
+    void forgedDeauthorization_tokenStillValid_staysConnected() throws IOException {
+        when(tokenCache.isRevoked(7L)).thenReturn(false);
+
+        replay("{\"object_type\":\"athlete\",\"object_id\":4242,\"aspect_type\":\"update\",\"owner_id\":4242,"
+                + "\"subscription_id\":99,\"event_time\":1,\"updates\":{\"authorized\":\"false\"}}");
+
+        verify(tokenCache, timeout(5000)).isRevoked(7L);
+        verify(stravaService, after(300).never()).disconnect(any());
+    }
+
+    @Test
+    void receive_processedInBackground_underClaim() throws IOException {
+        service.receive(event("{\"object_type\":\"activity\",\"object_id\":11,\"aspect_type\":\"create\",\"owner_id\":4242,\"subscription_id\":99,\"event_time\":1}"));
+
+        verify(stravaService, timeout(5000)).applyActivity(argThat(a -> a.getId() == 11L), eq(user));
+        verify(eventRepository).claim(eq(1L), any(), any(), any());
+        verify(eventRepository, timeout(5000)).release(eq(1L), any());
+    }
+
+    @Test
+    void subscriptionHandshake_requiresVerifyToken() {
+        assertEquals(Optional.of("abc"), service.verifySubscription("subscribe", "secret", "abc"));
+        assertTrue(service.verifySubscription("subscribe", "wrong", "abc").isEmpty());
+        assertTrue(service.verifySubscription("unsubscribe", "secret", "abc").isEmpty());
+    }
+
+    // ── Helpers ──────────────────────────────────────────────────────────────
+
+    private StravaWebhookService service(Long subscriptionId) {
+        return new StravaWebhookService(eventRepository, tokenRepository, stravaService, tokenCache,
+                rateLimiter, syncLease, objectMapper, mock(PlatformTransactionManager.class),
+                "http://127.0.0.1:" + server.getAddress().getPort(), "secret", subscriptionId, 2, 3, 30, 30, 300);
+    }
+
+    /** Feeds one webhook payload per line, as Strava would POST them. */
+    private void replay(String payloads) throws IOException {
+        for (String line : payloads.strip().split("\n")) {
+            service.enqueue(event(line));
+        }
+    }
+
+    private StravaWebhookEventDto event(String json) throws IOException {
+        return objectMapper.readValue(json, StravaWebhookEventDto.class);
+    }
+
+    private void processAll() {
+        List.copyOf(queue.values()).forEach(service::process);
+    }
+
+    private void activity(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        requests.add(path + " " + exchange.getRequestHeaders().getFirst("Authorization"));
+        String id = path.substring(path.lastIndexOf('/') + 1);
+        long owner = activityOwners.getOrDefault(Long.parseLong(id), ATHLETE);
+        String body = status == 200
+                ? "{\"id\":" + id + ",\"name\":\"Run " + id + "\",\"sport_type\":\"Run\",\"start_date\":\"2025-06-01T06:00:00Z\","
+                  + "\"start_date_local\":\"2025-06-01T08:00:00Z\",\"distance\":10000.0,\"moving_time\":3000,"
+                  + "\"athlete\":{\"id\":" + owner + ",\"resource_state\":1}}"
+                : "{\"message\":\"error\"}";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /** Keeps queued events keyed by activity id, like the unique column of the table. */
+    private StravaWebhookEventRepository inMemoryQueue() {
+        StravaWebhookEventRepository repository = mock(StravaWebhookEventRepository.class);
+        AtomicLong ids = new AtomicLong();
+        when(repository.findByStravaActivityId(any())).thenAnswer(inv -> Optional.ofNullable(queue.get(inv.<Long>getArgument(0))));
+        when(repository.save(any())).thenAnswer(inv -> {
+            StravaWebhookEvent event = inv.getArgument(0);
+            if (event.getId() == null) event.setId(ids.incrementAndGet());
+            queue.put(event.getStravaActivityId(), event);
+            return event;
+        });
+        doAnswer(inv -> queue.remove(inv.<StravaWebhookEvent>getArgument(0).getStravaActivityId()))
+                .when(repository).delete(any());
+        when(repository.findById(any())).thenAnswer(inv -> queue.values().stream()
+                .filter(e -> e.getId().equals(inv.getArgument(0))).findFirst());
+        when(repository.claim(any(), any(), any(), any())).thenReturn(1);
+        when(repository.findDue(any(), any()))
+                .thenAnswer(inv -> queue.values().stream()
+                        .filter(e -> !e.getNextAttemptAt().isAfter(inv.getArgument(0)))
+                        .toList());
+        return repository;
+    }
+}
@@ -0,0 +1,122 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.entity.AggregateGranularity;
+import com.trainingsplan.repository.TrainingAggregateWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link TrainingAggregateService}: which buckets are rebuilt for a set of
+ * changed training dates, and when.
+ */
+class TrainingAggregateServiceTest {
+
+    private TrainingAggregateWriter writer;
+    private TrainingAggregateService service;
+
+    @BeforeEach
+    void setUp() {
+        writer = mock(TrainingAggregateWriter.class);
+        service = new TrainingAggregateService(writer, mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void activitiesChanged_rebuildsDaysAndContainingPeriodsOnce() {
+        LocalDate tue = LocalDate.of(2026, 3, 3);
+        LocalDate mon = LocalDate.of(2026, 3, 2);
+        LocalDate newYearsEve = LocalDate.of(2025, 12, 31);
+
+        service.activitiesChanged(5L, List.of(tue, mon, tue, newYearsEve));
+
+        verify(writer).rebuildDays(5L, Set.of(tue, mon, newYearsEve));
+        verify(writer).rollUp(5L, AggregateGranularity.WEEK, Set.of(mon, LocalDate.of(2025, 12, 29)));
+        verify(writer).rollUp(5L, AggregateGranularity.MONTH, Set.of(LocalDate.of(2026, 3, 1), LocalDate.of(2025, 12, 1)));
+        verify(writer).rollUp(5L, AggregateGranularity.YEAR, Set.of(LocalDate.of(2026, 1, 1), LocalDate.of(2025, 1, 1)));
+        verifyNoMoreInteractions(writer);
+    }
+
+    @Test
+    void activitiesChanged_withoutUserOrDates_doesNothing() {
+        service.activitiesChanged(null, List.of(LocalDate.of(2026, 3, 3)));
+        service.activitiesChanged(5L, List.of());
+
+        verifyNoInteractions(writer);
+    }
+
+    @Test
+    void activitiesChanged_insideTransaction_deferredUntilCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.activitiesChanged(5L, List.of(LocalDate.of(2026, 3, 3)));
+            verifyNoInteractions(writer);
+
+            for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+                sync.afterCommit();
+            }
+            verify(writer).rebuildDays(any(), any());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void rebuildForUser_rollsUpEveryDayWithActivities() {
+        when(writer.rebuildAllDays(5L)).thenReturn(List.of(LocalDate.of(2024, 6, 10), LocalDate.of(2026, 3, 3)));
+
+        service.rebuildForUser(5L);
+
+        verify(writer).rollUp(5L, AggregateGranularity.YEAR, Set.of(LocalDate.of(2024, 1, 1), LocalDate.of(2026, 1, 1)));
+    }
+
+    @Test
+    void rebuild_deadlocked_retried() {
+        doThrow(new DeadlockLoserDataAccessException("deadlock", null)).doNothing()
+                .when(writer).rebuildDays(any(), any());
+
+        service.activitiesChanged(5L, List.of(LocalDate.of(2026, 3, 3)));
+
+        verify(writer, times(2)).rebuildDays(any(), any());
+        verify(writer, times(3)).rollUp(eq(5L), any(), any());
+    }
+
+    @Test
+    void rebuild_failing_doesNotFailTheChange() {
+        doThrow(new DataAccessResourceFailureException("gone")).when(writer).rebuildDays(any(), any());
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.activitiesChanged(5L, List.of(LocalDate.of(2026, 3, 3)));
+
+            for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+                assertDoesNotThrow(sync::afterCommit);
+            }
+            verify(writer).rebuildDays(any(), any());
+            verify(writer, never()).rollUp(any(), any(), any());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void granularity_periodBounds() {
+        LocalDate date = LocalDate.of(2024, 2, 15); // Thursday, leap year
+        assertEquals(LocalDate.of(2024, 2, 12), AggregateGranularity.WEEK.start(date));
+        assertEquals(LocalDate.of(2024, 2, 18), AggregateGranularity.WEEK.end(LocalDate.of(2024, 2, 12)));
+        assertEquals(LocalDate.of(2024, 2, 29), AggregateGranularity.MONTH.end(AggregateGranularity.MONTH.start(date)));
+        assertEquals(LocalDate.of(2024, 12, 31), AggregateGranularity.YEAR.end(AggregateGranularity.YEAR.start(date)));
+        assertEquals(date, AggregateGranularity.DAY.end(AggregateGranularity.DAY.start(date)));
+    }
+}
@@ -9,7 +9,9 @@ import org.mockito.ArgumentCaptor;
 import pacr.training.simulation.dto.WorkoutImpactDTO;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
@@ -17,6 +19,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -86,5 +89,49 @@ class TrainingImpactServiceTest {
         assertThrows(IllegalArgumentException.class, () -> service.predictImpact("1", null));
         verifyNoInteractions(athleteStateService, trainingImpactEngine);
     }
-}
 
+    @Test
+    void predictImpacts_loadsStateOnce_resultsInRequestOrder() {
+        AthleteStateDTO athleteStateDto = new AthleteStateDTO();
+        athleteStateDto.setFatigueScore(30);
+        when(athleteStateService.getAthleteState(7L)).thenReturn(athleteStateDto);
+        when(trainingImpactEngine.predictImpact(any(Workout.class), any(AthleteState.class)))
+                .thenAnswer(inv -> WorkoutImpactDTO.builder()
+                        .predictedTRIMP(inv.<Workout>getArgument(0).durationMinutes())
+                        .build());
+
+        // Large enough to be evaluated in parallel
+        List<Workout> workouts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            workouts.add(new Workout(LocalDate.of(2026, 3, 5), "Run " + i, 5.0, i, 330, 145));
+        }
+
+        List<WorkoutImpactDTO> impacts = service.predictImpacts("7", workouts);
+
+        assertEquals(100, impacts.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, impacts.get(i).getPredictedTRIMP());
+        }
+        verify(athleteStateService, times(1)).getAthleteState(7L);
+
+        ArgumentCaptor<AthleteState> stateCaptor = ArgumentCaptor.forClass(AthleteState.class);
+        verify(trainingImpactEngine, times(100)).predictImpact(any(Workout.class), stateCaptor.capture());
+        AthleteState shared = stateCaptor.getAllValues().get(0);
+        stateCaptor.getAllValues().forEach(state -> assertSame(shared, state));
+        assertEquals(0.3, shared.fatigue());
+    }
+
+    @Test
+    void predictImpacts_rejectsEmptyOversizedAndNullEntries() {
+        Workout workout = new Workout(LocalDate.of(2026, 3, 5), "Easy", 5.0, 30, 360, 140);
+        List<Workout> withNull = new ArrayList<>();
+        withNull.add(workout);
+        withNull.add(null);
+
+        assertThrows(IllegalArgumentException.class, () -> service.predictImpacts("7", List.of()));
+        assertThrows(IllegalArgumentException.class, () -> service.predictImpacts("7",
+                Collections.nCopies(TrainingImpactService.MAX_BATCH_SIZE + 1, workout)));
+        assertThrows(IllegalArgumentException.class, () -> service.predictImpacts("7", withNull));
+        verifyNoInteractions(athleteStateService, trainingImpactEngine);
+    }
+}
@@ -0,0 +1,116 @@
+package com.trainingsplan.service;
+
+import com.trainingsplan.dto.TrainingStatsDto;
+import com.trainingsplan.dto.TrainingStatsSumDto;
+import com.trainingsplan.entity.AggregateGranularity;
+import com.trainingsplan.repository.TrainingAggregateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link TrainingStatsService}: buckets are built from the materialized
+ * training aggregates of the matching granularity.
+ */
+class TrainingStatsServiceTest {
+
+    private TrainingAggregateRepository repository;
+    private TrainingStatsService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(TrainingAggregateRepository.class);
+        service = new TrainingStatsService();
+        injectField(service, "trainingAggregateRepository", repository);
+    }
+
+    @Test
+    void week_readsWeekBuckets_fromStartOfFirstWeek() {
+        LocalDate today = LocalDate.now();
+        LocalDate monday = AggregateGranularity.WEEK.start(today);
+        LocalDate firstMonday = AggregateGranularity.WEEK.start(today.minusWeeks(12));
+        when(repository.sumByPeriod(eq(1L), eq(AggregateGranularity.WEEK), eq(firstMonday), eq(today), isNull(), isNull()))
+                .thenReturn(List.of(new TrainingStatsSumDto(monday, 15.006, 5400L, 70L, 3L)));
+
+        TrainingStatsDto stats = service.getStats(1L, "week", null, null);
+
+        assertEquals(firstMonday.toString(), stats.getBuckets().get(0).getStartDate());
+        TrainingStatsDto.Bucket current = stats.getBuckets().get(stats.getBuckets().size() - 1);
+        assertEquals(monday.toString(), current.getStartDate());
+        assertEquals(15.01, current.getDistanceKm(), 1e-9);
+        assertEquals(5400, current.getDurationSeconds());
+        assertEquals(70, current.getElevationGainM());
+        assertEquals(3, current.getActivityCount());
+        assertEquals(3, stats.getTotalActivityCount());
+    }
+
+    @Test
+    void day_readsDayBuckets() {
+        LocalDate today = LocalDate.now();
+        when(repository.sumByPeriod(eq(1L), eq(AggregateGranularity.DAY), eq(today.minusDays(29)), eq(today), any(), any()))
+                .thenReturn(List.of(new TrainingStatsSumDto(today.minusDays(1), 8.0, 2400L, 10L, 1L)));
+
+        TrainingStatsDto stats = service.getStats(1L, "day", null, null);
+
+        assertEquals(30, stats.getBuckets().size());
+        assertEquals(8.0, stats.getBuckets().get(28).getDistanceKm(), 1e-9);
+        assertEquals(1, stats.getTotalActivityCount());
+    }
+
+    @Test
+    void year_onlyYearsWithData() {
+        when(repository.sumByPeriod(eq(1L), eq(AggregateGranularity.YEAR), any(), any(), any(), any())).thenReturn(List.of(
+                new TrainingStatsSumDto(LocalDate.of(2021, 1, 1), 100.0, 36000L, 0L, 10L),
+                new TrainingStatsSumDto(LocalDate.of(2023, 1, 1), 50.0, 18000L, 0L, 5L)));
+
+        TrainingStatsDto stats = service.getStats(1L, "year", null, null);
+
+        assertEquals(List.of("2021", "2023"), stats.getBuckets().stream().map(TrainingStatsDto.Bucket::getLabel).toList());
+        assertEquals(150.0, stats.getTotalDistanceKm(), 1e-9);
+        assertEquals(15, stats.getTotalActivityCount());
+    }
+
+    @Test
+    void month_prePopulatesEmptyMonths() {
+        LocalDate today = LocalDate.now();
+        when(repository.sumByPeriod(eq(1L), eq(AggregateGranularity.MONTH), any(), any(), any(), any())).thenReturn(List.of(
+                new TrainingStatsSumDto(today.withDayOfMonth(1), 42.0, 7200L, 100L, 3L)));
+
+        TrainingStatsDto stats = service.getStats(1L, "month", null, null);
+
+        assertEquals(13, stats.getBuckets().size());
+        assertEquals(42.0, stats.getBuckets().get(12).getDistanceKm(), 1e-9);
+        assertEquals(0, stats.getBuckets().get(0).getActivityCount());
+    }
+
+    @Test
+    void all_singleBucket_filtersPassedLowerCased_blankIgnored() {
+        when(repository.sumTotal(eq(1L), eq(AggregateGranularity.YEAR), any(), any(), eq("tempo"), isNull()))
+                .thenReturn(new TrainingStatsSumDto(21.1, 5400L, 80L, 1L));
+
+        TrainingStatsDto stats = service.getStats(1L, "all", "Tempo", " ");
+
+        assertEquals(1, stats.getBuckets().size());
+        assertEquals("Gesamt", stats.getBuckets().get(0).getLabel());
+        assertEquals(21.1, stats.getTotalDistanceKm(), 1e-9);
+        assertEquals(5400, stats.getTotalDurationSeconds());
+    }
+
+    private void injectField(Object target, String fieldName, Object value) {
+        try {
+            var field = target.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to inject field: " + fieldName, e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.trainingsplan.service.stream;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActivityStreamCodecTest {
+
+    @Test
+    void roundTrip_allChannels() {
+        ActivityStream in = new ActivityStream().withVelocity().withDistance();
+        double d = 0;
+        for (int t = 0; t < 3600; t += (t % 7 == 0 ? 2 : 1)) {
+            int i = in.append(t);
+            if (t % 13 != 0) in.setHeartRate(i, 110 + t % 70);
+            if (t % 17 != 0) in.setVelocity(i, 2.5 + (t % 10) * 0.0371);
+            d += 2.9;
+            if (t % 19 != 0) in.setDistance(i, d);
+        }
+
+        byte[] bytes = ActivityStreamCodec.encode(in);
+        ActivityStream out = ActivityStreamCodec.decode(ByteBuffer.wrap(bytes));
+
+        assertTrue(bytes.length < in.size() * 7, "encoded size " + bytes.length);
+        assertEquals(in.size(), out.size());
+        assertTrue(out.hasVelocityChannel());
+        assertTrue(out.hasDistanceChannel());
+        for (int i = 0; i < in.size(); i++) {
+            assertEquals(in.time(i), out.time(i));
+            assertEquals(in.hasHeartRate(i), out.hasHeartRate(i));
+            assertEquals(in.heartRate(i), out.heartRate(i));
+            assertEquals(in.hasVelocity(i), out.hasVelocity(i));
+            assertEquals(in.velocity(i), out.velocity(i), 0.005 + 1e-6);
+            assertEquals(in.hasDistance(i), out.hasDistance(i));
+            assertEquals(in.distance(i), out.distance(i), 0.05 + 1e-3);
+        }
+    }
+
+    @Test
+    void roundTrip_hrOnly_noOptionalChannels() {
+        ActivityStream in = new ActivityStream();
+        in.setHeartRate(in.append(0), 300); // clamped to 8 bits
+        in.append(5);
+        in.setHeartRate(in.append(4), 90);  // non-monotonic time survives
+
+        ActivityStream out = ActivityStreamCodec.decode(ByteBuffer.wrap(ActivityStreamCodec.encode(in)));
+
+        assertFalse(out.hasVelocityChannel());
+        assertFalse(out.hasDistanceChannel());
+        assertEquals(255, out.heartRate(0));
+        assertFalse(out.hasHeartRate(1));
+        assertEquals(4, out.time(2));
+        assertEquals(90, out.heartRate(2));
+    }
+
+    @Test
+    void emptyStream_roundTrips() {
+        ActivityStream out = ActivityStreamCodec.decode(
+                ByteBuffer.wrap(ActivityStreamCodec.encode(new ActivityStream())));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    void truncatedOrForeignData_rejected() {
+        ActivityStream in = new ActivityStream();
+        for (int t = 0; t < 100; t++) in.setHeartRate(in.append(t), 140);
+        byte[] bytes = ActivityStreamCodec.encode(in);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> ActivityStreamCodec.decode(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 10))));
+        assertThrows(IllegalArgumentException.class,
+                () -> ActivityStreamCodec.decode(ByteBuffer.wrap(new byte[]{'P', 'K', 3, 4, 0, 0})));
+    }
+}
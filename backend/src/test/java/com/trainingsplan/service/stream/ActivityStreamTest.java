@@ -0,0 +1,117 @@
+package com.trainingsplan.service.stream;
+
+import com.trainingsplan.service.AerobicDecouplingCalculator;
+import com.trainingsplan.service.TRIMPCalculator;
+import com.trainingsplan.service.ZoneTimeCalculator;
+import com.trainingsplan.service.decoupling.DecouplingResult;
+import com.trainingsplan.service.hrzone.HeartRateZoneConfig;
+import com.trainingsplan.service.hrzone.ZoneTimeResult;
+import com.trainingsplan.service.trimp.TRIMPResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActivityStreamTest {
+
+    // ── Buffer semantics ──────────────────────────────────────────────────────
+
+    @Test
+    void append_growsBeyondInitialCapacity() {
+        ActivityStream stream = new ActivityStream(16).withVelocity().withDistance();
+        for (int t = 0; t < 5000; t++) {
+            int i = stream.append(t);
+            stream.setHeartRate(i, 100 + t % 50);
+            stream.setVelocity(i, 3.0);
+            stream.setDistance(i, t * 3.0);
+        }
+
+        assertEquals(5000, stream.size());
+        assertEquals(4999, stream.time(4999));
+        assertEquals(100 + 4999 % 50, stream.heartRate(4999));
+        assertEquals(3.0, stream.velocity(4999), 1e-6);
+        assertEquals(4999 * 3.0, stream.distance(4999), 1e-2);
+    }
+
+    @Test
+    void missingValues_trackedInBitmap() {
+        ActivityStream stream = new ActivityStream();
+        int a = stream.append(0);
+        int b = stream.append(1);
+        stream.setHeartRate(a, 140);
+        stream.setHeartRate(b, 0); // invalid → missing
+
+        assertTrue(stream.hasHeartRate(a));
+        assertFalse(stream.hasHeartRate(b));
+        assertEquals(0, stream.heartRate(b));
+        assertFalse(stream.hasVelocityChannel());
+        assertFalse(stream.hasVelocity(a));
+        assertFalse(stream.hasDistanceChannel());
+    }
+
+    @Test
+    void setBeyondSize_throws() {
+        ActivityStream stream = new ActivityStream();
+        stream.append(0);
+        assertThrows(IndexOutOfBoundsException.class, () -> stream.setHeartRate(1, 120));
+    }
+
+    // ── Calculator parity with List-based overloads ───────────────────────────
+
+    @Test
+    void calculators_matchListOverloads() {
+        int n = 3601; // 60 min, 1 s sampling with HR gaps and a speed drop
+        List<Integer> time = new ArrayList<>(n);
+        List<Integer> hr   = new ArrayList<>(n);
+        List<Double>  vel  = new ArrayList<>(n);
+        List<Double>  dist = new ArrayList<>(n);
+        ActivityStream stream = new ActivityStream(n).withVelocity().withDistance();
+
+        double d = 0;
+        for (int t = 0; t < n; t++) {
+            Integer h = (t % 97 == 0) ? null : 120 + (t * 7) % 60;
+            double  v = t < 1800 ? 3.0 : 2.5;
+            d += v;
+
+            time.add(t); hr.add(h); vel.add(v); dist.add(d);
+
+            int i = stream.append(t);
+            if (h != null) stream.setHeartRate(i, h);
+            stream.setVelocity(i, v);
+            stream.setDistance(i, d);
+        }
+
+        HeartRateZoneConfig config = HeartRateZoneConfig.fromHrMax(190);
+        ZoneTimeResult zList   = new ZoneTimeCalculator().calculate(time, hr, config);
+        ZoneTimeResult zStream = new ZoneTimeCalculator().calculate(stream, config);
+        assertEquals(zList.getZ1Min(), zStream.getZ1Min(), 1e-12);
+        assertEquals(zList.getZ2Min(), zStream.getZ2Min(), 1e-12);
+        assertEquals(zList.getZ3Min(), zStream.getZ3Min(), 1e-12);
+        assertEquals(zList.getZ4Min(), zStream.getZ4Min(), 1e-12);
+        assertEquals(zList.getZ5Min(), zStream.getZ5Min(), 1e-12);
+        assertEquals(zList.getHrDataCoverage(), zStream.getHrDataCoverage(), 1e-12);
+
+        TRIMPResult tList   = new TRIMPCalculator().calculate(time, hr, 50, 190, TRIMPCalculator.K_MALE);
+        TRIMPResult tStream = new TRIMPCalculator().calculate(stream, 50, 190, TRIMPCalculator.K_MALE);
+        assertEquals(tList.trimp(), tStream.trimp(), 1e-9);
+        assertEquals(tList.quality(), tStream.quality());
+
+        DecouplingResult dList   = new AerobicDecouplingCalculator().calculate(time, hr, vel, dist);
+        DecouplingResult dStream = new AerobicDecouplingCalculator().calculate(stream);
+        assertTrue(dStream.eligible());
+        assertEquals(dList.decouplingPct(), dStream.decouplingPct(), 1e-6);
+    }
+
+    @Test
+    void decoupling_withoutVelocityChannel_insufficientData() {
+        ActivityStream stream = new ActivityStream();
+        for (int t = 0; t < 2400; t++) stream.setHeartRate(stream.append(t), 140);
+
+        DecouplingResult r = new AerobicDecouplingCalculator().calculate(stream);
+
+        assertFalse(r.eligible());
+        assertEquals("INSUFFICIENT_DATA", r.reason());
+    }
+}
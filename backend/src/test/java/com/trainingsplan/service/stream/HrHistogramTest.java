@@ -0,0 +1,66 @@
+package com.trainingsplan.service.stream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HrHistogramTest {
+
+    @Test
+    void of_countsIntervalsAtSampleHr_likeTheCalculators() {
+        ActivityStream s = new ActivityStream();
+        s.setHeartRate(s.append(0), 120);   // 0 → 2: 2 s at 120
+        s.append(2);                        // no HR: 3 s without
+        s.setHeartRate(s.append(5), 300);   // clamped: 1 s at 255
+        s.setHeartRate(s.append(6), 130);   // non-positive interval: skipped
+        s.setHeartRate(s.append(6), 120);   // 6 → 10: 4 s at 120
+        s.setHeartRate(s.append(10), 150);  // last sample contributes nothing
+
+        HrHistogram h = HrHistogram.of(s);
+
+        assertTrue(h.isSufficient());
+        assertEquals(10, h.totalDurationSec());
+        assertEquals(6, h.seconds(120));
+        assertEquals(1, h.seconds(255));
+        assertEquals(0, h.seconds(130));
+        assertEquals(0, h.seconds(150));
+        assertEquals(7, h.hrSeconds());
+    }
+
+    @Test
+    void roundTrip_isCompact() {
+        ActivityStream s = new ActivityStream();
+        for (int t = 0; t < 3600; t++) {
+            s.setHeartRate(s.append(t), 100 + (t * 90) / 3600);
+        }
+        HrHistogram in = HrHistogram.of(s);
+
+        byte[] bytes = in.encode();
+        HrHistogram out = HrHistogram.decode(bytes);
+
+        assertTrue(bytes.length < 250, "encoded size " + bytes.length);
+        assertTrue(out.isSufficient());
+        assertEquals(in.totalDurationSec(), out.totalDurationSec());
+        for (int bpm = 0; bpm <= HrHistogram.MAX_BPM; bpm++) {
+            assertEquals(in.seconds(bpm), out.seconds(bpm), "bpm " + bpm);
+        }
+    }
+
+    @Test
+    void singleSample_insufficient_roundTrips() {
+        ActivityStream s = new ActivityStream();
+        s.setHeartRate(s.append(0), 140);
+
+        HrHistogram out = HrHistogram.decode(HrHistogram.of(s).encode());
+
+        assertFalse(out.isSufficient());
+        assertEquals(0, out.hrSeconds());
+    }
+
+    @Test
+    void decode_rejectsGarbage() {
+        assertThrows(IllegalArgumentException.class, () -> HrHistogram.decode(new byte[]{9, 0}));
+        assertThrows(IllegalArgumentException.class, () -> HrHistogram.decode(new byte[]{1, 1, 10, 100}));
+        assertThrows(IllegalArgumentException.class, () -> HrHistogram.decode(new byte[]{1, 1, 10, 0, (byte) 200, 1}));
+    }
+}
@@ -0,0 +1,134 @@
+package com.trainingsplan.service.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Latency and allocation of {@link StravaStreamDecoder} vs. the previous
+ * {@code readTree} + {@code JsonNode} walk, on synthetic streams responses of 1, 4 and
+ * 10 hours at 1 Hz. Allocation is measured per decode with the thread allocation counter.
+ *
+ * <p>Skipped in the regular build; run with
+ * {@code mvn test -Dtest=StravaStreamDecoderBenchmarkTest -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StravaStreamDecoderBenchmarkTest {
+
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 300;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void streamingVsTree() throws IOException {
+        for (int hours : new int[]{1, 4, 10}) {
+            byte[] payload = payload(hours * 3600, new Random(hours));
+
+            ActivityStream expected = tree(payload);
+            ActivityStream actual = streaming(payload);
+            assertEquals(expected.size(), actual.size());
+            assertEquals(expected.heartRate(expected.size() - 1), actual.heartRate(actual.size() - 1));
+            assertEquals(expected.distance(expected.size() - 1), actual.distance(actual.size() - 1));
+
+            Result treeResult = measure(() -> tree(payload));
+            Result streamingResult = measure(() -> streaming(payload));
+            System.out.printf(Locale.ROOT,
+                    "%2d h (%,d samples, %,d KB): tree %7.2f ms %,9d KB | streaming %7.2f ms %,9d KB | %.1fx faster, %.1fx less allocation%n",
+                    hours, expected.size(), payload.length / 1024,
+                    treeResult.millis, treeResult.bytes / 1024, streamingResult.millis, streamingResult.bytes / 1024,
+                    treeResult.millis / streamingResult.millis, (double) treeResult.bytes / streamingResult.bytes);
+        }
+    }
+
+    private Result measure(Decode decode) throws IOException {
+        for (int i = 0; i < WARMUP; i++) decode.run();
+        long thread = Thread.currentThread().threadId();
+        long bytesBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) decode.run();
+        long elapsed = System.nanoTime() - start;
+        long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+        return new Result(elapsed / 1e6 / ITERATIONS, bytes / ITERATIONS);
+    }
+
+    private ActivityStream streaming(byte[] payload) throws IOException {
+        return StravaStreamDecoder.decode(objectMapper.getFactory(), new ByteArrayInputStream(payload)).orElseThrow();
+    }
+
+    /** The tree-based decoding that {@link StravaStreamDecoder} replaced. */
+    private ActivityStream tree(byte[] payload) throws IOException {
+        JsonNode root = objectMapper.readTree(new ByteArrayInputStream(payload));
+        JsonNode timeData = root.path("time").path("data");
+        JsonNode hrData   = root.path("heartrate").path("data");
+        JsonNode velData  = root.path("velocity_smooth").path("data");
+        JsonNode distData = root.path("distance").path("data");
+
+        int n = timeData.size();
+        ActivityStream stream = new ActivityStream(n).withVelocity();
+        for (JsonNode t : timeData) stream.append(t.intValue());
+        if (hrData.isArray() && hrData.size() == n) {
+            for (int i = 0; i < n; i++) {
+                JsonNode hr = hrData.get(i);
+                if (!hr.isNull()) stream.setHeartRate(i, hr.intValue());
+            }
+        }
+        if (velData.isArray() && velData.size() == n) {
+            for (int i = 0; i < n; i++) {
+                JsonNode v = velData.get(i);
+                if (!v.isNull()) stream.setVelocity(i, v.doubleValue());
+            }
+        }
+        if (distData.isArray() && distData.size() == n) {
+            stream.withDistance();
+            for (int i = 0; i < n; i++) {
+                JsonNode d = distData.get(i);
+                if (!d.isNull()) stream.setDistance(i, d.doubleValue());
+            }
+        }
+        return stream;
+    }
+
+    /** A {@code key_by_type} response as Strava sends it, with occasional HR dropouts. */
+    private static byte[] payload(int samples, Random rnd) {
+        StringBuilder time = new StringBuilder();
+        StringBuilder hr = new StringBuilder();
+        StringBuilder velocity = new StringBuilder();
+        StringBuilder distance = new StringBuilder();
+        double d = 0;
+        for (int i = 0; i < samples; i++) {
+            String sep = i == 0 ? "" : ",";
+            double v = 2.8 + rnd.nextGaussian() * 0.3;
+            d += v;
+            time.append(sep).append(i);
+            hr.append(sep).append(rnd.nextInt(200) == 0 ? "null" : String.valueOf(130 + rnd.nextInt(40)));
+            velocity.append(sep).append(String.format(Locale.ROOT, "%.3f", v));
+            distance.append(sep).append(String.format(Locale.ROOT, "%.1f", d));
+        }
+        String meta = ",\"series_type\":\"distance\",\"original_size\":" + samples + ",\"resolution\":\"high\"}";
+        return ("{\"time\":{\"data\":[" + time + "]" + meta
+                + ",\"distance\":{\"data\":[" + distance + "]" + meta
+                + ",\"velocity_smooth\":{\"data\":[" + velocity + "]" + meta
+                + ",\"heartrate\":{\"data\":[" + hr + "]" + meta + "}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface Decode {
+        ActivityStream run() throws IOException;
+    }
+
+    private record Result(double millis, long bytes) {}
+}
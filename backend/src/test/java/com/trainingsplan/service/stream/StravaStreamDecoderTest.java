@@ -0,0 +1,97 @@
+package com.trainingsplan.service.stream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StravaStreamDecoderTest {
+
+    @Test
+    void decodesAllChannels_withNullsAndIgnoredKeys() throws IOException {
+        ActivityStream stream = decode("""
+                {"time":{"data":[0,1,3],"series_type":"distance","original_size":3,"resolution":"high"},
+                 "heartrate":{"data":[120,null,131.0],"series_type":"distance"},
+                 "velocity_smooth":{"data":[2.5,3,null]},
+                 "distance":{"data":[0.0,2.5,null]},
+                 "cadence":{"data":[80,81,82],"extra":{"nested":[1,2]}}}
+                """).orElseThrow();
+
+        assertEquals(3, stream.size());
+        assertEquals(3, stream.time(2));
+        assertEquals(120, stream.heartRate(0));
+        assertFalse(stream.hasHeartRate(1));
+        assertEquals(131, stream.heartRate(2));
+        assertEquals(3.0, stream.velocity(1), 1e-6);
+        assertFalse(stream.hasVelocity(2));
+        assertTrue(stream.hasDistanceChannel());
+        assertEquals(2.5, stream.distance(1), 1e-6);
+        assertFalse(stream.hasDistance(2));
+    }
+
+    @Test
+    void streamsInAnyOrder_mismatchedChannelDropped() throws IOException {
+        ActivityStream stream = decode("""
+                {"distance":{"data":[0,3]},"heartrate":{"data":[150,151]},"time":{"data":[0,1]},
+                 "velocity_smooth":{"data":[3.0]}}
+                """).orElseThrow();
+
+        assertEquals(2, stream.size());
+        assertEquals(151, stream.heartRate(1));
+        assertEquals(3.0, stream.distance(1), 1e-6);
+        assertTrue(stream.hasVelocityChannel());
+        assertFalse(stream.hasVelocity(0));
+    }
+
+    @Test
+    void decimals_matchDoubleParsing_includingFallbackForms() throws IOException {
+        String[] values = {"2.873", "-0.5", "0.001", "7", "1.5e2", "3.0E-1", "123456789012.3456", "0.1234567890123456789"};
+        StringBuilder time = new StringBuilder();
+        for (int i = 0; i < values.length; i++) time.append(i == 0 ? "" : ",").append(i);
+
+        ActivityStream stream = decode("{\"time\":{\"data\":[" + time + "]},\"distance\":{\"data\":["
+                + String.join(",", values) + "]}}").orElseThrow();
+
+        for (int i = 0; i < values.length; i++) {
+            assertEquals((float) Double.parseDouble(values[i]), (float) stream.distance(i), values[i]);
+        }
+    }
+
+    @Test
+    void longStream_growsPastInitialCapacity() throws IOException {
+        int n = 5000;
+        StringBuilder time = new StringBuilder();
+        StringBuilder hr = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i > 0) { time.append(','); hr.append(','); }
+            time.append(i);
+            hr.append(100 + i % 80);
+        }
+
+        ActivityStream stream = decode("{\"heartrate\":{\"data\":[" + hr + "]},\"time\":{\"data\":[" + time + "]}}")
+                .orElseThrow();
+
+        assertEquals(n, stream.size());
+        assertEquals(n - 1, stream.time(n - 1));
+        assertEquals(100 + (n - 1) % 80, stream.heartRate(n - 1));
+        assertFalse(stream.hasDistanceChannel());
+    }
+
+    @Test
+    void withoutTimeStream_empty() throws IOException {
+        assertTrue(decode("{\"heartrate\":{\"data\":[120]}}").isEmpty());
+        assertTrue(decode("{\"time\":{\"data\":[]}}").isEmpty());
+        assertTrue(decode("{\"message\":\"Record Not Found\",\"errors\":[{\"code\":\"invalid\"}]}").isEmpty());
+        assertTrue(decode("[{\"type\":\"time\",\"data\":[0,1]}]").isEmpty());
+    }
+
+    private static Optional<ActivityStream> decode(String json) throws IOException {
+        return StravaStreamDecoder.decode(new JsonFactory(),
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}